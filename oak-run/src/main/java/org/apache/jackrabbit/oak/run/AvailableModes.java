@@ -47,6 +47,7 @@ public final class AvailableModes {
             .put("history", new HistoryCommand())
             .put(IndexCommand.NAME, new IndexCommand())
             .put(IOTraceCommand.NAME, new IOTraceCommand())
+            .put(IOTraceReplayCommand.NAME, new IOTraceReplayCommand())
             .put(JsonIndexCommand.INDEX, new JsonIndexCommand())
             .put(PersistentCacheCommand.PERSISTENTCACHE, new PersistentCacheCommand())
             .put("rdbddldump", new RDBDDLDumpCommand())
@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jackrabbit.oak.run;
+
+import static java.lang.String.format;
+import static org.apache.jackrabbit.oak.segment.FileStoreHelper.isValidFileStoreOrFail;
+import static org.apache.jackrabbit.oak.segment.azure.tool.ToolUtils.newSegmentNodeStorePersistence;
+import static org.apache.jackrabbit.oak.segment.azure.tool.ToolUtils.storeTypeFromPathOrUri;
+import static org.apache.jackrabbit.oak.segment.file.FileStoreBuilder.fileStoreBuilder;
+import static org.apache.jackrabbit.oak.segment.tool.iotrace.IOTraceReplayer.newIOTraceReplayer;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.function.Function;
+
+import joptsimple.ArgumentAcceptingOptionSpec;
+import joptsimple.OptionException;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import org.apache.commons.io.FileUtils;
+import org.apache.jackrabbit.oak.run.commons.Command;
+import org.apache.jackrabbit.oak.segment.azure.tool.ToolUtils.SegmentStoreType;
+import org.apache.jackrabbit.oak.segment.file.FileStore;
+import org.apache.jackrabbit.oak.segment.file.FileStoreBuilder;
+import org.apache.jackrabbit.oak.segment.file.InvalidFileStoreVersionException;
+import org.apache.jackrabbit.oak.segment.spi.monitor.IOMonitor;
+import org.apache.jackrabbit.oak.segment.tool.iotrace.IOTraceReplayer;
+import org.apache.jackrabbit.oak.segment.tool.iotrace.IOTraceReplayer.Result;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ *  Command line utility for {@link IOTraceReplayer replaying} io traces
+ *  collected with the {@link IOTraceCommand iotrace} command.
+ *
+    <pre>
+    usage: iotrace-replay path/to/segmentstore|az:uri <options>
+    Option (* = required)      Description
+    ---------------------      -----------
+    --concurrency <Integer>    number of threads reading segments (default: 1)
+    --mmap <Boolean>           use memory mapping for the file store (default: true)
+    --repeat <Integer>         number of times to replay the trace (default: 1)
+    --segment-cache <Integer>  size of the segment cache in MB (default: 256)
+    --trace <File>             the io trace to replay (default: iotrace.csv)
+    </pre>
+ */
+class IOTraceReplayCommand implements Command {
+    public static final String NAME = "iotrace-replay";
+
+    @Override
+    public void execute(String... args) throws Exception {
+        OptionParser optionParser = new OptionParser();
+        ArgumentAcceptingOptionSpec<File> traceOption = optionParser
+                .accepts("trace", "the io trace to replay")
+                .withRequiredArg()
+                .ofType(File.class)
+                .defaultsTo(new File("iotrace.csv"));
+
+        ArgumentAcceptingOptionSpec<Integer> concurrencyOption = optionParser
+                .accepts("concurrency", "number of threads reading segments")
+                .withRequiredArg()
+                .ofType(Integer.class)
+                .defaultsTo(1);
+
+        ArgumentAcceptingOptionSpec<Integer> repeatOption = optionParser
+                .accepts("repeat", "number of times to replay the trace")
+                .withRequiredArg()
+                .ofType(Integer.class)
+                .defaultsTo(1);
+
+        ArgumentAcceptingOptionSpec<Boolean> mmapOption = optionParser
+                .accepts("mmap", "use memory mapping for the file store")
+                .withRequiredArg()
+                .ofType(Boolean.class)
+                .defaultsTo(true);
+
+        ArgumentAcceptingOptionSpec<Integer> segmentCacheOption = optionParser
+                .accepts("segment-cache", "size of the segment cache in MB")
+                .withRequiredArg()
+                .ofType(Integer.class)
+                .defaultsTo(256);
+
+        try {
+            OptionSet options = optionParser.parse(args);
+
+            if (options.nonOptionArguments().size() != 1) {
+                printUsage(optionParser, System.err);
+                System.exit(1);
+            }
+
+            String segmentStore = options.nonOptionArguments().get(0).toString();
+            File trace = traceOption.value(options);
+            int concurrency = concurrencyOption.value(options);
+            int repeat = repeatOption.value(options);
+            boolean mmap = mmapOption.value(options);
+            int segmentCache = segmentCacheOption.value(options);
+
+            System.out.println(
+                    format("replaying %s against %s", trace, segmentStore));
+            System.out.println(
+                    format("concurrency=%d, mmap=%b, segment cache=%d", concurrency, mmap, segmentCache));
+
+            SegmentStoreType storeType = storeTypeFromPathOrUri(segmentStore);
+            File directory = storeType == SegmentStoreType.TAR
+                    ? isValidFileStoreOrFail(new File(segmentStore))
+                    : Files.createTempDirectory("iotrace-replay").toFile();
+            try {
+                Function<IOMonitor, FileStore> factory = ioMonitor -> {
+                    FileStoreBuilder builder = fileStoreBuilder(directory)
+                            .withSegmentCacheSize(segmentCache)
+                            .withIOMonitor(ioMonitor);
+                    if (storeType == SegmentStoreType.TAR) {
+                        builder.withMemoryMapping(mmap);
+                    } else {
+                        builder.withMemoryMapping(false)
+                                .withCustomPersistence(newSegmentNodeStorePersistence(storeType, segmentStore));
+                    }
+                    return newFileStore(builder);
+                };
+
+                IOTraceReplayer replayer = newIOTraceReplayer(factory, concurrency);
+                for (int k = 0; k < repeat; k++) {
+                    try (BufferedReader reader = new BufferedReader(new FileReader(trace))) {
+                        Result result = replayer.replay(reader);
+                        System.out.println(format("run %d: %s", k + 1, result));
+                    }
+                }
+            } finally {
+                if (storeType != SegmentStoreType.TAR) {
+                    FileUtils.deleteQuietly(directory);
+                }
+            }
+        } catch (OptionException e) {
+            printUsage(optionParser, System.err, e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    @NotNull
+    private static FileStore newFileStore(FileStoreBuilder fileStoreBuilder) {
+        try {
+            return fileStoreBuilder.build();
+        } catch (InvalidFileStoreVersionException | IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void printUsage(
+            @NotNull OptionParser parser,
+            @NotNull PrintStream err,
+            @NotNull String... messages)
+    throws IOException {
+        for (String message : messages) {
+            err.println(message);
+        }
+
+        err.println("usage: " + NAME + " path/to/segmentstore|az:uri <options>");
+        parser.printHelpOn(err);
+    }
+}
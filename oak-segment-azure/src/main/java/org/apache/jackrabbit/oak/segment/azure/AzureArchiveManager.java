@@ -25,6 +25,7 @@ import com.microsoft.azure.storage.blob.CopyStatus;
 import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveManager;
 import org.apache.jackrabbit.oak.segment.spi.monitor.FileStoreMonitor;
 import org.apache.jackrabbit.oak.segment.spi.monitor.IOMonitor;
+import org.apache.jackrabbit.oak.segment.spi.persistence.Buffer;
 import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveReader;
 import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveWriter;
 import org.slf4j.Logger;
@@ -35,6 +36,7 @@ import java.net.URISyntaxException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.LinkedHashMap;
@@ -59,10 +61,22 @@ public class AzureArchiveManager implements SegmentArchiveManager {
 
     private final FileStoreMonitor monitor;
 
+    private final int batchSize;
+
     public AzureArchiveManager(CloudBlobDirectory cloudBlobDirectory, IOMonitor ioMonitor, FileStoreMonitor fileStoreMonitor) {
+        this(cloudBlobDirectory, ioMonitor, fileStoreMonitor, AzureSegmentArchiveWriter.BATCH_SIZE);
+    }
+
+    /**
+     * @param batchSize size in bytes up to which consecutive segments are
+     *                  packed into a single blob when writing. {@code 0}
+     *                  uploads each segment as a separate blob.
+     */
+    public AzureArchiveManager(CloudBlobDirectory cloudBlobDirectory, IOMonitor ioMonitor, FileStoreMonitor fileStoreMonitor, int batchSize) {
         this.cloudBlobDirectory = cloudBlobDirectory;
         this.ioMonitor = ioMonitor;
         this.monitor = fileStoreMonitor;
+        this.batchSize = batchSize;
     }
 
     @Override
@@ -105,7 +119,7 @@ public class AzureArchiveManager implements SegmentArchiveManager {
 
     @Override
     public SegmentArchiveWriter create(String archiveName) throws IOException {
-        return new AzureSegmentArchiveWriter(getDirectory(archiveName), ioMonitor, monitor);
+        return new AzureSegmentArchiveWriter(getDirectory(archiveName), ioMonitor, monitor, batchSize);
     }
 
     @Override
@@ -175,6 +189,10 @@ public class AzureArchiveManager implements SegmentArchiveManager {
 
         for (CloudBlob b : getBlobList(archiveName)) {
             String name = getName(b);
+            if (AzureBlobMetadata.isPack(b.getMetadata())) {
+                recoverPackEntries(b, entryList);
+                continue;
+            }
             Matcher m = pattern.matcher(name);
             if (!m.matches()) {
                 continue;
@@ -206,6 +224,21 @@ public class AzureArchiveManager implements SegmentArchiveManager {
         }
     }
 
+    private static void recoverPackEntries(CloudBlob pack, List<RecoveredEntry> entryList) throws IOException {
+        String name = getName(pack);
+        byte[] data = new byte[(int) pack.getProperties().getLength()];
+        try {
+            pack.downloadToByteArray(data, 0);
+        } catch (StorageException e) {
+            throw new IOException(e);
+        }
+        int indexLength = AzureBlobMetadata.getPackIndexLength(pack.getMetadata());
+        Buffer index = Buffer.wrap(data, data.length - indexLength, indexLength).slice();
+        for (AzureSegmentArchiveEntry e : AzureSegmentPack.readIndex(name, index)) {
+            byte[] segment = Arrays.copyOfRange(data, e.getPackOffset(), e.getPackOffset() + e.getLength());
+            entryList.add(new RecoveredEntry(e.getPosition(), new UUID(e.getMsb(), e.getLsb()), segment, name));
+        }
+    }
 
     private CloudBlobDirectory getDirectory(String archiveName) throws IOException {
         try {
@@ -34,8 +34,12 @@ public final class AzureBlobMetadata {
 
     private static final String METADATA_SEGMENT_COMPACTED = "compacted";
 
+    private static final String METADATA_PACK_INDEX_LENGTH = "indexLength";
+
     private static final String TYPE_SEGMENT = "segment";
 
+    private static final String TYPE_PACK = "pack";
+
     public static HashMap<String, String> toSegmentMetadata(AzureSegmentArchiveEntry indexEntry) {
         HashMap<String, String> map = new HashMap<>();
         map.put(METADATA_TYPE, TYPE_SEGMENT);
@@ -62,4 +66,19 @@ public final class AzureBlobMetadata {
         return metadata != null && TYPE_SEGMENT.equals(metadata.get(METADATA_TYPE));
     }
 
+    public static HashMap<String, String> toPackMetadata(int indexLength) {
+        HashMap<String, String> map = new HashMap<>();
+        map.put(METADATA_TYPE, TYPE_PACK);
+        map.put(METADATA_PACK_INDEX_LENGTH, String.valueOf(indexLength));
+        return map;
+    }
+
+    public static int getPackIndexLength(Map<String, String> metadata) {
+        return Integer.parseInt(metadata.get(METADATA_PACK_INDEX_LENGTH));
+    }
+
+    public static boolean isPack(Map<String, String> metadata) {
+        return metadata != null && TYPE_PACK.equals(metadata.get(METADATA_TYPE));
+    }
+
 }
@@ -52,8 +52,20 @@ public class AzurePersistence implements SegmentNodeStorePersistence {
 
     private final CloudBlobDirectory segmentstoreDirectory;
 
+    private final int batchSize;
+
     public AzurePersistence(CloudBlobDirectory segmentStoreDirectory) {
+        this(segmentStoreDirectory, AzureSegmentArchiveWriter.BATCH_SIZE);
+    }
+
+    /**
+     * @param batchSize size in bytes up to which consecutive segments are
+     *                  packed into a single blob. {@code 0} uploads each
+     *                  segment as a separate blob.
+     */
+    public AzurePersistence(CloudBlobDirectory segmentStoreDirectory, int batchSize) {
         this.segmentstoreDirectory = segmentStoreDirectory;
+        this.batchSize = batchSize;
 
         BlobRequestOptions defaultRequestOptions = segmentStoreDirectory.getServiceClient().getDefaultRequestOptions();
         if (defaultRequestOptions.getRetryPolicyFactory() == null) {
@@ -70,7 +82,7 @@ public class AzurePersistence implements SegmentNodeStorePersistence {
     @Override
     public SegmentArchiveManager createArchiveManager(boolean mmap, boolean offHeapAccess, IOMonitor ioMonitor, FileStoreMonitor fileStoreMonitor, RemoteStoreMonitor remoteStoreMonitor) {
         attachRemoteStoreMonitor(remoteStoreMonitor);
-        return new AzureArchiveManager(segmentstoreDirectory, ioMonitor, fileStoreMonitor);
+        return new AzureArchiveManager(segmentstoreDirectory, ioMonitor, fileStoreMonitor, batchSize);
     }
 
     @Override
@@ -34,7 +34,23 @@ public class AzureSegmentArchiveEntry implements SegmentArchiveEntry {
 
     private final boolean compacted;
 
+    private final String packName;
+
+    private final int packOffset;
+
     public AzureSegmentArchiveEntry(long msb, long lsb, int position, int length, int generation, int fullGeneration, boolean compacted) {
+        this(msb, lsb, position, length, generation, fullGeneration, compacted, null, 0);
+    }
+
+    /**
+     * Create an entry for a segment stored in a pack blob together with other
+     * segments.
+     *
+     * @param packName   name of the pack blob or {@code null} if the segment is
+     *                   stored in its own blob
+     * @param packOffset offset of the segment within the pack blob
+     */
+    public AzureSegmentArchiveEntry(long msb, long lsb, int position, int length, int generation, int fullGeneration, boolean compacted, String packName, int packOffset) {
         this.msb = msb;
         this.lsb = lsb;
         this.position = position;
@@ -42,6 +58,8 @@ public class AzureSegmentArchiveEntry implements SegmentArchiveEntry {
         this.generation = generation;
         this.fullGeneration = fullGeneration;
         this.compacted = compacted;
+        this.packName = packName;
+        this.packOffset = packOffset;
     }
 
     @Override
@@ -77,4 +95,16 @@ public class AzureSegmentArchiveEntry implements SegmentArchiveEntry {
     public boolean isCompacted() {
         return compacted;
     }
+
+    public boolean isPacked() {
+        return packName != null;
+    }
+
+    public String getPackName() {
+        return packName;
+    }
+
+    public int getPackOffset() {
+        return packOffset;
+    }
 }
@@ -24,6 +24,7 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -32,6 +33,8 @@ import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import com.google.common.base.Stopwatch;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.microsoft.azure.storage.StorageException;
 import com.microsoft.azure.storage.blob.CloudBlob;
 import com.microsoft.azure.storage.blob.CloudBlobDirectory;
@@ -44,6 +47,23 @@ import org.apache.jackrabbit.oak.segment.spi.persistence.Buffer;
 public class AzureSegmentArchiveReader implements SegmentArchiveReader {
     static final boolean OFF_HEAP = getBoolean("access.off.heap");
 
+    /**
+     * Maximum number of bytes read with a single ranged request from a pack
+     * blob. When a segment is read from a pack, the adjacent segments following
+     * it are read with the same request up to this size and kept until they
+     * are requested.
+     */
+    static final int COALESCE_SIZE = Integer.getInteger("oak.segment.azure.coalesce.size", 1024 * 1024);
+
+    /**
+     * Segments read together with a requested segment, but not requested yet.
+     * Shared by all readers to bound the memory used for them.
+     */
+    private static final Cache<UUID, Buffer> COALESCED = CacheBuilder.newBuilder()
+            .maximumWeight(4L * COALESCE_SIZE)
+            .<UUID, Buffer>weigher((uuid, buffer) -> buffer.remaining())
+            .build();
+
     private final CloudBlobDirectory archiveDirectory;
 
     private final IOMonitor ioMonitor;
@@ -52,6 +72,11 @@ public class AzureSegmentArchiveReader implements SegmentArchiveReader {
 
     private final Map<UUID, AzureSegmentArchiveEntry> index = new LinkedHashMap<>();
 
+    /**
+     * Entries of packed segments by pack name, ordered by offset.
+     */
+    private final Map<String, List<AzureSegmentArchiveEntry>> packs = new LinkedHashMap<>();
+
     private Boolean hasGraph;
 
     AzureSegmentArchiveReader(CloudBlobDirectory archiveDirectory, IOMonitor ioMonitor) throws IOException {
@@ -63,18 +88,36 @@ public class AzureSegmentArchiveReader implements SegmentArchiveReader {
             if (AzureBlobMetadata.isSegment(metadata)) {
                 AzureSegmentArchiveEntry indexEntry = AzureBlobMetadata.toIndexEntry(metadata, (int) blob.getProperties().getLength());
                 index.put(new UUID(indexEntry.getMsb(), indexEntry.getLsb()), indexEntry);
+            } else if (AzureBlobMetadata.isPack(metadata)) {
+                List<AzureSegmentArchiveEntry> entries = readPackIndex(blob, AzureBlobMetadata.getPackIndexLength(metadata));
+                for (AzureSegmentArchiveEntry indexEntry : entries) {
+                    index.put(new UUID(indexEntry.getMsb(), indexEntry.getLsb()), indexEntry);
+                }
+                packs.put(AzureUtilities.getName(blob), entries);
             }
             length += blob.getProperties().getLength();
         }
         this.length = length;
     }
 
+    private static List<AzureSegmentArchiveEntry> readPackIndex(CloudBlob blob, int indexLength) throws IOException {
+        Buffer buffer = Buffer.allocate(indexLength);
+        readBufferFully(blob, blob.getProperties().getLength() - indexLength, buffer);
+        List<AzureSegmentArchiveEntry> entries = AzureSegmentPack.readIndex(AzureUtilities.getName(blob), buffer);
+        entries.sort(Comparator.comparingInt(AzureSegmentArchiveEntry::getPackOffset));
+        return entries;
+    }
+
     @Override
     public Buffer readSegment(long msb, long lsb) throws IOException {
-        AzureSegmentArchiveEntry indexEntry = index.get(new UUID(msb, lsb));
+        UUID uuid = new UUID(msb, lsb);
+        AzureSegmentArchiveEntry indexEntry = index.get(uuid);
         if (indexEntry == null) {
             return null;
         }
+        if (indexEntry.isPacked()) {
+            return readPackedSegment(uuid, indexEntry);
+        }
 
         Buffer buffer;
         if (OFF_HEAP) {
@@ -90,6 +133,61 @@ public class AzureSegmentArchiveReader implements SegmentArchiveReader {
         return buffer;
     }
 
+    /**
+     * Read a segment from a pack blob. The segment is read together with the
+     * adjacent segments following it in the pack, which have not been read
+     * yet, with a single ranged request of at most {@link #COALESCE_SIZE}
+     * bytes.
+     */
+    private Buffer readPackedSegment(UUID uuid, AzureSegmentArchiveEntry indexEntry) throws IOException {
+        Buffer buffer = COALESCED.getIfPresent(uuid);
+        if (buffer != null) {
+            COALESCED.invalidate(uuid);
+            return buffer;
+        }
+
+        List<AzureSegmentArchiveEntry> run = new ArrayList<>();
+        run.add(indexEntry);
+        int length = indexEntry.getLength();
+        List<AzureSegmentArchiveEntry> entries = packs.get(indexEntry.getPackName());
+        for (int i = entries.indexOf(indexEntry) + 1; i < entries.size(); i++) {
+            AzureSegmentArchiveEntry next = entries.get(i);
+            UUID nextUuid = new UUID(next.getMsb(), next.getLsb());
+            if (length + next.getLength() > COALESCE_SIZE || COALESCED.getIfPresent(nextUuid) != null) {
+                break;
+            }
+            run.add(next);
+            length += next.getLength();
+        }
+
+        Buffer range = OFF_HEAP ? Buffer.allocateDirect(length) : Buffer.allocate(length);
+        ioMonitor.beforeSegmentRead(pathAsFile(), uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), length);
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        readBufferFully(getBlob(indexEntry.getPackName()), indexEntry.getPackOffset(), range);
+        long elapsed = stopwatch.elapsed(TimeUnit.NANOSECONDS);
+        ioMonitor.afterSegmentRead(pathAsFile(), uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), length, elapsed);
+
+        Buffer result = null;
+        int offset = 0;
+        for (AzureSegmentArchiveEntry e : run) {
+            Buffer slice = range.duplicate();
+            slice.position(offset);
+            slice.limit(offset + e.getLength());
+            // copy the segment so that it does not keep the whole range
+            // reachable while it is cached
+            Buffer segment = OFF_HEAP ? Buffer.allocateDirect(e.getLength()) : Buffer.allocate(e.getLength());
+            segment.put(slice);
+            segment.flip();
+            if (result == null) {
+                result = segment;
+            } else {
+                COALESCED.put(new UUID(e.getMsb(), e.getLsb()), segment);
+            }
+            offset += e.getLength();
+        }
+        return result;
+    }
+
     @Override
     public boolean containsSegment(long msb, long lsb) {
         return index.containsKey(new UUID(msb, lsb));
@@ -134,7 +232,11 @@ public class AzureSegmentArchiveReader implements SegmentArchiveReader {
 
     @Override
     public void close() {
-        // do nothing
+        for (List<AzureSegmentArchiveEntry> entries : packs.values()) {
+            for (AzureSegmentArchiveEntry e : entries) {
+                COALESCED.invalidate(new UUID(e.getMsb(), e.getLsb()));
+            }
+        }
     }
 
     @Override
@@ -25,6 +25,7 @@ import java.io.IOException;
 import java.net.URISyntaxException;
 import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
@@ -43,6 +44,13 @@ import org.apache.jackrabbit.oak.segment.spi.persistence.Buffer;
 
 public class AzureSegmentArchiveWriter implements SegmentArchiveWriter {
 
+    /**
+     * Size in bytes up to which consecutive segments are packed into a
+     * single blob. {@code 0} disables packing and uploads each segment as a
+     * separate blob.
+     */
+    public static final int BATCH_SIZE = Integer.getInteger("oak.segment.azure.batch.size", 0);
+
     private final CloudBlobDirectory archiveDirectory;
 
     private final IOMonitor ioMonitor;
@@ -51,6 +59,13 @@ public class AzureSegmentArchiveWriter implements SegmentArchiveWriter {
 
     private final Optional<SegmentWriteQueue> queue;
 
+    private final int batchSize;
+
+    /**
+     * Segments not yet uploaded in batch mode. Guarded by {@code this}.
+     */
+    private AzureSegmentPack pack;
+
     private Map<UUID, AzureSegmentArchiveEntry> index = Collections.synchronizedMap(new LinkedHashMap<>());
 
     private int entries;
@@ -60,10 +75,20 @@ public class AzureSegmentArchiveWriter implements SegmentArchiveWriter {
     private volatile boolean created = false;
 
     public AzureSegmentArchiveWriter(CloudBlobDirectory archiveDirectory, IOMonitor ioMonitor, FileStoreMonitor monitor) {
+        this(archiveDirectory, ioMonitor, monitor, BATCH_SIZE);
+    }
+
+    /**
+     * @param batchSize size in bytes up to which consecutive segments are
+     *                  packed into a single blob. {@code 0} uploads each
+     *                  segment as a separate blob.
+     */
+    public AzureSegmentArchiveWriter(CloudBlobDirectory archiveDirectory, IOMonitor ioMonitor, FileStoreMonitor monitor, int batchSize) {
         this.archiveDirectory = archiveDirectory;
         this.ioMonitor = ioMonitor;
         this.monitor = monitor;
-        this.queue = SegmentWriteQueue.THREADS > 0 ? Optional.of(new SegmentWriteQueue(this::doWriteEntry)) : Optional.empty();
+        this.batchSize = batchSize;
+        this.queue = batchSize <= 0 && SegmentWriteQueue.THREADS > 0 ? Optional.of(new SegmentWriteQueue(this::doWriteEntry)) : Optional.empty();
     }
 
     @Override
@@ -71,17 +96,70 @@ public class AzureSegmentArchiveWriter implements SegmentArchiveWriter {
         created = true;
 
         AzureSegmentArchiveEntry entry = new AzureSegmentArchiveEntry(msb, lsb, entries++, size, generation, fullGeneration, compacted);
-        if (queue.isPresent()) {
-            queue.get().addToQueue(entry, data, offset, size);
+        if (batchSize > 0) {
+            addToPack(entry, data, offset, size);
         } else {
-            doWriteEntry(entry, data, offset, size);
+            if (queue.isPresent()) {
+                queue.get().addToQueue(entry, data, offset, size);
+            } else {
+                doWriteEntry(entry, data, offset, size);
+            }
+            index.put(new UUID(msb, lsb), entry);
         }
-        index.put(new UUID(msb, lsb), entry);
 
         totalLength += size;
         monitor.written(size);
     }
 
+    private synchronized void addToPack(AzureSegmentArchiveEntry entry, byte[] data, int offset, int size) throws IOException {
+        if (pack == null) {
+            pack = new AzureSegmentPack(entry.getPosition());
+        }
+        pack.add(entry, data, offset, size);
+        index.put(new UUID(entry.getMsb(), entry.getLsb()), entry);
+        if (pack.size() >= batchSize) {
+            uploadPack();
+        }
+    }
+
+    private synchronized void uploadPack() throws IOException {
+        if (pack == null || pack.isEmpty()) {
+            return;
+        }
+        List<AzureSegmentArchiveEntry> packed = pack.getPackedEntries();
+        for (AzureSegmentArchiveEntry e : packed) {
+            ioMonitor.beforeSegmentWrite(pathAsFile(), e.getMsb(), e.getLsb(), e.getLength());
+        }
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        try {
+            byte[] data = pack.toByteArray();
+            CloudBlockBlob blob = getBlob(pack.getName());
+            blob.setMetadata(AzureBlobMetadata.toPackMetadata(pack.getIndexLength()));
+            blob.uploadFromByteArray(data, 0, data.length);
+            blob.uploadMetadata();
+        } catch (StorageException e) {
+            throw new IOException(e);
+        }
+        long elapsed = stopwatch.elapsed(TimeUnit.NANOSECONDS);
+        for (AzureSegmentArchiveEntry e : packed) {
+            ioMonitor.afterSegmentWrite(pathAsFile(), e.getMsb(), e.getLsb(), e.getLength(), elapsed);
+            index.put(new UUID(e.getMsb(), e.getLsb()), e);
+        }
+
+        int indexLength = pack.getIndexLength();
+        totalLength += indexLength;
+        monitor.written(indexLength);
+        pack = null;
+    }
+
+    private synchronized Buffer readFromPack(UUID uuid) {
+        return pack == null ? null : pack.read(uuid);
+    }
+
+    private synchronized boolean isPackEmpty() {
+        return pack == null || pack.isEmpty();
+    }
+
     private void doWriteEntry(AzureSegmentArchiveEntry indexEntry, byte[] data, int offset, int size) throws IOException {
         long msb = indexEntry.getMsb();
         long lsb = indexEntry.getLsb();
@@ -105,6 +183,10 @@ public class AzureSegmentArchiveWriter implements SegmentArchiveWriter {
         if (segment.isPresent()) {
             return segment.get().toBuffer();
         }
+        Buffer pending = readFromPack(uuid);
+        if (pending != null) {
+            return pending;
+        }
         AzureSegmentArchiveEntry indexEntry = index.get(new UUID(msb, lsb));
         if (indexEntry == null) {
             return null;
@@ -116,7 +198,11 @@ public class AzureSegmentArchiveWriter implements SegmentArchiveWriter {
         } else {
             buffer = Buffer.allocate(indexEntry.getLength());
         }
-        readBufferFully(getBlob(getSegmentFileName(indexEntry)), buffer);
+        if (indexEntry.isPacked()) {
+            readBufferFully(getBlob(indexEntry.getPackName()), indexEntry.getPackOffset(), buffer);
+        } else {
+            readBufferFully(getBlob(getSegmentFileName(indexEntry)), buffer);
+        }
         return buffer;
     }
 
@@ -162,6 +248,7 @@ public class AzureSegmentArchiveWriter implements SegmentArchiveWriter {
 
     @Override
     public void close() throws IOException {
+        uploadPack();
         if (queue.isPresent()) { // required to handle IOException
             SegmentWriteQueue q = queue.get();
             q.flush();
@@ -176,11 +263,12 @@ public class AzureSegmentArchiveWriter implements SegmentArchiveWriter {
 
     @Override
     public boolean isCreated() {
-        return created || !queueIsEmpty();
+        return created || !queueIsEmpty() || !isPackEmpty();
     }
 
     @Override
     public void flush() throws IOException {
+        uploadPack();
         if (queue.isPresent()) { // required to handle IOException
             queue.get().flush();
         }
@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.azure;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+import org.apache.jackrabbit.oak.segment.spi.persistence.Buffer;
+
+/**
+ * A pack of consecutive segments uploaded as a single blob. This reduces the
+ * number of requests needed for writing segments to the Azure Storage.
+ * <p>
+ * The blob contains the segments one after another, followed by an index and
+ * a footer. The index contains one entry of {@link #ENTRY_SIZE} bytes per
+ * segment: msb, lsb, position, offset within the pack, length, generation,
+ * full generation and the compacted flag. The footer consists of the CRC32
+ * checksum of the index, the number of entries and {@link #MAGIC}. The length
+ * of index and footer is also stored in the blob metadata, so the index can
+ * be read with a single ranged request.
+ * <p>
+ * Pack blobs are named after the position of their first segment, e.g.
+ * {@code 0004.pack}. This name never matches the name of a segment blob.
+ */
+class AzureSegmentPack {
+
+    static final int MAGIC = ('\n' << 24) + ('0' << 16) + ('P' << 8) + '\n';
+
+    static final int ENTRY_SIZE = 8 + 8 + 4 + 4 + 4 + 4 + 4 + 1;
+
+    static final int FOOTER_SIZE = 12;
+
+    private final String name;
+
+    private final Map<UUID, AzureSegmentArchiveEntry> entries = new LinkedHashMap<>();
+
+    private byte[] data = new byte[64 * 1024];
+
+    private int size;
+
+    AzureSegmentPack(int position) {
+        this.name = getPackFileName(position);
+    }
+
+    static String getPackFileName(int position) {
+        return String.format("%04x.pack", position);
+    }
+
+    String getName() {
+        return name;
+    }
+
+    synchronized void add(AzureSegmentArchiveEntry entry, byte[] buffer, int offset, int length) {
+        if (size + length > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, size + length));
+        }
+        System.arraycopy(buffer, offset, data, size, length);
+        entries.put(new UUID(entry.getMsb(), entry.getLsb()), new AzureSegmentArchiveEntry(entry.getMsb(), entry.getLsb(),
+                entry.getPosition(), length, entry.getGeneration(), entry.getFullGeneration(), entry.isCompacted(), name, size));
+        size += length;
+    }
+
+    synchronized boolean contains(UUID uuid) {
+        return entries.containsKey(uuid);
+    }
+
+    synchronized Buffer read(UUID uuid) {
+        AzureSegmentArchiveEntry entry = entries.get(uuid);
+        if (entry == null) {
+            return null;
+        }
+        int offset = entry.getPackOffset();
+        return Buffer.wrap(Arrays.copyOfRange(data, offset, offset + entry.getLength()));
+    }
+
+    synchronized boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * @return the size of the segments in this pack in bytes
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    synchronized int getIndexLength() {
+        return entries.size() * ENTRY_SIZE + FOOTER_SIZE;
+    }
+
+    /**
+     * @return the entries of the segments in this pack, pointing to their
+     * location in the pack blob.
+     */
+    synchronized List<AzureSegmentArchiveEntry> getPackedEntries() {
+        return new ArrayList<>(entries.values());
+    }
+
+    /**
+     * @return the content of the pack blob
+     */
+    synchronized byte[] toByteArray() {
+        Buffer buffer = Buffer.allocate(size + getIndexLength());
+        buffer.put(data, 0, size);
+
+        int indexStart = buffer.position();
+        for (AzureSegmentArchiveEntry e : entries.values()) {
+            buffer.putLong(e.getMsb());
+            buffer.putLong(e.getLsb());
+            buffer.putInt(e.getPosition());
+            buffer.putInt(e.getPackOffset());
+            buffer.putInt(e.getLength());
+            buffer.putInt(e.getGeneration());
+            buffer.putInt(e.getFullGeneration());
+            buffer.put((byte) (e.isCompacted() ? 1 : 0));
+        }
+
+        CRC32 checksum = new CRC32();
+        checksum.update(buffer.array(), indexStart, entries.size() * ENTRY_SIZE);
+        buffer.putInt((int) checksum.getValue());
+        buffer.putInt(entries.size());
+        buffer.putInt(MAGIC);
+        return buffer.array();
+    }
+
+    /**
+     * Parse the index of a pack blob.
+     *
+     * @param name  the name of the pack blob
+     * @param index the index followed by the footer
+     * @return the entries of the segments in the pack
+     * @throws IOException if the index is invalid
+     */
+    static List<AzureSegmentArchiveEntry> readIndex(String name, Buffer index) throws IOException {
+        if (index.remaining() < FOOTER_SIZE) {
+            throw new IOException("Invalid index of segment pack " + name);
+        }
+        int footer = index.limit() - FOOTER_SIZE;
+        int crc = index.getInt(footer);
+        int count = index.getInt(footer + 4);
+        int magic = index.getInt(footer + 8);
+        if (magic != MAGIC || count < 0 || count * ENTRY_SIZE != footer - index.position()) {
+            throw new IOException("Invalid index of segment pack " + name);
+        }
+
+        byte[] bytes = new byte[count * ENTRY_SIZE];
+        index.duplicate().get(bytes);
+        CRC32 checksum = new CRC32();
+        checksum.update(bytes);
+        if (crc != (int) checksum.getValue()) {
+            throw new IOException("Invalid checksum of segment pack " + name);
+        }
+
+        Buffer entries = Buffer.wrap(bytes);
+        List<AzureSegmentArchiveEntry> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long msb = entries.getLong();
+            long lsb = entries.getLong();
+            int position = entries.getInt();
+            int offset = entries.getInt();
+            int length = entries.getInt();
+            int generation = entries.getInt();
+            int fullGeneration = entries.getInt();
+            boolean compacted = entries.get() != 0;
+            result.add(new AzureSegmentArchiveEntry(msb, lsb, position, length, generation, fullGeneration, compacted, name, offset));
+        }
+        return result;
+    }
+
+}
@@ -22,6 +22,7 @@ import com.microsoft.azure.storage.CloudStorageAccount;
 import com.microsoft.azure.storage.StorageException;
 import com.microsoft.azure.storage.blob.CloudBlobContainer;
 import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentNodeStorePersistence;
+import org.apache.jackrabbit.oak.segment.tiered.TieredPersistence;
 import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.component.ComponentContext;
 import org.osgi.service.component.annotations.Activate;
@@ -31,6 +32,8 @@ import org.osgi.service.component.annotations.Deactivate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.security.InvalidKeyException;
@@ -47,6 +50,8 @@ public class AzureSegmentStoreService {
 
     public static final String DEFAULT_ROOT_PATH = "/oak";
 
+    public static final int DEFAULT_LOCAL_CACHE_SIZE_MB = 10 * 1024;
+
     private ServiceRegistration registration;
 
     private SegmentNodeStorePersistence persistence;
@@ -63,6 +68,9 @@ public class AzureSegmentStoreService {
             registration.unregister();
             registration = null;
         }
+        if (persistence instanceof Closeable) {
+            ((Closeable) persistence).close();
+        }
         persistence = null;
     }
 
@@ -86,8 +94,15 @@ public class AzureSegmentStoreService {
                 path = path.substring(1);
             }
 
-            AzurePersistence persistence = new AzurePersistence(container.getDirectoryReference(path));
-            return persistence;
+            int batchSize = configuration.segmentBatchSize() > 0 ? configuration.segmentBatchSize() : AzureSegmentArchiveWriter.BATCH_SIZE;
+            AzurePersistence persistence = new AzurePersistence(container.getDirectoryReference(path), batchSize);
+
+            String localCachePath = configuration.localCachePath();
+            if (localCachePath == null || localCachePath.trim().isEmpty()) {
+                return persistence;
+            }
+            log.info("Keeping up to {} MB of archives in {}", configuration.localCacheSizeMB(), localCachePath);
+            return new TieredPersistence(persistence, new File(localCachePath.trim()), configuration.localCacheSizeMB() * 1024L * 1024L);
         } catch (StorageException | URISyntaxException | InvalidKeyException e) {
             throw new IOException(e);
         }
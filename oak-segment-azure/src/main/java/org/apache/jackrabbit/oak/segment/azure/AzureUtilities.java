@@ -84,6 +84,19 @@ public final class AzureUtilities {
         }
     }
 
+    /**
+     * Fill the remaining bytes of the passed buffer with a range of the blob
+     * starting at {@code offset}.
+     */
+    public static void readBufferFully(CloudBlob blob, long offset, Buffer buffer) throws IOException {
+        try {
+            blob.downloadRange(offset, (long) buffer.remaining(), new ByteBufferOutputStream(buffer));
+            buffer.flip();
+        } catch (StorageException e) {
+            throw new IOException(e);
+        }
+    }
+
     public static void deleteAllEntries(CloudBlobDirectory directory) throws IOException {
         Stream<CloudBlob> blobs = getBlobs(directory);
         blobs.forEach(b -> {
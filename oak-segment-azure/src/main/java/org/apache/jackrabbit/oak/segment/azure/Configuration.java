@@ -56,4 +56,21 @@ import static org.apache.jackrabbit.oak.segment.azure.Configuration.PID;
             description = "Connection string to be used to connect to the Azure Storage. " +
                     "Setting it will override the accountName and accessKey properties.")
     String connectionURL() default "";
-}
\ No newline at end of file
+
+    @AttributeDefinition(
+            name = "Segment batch size",
+            description = "Size in bytes up to which consecutive segments are uploaded together as a single blob. " +
+                    "0 uploads each segment as a separate blob, unless oak.segment.azure.batch.size is set.")
+    int segmentBatchSize() default 0;
+
+    @AttributeDefinition(
+            name = "Local archive cache path (optional)",
+            description = "Local directory keeping copies of the recently read and written archives. " +
+                    "Segment reads are served from these copies when present. Leave empty to disable.")
+    String localCachePath() default "";
+
+    @AttributeDefinition(
+            name = "Local archive cache size",
+            description = "Maximum size in MB of the local copies of the archives.")
+    int localCacheSizeMB() default AzureSegmentStoreService.DEFAULT_LOCAL_CACHE_SIZE_MB;
+}
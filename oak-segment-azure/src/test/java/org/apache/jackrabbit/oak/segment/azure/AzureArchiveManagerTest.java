@@ -28,6 +28,7 @@ import org.apache.jackrabbit.oak.segment.spi.monitor.RemoteStoreMonitorAdapter;
 import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveManager;
 import org.apache.jackrabbit.oak.segment.spi.monitor.FileStoreMonitorAdapter;
 import org.apache.jackrabbit.oak.segment.spi.monitor.IOMonitorAdapter;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveReader;
 import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveWriter;
 import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
 import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
@@ -82,6 +83,57 @@ public class AzureArchiveManagerTest {
         assertEquals(uuids.subList(0, 5), newArrayList(recovered.keySet()));
     }
 
+    @Test
+    public void testBatchedRecovery() throws StorageException, URISyntaxException, IOException {
+        SegmentArchiveManager manager = new AzurePersistence(container.getDirectoryReference("oak"), 25).createArchiveManager(false, false, new IOMonitorAdapter(), new FileStoreMonitorAdapter(), new RemoteStoreMonitorAdapter());
+        SegmentArchiveWriter writer = manager.create("data00000a.tar");
+
+        List<UUID> uuids = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            UUID u = UUID.randomUUID();
+            writer.writeSegment(u.getMostSignificantBits(), u.getLeastSignificantBits(), new byte[10], 0, 10, 0, 0, false);
+            uuids.add(u);
+        }
+
+        writer.flush();
+        writer.close();
+
+        // Segments 3-5 are packed together
+        container.getBlockBlobReference("oak/data00000a.tar/0003.pack").delete();
+
+        LinkedHashMap<UUID, byte[]> recovered = new LinkedHashMap<>();
+        manager.recoverEntries("data00000a.tar", recovered);
+        assertEquals(uuids.subList(0, 3), newArrayList(recovered.keySet()));
+    }
+
+    @Test
+    public void testBatchedReads() throws StorageException, URISyntaxException, IOException {
+        SegmentArchiveManager manager = new AzurePersistence(container.getDirectoryReference("oak"), 1024).createArchiveManager(false, false, new IOMonitorAdapter(), new FileStoreMonitorAdapter(), new RemoteStoreMonitorAdapter());
+        SegmentArchiveWriter writer = manager.create("data00000a.tar");
+
+        List<UUID> uuids = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            UUID u = UUID.randomUUID();
+            byte[] data = new byte[100];
+            data[0] = (byte) i;
+            writer.writeSegment(u.getMostSignificantBits(), u.getLeastSignificantBits(), data, 0, data.length, 0, 0, false);
+            uuids.add(u);
+        }
+        assertEquals(42, writer.readSegment(uuids.get(42).getMostSignificantBits(), uuids.get(42).getLeastSignificantBits()).get(0));
+        writer.close();
+
+        SegmentArchiveReader reader = manager.open("data00000a.tar");
+        assertEquals(100, reader.listSegments().size());
+        for (int i = 99; i >= 0; i -= 2) {
+            UUID u = uuids.get(i);
+            assertEquals((byte) i, reader.readSegment(u.getMostSignificantBits(), u.getLeastSignificantBits()).get(0));
+        }
+        for (int i = 0; i < 100; i++) {
+            UUID u = uuids.get(i);
+            assertEquals((byte) i, reader.readSegment(u.getMostSignificantBits(), u.getLeastSignificantBits()).get(0));
+        }
+    }
+
     @Test
     public void testUncleanStop() throws URISyntaxException, IOException, InvalidFileStoreVersionException, CommitFailedException, StorageException {
         AzurePersistence p = new AzurePersistence(container.getDirectoryReference("oak"));
@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.azure;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.security.InvalidKeyException;
+
+import com.microsoft.azure.storage.StorageException;
+import com.microsoft.azure.storage.blob.CloudBlobContainer;
+import org.apache.jackrabbit.oak.segment.spi.monitor.FileStoreMonitorAdapter;
+import org.apache.jackrabbit.oak.segment.spi.monitor.IOMonitorAdapter;
+import org.apache.jackrabbit.oak.segment.spi.monitor.RemoteStoreMonitorAdapter;
+import org.junit.Before;
+
+/**
+ * Runs the tar file tests against Azurite with segments packed into batches.
+ */
+public class AzureBatchedTarFileTest extends AzureTarFileTest {
+
+    @Before
+    @Override
+    public void setUp() throws IOException {
+        try {
+            CloudBlobContainer container = azurite.getContainer("oak-test");
+            archiveManager = new AzurePersistence(container.getDirectoryReference("oak"), 64 * 1024)
+                    .createArchiveManager(true, false, new IOMonitorAdapter(), new FileStoreMonitorAdapter(), new RemoteStoreMonitorAdapter());
+        } catch (StorageException | InvalidKeyException | URISyntaxException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    protected long getWriteAndReadExpectedSize() {
+        // The segment is followed by the pack index
+        return super.getWriteAndReadExpectedSize() + AzureSegmentPack.ENTRY_SIZE + AzureSegmentPack.FOOTER_SIZE;
+    }
+
+}
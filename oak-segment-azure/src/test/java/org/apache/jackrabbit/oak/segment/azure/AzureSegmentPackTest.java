@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.azure;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.jackrabbit.oak.segment.spi.persistence.Buffer;
+import org.junit.Test;
+
+public class AzureSegmentPackTest {
+
+    private static AzureSegmentArchiveEntry newEntry(int position, int length) {
+        UUID uuid = UUID.randomUUID();
+        return new AzureSegmentArchiveEntry(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), position, length, 3, 4, position % 2 == 0);
+    }
+
+    private static byte[] newData(int length, int seed) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (seed + i);
+        }
+        return data;
+    }
+
+    @Test
+    public void writeAndReadIndex() throws IOException {
+        AzureSegmentPack pack = new AzureSegmentPack(4);
+        assertEquals("0004.pack", pack.getName());
+        assertTrue(pack.isEmpty());
+
+        AzureSegmentArchiveEntry first = newEntry(4, 100);
+        AzureSegmentArchiveEntry second = newEntry(5, 200);
+        pack.add(first, newData(110, 1), 10, 100);
+        pack.add(second, newData(200, 2), 0, 200);
+        assertEquals(300, pack.size());
+
+        byte[] blob = pack.toByteArray();
+        assertEquals(300 + pack.getIndexLength(), blob.length);
+
+        int indexLength = pack.getIndexLength();
+        Buffer index = Buffer.wrap(blob, blob.length - indexLength, indexLength).slice();
+        List<AzureSegmentArchiveEntry> entries = AzureSegmentPack.readIndex(pack.getName(), index);
+        assertEquals(2, entries.size());
+
+        AzureSegmentArchiveEntry e = entries.get(1);
+        assertEquals(second.getMsb(), e.getMsb());
+        assertEquals(second.getLsb(), e.getLsb());
+        assertEquals(5, e.getPosition());
+        assertEquals(200, e.getLength());
+        assertEquals(3, e.getGeneration());
+        assertEquals(4, e.getFullGeneration());
+        assertFalse(e.isCompacted());
+        assertEquals("0004.pack", e.getPackName());
+        assertEquals(100, e.getPackOffset());
+        assertTrue(entries.get(0).isCompacted());
+
+        assertEquals(Buffer.wrap(newData(200, 2)), Buffer.wrap(blob, e.getPackOffset(), e.getLength()));
+    }
+
+    @Test
+    public void readPendingSegment() {
+        AzureSegmentPack pack = new AzureSegmentPack(0);
+        AzureSegmentArchiveEntry entry = newEntry(0, 50);
+        pack.add(entry, newData(50, 7), 0, 50);
+
+        UUID uuid = new UUID(entry.getMsb(), entry.getLsb());
+        assertTrue(pack.contains(uuid));
+        assertEquals(Buffer.wrap(newData(50, 7)), pack.read(uuid));
+        assertNull(pack.read(UUID.randomUUID()));
+    }
+
+    @Test(expected = IOException.class)
+    public void corruptIndex() throws IOException {
+        AzureSegmentPack pack = new AzureSegmentPack(0);
+        pack.add(newEntry(0, 10), newData(10, 0), 0, 10);
+        byte[] blob = pack.toByteArray();
+        int indexLength = pack.getIndexLength();
+        blob[blob.length - indexLength] ^= 1;
+        AzureSegmentPack.readIndex(pack.getName(), Buffer.wrap(blob, blob.length - indexLength, indexLength).slice());
+    }
+
+}
@@ -70,6 +70,15 @@ public final class CacheWeights {
         return SEGMENT_CACHE_OVERHEAD + segment.estimateMemoryUsage();
     }
 
+    /**
+     * Weight of a segment whose data is held outside of the Java heap. This
+     * includes the off heap data, as that is what bounds an off heap segment
+     * cache.
+     */
+    static int offHeapSegmentWeight(Segment segment) {
+        return segmentWeight(segment) + segment.size();
+    }
+
     public static class SegmentCacheWeigher implements
             Weigher<SegmentId, Segment> {
         @Override
@@ -120,11 +120,27 @@ public class Compactor {
         checkNotNull(before);
         checkNotNull(after);
         checkNotNull(onto);
+        return compactDiff(before, after, onto, canceller);
+    }
+
+    /**
+     * Sequentially compact the differences between {@code after} and {@code before}
+     * on top of {@code onto}. Unlike {@link #compact(NodeState, NodeState, NodeState, Canceller)}
+     * this method is not overridden by sub classes, which guarantees that the
+     * recursion into child nodes always happens on the calling thread.
+     */
+    @Nullable
+    private SegmentNodeState compactDiff(
+        @NotNull NodeState before,
+        @NotNull NodeState after,
+        @NotNull NodeState onto,
+        Canceller canceller
+    ) throws IOException {
         return new CompactDiff(onto, canceller).diff(before, after);
     }
 
     @Nullable
-    private static Buffer getStableIdBytes(NodeState state) {
+    static Buffer getStableIdBytes(NodeState state) {
         if (state instanceof SegmentNodeState) {
             return ((SegmentNodeState) state).getStableIdBytes();
         } else {
@@ -197,7 +213,7 @@ public class Compactor {
         @Override
         public boolean childNodeAdded(@NotNull String name, @NotNull NodeState after) {
             try {
-                SegmentNodeState compacted = compact(after, canceller);
+                SegmentNodeState compacted = compactDiff(EMPTY_NODE, after, EMPTY_NODE, canceller);
                 if (compacted != null) {
                     updated();
                     builder.setChildNode(name, compacted);
@@ -214,7 +230,7 @@ public class Compactor {
         @Override
         public boolean childNodeChanged(@NotNull String name, @NotNull NodeState before, @NotNull NodeState after) {
             try {
-                SegmentNodeState compacted = compact(before, after, base.getChildNode(name), canceller);
+                SegmentNodeState compacted = compactDiff(before, after, base.getChildNode(name), canceller);
                 if (compacted != null) {
                     updated();
                     builder.setChildNode(name, compacted);
@@ -242,7 +258,7 @@ public class Compactor {
     }
 
     @NotNull
-    private  PropertyState compact(@NotNull PropertyState property) {
+    PropertyState compact(@NotNull PropertyState property) {
         compactionMonitor.onProperty();
         String name = property.getName();
         Type<?> type = property.getType();
@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment;
+
+/**
+ * Statistics about the deduplication of records by the caches of a
+ * {@link WriterCacheManager}.
+ *
+ * @see WriterCacheManager.Adaptive
+ */
+public interface DeduplicationStatsMBean {
+
+    String TYPE = "DeduplicationStats";
+
+    /**
+     * @return  current maximum number of entries of the string deduplication
+     *          cache of the most recent generation
+     */
+    int getStringCacheSize();
+
+    /**
+     * @return  current maximum number of entries of the template deduplication
+     *          cache of the most recent generation
+     */
+    int getTemplateCacheSize();
+
+    /**
+     * @return  current maximum number of entries of the node deduplication cache
+     */
+    int getNodeCacheSize();
+
+    /**
+     * @return  number of write operations that used the deduplication caches
+     */
+    long getWriteOperationCount();
+
+    /**
+     * @return  number of records found in any of the deduplication caches and
+     *          thus not written again
+     */
+    long getDeduplicatedRecordCount();
+
+    /**
+     * @return  the ratio of deduplication cache lookups that found an already
+     *          written record, or {@code 0} if there were no lookups yet
+     */
+    double getDeduplicationRatio();
+
+    /**
+     * @return  estimated number of bytes not written thanks to deduplication
+     */
+    long getSavedBytes();
+
+    /**
+     * @return  estimated number of bytes not written thanks to deduplication
+     *          per write operation, or {@code 0} if there were no write
+     *          operations yet
+     */
+    double getSavedBytesPerWriteOperation();
+
+}
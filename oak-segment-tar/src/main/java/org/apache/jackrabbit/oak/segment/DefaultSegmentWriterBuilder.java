@@ -23,11 +23,13 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
+import org.apache.jackrabbit.oak.segment.SegmentBufferWriterPool.PoolType;
 import org.apache.jackrabbit.oak.segment.WriterCacheManager.Empty;
 import org.apache.jackrabbit.oak.segment.file.FileStore;
 import org.apache.jackrabbit.oak.segment.file.ReadOnlyFileStore;
 import org.apache.jackrabbit.oak.segment.file.tar.GCGeneration;
 import org.apache.jackrabbit.oak.segment.memory.MemoryStore;
+import org.apache.jackrabbit.oak.stats.StatisticsProvider;
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -58,6 +60,12 @@ public final class DefaultSegmentWriterBuilder {
 
     private boolean pooled = false;
 
+    @NotNull
+    private PoolType poolType = PoolType.getDefault();
+
+    @NotNull
+    private StatisticsProvider statisticsProvider = StatisticsProvider.NOOP;
+
     @NotNull
     private WriterCacheManager cacheManager = new WriterCacheManager.Default();
 
@@ -111,6 +119,30 @@ public final class DefaultSegmentWriterBuilder {
         return this;
     }
 
+    /**
+     * Create a {@code SegmentWriter} backed by a pool of segment buffer
+     * writers of the given {@code poolType}. The returned instance is thread
+     * safe.
+     * @see PoolType
+     */
+    @NotNull
+    public DefaultSegmentWriterBuilder withWriterPool(@NotNull PoolType poolType) {
+        this.poolType = checkNotNull(poolType);
+        this.pooled = true;
+        return this;
+    }
+
+    /**
+     * Specify the {@code StatisticsProvider} the writer pool exposes its
+     * statistics to. Has no effect if {@link #withoutWriterPool()} was
+     * specified.
+     */
+    @NotNull
+    public DefaultSegmentWriterBuilder withStatisticsProvider(@NotNull StatisticsProvider statisticsProvider) {
+        this.statisticsProvider = checkNotNull(statisticsProvider);
+        return this;
+    }
+
     /**
      * Create a {@code SegmentWriter} backed by a {@link SegmentBufferWriter}.
      * The returned instance is <em>not</em> thread safe.
@@ -209,12 +241,7 @@ public final class DefaultSegmentWriterBuilder {
     @NotNull
     private WriteOperationHandler createWriter(@NotNull FileStore store, boolean pooled) {
         if (pooled) {
-            return new SegmentBufferWriterPool(
-                    store.getSegmentIdProvider(),
-                    store.getReader(),
-                    name,
-                    generation
-            );
+            return createPool(store.getSegmentIdProvider(), store.getReader());
         } else {
             return new SegmentBufferWriter(
                     store.getSegmentIdProvider(),
@@ -228,12 +255,7 @@ public final class DefaultSegmentWriterBuilder {
     @NotNull
     private WriteOperationHandler createWriter(@NotNull MemoryStore store, boolean pooled) {
         if (pooled) {
-            return new SegmentBufferWriterPool(
-                    store.getSegmentIdProvider(),
-                    store.getReader(),
-                    name,
-                    generation
-            );
+            return createPool(store.getSegmentIdProvider(), store.getReader());
         } else {
             return new SegmentBufferWriter(
                     store.getSegmentIdProvider(),
@@ -244,4 +266,28 @@ public final class DefaultSegmentWriterBuilder {
         }
     }
 
+    @NotNull
+    private WriteOperationHandler createPool(@NotNull SegmentIdProvider idProvider, @NotNull SegmentReader reader) {
+        switch (poolType) {
+            case THREAD_AFFINE:
+                return new ThreadAffineSegmentBufferWriterPool(
+                        idProvider,
+                        reader,
+                        name,
+                        generation,
+                        statisticsProvider,
+                        ThreadAffineSegmentBufferWriterPool.DEFAULT_STRIPES
+                );
+            case THREAD_SPECIFIC:
+            default:
+                return new SegmentBufferWriterPool(
+                        idProvider,
+                        reader,
+                        name,
+                        generation,
+                        statisticsProvider
+                );
+        }
+    }
+
 }
@@ -118,4 +118,72 @@ class ListRecord extends Record {
         }
     }
 
+    /**
+     * Callback for {@link #compare(ListRecord, EntryDiff)}.
+     */
+    interface EntryDiff {
+
+        /**
+         * Called for each index at which the entries of the compared lists
+         * have different record ids.
+         *
+         * @param index  the index of the entries
+         * @param before the record id of the entry of the base list
+         * @param after  the record id of the entry of this list
+         * @return {@code true} to continue the comparison, {@code false} to
+         * abort it
+         */
+        boolean entryChanged(int index, RecordId before, RecordId after);
+
+    }
+
+    /**
+     * Compare the entries of this list against those of a list of the same
+     * size. Both lists have the same structure, so whole buckets with equal
+     * record ids are skipped without reading their entries.
+     *
+     * @param before the list to compare against
+     * @param diff   the callback for the entries with different record ids
+     * @return {@code false} if the comparison was aborted by {@code diff},
+     * {@code true} otherwise
+     */
+    boolean compare(ListRecord before, EntryDiff diff) {
+        checkArgument(size == before.size,
+                "Lists of different sizes: " + before.size + " and " + size);
+        return compare(before, diff, 0);
+    }
+
+    private boolean compare(ListRecord before, EntryDiff diff, int offset) {
+        if (getRecordId().equals(before.getRecordId()) || size == 0) {
+            return true;
+        }
+        if (size == 1) {
+            return diff.entryChanged(offset, before.getRecordId(), getRecordId());
+        }
+
+        Segment segment = getSegment();
+        Segment beforeSegment = before.getSegment();
+        int buckets = (size + bucketSize - 1) / bucketSize;
+        for (int i = 0; i < buckets; i++) {
+            RecordId id = segment.readRecordId(getRecordNumber(), 0, i);
+            RecordId beforeId = beforeSegment.readRecordId(before.getRecordNumber(), 0, i);
+            if (id.equals(beforeId)) {
+                continue;
+            }
+            if (bucketSize == 1) {
+                if (!diff.entryChanged(offset + i, beforeId, id)) {
+                    return false;
+                }
+            } else {
+                int bucketSize = Math.min(this.bucketSize, size - i * this.bucketSize);
+                ListRecord bucket = new ListRecord(id, bucketSize);
+                ListRecord beforeBucket = new ListRecord(beforeId, bucketSize);
+                if (!bucket.compare(beforeBucket, diff, offset + i * this.bucketSize)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
 }
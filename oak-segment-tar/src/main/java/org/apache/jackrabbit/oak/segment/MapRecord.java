@@ -20,6 +20,7 @@ package org.apache.jackrabbit.oak.segment;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.collect.Iterables.concat;
+import static com.google.common.collect.Lists.newArrayList;
 import static com.google.common.collect.Lists.newArrayListWithCapacity;
 import static java.lang.Integer.bitCount;
 import static java.lang.Integer.highestOneBit;
@@ -32,7 +33,6 @@ import java.util.Iterator;
 import java.util.List;
 
 import com.google.common.base.Objects;
-import com.google.common.collect.ComparisonChain;
 import org.apache.jackrabbit.oak.spi.state.DefaultNodeStateDiff;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
 import org.apache.jackrabbit.oak.spi.state.NodeStateDiff;
@@ -474,39 +474,45 @@ public class MapRecord extends Record {
             return compareBranch(before, this, diff);
         }
 
-        Iterator<MapEntry> beforeEntries = before.getEntries().iterator();
-        Iterator<MapEntry> afterEntries = this.getEntries().iterator();
-
-        MapEntry beforeEntry = nextOrNull(beforeEntries);
-        MapEntry afterEntry = nextOrNull(afterEntries);
-        while (beforeEntry != null || afterEntry != null) {
+        // Merge the entries of both maps, which are sorted by hash and name.
+        // The key strings are only read for entries reported to the diff and
+        // to order entries with colliding hashes, but not for the unchanged
+        // entries, which are recognised by their key and value record ids.
+        List<LeafEntry> beforeEntries = before.getLeafEntries();
+        List<LeafEntry> afterEntries = this.getLeafEntries();
+
+        int b = 0;
+        int a = 0;
+        while (b < beforeEntries.size() || a < afterEntries.size()) {
+            LeafEntry beforeEntry = b < beforeEntries.size() ? beforeEntries.get(b) : null;
+            LeafEntry afterEntry = a < afterEntries.size() ? afterEntries.get(a) : null;
             int d = compare(beforeEntry, afterEntry);
             if (d < 0) {
                 assert beforeEntry != null;
                 if (!diff.childNodeDeleted(
-                        beforeEntry.getName(), beforeEntry.getNodeState())) {
+                        beforeEntry.getName(), reader.readNode(beforeEntry.value))) {
                     return false;
                 }
-                beforeEntry = nextOrNull(beforeEntries);
+                b++;
             } else if (d == 0) {
                 assert beforeEntry != null;
                 assert afterEntry != null;
-                if (!beforeEntry.getValue().equals(afterEntry.getValue())
+                if (!beforeEntry.value.equals(afterEntry.value)
                         && !diff.childNodeChanged(
                                 beforeEntry.getName(),
-                                beforeEntry.getNodeState(),
-                                afterEntry.getNodeState())) {
+                                reader.readNode(beforeEntry.value),
+                                reader.readNode(afterEntry.value))) {
                     return false;
                 }
-                beforeEntry = nextOrNull(beforeEntries);
-                afterEntry = nextOrNull(afterEntries);
+                b++;
+                a++;
             } else {
                 assert afterEntry != null;
                 if (!diff.childNodeAdded(
-                        afterEntry.getName(), afterEntry.getNodeState())) {
+                        afterEntry.getName(), reader.readNode(afterEntry.value))) {
                     return false;
                 }
-                afterEntry = nextOrNull(afterEntries);
+                a++;
             }
         }
 
@@ -536,6 +542,81 @@ public class MapRecord extends Record {
 
     //-----------------------------------------------------------< private >--
 
+    /**
+     * An entry of a map leaf. Unlike {@link MapEntry} the key string is only
+     * read on demand.
+     */
+    private static final class LeafEntry {
+
+        private final SegmentReader reader;
+
+        private final int hash;
+
+        private final RecordId key;
+
+        private final RecordId value;
+
+        private String name;
+
+        LeafEntry(SegmentReader reader, int hash, RecordId key, RecordId value) {
+            this.reader = reader;
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+        }
+
+        String getName() {
+            if (name == null) {
+                name = reader.readString(key);
+            }
+            return name;
+        }
+
+    }
+
+    /**
+     * Same as {@link #getEntries()} but without reading the key strings.
+     */
+    private List<LeafEntry> getLeafEntries() {
+        List<LeafEntry> entries = newArrayList();
+        collectLeafEntries(entries, null, null);
+        return entries;
+    }
+
+    private void collectLeafEntries(
+            List<LeafEntry> entries, RecordId diffKey, RecordId diffValue) {
+        Segment segment = getSegment();
+
+        int head = segment.readInt(getRecordNumber());
+        if (isDiff(head)) {
+            RecordId key = segment.readRecordId(getRecordNumber(), 8);
+            RecordId value = segment.readRecordId(getRecordNumber(), 8, 1);
+            RecordId base = segment.readRecordId(getRecordNumber(), 8, 2);
+            reader.readMap(base).collectLeafEntries(entries, key, value);
+            return;
+        }
+
+        int size = getSize(head);
+        if (isBranch(size, getLevel(head))) {
+            for (MapRecord bucket : getBucketList(segment)) {
+                bucket.collectLeafEntries(entries, diffKey, diffValue);
+            }
+            return;
+        }
+
+        for (int i = 0; i < size; i++) {
+            int hash = segment.readInt(getRecordNumber(), 4 + i * 4);
+            RecordId key = segment.readRecordId(getRecordNumber(), 4 + size * 4, i * 2);
+            RecordId value;
+            if (key.equals(diffKey)) {
+                value = diffValue;
+            } else {
+                value = segment.readRecordId(getRecordNumber(), 4 + size * 4, i * 2 + 1);
+            }
+            entries.add(new LeafEntry(reader, hash, key, value));
+        }
+    }
+
     /**
      * Compares two map branches. Given the way the comparison algorithm
      * works, the branches are always guaranteed to be at the same level
@@ -599,7 +680,7 @@ public class MapRecord extends Record {
                 && level < MapRecord.MAX_NUMBER_OF_LEVELS;
     }
 
-    private static int compare(MapEntry before, MapEntry after) {
+    private static int compare(LeafEntry before, LeafEntry after) {
         if (before == null) {
             // A null value signifies the end of the list of entries,
             // which is why the return value here is a bit counter-intuitive
@@ -608,20 +689,12 @@ public class MapRecord extends Record {
             return 1;
         } else if (after == null) {
             return -1;  // see above
-        } else {
-            return ComparisonChain.start()
-                    .compare(before.getHash() & HASH_MASK, after.getHash() & HASH_MASK)
-                    .compare(before.getName(), after.getName())
-                    .result();
         }
-    }
-
-    private static MapEntry nextOrNull(Iterator<MapEntry> iterator) {
-        if (iterator.hasNext()) {
-            return iterator.next();
-        } else {
-            return null;
+        int d = Long.compare(before.hash & HASH_MASK, after.hash & HASH_MASK);
+        if (d != 0 || before.key.equals(after.key)) {
+            return d;
         }
+        return before.getName().compareTo(after.getName());
     }
 
 }
@@ -0,0 +1,347 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Maps.newLinkedHashMap;
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.plugins.memory.MemoryNodeBuilder;
+import org.apache.jackrabbit.oak.segment.file.GCNodeWriteMonitor;
+import org.apache.jackrabbit.oak.segment.file.cancel.Canceller;
+import org.apache.jackrabbit.oak.spi.blob.BlobStore;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStateDiff;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A {@link Compactor} compacting independent subtrees concurrently. The
+ * difference between the states to compact is traversed on the calling thread
+ * down to {@link #SPLIT_DEPTH}. Each subtree below that depth is compacted by
+ * a task submitted to the passed executor. The compacted subtrees are then
+ * stitched together into the compacted node on the calling thread.
+ * <p>
+ * To keep the memory usage in line with the sequential {@link Compactor}, a
+ * node with more than {@link #MAX_SPLIT_CHILDREN} children is not split but
+ * compacted by a single task, and no further nodes are split once
+ * {@link #MAX_SUBTREES} subtrees have been created.
+ * <p>
+ * The passed {@code writer} must be thread safe. For best results it should
+ * be backed by a pool of segment buffer writers, so each worker thread writes
+ * to its own segments.
+ */
+public class ParallelCompactor extends Compactor {
+
+    /**
+     * Depth of the tree down to which the compaction is split into independent
+     * tasks.
+     */
+    static final int SPLIT_DEPTH = Integer.getInteger("oak.segment.compaction.splitDepth", 2);
+
+    /**
+     * Maximum number of children of a node split into independent tasks.
+     */
+    static final int MAX_SPLIT_CHILDREN = UPDATE_LIMIT;
+
+    /**
+     * Number of subtrees after which no further nodes are split into
+     * independent tasks.
+     */
+    static final int MAX_SUBTREES = UPDATE_LIMIT;
+
+    @NotNull
+    private final SegmentWriter writer;
+
+    @NotNull
+    private final SegmentReader reader;
+
+    @Nullable
+    private final BlobStore blobStore;
+
+    @NotNull
+    private final GCNodeWriteMonitor compactionMonitor;
+
+    @NotNull
+    private final ExecutorService executor;
+
+    /**
+     * Create a new instance based on the passed arguments.
+     * @param reader     segment reader used to read from the segments
+     * @param writer     thread safe segment writer used to serialise to segments
+     * @param blobStore  the blob store or {@code null} if none
+     * @param compactionMonitor   notification call back for each compacted nodes,
+     *                            properties, and binaries
+     * @param executor   executor running the compaction of the individual subtrees
+     */
+    public ParallelCompactor(
+            @NotNull SegmentReader reader,
+            @NotNull SegmentWriter writer,
+            @Nullable BlobStore blobStore,
+            @NotNull GCNodeWriteMonitor compactionMonitor,
+            @NotNull ExecutorService executor) {
+        super(reader, writer, blobStore, compactionMonitor);
+        this.writer = checkNotNull(writer);
+        this.reader = checkNotNull(reader);
+        this.blobStore = blobStore;
+        this.compactionMonitor = checkNotNull(compactionMonitor);
+        this.executor = checkNotNull(executor);
+    }
+
+    @Nullable
+    @Override
+    public SegmentNodeState compact(
+        @NotNull NodeState before,
+        @NotNull NodeState after,
+        @NotNull NodeState onto,
+        Canceller canceller
+    ) throws IOException {
+        checkNotNull(before);
+        checkNotNull(after);
+        checkNotNull(onto);
+        Subtree subtree = split(before, after, onto, canceller, SPLIT_DEPTH, new AtomicInteger());
+        if (subtree == null) {
+            return null;
+        }
+        try {
+            return subtree.join();
+        } finally {
+            subtree.cancel();
+        }
+    }
+
+    /**
+     * Split the compaction of the difference between {@code after} and
+     * {@code before} on top of {@code onto} into independent subtrees and
+     * submit the compaction of those at {@code depth} {@code 0} to the executor.
+     * Nodes with too many children, and all nodes once {@code subtrees}
+     * reached {@link #MAX_SUBTREES}, are submitted as a whole.
+     * @return  the subtree or {@code null} if cancelled.
+     */
+    @Nullable
+    private Subtree split(
+        @NotNull NodeState before,
+        @NotNull NodeState after,
+        @NotNull NodeState onto,
+        Canceller canceller,
+        int depth,
+        @NotNull AtomicInteger subtrees
+    ) {
+        if (canceller.check().isCancelled()) {
+            return null;
+        }
+        if (depth <= 0
+                || subtrees.incrementAndGet() > MAX_SUBTREES
+                || after.getChildNodeCount(MAX_SPLIT_CHILDREN + 1) > MAX_SPLIT_CHILDREN) {
+            return new Leaf(executor.submit(() -> super.compact(before, after, onto, canceller)));
+        }
+
+        Inner inner = new Inner(after, onto);
+        boolean success = after.compareAgainstBaseState(before, new NodeStateDiff() {
+
+            @Override
+            public boolean propertyAdded(PropertyState after) {
+                inner.properties.add(after);
+                return true;
+            }
+
+            @Override
+            public boolean propertyChanged(PropertyState before, PropertyState after) {
+                inner.properties.add(after);
+                return true;
+            }
+
+            @Override
+            public boolean propertyDeleted(PropertyState before) {
+                inner.removedProperties.add(before.getName());
+                return true;
+            }
+
+            @Override
+            public boolean childNodeAdded(String name, NodeState after) {
+                return addChild(name, split(EMPTY_NODE, after, EMPTY_NODE, canceller, depth - 1, subtrees));
+            }
+
+            @Override
+            public boolean childNodeChanged(String name, NodeState before, NodeState after) {
+                return addChild(name, split(before, after, onto.getChildNode(name), canceller, depth - 1, subtrees));
+            }
+
+            @Override
+            public boolean childNodeDeleted(String name, NodeState before) {
+                inner.removedChildren.add(name);
+                return true;
+            }
+
+            private boolean addChild(String name, Subtree child) {
+                if (child == null) {
+                    return false;
+                }
+                inner.children.put(name, child);
+                return true;
+            }
+        });
+
+        if (success) {
+            return inner;
+        } else {
+            inner.cancel();
+            return null;
+        }
+    }
+
+    private interface Subtree {
+
+        /**
+         * Wait for the compaction of this subtree to finish.
+         * @return  the compacted subtree or {@code null} if cancelled.
+         */
+        @Nullable
+        SegmentNodeState join() throws IOException;
+
+        /**
+         * Cancel all pending compaction tasks of this subtree.
+         */
+        void cancel();
+    }
+
+    private static class Leaf implements Subtree {
+
+        @NotNull
+        private final Future<SegmentNodeState> future;
+
+        Leaf(@NotNull Future<SegmentNodeState> future) {
+            this.future = future;
+        }
+
+        @Nullable
+        @Override
+        public SegmentNodeState join() throws IOException {
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for compaction of subtree");
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException(e.getCause());
+            }
+        }
+
+        @Override
+        public void cancel() {
+            future.cancel(false);
+        }
+    }
+
+    private class Inner implements Subtree {
+
+        @NotNull
+        private final NodeState after;
+
+        @NotNull
+        private final NodeState onto;
+
+        private final List<PropertyState> properties = newArrayList();
+
+        private final List<String> removedProperties = newArrayList();
+
+        private final List<String> removedChildren = newArrayList();
+
+        private final Map<String, Subtree> children = newLinkedHashMap();
+
+        /**
+         * Number of updates applied to {@link #builder}.
+         */
+        private long modCount;
+
+        private MemoryNodeBuilder builder;
+
+        Inner(@NotNull NodeState after, @NotNull NodeState onto) {
+            this.after = after;
+            this.onto = onto;
+        }
+
+        /**
+         * Write the builder to the segments every {@link #UPDATE_LIMIT}
+         * updates, like the sequential {@link Compactor} does.
+         */
+        private void updated() throws IOException {
+            if (++modCount % UPDATE_LIMIT == 0) {
+                RecordId newBaseId = writer.writeNode(builder.getNodeState(), null);
+                SegmentNodeState newBase = new SegmentNodeState(reader, writer, blobStore, newBaseId);
+                builder = new MemoryNodeBuilder(newBase);
+            }
+        }
+
+        @Nullable
+        @Override
+        public SegmentNodeState join() throws IOException {
+            builder = new MemoryNodeBuilder(onto);
+            for (PropertyState property : properties) {
+                builder.setProperty(compact(property));
+                updated();
+            }
+            for (String name : removedProperties) {
+                builder.removeProperty(name);
+                updated();
+            }
+            for (String name : removedChildren) {
+                builder.getChildNode(name).remove();
+                updated();
+            }
+            for (Entry<String, Subtree> child : children.entrySet()) {
+                SegmentNodeState compacted = child.getValue().join();
+                if (compacted == null) {
+                    return null;
+                }
+                builder.setChildNode(child.getKey(), compacted);
+                updated();
+            }
+
+            RecordId nodeId = writer.writeNode(builder.getNodeState(), getStableIdBytes(after));
+            builder = null;
+            compactionMonitor.onNode();
+            return new SegmentNodeState(reader, writer, blobStore, nodeId);
+        }
+
+        @Override
+        public void cancel() {
+            for (Subtree child : children.values()) {
+                child.cancel();
+            }
+        }
+    }
+
+}
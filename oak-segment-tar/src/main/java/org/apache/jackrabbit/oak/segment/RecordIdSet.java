@@ -16,23 +16,34 @@
  * specific language governing permissions and limitations
  * under the License.
  */
-
 package org.apache.jackrabbit.oak.segment;
 
-import static com.google.common.collect.Maps.newHashMap;
 import static java.lang.System.arraycopy;
 import static java.util.Arrays.binarySearch;
-
-import java.util.Map;
+import static java.util.Arrays.copyOf;
 
 /**
  * A memory optimised set of {@link RecordId}s.
  *
  * The set doesn't keep references to the actual record ids
  * it contains.
+ * <p>
+ * Record numbers are grouped per segment. The segments are kept in a hash
+ * table using open addressing with linear probing, keyed by the most and
+ * least significant bits of the segment id. This avoids any per segment
+ * objects apart from the {@link IntSet} holding its record numbers.
  */
 public class RecordIdSet {
-    private final Map<String, IntSet> seenIds = newHashMap();
+
+    private static final int INITIAL_SIZE = 16;
+
+    private long[] msbs = new long[INITIAL_SIZE];
+
+    private long[] lsbs = new long[INITIAL_SIZE];
+
+    private IntSet[] offsets = new IntSet[INITIAL_SIZE];
+
+    private int segmentCount;
 
     /**
      * Add {@code id} to this set if not already present
@@ -40,13 +51,21 @@ public class RecordIdSet {
      * @return  {@code true} if added, {@code false} if already present
      */
     public boolean addIfNotPresent(RecordId id) {
-        String segmentId = id.getSegmentId().toString();
-        IntSet offsets = seenIds.get(segmentId);
-        if (offsets == null) {
-            offsets = new IntSet();
-            seenIds.put(segmentId, offsets);
+        SegmentId segmentId = id.getSegmentId();
+        long msb = segmentId.getMostSignificantBits();
+        long lsb = segmentId.getLeastSignificantBits();
+        int index = indexOf(msb, lsb);
+        IntSet set = offsets[index];
+        if (set == null) {
+            set = new IntSet();
+            offsets[index] = set;
+            msbs[index] = msb;
+            lsbs[index] = lsb;
+            if (++segmentCount > offsets.length / 2) {
+                grow();
+            }
         }
-        return offsets.add(id.getRecordNumber());
+        return set.add(id.getRecordNumber());
     }
 
     /**
@@ -55,31 +74,78 @@ public class RecordIdSet {
      * @return  {@code true} iff {@code id} is present.
      */
     public boolean contains(RecordId id) {
-        String segmentId = id.getSegmentId().toString();
-        IntSet offsets = seenIds.get(segmentId);
-        return offsets != null && offsets.contains(id.getRecordNumber());
+        SegmentId segmentId = id.getSegmentId();
+        IntSet set = offsets[indexOf(
+                segmentId.getMostSignificantBits(),
+                segmentId.getLeastSignificantBits())];
+        return set != null && set.contains(id.getRecordNumber());
     }
 
+    /**
+     * @return  the index of the entry for the passed segment id or the index
+     *          of the free entry where it should be added.
+     */
+    private int indexOf(long msb, long lsb) {
+        int mask = offsets.length - 1;
+        int index = hash(lsb) & mask;
+        while (offsets[index] != null && (msbs[index] != msb || lsbs[index] != lsb)) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    private static int hash(long lsb) {
+        // the lower bits of a segment id are random
+        return (int) (lsb ^ (lsb >>> 32));
+    }
+
+    private void grow() {
+        long[] oldMsbs = msbs;
+        long[] oldLsbs = lsbs;
+        IntSet[] oldOffsets = offsets;
+        int size = 2 * oldOffsets.length;
+        msbs = new long[size];
+        lsbs = new long[size];
+        offsets = new IntSet[size];
+        for (int i = 0; i < oldOffsets.length; i++) {
+            if (oldOffsets[i] != null) {
+                int index = indexOf(oldMsbs[i], oldLsbs[i]);
+                msbs[index] = oldMsbs[i];
+                lsbs[index] = oldLsbs[i];
+                offsets[index] = oldOffsets[i];
+            }
+        }
+    }
+
+    /**
+     * A sorted set of {@code int}s backed by an array that grows by
+     * doubling its capacity, so inserts only copy the elements after
+     * the insertion point.
+     */
     static class IntSet {
         int[] elements;
 
+        int size;
+
         boolean add(int n) {
             if (elements == null) {
                 elements = new int[1];
                 elements[0] = n;
+                size = 1;
                 return true;
             } else {
-                int k = binarySearch(elements, n);
+                int k = binarySearch(elements, 0, size, n);
                 if (k < 0) {
                     int l = -k - 1;
-                    int[] e = new int[elements.length + 1];
-                    arraycopy(elements, 0, e, 0, l);
-                    e[l] = n;
-                    int c = elements.length - l;
+                    if (size == elements.length) {
+                        elements = copyOf(elements, 2 * size);
+                    }
+                    int c = size - l;
                     if (c > 0) {
-                        arraycopy(elements, l, e, l + 1, c);
+                        arraycopy(elements, l, elements, l + 1, c);
                     }
-                    elements = e;
+                    elements[l] = n;
+                    size++;
                     return true;
                 } else {
                     return false;
@@ -88,7 +154,7 @@ public class RecordIdSet {
         }
 
         boolean contains(int n) {
-            return elements != null && binarySearch(elements, n) >= 0;
+            return elements != null && binarySearch(elements, 0, size, n) >= 0;
         }
     }
 
@@ -217,6 +217,48 @@ public class Segment {
         }
     }
 
+    private Segment(@NotNull Segment segment, @NotNull Buffer data) {
+        this.reader = segment.reader;
+        this.id = segment.id;
+        if (id.isDataSegmentId()) {
+            this.data = newSegmentData(data);
+        } else {
+            this.data = newRawSegmentData(data);
+        }
+        this.version = segment.version;
+        this.recordNumbers = segment.recordNumbers;
+        this.segmentReferences = segment.segmentReferences;
+        this.info = segment.info;
+    }
+
+    /**
+     * Create a copy of this segment whose data is held in direct memory
+     * outside of the Java heap. The copy shares the already parsed record
+     * numbers and segment references with this segment.
+     *
+     * @return  a copy of this segment backed by a direct buffer.
+     * @throws IOException  if copying the segment data fails
+     */
+    @NotNull
+    Segment toOffHeap() throws IOException {
+        Buffer buffer = Buffer.allocateDirect(data.size());
+        data.binDump(new OutputStream() {
+
+            @Override
+            public void write(int b) {
+                buffer.put((byte) b);
+            }
+
+            @Override
+            public void write(@NotNull byte[] b, int off, int len) {
+                buffer.put(b, off, len);
+            }
+
+        });
+        buffer.flip();
+        return new Segment(this, buffer);
+    }
+
     private static String toHex(byte[] bytes) {
         ByteArrayOutputStream out = new ByteArrayOutputStream();
         try {
@@ -334,6 +376,14 @@ public class Segment {
         return segmentReferences.getSegmentId(index + 1).asUUID();
     }
 
+    /**
+     * @return  the ids of the segments referenced from this segment.
+     */
+    @NotNull
+    public Iterable<SegmentId> getReferencedSegmentIds() {
+        return segmentReferences;
+    }
+
     /**
      * Determine the gc generation a segment from its data. Note that bulk
      * segments don't have generations (i.e. stay at 0).
@@ -19,27 +19,122 @@
 
 package org.apache.jackrabbit.oak.segment;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
 
 import org.apache.jackrabbit.oak.plugins.blob.BlobReferenceRetriever;
 import org.apache.jackrabbit.oak.plugins.blob.ReferenceCollector;
 import org.apache.jackrabbit.oak.segment.file.AbstractFileStore;
+import org.apache.jackrabbit.oak.segment.file.BinaryReferencesWatermark;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Implementation of {@link BlobReferenceRetriever} to retrieve blob references from the
  * {@link SegmentTracker}.
+ * <p>
+ * When created with a directory, the blob references are collected
+ * incrementally. The references collected so far are kept in that directory
+ * together with the {@link BinaryReferencesWatermark} up to which they were
+ * collected. Each collection then only reads the binary references of the tar
+ * files written since and adds the references kept from the previous
+ * collections. After a full compaction all references are collected again.
  */
 public class SegmentBlobReferenceRetriever implements BlobReferenceRetriever {
 
+    private static final Logger log = LoggerFactory.getLogger(SegmentBlobReferenceRetriever.class);
+
+    static final String REFERENCES_FILE = "references.txt";
+
+    static final String WATERMARK_FILE = "references.watermark";
+
     private final AbstractFileStore store;
 
+    @Nullable
+    private final File directory;
+
     public SegmentBlobReferenceRetriever(AbstractFileStore store) {
+        this(store, null);
+    }
+
+    /**
+     * @param store     the store to retrieve the blob references from
+     * @param directory the directory to keep the references collected so far
+     *                  in or {@code null} to always collect all references
+     */
+    public SegmentBlobReferenceRetriever(AbstractFileStore store, @Nullable File directory) {
         this.store = store;
+        this.directory = directory;
     }
 
     @Override
     public void collectReferences(final ReferenceCollector collector) throws IOException {
-        store.collectBlobReferences(s -> collector.addReference(s, null));
+        if (directory == null) {
+            store.collectBlobReferences(s -> collector.addReference(s, null));
+        } else {
+            collectReferencesIncrementally(collector);
+        }
     }
-}
 
+    private void collectReferencesIncrementally(ReferenceCollector collector) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create directory " + directory);
+        }
+        File references = new File(directory, REFERENCES_FILE);
+        File watermarkFile = new File(directory, WATERMARK_FILE);
+        File temp = new File(directory, REFERENCES_FILE + ".tmp");
+
+        BinaryReferencesWatermark since = null;
+        if (references.exists() && watermarkFile.exists()) {
+            since = BinaryReferencesWatermark.parse(new String(Files.readAllBytes(watermarkFile.toPath()), UTF_8));
+        }
+
+        BinaryReferencesWatermark watermark;
+        try (BufferedWriter writer = Files.newBufferedWriter(temp.toPath(), UTF_8)) {
+            watermark = store.collectBlobReferences(reference -> {
+                collector.addReference(reference, null);
+                writeReference(writer, reference);
+            }, since);
+
+            if (watermark.isIncrementalTo(since)) {
+                log.info("Collected blob references incrementally since {} up to {}", since, watermark);
+                try (BufferedReader reader = Files.newBufferedReader(references.toPath(), UTF_8)) {
+                    String reference;
+                    while ((reference = reader.readLine()) != null) {
+                        collector.addReference(reference, null);
+                        writeReference(writer, reference);
+                    }
+                }
+            } else {
+                log.info("Collected all blob references up to {}", watermark);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        // The references are replaced before the watermark. Failing in
+        // between leaves an older watermark behind, which only results in
+        // some references being collected again.
+        Files.move(temp.toPath(), references.toPath(), REPLACE_EXISTING, ATOMIC_MOVE);
+        Files.write(watermarkFile.toPath(), watermark.toString().getBytes(UTF_8));
+    }
+
+    private static void writeReference(BufferedWriter writer, String reference) {
+        try {
+            writer.write(reference);
+            writer.newLine();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
@@ -42,6 +42,7 @@ import java.io.IOException;
 import java.io.PrintStream;
 import java.util.Collection;
 import java.util.Set;
+import java.util.function.IntConsumer;
 
 import org.apache.commons.io.HexDump;
 import org.apache.jackrabbit.oak.segment.RecordNumbers.Entry;
@@ -141,10 +142,24 @@ public class SegmentBufferWriter implements WriteOperationHandler {
      */
     private boolean dirty;
 
+    /**
+     * Called with the size of each segment written to the store.
+     */
+    @NotNull
+    private final IntConsumer segmentSizes;
+
     public SegmentBufferWriter(@NotNull SegmentIdProvider idProvider,
                                @NotNull SegmentReader reader,
                                @Nullable String wid,
                                @NotNull GCGeneration gcGeneration) {
+        this(idProvider, reader, wid, gcGeneration, size -> {});
+    }
+
+    SegmentBufferWriter(@NotNull SegmentIdProvider idProvider,
+                        @NotNull SegmentReader reader,
+                        @Nullable String wid,
+                        @NotNull GCGeneration gcGeneration,
+                        @NotNull IntConsumer segmentSizes) {
         this.idProvider = checkNotNull(idProvider);
         this.reader = checkNotNull(reader);
         this.wid = (wid == null
@@ -152,6 +167,7 @@ public class SegmentBufferWriter implements WriteOperationHandler {
                 : wid);
 
         this.gcGeneration = checkNotNull(gcGeneration);
+        this.segmentSizes = checkNotNull(segmentSizes);
     }
 
     @NotNull
@@ -365,6 +381,7 @@ public class SegmentBufferWriter implements WriteOperationHandler {
             SegmentId segmentId = segment.getSegmentId();
             LOG.debug("Writing data segment: {} ", statistics);
             store.writeSegment(segmentId, buffer, buffer.length - length, length);
+            segmentSizes.accept(length);
             newSegment(store);
         }
     }
@@ -36,6 +36,7 @@ import com.google.common.base.Supplier;
 import com.google.common.util.concurrent.Monitor;
 import com.google.common.util.concurrent.Monitor.Guard;
 import org.apache.jackrabbit.oak.segment.file.tar.GCGeneration;
+import org.apache.jackrabbit.oak.stats.StatisticsProvider;
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -43,9 +44,42 @@ import org.jetbrains.annotations.NotNull;
  * which it passes to its {@link #execute(GCGeneration, WriteOperation) execute} method.
  * <p>
  * Instances of this class are thread safe.
+ *
+ * @see PoolType
  */
 public class SegmentBufferWriterPool implements WriteOperationHandler {
 
+    /**
+     * The kind of pool used by a {@code SegmentWriter} writing from many
+     * threads.
+     */
+    public enum PoolType {
+
+        /**
+         * A {@link SegmentBufferWriterPool} with a writer for each thread
+         * (and generation) guarded by a monitor shared by all writers. The
+         * number of writers, and thus the number of partially filled segments
+         * written on each flush, grows with the number of writing threads.
+         */
+        THREAD_SPECIFIC,
+
+        /**
+         * A {@link ThreadAffineSegmentBufferWriterPool} with a fixed number
+         * of writers, each guarded by its own lock. Threads stick to the same
+         * writer as long as it is not in use by another thread.
+         */
+        THREAD_AFFINE;
+
+        /**
+         * The pool type configured via the {@code oak.segment.writer.pool.type}
+         * system property. Defaults to {@link #THREAD_SPECIFIC}.
+         */
+        @NotNull
+        public static PoolType getDefault() {
+            return valueOf(System.getProperty("oak.segment.writer.pool.type", THREAD_SPECIFIC.name()));
+        }
+    }
+
     /**
      * Monitor protecting the state of this pool. Neither of {@link #writers},
      * {@link #borrowed} and {@link #disposed} must be modified without owning
@@ -80,6 +114,9 @@ public class SegmentBufferWriterPool implements WriteOperationHandler {
     @NotNull
     private final String wid;
 
+    @NotNull
+    private final SegmentBufferWriterPoolStats stats;
+
     private short writerId = -1;
 
     public SegmentBufferWriterPool(
@@ -87,10 +124,20 @@ public class SegmentBufferWriterPool implements WriteOperationHandler {
             @NotNull SegmentReader reader,
             @NotNull String wid,
             @NotNull Supplier<GCGeneration> gcGeneration) {
+        this(idProvider, reader, wid, gcGeneration, StatisticsProvider.NOOP);
+    }
+
+    public SegmentBufferWriterPool(
+            @NotNull SegmentIdProvider idProvider,
+            @NotNull SegmentReader reader,
+            @NotNull String wid,
+            @NotNull Supplier<GCGeneration> gcGeneration,
+            @NotNull StatisticsProvider statisticsProvider) {
         this.idProvider = checkNotNull(idProvider);
         this.reader = checkNotNull(reader);
         this.wid = checkNotNull(wid);
         this.gcGeneration = checkNotNull(gcGeneration);
+        this.stats = new SegmentBufferWriterPoolStats(wid, checkNotNull(statisticsProvider));
     }
 
     @Override
@@ -190,7 +237,8 @@ public class SegmentBufferWriterPool implements WriteOperationHandler {
      * borrowing it again. Failing to do so leads to undefined behaviour.
      */
     private SegmentBufferWriter borrowWriter(@NotNull Object key, @NotNull GCGeneration gcGeneration) {
-        poolMonitor.enter();
+        stats.onBorrow();
+        enterPoolMonitor();
         try {
             SegmentBufferWriter writer = writers.remove(key);
             if (writer == null) {
@@ -198,8 +246,10 @@ public class SegmentBufferWriterPool implements WriteOperationHandler {
                         idProvider,
                         reader,
                         getWriterId(wid),
-                        gcGeneration
+                        gcGeneration,
+                        stats::onSegmentWritten
                 );
+                stats.onNewWriter();
             }
             borrowed.add(writer);
             return writer;
@@ -213,7 +263,7 @@ public class SegmentBufferWriterPool implements WriteOperationHandler {
      * it.
      */
     private void returnWriter(Object key, SegmentBufferWriter writer) {
-        poolMonitor.enter();
+        enterPoolMonitor();
         try {
             if (borrowed.remove(writer)) {
                 checkState(writers.put(key, writer) == null);
@@ -226,6 +276,16 @@ public class SegmentBufferWriterPool implements WriteOperationHandler {
         }
     }
 
+    /**
+     * Enter the pool monitor and record whether this thread had to wait for it.
+     */
+    private void enterPoolMonitor() {
+        if (!poolMonitor.tryEnter()) {
+            stats.onContended();
+            poolMonitor.enter();
+        }
+    }
+
     private String getWriterId(String wid) {
         if (++writerId > 9999) {
             writerId = 0;
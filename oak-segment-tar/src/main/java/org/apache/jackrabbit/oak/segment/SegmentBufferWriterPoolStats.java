@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment;
+
+import static org.apache.jackrabbit.oak.segment.Segment.MAX_SEGMENT_SIZE;
+import static org.apache.jackrabbit.oak.stats.StatsOptions.DEFAULT;
+
+import org.apache.jackrabbit.oak.stats.CounterStats;
+import org.apache.jackrabbit.oak.stats.HistogramStats;
+import org.apache.jackrabbit.oak.stats.StatisticsProvider;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Statistics of a pool of {@link SegmentBufferWriter}s exposed via a
+ * {@link StatisticsProvider} under {@code "oak.segment.writer-pool-" + name}:
+ * <ul>
+ *     <li>{@code borrow-count}: number of write operations executed by the pool,</li>
+ *     <li>{@code contended-count}: number of write operations that could not
+ *     immediately acquire their writer,</li>
+ *     <li>{@code writer-count}: number of writers created by the pool,</li>
+ *     <li>{@code segment-fill}: histogram of the percentage of the maximum
+ *     segment size used by the segments written by the pool.</li>
+ * </ul>
+ */
+class SegmentBufferWriterPoolStats {
+
+    @NotNull
+    private final CounterStats borrowCount;
+
+    @NotNull
+    private final CounterStats contendedCount;
+
+    @NotNull
+    private final CounterStats writerCount;
+
+    @NotNull
+    private final HistogramStats segmentFill;
+
+    SegmentBufferWriterPoolStats(@NotNull String name, @NotNull StatisticsProvider statisticsProvider) {
+        String prefix = "oak.segment.writer-pool-" + name;
+        this.borrowCount = statisticsProvider.getCounterStats(prefix + ".borrow-count", DEFAULT);
+        this.contendedCount = statisticsProvider.getCounterStats(prefix + ".contended-count", DEFAULT);
+        this.writerCount = statisticsProvider.getCounterStats(prefix + ".writer-count", DEFAULT);
+        this.segmentFill = statisticsProvider.getHistogram(prefix + ".segment-fill", DEFAULT);
+    }
+
+    void onBorrow() {
+        borrowCount.inc();
+    }
+
+    void onContended() {
+        contendedCount.inc();
+    }
+
+    void onNewWriter() {
+        writerCount.inc();
+    }
+
+    void onSegmentWritten(int size) {
+        segmentFill.update(100L * size / MAX_SEGMENT_SIZE);
+    }
+
+}
@@ -20,8 +20,11 @@
 package org.apache.jackrabbit.oak.segment;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static org.apache.jackrabbit.oak.segment.CacheWeights.offHeapSegmentWeight;
 import static org.apache.jackrabbit.oak.segment.CacheWeights.segmentWeight;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -31,10 +34,13 @@ import java.util.function.Supplier;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalCause;
 import com.google.common.cache.RemovalNotification;
 import org.apache.jackrabbit.oak.cache.AbstractCacheStats;
+import org.apache.jackrabbit.oak.cache.CacheLIRS;
 import org.apache.jackrabbit.oak.segment.CacheWeights.SegmentCacheWeigher;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * A cache for {@link SegmentId#isDataSegmentId() data} {@link Segment}
@@ -63,10 +69,29 @@ public abstract class SegmentCache {
      */
     @NotNull
     public static SegmentCache newSegmentCache(long cacheSizeMB) {
-        if (cacheSizeMB > 0) {
-            return new NonEmptyCache(cacheSizeMB);
-        } else {
+        return newSegmentCache(cacheSizeMB, false);
+    }
+
+    /**
+     * Create a new segment cache of the given size. Returns an always empty
+     * cache for {@code cacheSizeMB <= 0}.
+     * <p>
+     * When {@code offHeap} is {@code true} the data of the cached segments is
+     * copied to direct memory outside of the Java heap and the cache uses a
+     * scan resistant LIRS eviction policy. The size of the cache includes the
+     * off heap memory used by the cached segments.
+     *
+     * @param cacheSizeMB size of the cache in megabytes.
+     * @param offHeap     whether to keep the cached segment data off heap
+     */
+    @NotNull
+    public static SegmentCache newSegmentCache(long cacheSizeMB, boolean offHeap) {
+        if (cacheSizeMB <= 0) {
             return new EmptyCache();
+        } else if (offHeap) {
+            return new OffHeapCache(cacheSizeMB);
+        } else {
+            return new NonEmptyCache(cacheSizeMB);
         }
     }
 
@@ -215,6 +240,132 @@ public abstract class SegmentCache {
         }
     }
 
+    /**
+     * A cache keeping the data of its segments in direct memory. Segments
+     * are copied off heap when they are loaded or put into the cache. Eviction
+     * is handled by a {@link CacheLIRS}, which prevents a single large scan
+     * (e.g. from a traversal or a consistency check) from flushing the
+     * frequently accessed segments.
+     */
+    private static class OffHeapCache extends SegmentCache {
+
+        /**
+         * Cache of recently accessed segments
+         */
+        @NotNull
+        private final CacheLIRS<SegmentId, Segment> cache;
+
+        /**
+         * Statistics of this cache. Due to the special access pattern (see class
+         * comment of {@link SegmentCache}), we cannot rely on the statistics
+         * of the underlying cache.
+         */
+        @NotNull
+        private final Stats stats;
+
+        /**
+         * Create a new cache of the given size.
+         *
+         * @param cacheSizeMB size of the cache in megabytes.
+         */
+        private OffHeapCache(long cacheSizeMB) {
+            long maximumWeight = cacheSizeMB * 1024 * 1024;
+            this.cache = CacheLIRS.<SegmentId, Segment>newBuilder()
+                    .module(NAME)
+                    .segmentCount(16)
+                    .maximumWeight(maximumWeight)
+                    .averageWeight(Segment.MAX_SEGMENT_SIZE / 2)
+                    .weigher((id, segment) -> offHeapSegmentWeight(segment))
+                    .evictionCallback(this::onRemove)
+                    .build();
+            this.stats = new Stats(NAME, maximumWeight, cache::size);
+        }
+
+        /**
+         * Eviction handler called whenever an item is evicted from the cache.
+         * Non resident entries are reported with a {@code null} value and do
+         * not hold any memory.
+         */
+        private void onRemove(@NotNull SegmentId id, @Nullable Segment segment, @NotNull RemovalCause cause) {
+            if (segment == null) {
+                return;
+            }
+            stats.evictionCount.incrementAndGet();
+            stats.currentWeight.addAndGet(-offHeapSegmentWeight(segment));
+            if (cause != RemovalCause.REPLACED) {
+                id.unloaded();
+            }
+        }
+
+        @NotNull
+        private static Segment toOffHeap(@NotNull Segment segment) {
+            try {
+                return segment.toOffHeap();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        @NotNull
+        public Segment getSegment(@NotNull SegmentId id, @NotNull Callable<Segment> loader) throws ExecutionException {
+            if (id.isDataSegmentId()) {
+                return cache.get(id, () -> {
+                    try {
+                        long t0 = System.nanoTime();
+                        Segment segment = toOffHeap(loader.call());
+                        stats.loadSuccessCount.incrementAndGet();
+                        stats.loadTime.addAndGet(System.nanoTime() - t0);
+                        stats.missCount.incrementAndGet();
+                        stats.currentWeight.addAndGet(offHeapSegmentWeight(segment));
+                        id.loaded(segment);
+                        return segment;
+                    } catch (Exception e) {
+                        stats.loadExceptionCount.incrementAndGet();
+                        throw e;
+                    }
+                });
+            } else {
+                try {
+                    return loader.call();
+                } catch (Exception e) {
+                    throw new ExecutionException(e);
+                }
+            }
+        }
+
+        @Override
+        public void putSegment(@NotNull Segment segment) {
+            SegmentId id = segment.getSegmentId();
+
+            if (id.isDataSegmentId()) {
+                // See NonEmptyCache#putSegment for why loaded is called and
+                // the weight is updated *before* putting the segment into the
+                // cache.
+                Segment offHeap = toOffHeap(segment);
+                id.loaded(offHeap);
+                stats.currentWeight.addAndGet(offHeapSegmentWeight(offHeap));
+                cache.put(id, offHeap);
+            }
+        }
+
+        @Override
+        public void clear() {
+            cache.invalidateAll();
+        }
+
+        @Override
+        @NotNull
+        public AbstractCacheStats getCacheStats() {
+            return stats;
+        }
+
+        @Override
+        public void recordHit() {
+            stats.hitCount.incrementAndGet();
+        }
+    }
+
     /** An always empty cache */
     private static class EmptyCache extends SegmentCache {
         private final Stats stats = new Stats(NAME, 0, () -> 0L);
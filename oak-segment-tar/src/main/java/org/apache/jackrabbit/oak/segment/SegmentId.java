@@ -22,6 +22,7 @@ import static org.apache.jackrabbit.oak.segment.CacheWeights.OBJECT_HEADER_SIZE;
 import static org.apache.jackrabbit.oak.segment.SegmentStore.EMPTY_STORE;
 
 import java.util.UUID;
+import java.util.function.Consumer;
 
 import org.apache.jackrabbit.oak.commons.StringUtils;
 import org.apache.jackrabbit.oak.segment.file.tar.GCGeneration;
@@ -99,6 +100,23 @@ public class SegmentId implements Comparable<SegmentId> {
         this.creationTime = System.currentTimeMillis();
     }
 
+    /**
+     * Create a new segment id with access tracking passing this id to the
+     * access call back.
+     * @param store  store this belongs to
+     * @param msb    most significant bits of this id
+     * @param lsb    least significant bits of this id
+     * @param onAccess  callback called with this id whenever an underlying and
+     *                  locally memoised segment is accessed.
+     */
+    public SegmentId(@NotNull SegmentStore store, long msb, long lsb, @NotNull Consumer<SegmentId> onAccess) {
+        this.store = store;
+        this.msb = msb;
+        this.lsb = lsb;
+        this.onAccess = () -> onAccess.accept(this);
+        this.creationTime = System.currentTimeMillis();
+    }
+
     /**
      * Create a new segment id without access tracking.
      * @param store  store this is belongs to
@@ -18,21 +18,15 @@
  */
 package org.apache.jackrabbit.oak.segment;
 
-import static com.google.common.collect.Lists.newArrayList;
-import static com.google.common.collect.Maps.newHashMapWithExpectedSize;
-import static java.util.Collections.nCopies;
-
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 
 import org.jetbrains.annotations.NotNull;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 /**
  * Hash table of weak references to segment identifiers.
@@ -40,7 +34,12 @@ import org.slf4j.LoggerFactory;
 public class SegmentIdTable {
 
     /**
-     * The list of weak references to segment identifiers that are currently
+     * Initial size of the table.
+     */
+    private static final int INITIAL_SIZE = 1024;
+
+    /**
+     * The array of weak references to segment identifiers that are currently
      * being accessed. This represents a hash table that uses open addressing
      * with linear probing. It is not a hash map, to speed up read access.
      * <p>
@@ -56,15 +55,41 @@ public class SegmentIdTable {
      * There are no tombstone entries as there is no explicit remove operation,
      * but a referent can become null if the entry is garbage collected.
      * <p>
+     * The msb and lsb of each entry are kept in the parallel arrays
+     * {@link #msbs} and {@link #lsbs}, so that probing compares primitive
+     * keys and only dereferences the weak reference of the matching entry.
+     * <p>
      * The array is not sorted (we could; lookup might be faster, but adding
      * entries would be slower).
      */
-    private final ArrayList<WeakReference<SegmentId>> references =
-            newArrayList(nCopies(1024, (WeakReference<SegmentId>) null));
+    private WeakReference<SegmentId>[] references = newReferences(INITIAL_SIZE);
 
-    private static final Logger LOG = LoggerFactory.getLogger(SegmentIdTable.class);
+    /**
+     * The most significant bits of the identifier at the same index in
+     * {@link #references}.
+     */
+    private long[] msbs = new long[INITIAL_SIZE];
+
+    /**
+     * The least significant bits of the identifier at the same index in
+     * {@link #references}.
+     */
+    private long[] lsbs = new long[INITIAL_SIZE];
+
+    /**
+     * Queue receiving the references whose referents have been garbage
+     * collected. It is only used to count such references, so that they can
+     * be purged from the table in batches instead of on every lookup that
+     * happens to step over one of them.
+     */
+    private final ReferenceQueue<SegmentId> collected = new ReferenceQueue<SegmentId>();
+
+    /**
+     * The number of references enqueued in {@link #collected} since the
+     * last refresh.
+     */
+    private int collectedCount;
 
-    
     /**
      * The refresh count (for diagnostics and testing).
      */
@@ -75,6 +100,11 @@ public class SegmentIdTable {
      */
     private int entryCount;
 
+    @SuppressWarnings("unchecked")
+    private static WeakReference<SegmentId>[] newReferences(int size) {
+        return (WeakReference<SegmentId>[]) new WeakReference[size];
+    }
+
     /**
      * Get the segment id, and reference it in the weak references map. If the
      * pair of MSB/LSB is not tracked by this table, a new instance of {@link
@@ -88,79 +118,92 @@ public class SegmentIdTable {
      */
     @NotNull
     synchronized SegmentId newSegmentId(long msb, long lsb, SegmentIdFactory maker) {
+        int mask = references.length - 1;
         int index = getIndex(lsb);
-        boolean shouldRefresh = false;
 
-        WeakReference<SegmentId> reference = references.get(index);
+        WeakReference<SegmentId> reference = references[index];
         while (reference != null) {
-            SegmentId id = reference.get();
-            if (id != null
-                    && id.getMostSignificantBits() == msb
-                    && id.getLeastSignificantBits() == lsb) {
-                return id;
+            if (msbs[index] == msb && lsbs[index] == lsb) {
+                SegmentId id = reference.get();
+                if (id != null) {
+                    return id;
+                }
+                // the identifier was garbage collected: re-use its entry
+                break;
             }
-            // shouldRefresh if we have a garbage collected entry
-            shouldRefresh = shouldRefresh || id == null;
             // open addressing / linear probing
-            index = (index + 1) % references.size();
-            reference = references.get(index);
+            index = (index + 1) & mask;
+            reference = references[index];
         }
 
         SegmentId id = maker.newSegmentId(msb, lsb);
-        references.set(index, new WeakReference<SegmentId>(id));
-        entryCount++;
-        if (entryCount > references.size() * 0.75) {
-            // more than 75% full            
-            shouldRefresh = true;
+        references[index] = new WeakReference<SegmentId>(id, collected);
+        if (reference == null) {
+            msbs[index] = msb;
+            lsbs[index] = lsb;
+            entryCount++;
         }
-        if (shouldRefresh) {
+        if (entryCount > references.length * 0.75 || shouldPurge()) {
+            // more than 75% full or too many collected entries
             refresh();
         }
         return id;
     }
 
+    /**
+     * Drain the queue of collected references and determine whether enough of
+     * them accumulated to justify purging them from the table: this is the
+     * case once a quarter of the entries have been garbage collected.
+     */
+    private boolean shouldPurge() {
+        while (collected.poll() != null) {
+            collectedCount++;
+        }
+        return collectedCount > 0 && 4 * collectedCount >= entryCount;
+    }
+
     /**
      * Returns all segment identifiers that are currently referenced in memory.
      *
      * @param ids referenced segment identifiers
      */
-    void collectReferencedIds(Collection<SegmentId> ids) {
-        ids.addAll(refresh());
+    synchronized void collectReferencedIds(Collection<SegmentId> ids) {
+        refresh();
+        for (WeakReference<SegmentId> reference : references) {
+            if (reference != null) {
+                SegmentId id = reference.get();
+                if (id != null) {
+                    ids.add(id);
+                }
+            }
+        }
     }
 
-    private synchronized Collection<SegmentId> refresh() {
-        int size = references.size();
-        Map<SegmentId, WeakReference<SegmentId>> ids =
-                newHashMapWithExpectedSize(size);
+    private synchronized void refresh() {
+        int size = references.length;
+        int liveCount = 0;
 
         boolean hashCollisions = false;
         boolean emptyReferences = false;
         for (int i = 0; i < size; i++) {
-            WeakReference<SegmentId> reference = references.get(i);
+            WeakReference<SegmentId> reference = references[i];
             if (reference != null) {
-                SegmentId id = reference.get();
-                if (id != null) {
-                    ids.put(id, reference);
-                    hashCollisions = hashCollisions || (i != getIndex(id));
+                if (reference.get() != null) {
+                    liveCount++;
+                    hashCollisions = hashCollisions || (i != getIndex(lsbs[i]));
                 } else {
-                    references.set(i, null);
-                    entryCount--;
+                    references[i] = null;
                     emptyReferences = true;
                 }
             }
         }
-        
-        if (entryCount != ids.size()) {
-            // something is wrong, possibly a concurrency problem, a SegmentId
-            // hashcode or equals bug, or a problem with this hash table
-            // algorithm
-            LOG.warn("Unexpected entry count mismatch, expected {} got {}", entryCount, ids.size());
-            // we fix the count, because having a wrong entry count would be
-            // very problematic; even worse than having a concurrency problem
-            entryCount = ids.size();
+        entryCount = liveCount;
+        while (collected.poll() != null) {
+            // the entries of the collected references were purged above
         }
+        collectedCount = 0;
 
-        while (2 * ids.size() > size) {
+        while (2 * liveCount > size) {
             size *= 2;
         }
 
@@ -168,32 +211,43 @@ public class SegmentIdTable {
         // but also if we removed some of the entries (because an entry was
         // garbage collected) and there is at least one entry at the "wrong"
         // location (due to open addressing)
-        if ((hashCollisions && emptyReferences) || size != references.size()) {
+        if ((hashCollisions && emptyReferences) || size != references.length) {
             rebuildCount++;
-            references.clear();
-            references.addAll(nCopies(size, (WeakReference<SegmentId>) null));
-
-            for (Map.Entry<SegmentId, WeakReference<SegmentId>> entry
-                    : ids.entrySet()) {
-                int index = getIndex(entry.getKey());
-                while (references.get(index) != null) {
-                    index = (index + 1) % size;
+            WeakReference<SegmentId>[] oldReferences = references;
+            long[] oldMsbs = msbs;
+            long[] oldLsbs = lsbs;
+            references = newReferences(size);
+            msbs = new long[size];
+            lsbs = new long[size];
+
+            int mask = size - 1;
+            for (int i = 0; i < oldReferences.length; i++) {
+                if (oldReferences[i] != null) {
+                    int index = getIndex(oldLsbs[i]);
+                    while (references[index] != null) {
+                        index = (index + 1) & mask;
+                    }
+                    references[index] = oldReferences[i];
+                    msbs[index] = oldMsbs[i];
+                    lsbs[index] = oldLsbs[i];
                 }
-                references.set(index, entry.getValue());
             }
         }
-
-        return ids.keySet();
-    }
-
-    private int getIndex(SegmentId id) {
-        return getIndex(id.getLeastSignificantBits());
     }
 
     private int getIndex(long lsb) {
-        return ((int) lsb) & (references.size() - 1);
+        return ((int) lsb) & (references.length - 1);
     }
 
+    /**
+     * Mark the segment identifiers of reclaimed segments as such. As this
+     * happens once per garbage collection cycle, this is also where the
+     * entries of all identifiers that were garbage collected during the last
+     * segment generation are purged from the table.
+     *
+     * @param reclaimed  the reclaimed segments
+     * @param gcInfo     the gc info to pass to {@link SegmentId#reclaimed(String)}
+     */
     synchronized void clearSegmentIdTables(@NotNull Set<UUID> reclaimed, @NotNull String gcInfo) {
         for (WeakReference<SegmentId> reference : references) {
             if (reference != null) {
@@ -203,6 +257,7 @@ public class SegmentIdTable {
                 }
             }
         }
+        refresh();
     }
     
     /**
@@ -229,7 +284,7 @@ public class SegmentIdTable {
      * @return the map size
      */
     int getMapSize() {
-        return references.size();
+        return references.length;
     }
     
     /**
@@ -237,7 +292,7 @@ public class SegmentIdTable {
      * 
      * @return the raw list
      */
-    List<SegmentId> getRawSegmentIdList() {
+    synchronized List<SegmentId> getRawSegmentIdList() {
         ArrayList<SegmentId> list = new ArrayList<SegmentId>();
         for (WeakReference<SegmentId> ref : references) {
             if (ref != null) {
@@ -37,6 +37,7 @@ import org.apache.jackrabbit.oak.api.PropertyState;
 import org.apache.jackrabbit.oak.plugins.blob.BlobStoreBlob;
 import org.apache.jackrabbit.oak.segment.scheduler.Commit;
 import org.apache.jackrabbit.oak.segment.scheduler.LockBasedScheduler;
+import org.apache.jackrabbit.oak.segment.scheduler.OptimisticScheduler;
 import org.apache.jackrabbit.oak.segment.scheduler.Scheduler;
 import org.apache.jackrabbit.oak.spi.blob.BlobStore;
 import org.apache.jackrabbit.oak.spi.commit.CommitHook;
@@ -81,6 +82,8 @@ public class SegmentNodeStore implements NodeStore, Observable {
         
         private boolean dispatchChanges = true;
 
+        private boolean optimisticScheduler = OPTIMISTIC_SCHEDULER;
+
         @NotNull
         private StatisticsProvider statsProvider = StatisticsProvider.NOOP;
 
@@ -103,6 +106,20 @@ public class SegmentNodeStore implements NodeStore, Observable {
             this.dispatchChanges = dispatchChanges;
             return this;
         }
+
+        /**
+         * Use an {@link OptimisticScheduler} instead of the default
+         * {@link LockBasedScheduler}. With the optimistic scheduler concurrent
+         * commits are rebased and their commit hooks run in parallel. Only the
+         * final update of the head state is serialized.
+         * @param optimisticScheduler  {@code true} for the optimistic scheduler
+         * @return this instance
+         */
+        @NotNull
+        public SegmentNodeStoreBuilder withOptimisticScheduler(boolean optimisticScheduler) {
+            this.optimisticScheduler = optimisticScheduler;
+            return this;
+        }
         
         /**
          * {@link StatisticsProvider} for collecting statistics related to SegmentStore
@@ -143,6 +160,7 @@ public class SegmentNodeStore implements NodeStore, Observable {
         public String toString() {
             return "SegmentNodeStoreBuilder{" +
                     getString(blobStore) +
+                    ", optimisticScheduler=" + optimisticScheduler +
                     '}';
         }
     }
@@ -157,6 +175,11 @@ public class SegmentNodeStore implements NodeStore, Observable {
                 checkNotNull(reader), checkNotNull(writer), blobStore);
     }
 
+    /**
+     * Flag controlling whether the {@link OptimisticScheduler} is used by default
+     */
+    private static final boolean OPTIMISTIC_SCHEDULER = Boolean.getBoolean("oak.segmentNodeStore.optimisticScheduler");
+
     static final String ROOT = "root";
 
     public static final String CHECKPOINTS = "checkpoints";
@@ -178,9 +201,15 @@ public class SegmentNodeStore implements NodeStore, Observable {
         this.writer = builder.writer;
         this.blobStore = builder.blobStore;
         this.stats = new SegmentNodeStoreStats(builder.statsProvider);
-        this.scheduler = LockBasedScheduler.builder(builder.revisions, builder.reader, stats)
-                .dispatchChanges(builder.dispatchChanges)
-                .build();
+        if (builder.optimisticScheduler) {
+            this.scheduler = OptimisticScheduler.builder(builder.revisions, builder.reader, stats)
+                    .dispatchChanges(builder.dispatchChanges)
+                    .build();
+        } else {
+            this.scheduler = LockBasedScheduler.builder(builder.revisions, builder.reader, stats)
+                    .dispatchChanges(builder.dispatchChanges)
+                    .build();
+        }
         this.loggingHook = builder.loggingHook;
     }
 
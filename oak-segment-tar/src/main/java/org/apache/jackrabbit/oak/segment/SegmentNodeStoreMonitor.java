@@ -43,6 +43,11 @@ public interface SegmentNodeStoreMonitor {
         public void onCommitDequeued(Thread t, long time) {
             
         }
+
+        @Override
+        public void onCommitRetried(Thread t) {
+
+        }
     };
 
     /**
@@ -68,4 +73,11 @@ public interface SegmentNodeStoreMonitor {
      */
     void onCommitDequeued(Thread t, long time);
 
+    /**
+     * Notifies the monitor when a commit had to be re-applied because the
+     * head state was concurrently updated.
+     * @param t the thread which initiated the write
+     */
+    void onCommitRetried(Thread t);
+
 }
\ No newline at end of file
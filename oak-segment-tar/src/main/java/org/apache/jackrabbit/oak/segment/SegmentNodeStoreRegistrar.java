@@ -80,6 +80,13 @@ import org.slf4j.LoggerFactory;
 
 class SegmentNodeStoreRegistrar {
 
+    /**
+     * Collect the blob references for the blob garbage collection
+     * incrementally, only from the tar files written since the previous
+     * collection.
+     */
+    private static final boolean INCREMENTAL_BLOB_REFERENCES = Boolean.getBoolean("oak.segment.blobReferences.incremental");
+
     static SegmentNodeStore registerSegmentNodeStore(Configuration cfg) throws IOException {
         return new SegmentNodeStoreRegistrar(cfg).register();
     }
@@ -324,6 +331,15 @@ class SegmentNodeStoreRegistrar {
             ));
         }
 
+        if (cacheManager instanceof DeduplicationStatsMBean) {
+            registerCloseable(registerMBean(
+                DeduplicationStatsMBean.class,
+                (DeduplicationStatsMBean) cacheManager,
+                DeduplicationStatsMBean.TYPE,
+                "Segment deduplication stats"
+            ));
+        }
+
         // Expose an MBean to managing and monitoring garbage collection
 
         FileStoreGCMonitor monitor = new FileStoreGCMonitor(Clock.SIMPLE);
@@ -356,6 +372,13 @@ class SegmentNodeStoreRegistrar {
             "FileStore statistics"
         ));
 
+        registerCloseable(registerMBean(
+            ConsistencyCheckMBean.class,
+            store.getConsistencyChecker(),
+            ConsistencyCheckMBean.TYPE,
+            "Online consistency check"
+        ));
+
         // register segment node store
 
         SegmentNodeStore.SegmentNodeStoreBuilder segmentNodeStoreBuilder = SegmentNodeStoreBuilders.builder(store).withStatisticsProvider(cfg.getStatisticsProvider());
@@ -416,8 +439,14 @@ class SegmentNodeStoreRegistrar {
         }
 
         if (!cfg.isSecondarySegmentStore() && cfg.hasCustomBlobStore() && (cfg.getBlobStore() instanceof GarbageCollectableBlobStore)) {
+            SegmentBlobReferenceRetriever retriever;
+            if (INCREMENTAL_BLOB_REFERENCES) {
+                retriever = new SegmentBlobReferenceRetriever(store, new File(cfg.getSegmentDirectory(), "blobreferences"));
+            } else {
+                retriever = new SegmentBlobReferenceRetriever(store);
+            }
             BlobGarbageCollector gc = new MarkSweepGarbageCollector(
-                new SegmentBlobReferenceRetriever(store),
+                retriever,
                 (GarbageCollectableBlobStore) cfg.getBlobStore(),
                 executor,
                 TimeUnit.SECONDS.toMillis(cfg.getBlobGcMaxAge()),
@@ -60,12 +60,14 @@ public class SegmentNodeStoreStats implements SegmentNodeStoreStatsMBean, Segmen
     public static final String COMMIT_QUEUE_SIZE = "COMMIT_QUEUE_SIZE";
     public static final String COMMIT_TIME = "COMMIT_TIME";
     public static final String QUEUEING_TIME = "QUEUEING_TIME";
+    public static final String COMMIT_RETRIES = "COMMIT_RETRIES";
 
     private final StatisticsProvider statisticsProvider;
     private final MeterStats commitsCount;
     private final CounterStats commitQueueSize;
     private final TimerStats commitTime;
     private final TimerStats queueingTime;
+    private final MeterStats commitRetries;
     
     private volatile CommitsTracker commitsTracker;
     private boolean collectStackTraces = COLLECT_STACK_TRACES;
@@ -80,6 +82,7 @@ public class SegmentNodeStoreStats implements SegmentNodeStoreStatsMBean, Segmen
         this.commitQueueSize = statisticsProvider.getCounterStats(COMMIT_QUEUE_SIZE, StatsOptions.DEFAULT);
         this.commitTime = statisticsProvider.getTimer(COMMIT_TIME, StatsOptions.DEFAULT);
         this.queueingTime = statisticsProvider.getTimer(QUEUEING_TIME, StatsOptions.DEFAULT);
+        this.commitRetries = statisticsProvider.getMeter(COMMIT_RETRIES, StatsOptions.DEFAULT);
     }
 
     // ~--------------------------------< SegmentStoreMonitor >
@@ -104,6 +107,11 @@ public class SegmentNodeStoreStats implements SegmentNodeStoreStatsMBean, Segmen
         commitsTracker.trackDequedCommitOf(t);
     }
 
+    @Override
+    public void onCommitRetried(Thread t) {
+        commitRetries.mark();
+    }
+
     // ~--------------------------------< SegmentStoreStatsMBean >
 
     @Override
@@ -126,6 +134,11 @@ public class SegmentNodeStoreStats implements SegmentNodeStoreStatsMBean, Segmen
         return asCompositeData(getTimeSeries(QUEUEING_TIME), QUEUEING_TIME);
     }
 
+    @Override
+    public CompositeData getCommitRetries() {
+        return asCompositeData(getTimeSeries(COMMIT_RETRIES), COMMIT_RETRIES);
+    }
+
     @Override
     public TabularData getCommitsCountPerWriterGroupLastMinute() throws OpenDataException {
         return createTabularDataFromCountMap(commitsTracker.getCommitsCountPerGroupLastMinute(), "commitsPerWriterGroup",
@@ -45,6 +45,12 @@ public interface SegmentNodeStoreStatsMBean {
      * @return  time series of the queuing times
      */
     CompositeData getQueuingTimes();
+
+    /**
+     * @return  time series of the number of commits re-applied because of
+     *          concurrent updates of the head state
+     */
+    CompositeData getCommitRetries();
     
     /**
      * @return tabular data of the form &lt;commits,writerGroup&gt; collected 
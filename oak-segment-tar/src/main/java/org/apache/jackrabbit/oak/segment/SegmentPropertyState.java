@@ -242,6 +242,8 @@ public class SegmentPropertyState extends Record implements PropertyState {
                 return false;
             } else if (getRecordId().equals(that.getRecordId())) {
                 return true;
+            } else if (isArray()) {
+                return valuesEqual(that);
             }
         }
         // fall back to default equality check in AbstractPropertyState
@@ -249,6 +251,22 @@ public class SegmentPropertyState extends Record implements PropertyState {
                 && AbstractPropertyState.equal(this, (PropertyState) object);
     }
 
+    /**
+     * Compare the values of two array properties of the same type. The value
+     * lists are compared structurally, so only the values with different
+     * record ids are read and compared.
+     */
+    private boolean valuesEqual(SegmentPropertyState that) {
+        ListRecord values = getValueList(getSegment());
+        ListRecord thatValues = that.getValueList(that.getSegment());
+        if (values.size() != thatValues.size()) {
+            return false;
+        }
+        Type<?> base = getType().getBaseType();
+        return values.compare(thatValues, (index, before, after) ->
+                getValue(after, base).equals(that.getValue(before, base)));
+    }
+
     @Override
     public int hashCode() {
         return AbstractPropertyState.hashCode(this);
@@ -0,0 +1,221 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.Lists.newArrayList;
+import static java.lang.Thread.currentThread;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.google.common.base.Supplier;
+import org.apache.jackrabbit.oak.segment.file.tar.GCGeneration;
+import org.apache.jackrabbit.oak.stats.StatisticsProvider;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * This {@link WriteOperationHandler} uses a fixed number of
+ * {@link SegmentBufferWriter}s, which it passes to its
+ * {@link #execute(GCGeneration, WriteOperation) execute} method.
+ * <p>
+ * Each writer lives in a stripe guarded by its own lock. A thread is mapped
+ * to a home stripe by its id and keeps using the writer of that stripe. Only
+ * if the home stripe is in use by another thread a write operation moves on
+ * to the next free stripe. It blocks on its home stripe if all stripes are
+ * in use. As the number of writers does not depend on the number of writing
+ * threads, many short lived or virtual threads share a few writers, which
+ * results in fewer and fuller segments being written on each flush than with
+ * a writer per thread.
+ * <p>
+ * Write operations must not be nested: executing a write operation from
+ * within another write operation leads to undefined behaviour.
+ * <p>
+ * Instances of this class are thread safe.
+ */
+public class ThreadAffineSegmentBufferWriterPool implements WriteOperationHandler {
+
+    /**
+     * Default number of stripes: the number of available processors, which
+     * is also the number of carrier threads of virtual threads.
+     */
+    public static final int DEFAULT_STRIPES = Integer.getInteger(
+            "oak.segment.writer.pool.stripes", Runtime.getRuntime().availableProcessors());
+
+    private static class Stripe {
+
+        final ReentrantLock lock = new ReentrantLock();
+
+        /**
+         * The writer of this stripe or {@code null} if none.
+         * Guarded by {@link #lock}.
+         */
+        @Nullable
+        SegmentBufferWriter writer;
+    }
+
+    @NotNull
+    private final Stripe[] stripes;
+
+    /**
+     * Writers replaced by a writer of another generation, which have not
+     * yet been flushed.
+     */
+    private final Queue<SegmentBufferWriter> retired = new ConcurrentLinkedQueue<>();
+
+    @NotNull
+    private final SegmentIdProvider idProvider;
+
+    @NotNull
+    private final SegmentReader reader;
+
+    @NotNull
+    private final Supplier<GCGeneration> gcGeneration;
+
+    @NotNull
+    private final String wid;
+
+    @NotNull
+    private final SegmentBufferWriterPoolStats stats;
+
+    private final AtomicInteger writerId = new AtomicInteger();
+
+    public ThreadAffineSegmentBufferWriterPool(
+            @NotNull SegmentIdProvider idProvider,
+            @NotNull SegmentReader reader,
+            @NotNull String wid,
+            @NotNull Supplier<GCGeneration> gcGeneration,
+            @NotNull StatisticsProvider statisticsProvider,
+            int stripeCount) {
+        checkArgument(stripeCount > 0);
+        this.idProvider = checkNotNull(idProvider);
+        this.reader = checkNotNull(reader);
+        this.wid = checkNotNull(wid);
+        this.gcGeneration = checkNotNull(gcGeneration);
+        this.stats = new SegmentBufferWriterPoolStats(wid, checkNotNull(statisticsProvider));
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    @Override
+    @NotNull
+    public GCGeneration getGCGeneration() {
+        return gcGeneration.get();
+    }
+
+    @NotNull
+    @Override
+    public RecordId execute(@NotNull GCGeneration gcGeneration,
+                            @NotNull WriteOperation writeOperation)
+    throws IOException {
+        Stripe stripe = lockStripe();
+        try {
+            SegmentBufferWriter writer = stripe.writer;
+            if (writer == null || !writer.getGCGeneration().equals(gcGeneration)) {
+                if (writer != null) {
+                    retired.add(writer);
+                }
+                writer = newWriter(gcGeneration);
+                stripe.writer = writer;
+            }
+            return writeOperation.execute(writer);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    @Override
+    public void flush(@NotNull SegmentStore store) throws IOException {
+        List<SegmentBufferWriter> toFlush = newArrayList();
+
+        // Take the writers out of their stripes so they won't get re-used
+        // anymore. Locking a stripe waits for a write operation in progress.
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                if (stripe.writer != null) {
+                    toFlush.add(stripe.writer);
+                    stripe.writer = null;
+                }
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+
+        SegmentBufferWriter writer = retired.poll();
+        while (writer != null) {
+            toFlush.add(writer);
+            writer = retired.poll();
+        }
+
+        // Call flush from outside the stripe locks to avoid potential
+        // deadlocks of that method calling SegmentStore.writeSegment
+        for (SegmentBufferWriter w : toFlush) {
+            w.flush(store);
+        }
+    }
+
+    /**
+     * Lock the home stripe of the current thread if it is free, otherwise the
+     * next free stripe. Block on the home stripe if there is no free stripe.
+     */
+    @NotNull
+    private Stripe lockStripe() {
+        stats.onBorrow();
+        int home = (int) (currentThread().getId() % stripes.length);
+        for (int k = 0; k < stripes.length; k++) {
+            Stripe stripe = stripes[(home + k) % stripes.length];
+            if (stripe.lock.tryLock()) {
+                if (k > 0) {
+                    stats.onContended();
+                }
+                return stripe;
+            }
+        }
+        stats.onContended();
+        Stripe stripe = stripes[home];
+        stripe.lock.lock();
+        return stripe;
+    }
+
+    @NotNull
+    private SegmentBufferWriter newWriter(@NotNull GCGeneration gcGeneration) {
+        stats.onNewWriter();
+        return new SegmentBufferWriter(
+                idProvider,
+                reader,
+                getWriterId(),
+                gcGeneration,
+                stats::onSegmentWritten
+        );
+    }
+
+    private String getWriterId() {
+        return String.format("%s.%04d", wid, writerId.getAndIncrement() % 10000);
+    }
+}
@@ -19,21 +19,32 @@
 
 package org.apache.jackrabbit.oak.segment;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Suppliers.memoize;
 import static com.google.common.collect.Iterators.transform;
 import static com.google.common.collect.Maps.newConcurrentMap;
 import static java.lang.Integer.getInteger;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
 import static org.apache.jackrabbit.oak.segment.RecordCache.newRecordCache;
 
 import java.util.Iterator;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.ToIntFunction;
 
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
 import com.google.common.base.Supplier;
 import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+import org.apache.jackrabbit.oak.api.PropertyState;
 import org.apache.jackrabbit.oak.api.jmx.CacheStatsMBean;
+import org.apache.jackrabbit.oak.segment.CacheWeights.NodeCacheWeigher;
+import org.apache.jackrabbit.oak.segment.CacheWeights.StringCacheWeigher;
+import org.apache.jackrabbit.oak.segment.CacheWeights.TemplateCacheWeigher;
 import org.apache.jackrabbit.oak.segment.file.PriorityCache;
 import org.apache.jackrabbit.oak.stats.StatisticsProvider;
 import org.jetbrains.annotations.NotNull;
@@ -310,7 +321,7 @@ public abstract class WriterCacheManager {
             return templateCaches.getGeneration(generation);
         }
 
-        private PriorityCache<String, RecordId> nodeCache() {
+        PriorityCache<String, RecordId> nodeCache() {
             return nodeCache.get();
         }
 
@@ -511,4 +522,350 @@ public abstract class WriterCacheManager {
             );
         }
     }
+
+    /**
+     * This implementation of {@link WriterCacheManager} resizes its caches
+     * from one generation to the next. Whenever a cache for a new generation
+     * is requested its size is derived from the hit rate and the evictions
+     * observed by the cache of the previous generation and from the heap
+     * headroom left. A cache that had many hits and had to evict entries is
+     * doubled, a cache that had hardly any hits is halved. All caches are
+     * halved if the heap headroom is low. The sizes stay within a quarter
+     * and four times the configured sizes.
+     * <p>
+     * The node cache is shared by all generations. It is only resized on
+     * {@link #resizeNodeCache()}, which should be called once the previous
+     * generations are no longer written, e.g. after a successful compaction.
+     * <p>
+     * Instances of this class also keep track of how many records were
+     * deduplicated and of an estimate of the bytes this saved.
+     */
+    public static class Adaptive extends Default implements DeduplicationStatsMBean {
+
+        @NotNull
+        private final AdaptiveSize stringCacheSize;
+
+        @NotNull
+        private final AdaptiveSize templateCacheSize;
+
+        @NotNull
+        private final AdaptiveSize nodeCacheSize;
+
+        @NotNull
+        private final Supplier<PriorityCache<String, RecordId>> nodeCacheFactory;
+
+        private final LongAdder writeOperations = new LongAdder();
+
+        private final LongAdder requests = new LongAdder();
+
+        private final LongAdder hits = new LongAdder();
+
+        private final LongAdder savedBytes = new LongAdder();
+
+        private volatile PriorityCache<String, RecordId> nodeCache;
+
+        /**
+         * New instance with the passed initial sizes, which are also the
+         * reference for the lower and upper bounds of the adaptive sizes.
+         *
+         * @param stringCacheSize      initial size of the string cache
+         * @param templateCacheSize    initial size of the template cache
+         * @param nodeCacheSize        initial size of the node cache. Must be
+         *                             a power of 2.
+         * @param headroom             supplier of the fraction of the heap
+         *                             still available
+         */
+        public Adaptive(
+                int stringCacheSize,
+                int templateCacheSize,
+                int nodeCacheSize,
+                @NotNull DoubleSupplier headroom) {
+            this(new AdaptiveSize(stringCacheSize, headroom),
+                    new AdaptiveSize(templateCacheSize, headroom),
+                    new AdaptiveSize(nodeCacheSize, headroom));
+        }
+
+        /**
+         * New instance with the passed initial sizes taking the heap headroom
+         * from the {@link Runtime}.
+         */
+        public Adaptive(int stringCacheSize, int templateCacheSize, int nodeCacheSize) {
+            this(stringCacheSize, templateCacheSize, nodeCacheSize, Adaptive::heapHeadroom);
+        }
+
+        private Adaptive(
+                @NotNull AdaptiveSize stringCacheSize,
+                @NotNull AdaptiveSize templateCacheSize,
+                @NotNull AdaptiveSize nodeCacheSize) {
+            this(stringCacheSize, templateCacheSize, nodeCacheSize,
+                    () -> new PriorityCache<>(nodeCacheSize.get(), new NodeCacheWeigher()));
+        }
+
+        private Adaptive(
+                @NotNull AdaptiveSize stringCacheSize,
+                @NotNull AdaptiveSize templateCacheSize,
+                @NotNull AdaptiveSize nodeCacheSize,
+                @NotNull Supplier<PriorityCache<String, RecordId>> nodeCacheFactory) {
+            super(adaptiveFactory(stringCacheSize, new StringCacheWeigher()),
+                    adaptiveFactory(templateCacheSize, new TemplateCacheWeigher()),
+                    nodeCacheFactory);
+            this.stringCacheSize = stringCacheSize;
+            this.templateCacheSize = templateCacheSize;
+            this.nodeCacheSize = nodeCacheSize;
+            this.nodeCacheFactory = nodeCacheFactory;
+        }
+
+        private static double heapHeadroom() {
+            Runtime runtime = Runtime.getRuntime();
+            long used = runtime.totalMemory() - runtime.freeMemory();
+            return (double) (runtime.maxMemory() - used) / runtime.maxMemory();
+        }
+
+        @NotNull
+        private static <T> Supplier<RecordCache<T>> adaptiveFactory(
+                @NotNull final AdaptiveSize size,
+                @NotNull final Weigher<T, RecordId> weigher) {
+            return new Supplier<RecordCache<T>>() {
+                private RecordCache<T> previous;
+
+                @Override
+                public synchronized RecordCache<T> get() {
+                    if (previous != null) {
+                        size.resize(previous.getStats());
+                    }
+                    previous = RecordCache.factory(size.get(), weigher).get();
+                    return previous;
+                }
+            };
+        }
+
+        @NotNull
+        @Override
+        public Cache<String, RecordId> getStringCache(int generation) {
+            writeOperations.increment();
+            return new DeduplicationCounter<>(super.getStringCache(generation), Adaptive::stringBytes);
+        }
+
+        @NotNull
+        @Override
+        public Cache<Template, RecordId> getTemplateCache(int generation) {
+            return new DeduplicationCounter<>(super.getTemplateCache(generation), Adaptive::templateBytes);
+        }
+
+        @NotNull
+        @Override
+        public Cache<String, RecordId> getNodeCache(int generation) {
+            return new DeduplicationCounter<>(super.getNodeCache(generation), Adaptive::nodeBytes);
+        }
+
+        /**
+         * Replace the node cache with a new one sized after the statistics
+         * of the current one. This drops the entries of all generations and
+         * should only be called when no writer uses the previous generations
+         * any more.
+         */
+        protected void resizeNodeCache() {
+            synchronized (this) {
+                if (nodeCache != null) {
+                    nodeCacheSize.resize(nodeCache.getStats());
+                    nodeCache = nodeCacheFactory.get();
+                }
+            }
+        }
+
+        @Override
+        PriorityCache<String, RecordId> nodeCache() {
+            PriorityCache<String, RecordId> cache = nodeCache;
+            if (cache == null) {
+                synchronized (this) {
+                    if (nodeCache == null) {
+                        nodeCache = nodeCacheFactory.get();
+                    }
+                    cache = nodeCache;
+                }
+            }
+            return cache;
+        }
+
+        /**
+         * Estimated size of a string record: the characters plus a length
+         * header of one or two bytes.
+         */
+        private static int stringBytes(@NotNull String string) {
+            return string.length() + (string.length() < Segment.SMALL_LIMIT ? 1 : 2);
+        }
+
+        /**
+         * Estimated size of a template record: the header, the record ids of
+         * the primary type, the mixins, the child name and the property names,
+         * and one type byte per property.
+         */
+        private static int templateBytes(@NotNull Template template) {
+            PropertyState mixins = template.getMixinTypes();
+            int mixinCount = mixins == null ? 0 : mixins.count();
+            int propertyCount = template.getPropertyTemplates().length;
+            return 4 + Segment.RECORD_ID_BYTES * (3 + mixinCount) + propertyCount;
+        }
+
+        /**
+         * Lower bound for the size of a node record: the record ids of its
+         * template and of its stable id. The records of the subtree below the
+         * node, which are also not written again, are not accounted for.
+         */
+        private static int nodeBytes(@NotNull String stableId) {
+            return 2 * Segment.RECORD_ID_BYTES;
+        }
+
+        @Override
+        public int getStringCacheSize() {
+            return stringCacheSize.get();
+        }
+
+        @Override
+        public int getTemplateCacheSize() {
+            return templateCacheSize.get();
+        }
+
+        @Override
+        public int getNodeCacheSize() {
+            return nodeCacheSize.get();
+        }
+
+        @Override
+        public long getWriteOperationCount() {
+            return writeOperations.sum();
+        }
+
+        @Override
+        public long getDeduplicatedRecordCount() {
+            return hits.sum();
+        }
+
+        @Override
+        public double getDeduplicationRatio() {
+            long requestCount = requests.sum();
+            return requestCount == 0 ? 0 : (double) hits.sum() / requestCount;
+        }
+
+        @Override
+        public long getSavedBytes() {
+            return savedBytes.sum();
+        }
+
+        @Override
+        public double getSavedBytesPerWriteOperation() {
+            long operationCount = writeOperations.sum();
+            return operationCount == 0 ? 0 : (double) savedBytes.sum() / operationCount;
+        }
+
+        /**
+         * Wrapper around a deduplication cache counting its lookups, its hits
+         * and the estimated bytes saved by each hit.
+         */
+        private class DeduplicationCounter<K> implements Cache<K, RecordId> {
+
+            @NotNull
+            private final Cache<K, RecordId> delegate;
+
+            @NotNull
+            private final ToIntFunction<K> recordSize;
+
+            DeduplicationCounter(@NotNull Cache<K, RecordId> delegate, @NotNull ToIntFunction<K> recordSize) {
+                this.delegate = delegate;
+                this.recordSize = recordSize;
+            }
+
+            @Override
+            public void put(@NotNull K key, @NotNull RecordId value) {
+                delegate.put(key, value);
+            }
+
+            @Override
+            public void put(@NotNull K key, @NotNull RecordId value, byte cost) {
+                delegate.put(key, value, cost);
+            }
+
+            @Nullable
+            @Override
+            public RecordId get(@NotNull K key) {
+                RecordId id = delegate.get(key);
+                requests.increment();
+                if (id != null) {
+                    hits.increment();
+                    savedBytes.add(recordSize.applyAsInt(key));
+                }
+                return id;
+            }
+        }
+    }
+
+    /**
+     * The size of a cache adapting to the hit rate and the evictions of the
+     * previous instance of the cache and to the heap headroom.
+     */
+    static class AdaptiveSize {
+
+        /**
+         * Minimum number of lookups of a cache before its hit rate is taken
+         * into account.
+         */
+        static final long MIN_REQUESTS = 1000;
+
+        /**
+         * Hit rate below which the cache is shrunk.
+         */
+        static final double LOW_HIT_RATE = 0.05;
+
+        /**
+         * Hit rate above which the cache is grown, if it had to evict entries.
+         */
+        static final double HIGH_HIT_RATE = 0.2;
+
+        /**
+         * Fraction of the heap below which the cache is shrunk regardless of
+         * its hit rate.
+         */
+        static final double LOW_HEADROOM = 0.2;
+
+        private final int minSize;
+
+        private final int maxSize;
+
+        @NotNull
+        private final DoubleSupplier headroom;
+
+        private volatile int size;
+
+        AdaptiveSize(int size, @NotNull DoubleSupplier headroom) {
+            checkArgument(size >= 0);
+            this.size = size;
+            this.minSize = size == 0 ? 0 : max(1, size / 4);
+            this.maxSize = (int) min(Integer.MAX_VALUE / 2 + 1, 4L * size);
+            this.headroom = checkNotNull(headroom);
+        }
+
+        int get() {
+            return size;
+        }
+
+        /**
+         * Derive the size of the next instance of the cache from the
+         * statistics of its previous instance.
+         * @return  the new size
+         */
+        int resize(@NotNull CacheStats stats) {
+            int next = size;
+            if (headroom.getAsDouble() < LOW_HEADROOM) {
+                next = size / 2;
+            } else if (stats.requestCount() >= MIN_REQUESTS) {
+                if (stats.hitRate() < LOW_HIT_RATE) {
+                    next = size / 2;
+                } else if (stats.hitRate() > HIGH_HIT_RATE && stats.evictionCount() > 0) {
+                    next = size * 2;
+                }
+            }
+            size = max(minSize, min(maxSize, next));
+            return size;
+        }
+    }
 }
@@ -83,6 +83,16 @@ public class SegmentGCOptions {
      */
     public static final int MEMORY_THRESHOLD_DEFAULT = 15;
 
+    /**
+     * Default value for {@link #getConcurrency()}
+     */
+    public static final int CONCURRENCY_DEFAULT = 1;
+
+    /**
+     * Default value for {@link #getCleanupConcurrency()}
+     */
+    public static final int CLEANUP_CONCURRENCY_DEFAULT = 1;
+
     private boolean paused = PAUSE_DEFAULT;
 
     /**
@@ -113,6 +123,20 @@ public class SegmentGCOptions {
      */
     private long gcLogInterval = -1;
 
+    /**
+     * Number of threads used to compact independent subtrees concurrently.
+     */
+    private int concurrency = Integer.getInteger(
+            "oak.segment.compaction.concurrency",
+            CONCURRENCY_DEFAULT);
+
+    /**
+     * Number of threads used to mark and sweep TAR files concurrently.
+     */
+    private int cleanupConcurrency = Integer.getInteger(
+            "oak.segment.cleanup.concurrency",
+            CLEANUP_CONCURRENCY_DEFAULT);
+
     public SegmentGCOptions(boolean paused, int retryCount, int forceTimeout) {
         this.paused = paused;
         this.retryCount = retryCount;
@@ -244,7 +268,9 @@ public class SegmentGCOptions {
                     ", retryCount=" + retryCount +
                     ", forceTimeout=" + forceTimeout +
                     ", retainedGenerations=" + retainedGenerations +
-                    ", gcType=" + gcType + "}";
+                    ", gcType=" + gcType +
+                    ", concurrency=" + concurrency +
+                    ", cleanupConcurrency=" + cleanupConcurrency + "}";
         }
     }
 
@@ -341,4 +367,45 @@ public class SegmentGCOptions {
         return gcLogInterval;
     }
 
+    /**
+     * @return  the number of threads used for compacting independent subtrees
+     *          concurrently. {@code 1} for sequential compaction.
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Set the number of threads used for compacting independent subtrees
+     * concurrently. Values larger than {@code 1} require a thread safe
+     * compaction writer.
+     * @param concurrency  number of compaction threads. Values smaller than
+     *                     {@code 2} disable concurrent compaction.
+     * @return this instance
+     */
+    public SegmentGCOptions setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+        return this;
+    }
+
+    /**
+     * @return  the number of threads used for marking and sweeping TAR files
+     *          concurrently during cleanup. {@code 1} for sequential cleanup.
+     */
+    public int getCleanupConcurrency() {
+        return cleanupConcurrency;
+    }
+
+    /**
+     * Set the number of threads used for marking and sweeping TAR files
+     * concurrently during cleanup.
+     * @param cleanupConcurrency  number of cleanup threads. Values smaller
+     *                            than {@code 2} disable concurrent cleanup.
+     * @return this instance
+     */
+    public SegmentGCOptions setCleanupConcurrency(int cleanupConcurrency) {
+        this.cleanupConcurrency = cleanupConcurrency;
+        return this;
+    }
+
 }
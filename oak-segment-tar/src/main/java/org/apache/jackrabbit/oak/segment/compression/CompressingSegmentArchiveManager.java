@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.compression;
+
+import static org.apache.jackrabbit.oak.segment.compression.SegmentCompression.decompress;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.jackrabbit.oak.segment.spi.persistence.Buffer;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveManager;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveReader;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveWriter;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentCodec;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A {@link SegmentArchiveManager} compressing data segments with a {@link
+ * SegmentCodec} before passing them to the underlying persistence, and
+ * decompressing them again when they are read. Archives are always read
+ * through this manager, so segments written with compression remain readable
+ * after compression has been disabled, and segments written without
+ * compression remain readable after it has been enabled.
+ *
+ * @see SegmentCompression
+ */
+public class CompressingSegmentArchiveManager implements SegmentArchiveManager {
+
+    private final SegmentArchiveManager delegate;
+
+    @Nullable
+    private final SegmentCodec codec;
+
+    /**
+     * @param delegate the archive manager of the underlying persistence
+     * @param codec    the codec for compressing new segments or {@code null}
+     *                 for writing them uncompressed
+     */
+    public CompressingSegmentArchiveManager(@NotNull SegmentArchiveManager delegate, @Nullable SegmentCodec codec) {
+        this.delegate = delegate;
+        this.codec = codec;
+        if (codec != null) {
+            SegmentCompression.register(codec);
+        }
+    }
+
+    @Override
+    public @NotNull List<String> listArchives() throws IOException {
+        return delegate.listArchives();
+    }
+
+    @Override
+    public @Nullable SegmentArchiveReader open(@NotNull String archiveName) throws IOException {
+        return wrap(delegate.open(archiveName));
+    }
+
+    @Override
+    public @Nullable SegmentArchiveReader forceOpen(String archiveName) throws IOException {
+        return wrap(delegate.forceOpen(archiveName));
+    }
+
+    private static SegmentArchiveReader wrap(SegmentArchiveReader reader) {
+        if (reader == null) {
+            return null;
+        }
+        return new CompressingSegmentArchiveReader(reader);
+    }
+
+    @Override
+    public @NotNull SegmentArchiveWriter create(@NotNull String archiveName) throws IOException {
+        return new CompressingSegmentArchiveWriter(delegate.create(archiveName), codec);
+    }
+
+    @Override
+    public boolean delete(@NotNull String archiveName) {
+        return delegate.delete(archiveName);
+    }
+
+    @Override
+    public boolean renameTo(@NotNull String from, @NotNull String to) {
+        return delegate.renameTo(from, to);
+    }
+
+    @Override
+    public void copyFile(@NotNull String from, @NotNull String to) throws IOException {
+        delegate.copyFile(from, to);
+    }
+
+    @Override
+    public boolean exists(@NotNull String archiveName) {
+        return delegate.exists(archiveName);
+    }
+
+    @Override
+    public void recoverEntries(@NotNull String archiveName, @NotNull LinkedHashMap<UUID, byte[]> entries) throws IOException {
+        delegate.recoverEntries(archiveName, entries);
+        for (Map.Entry<UUID, byte[]> entry : entries.entrySet()) {
+            byte[] data = entry.getValue();
+            Buffer buffer = decompress(entry.getKey().getLeastSignificantBits(), Buffer.wrap(data));
+            if (buffer != null && buffer.array() != data) {
+                entry.setValue(buffer.array());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.compression;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentCodec;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A {@link SegmentCodec} based on the deflate algorithm of the JDK. It does
+ * not require any additional libraries and favours speed over compression
+ * ratio.
+ */
+public class DeflateSegmentCodec implements SegmentCodec {
+
+    public static final byte ID = 1;
+
+    private final int level;
+
+    /**
+     * Create a new instance compressing with the given deflate level.
+     *
+     * @param level the compression level (0-9)
+     */
+    public DeflateSegmentCodec(int level) {
+        this.level = level;
+    }
+
+    /**
+     * Create a new instance compressing with {@link Deflater#BEST_SPEED}.
+     */
+    public DeflateSegmentCodec() {
+        this(Deflater.BEST_SPEED);
+    }
+
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @NotNull
+    @Override
+    public String getName() {
+        return "deflate";
+    }
+
+    @NotNull
+    @Override
+    public byte[] compress(@NotNull byte[] data, int offset, int length) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(data, offset, length);
+            deflater.finish();
+
+            // Incompressible data grows by a few bytes per 16kB block
+            byte[] out = new byte[length + length / 1000 + 64];
+            int n = 0;
+            while (!deflater.finished()) {
+                if (n == out.length) {
+                    out = Arrays.copyOf(out, out.length * 2);
+                }
+                n += deflater.deflate(out, n, out.length - n);
+            }
+            return Arrays.copyOf(out, n);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    @NotNull
+    @Override
+    public byte[] decompress(@NotNull byte[] data, int offset, int length, int uncompressedLength) throws IOException {
+        Inflater inflater = new Inflater(true);
+        try {
+            // The extra byte is required by the "nowrap" mode of the inflater
+            byte[] in = new byte[length + 1];
+            System.arraycopy(data, offset, in, 0, length);
+            inflater.setInput(in);
+
+            byte[] out = new byte[uncompressedLength];
+            int n = 0;
+            while (n < uncompressedLength && !inflater.finished()) {
+                int k = inflater.inflate(out, n, uncompressedLength - n);
+                if (k == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                n += k;
+            }
+            if (n != uncompressedLength) {
+                throw new IOException("Invalid compressed segment: expected " + uncompressedLength + " bytes, got " + n);
+            }
+            return out;
+        } catch (DataFormatException e) {
+            throw new IOException("Invalid compressed segment", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getName() + "(" + level + ")";
+    }
+
+}
@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.compression;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static org.apache.jackrabbit.oak.segment.SegmentId.isDataSegmentId;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.jackrabbit.oak.segment.spi.persistence.Buffer;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentCodec;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Framing of compressed segments. Only data segments are compressed. Bulk
+ * segments contain binary data, which is usually compressed already.
+ * <p>
+ * A compressed segment starts with a header of {@link #HEADER_SIZE} bytes:
+ * the signature {@code "CaK"}, the {@link SegmentCodec#getId() id} of the
+ * codec and the length of the uncompressed segment as an integer. The header
+ * is followed by the data produced by the codec. As uncompressed data
+ * segments always start with the signature {@code "0aK"}, compressed and
+ * uncompressed segments can be told apart by their first bytes.
+ */
+public final class SegmentCompression {
+
+    static final int HEADER_SIZE = 8;
+
+    private static final byte[] SIGNATURE = {'C', 'a', 'K'};
+
+    private static final AtomicReferenceArray<SegmentCodec> CODECS = new AtomicReferenceArray<>(128);
+
+    static {
+        register(new DeflateSegmentCodec());
+    }
+
+    private SegmentCompression() {
+    }
+
+    /**
+     * Register a codec for decompressing segments. Codecs passed to {@link
+     * #compress(SegmentCodec, long, byte[], int, int)} are registered
+     * automatically.
+     *
+     * @param codec the codec to register
+     */
+    public static void register(@NotNull SegmentCodec codec) {
+        byte id = codec.getId();
+        checkArgument(id >= 0, "Invalid codec id %s", id);
+        if (CODECS.compareAndSet(id, null, codec)) {
+            return;
+        }
+        SegmentCodec registered = CODECS.get(id);
+        checkArgument(registered.getClass() == codec.getClass(),
+                "Codec id %s already registered for %s", id, registered);
+    }
+
+    /**
+     * Look up one of the codecs shipped with Oak by its name.
+     *
+     * @param name the name of the codec or {@code "none"}
+     * @return the codec or {@code null} if {@code name} is {@code null} or
+     * {@code "none"}
+     * @throws IllegalArgumentException if no codec with the given name exists
+     */
+    @Nullable
+    public static SegmentCodec forName(@Nullable String name) {
+        if (name == null || name.isEmpty() || "none".equals(name)) {
+            return null;
+        }
+        if ("deflate".equals(name)) {
+            return new DeflateSegmentCodec();
+        }
+        throw new IllegalArgumentException("Unknown segment codec " + name);
+    }
+
+    /**
+     * Compress a segment.
+     *
+     * @return the compressed segment including the header or {@code null} if
+     * the segment is a bulk segment or if compression would not reduce its
+     * size.
+     */
+    @Nullable
+    static byte[] compress(@NotNull SegmentCodec codec, long lsb, byte[] data, int offset, int size) throws IOException {
+        if (!isDataSegmentId(lsb)) {
+            return null;
+        }
+        register(codec);
+
+        byte[] compressed = codec.compress(data, offset, size);
+        if (compressed.length + HEADER_SIZE >= size) {
+            return null;
+        }
+
+        Buffer buffer = Buffer.allocate(HEADER_SIZE + compressed.length);
+        buffer.put(SIGNATURE);
+        buffer.put(codec.getId());
+        buffer.putInt(size);
+        buffer.put(compressed);
+        return buffer.array();
+    }
+
+    /**
+     * Decompress a segment if it is compressed.
+     *
+     * @return the decompressed segment or {@code buffer} if the segment is not
+     * compressed.
+     * @throws IOException if the codec the segment was compressed with is not
+     *                     available or if decompression fails.
+     */
+    @Nullable
+    static Buffer decompress(long lsb, @Nullable Buffer buffer) throws IOException {
+        if (buffer == null || !isDataSegmentId(lsb) || !isCompressed(buffer)) {
+            return buffer;
+        }
+
+        int position = buffer.position();
+        byte id = buffer.get(position + 3);
+        int uncompressedLength = buffer.getInt(position + 4);
+        SegmentCodec codec = id >= 0 ? CODECS.get(id) : null;
+        if (codec == null) {
+            throw new IOException("Segment compressed with unknown codec " + id);
+        }
+
+        byte[] compressed = new byte[buffer.remaining() - HEADER_SIZE];
+        Buffer source = buffer.duplicate();
+        source.position(position + HEADER_SIZE);
+        source.get(compressed);
+        return Buffer.wrap(codec.decompress(compressed, 0, compressed.length, uncompressedLength));
+    }
+
+    private static boolean isCompressed(Buffer buffer) {
+        if (buffer.remaining() < HEADER_SIZE) {
+            return false;
+        }
+        int position = buffer.position();
+        for (int i = 0; i < SIGNATURE.length; i++) {
+            if (buffer.get(position + i) != SIGNATURE[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
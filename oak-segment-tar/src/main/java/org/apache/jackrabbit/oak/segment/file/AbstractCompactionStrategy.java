@@ -20,6 +20,7 @@
 package org.apache.jackrabbit.oak.segment.file;
 
 import static java.lang.Thread.currentThread;
+import static java.util.concurrent.Executors.newFixedThreadPool;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.apache.jackrabbit.oak.segment.compaction.SegmentGCStatus.COMPACTION;
 import static org.apache.jackrabbit.oak.segment.compaction.SegmentGCStatus.COMPACTION_FORCE_COMPACT;
@@ -28,9 +29,14 @@ import static org.apache.jackrabbit.oak.segment.file.TarRevisions.EXPEDITE_OPTIO
 import static org.apache.jackrabbit.oak.segment.file.TarRevisions.timeout;
 
 import java.io.IOException;
+import java.util.concurrent.ExecutorService;
 
 import com.google.common.base.Function;
+import org.apache.jackrabbit.core.data.util.NamedThreadFactory;
+import org.apache.jackrabbit.oak.commons.concurrent.ExecutorCloser;
 import org.apache.jackrabbit.oak.segment.CheckpointCompactor;
+import org.apache.jackrabbit.oak.segment.Compactor;
+import org.apache.jackrabbit.oak.segment.ParallelCompactor;
 import org.apache.jackrabbit.oak.segment.RecordId;
 import org.apache.jackrabbit.oak.segment.SegmentNodeState;
 import org.apache.jackrabbit.oak.segment.SegmentWriter;
@@ -119,6 +125,11 @@ abstract class AbstractCompactionStrategy implements CompactionStrategy {
 
         GCGeneration nextGeneration = nextGeneration(getGcGeneration(context));
 
+        int concurrency = context.getGCOptions().getConcurrency();
+        ExecutorService executor = concurrency > 1
+            ? newFixedThreadPool(concurrency, new NamedThreadFactory("TarMK compaction"))
+            : null;
+
         try {
             PrintableStopwatch watch = PrintableStopwatch.createStarted();
             context.getGCListener().info(
@@ -143,7 +154,7 @@ abstract class AbstractCompactionStrategy implements CompactionStrategy {
                 context.getSegmentReader(),
                 writer,
                 context.getBlobStore(),
-                context.getCompactionMonitor()
+                newCompactor(context, writer, executor)
             );
 
             SegmentNodeState head = getHead(context);
@@ -235,7 +246,30 @@ abstract class AbstractCompactionStrategy implements CompactionStrategy {
         } catch (IOException e) {
             context.getGCListener().error("compaction encountered an error", e);
             return compactionAborted(context, nextGeneration);
+        } finally {
+            if (executor != null) {
+                new ExecutorCloser(executor).close();
+            }
+        }
+    }
+
+    private static Compactor newCompactor(Context context, SegmentWriter writer, ExecutorService executor) {
+        if (executor == null) {
+            return new Compactor(
+                context.getSegmentReader(),
+                writer,
+                context.getBlobStore(),
+                context.getCompactionMonitor()
+            );
         }
+        context.getGCListener().info("compacting with {} threads", context.getGCOptions().getConcurrency());
+        return new ParallelCompactor(
+            context.getSegmentReader(),
+            writer,
+            context.getBlobStore(),
+            context.getCompactionMonitor(),
+            executor
+        );
     }
 
 }
@@ -133,14 +133,18 @@ public abstract class AbstractFileStore implements SegmentStore, Closeable {
 
     AbstractFileStore(final FileStoreBuilder builder) {
         this.directory = builder.getDirectory();
+        boolean trackSegmentAccess = builder.getSegmentPrefetchDepth() > 0;
         this.tracker = new SegmentTracker(new SegmentIdFactory() {
             @Override @NotNull
             public SegmentId newSegmentId(long msb, long lsb) {
+                if (trackSegmentAccess) {
+                    return new SegmentId(AbstractFileStore.this, msb, lsb, AbstractFileStore.this::onSegmentAccess);
+                }
                 return new SegmentId(AbstractFileStore.this, msb, lsb, segmentCache::recordHit);
             }
         });
         this.blobStore = builder.getBlobStore();
-        this.segmentCache = newSegmentCache(builder.getSegmentCacheSize());
+        this.segmentCache = newSegmentCache(builder.getSegmentCacheSize(), builder.getOffHeapSegmentCache());
         this.segmentReader = new CachingSegmentReader(
             this::getWriter,
             blobStore,
@@ -282,6 +286,17 @@ public abstract class AbstractFileStore implements SegmentStore, Closeable {
         }
     }
 
+    /**
+     * Called whenever a segment memoised in its id is accessed. This call
+     * back is only installed when segment prefetching is enabled, as the
+     * segment cache only needs {@link SegmentCache#recordHit()} otherwise.
+     *
+     * @param id  the id of the accessed segment
+     */
+    void onSegmentAccess(SegmentId id) {
+        segmentCache.recordHit();
+    }
+
     Segment readSegmentUncached(TarFiles tarFiles, SegmentId id) {
         Buffer buffer = tarFiles.readSegment(id.getMostSignificantBits(), id.getLeastSignificantBits());
         if (buffer == null) {
@@ -291,6 +306,16 @@ public abstract class AbstractFileStore implements SegmentStore, Closeable {
         return new Segment(tracker, segmentReader, id, buffer);
     }
 
+    @Nullable
+    Segment readSegmentUncached(TarFiles tarFiles, String archiveName, SegmentId id) {
+        Buffer buffer = tarFiles.readSegment(archiveName, id.getMostSignificantBits(), id.getLeastSignificantBits());
+        if (buffer == null) {
+            return null;
+        }
+        segmentBufferMonitor.trackAllocation(buffer);
+        return new Segment(tracker, segmentReader, id, buffer);
+    }
+
     /**
      * Finds all external blob references that are currently accessible
      * in this repository and adds them to the given collector. Useful
@@ -304,4 +329,22 @@ public abstract class AbstractFileStore implements SegmentStore, Closeable {
      * @param collector  reference collector called back for each blob reference found
      */
     public abstract void collectBlobReferences(Consumer<String> collector) throws IOException;
+
+    /**
+     * Finds the external blob references that have been added to this
+     * repository since the binary references were collected up to the
+     * {@code since} watermark and adds them to the given collector. The
+     * references are only collected from the tar files written since. If
+     * {@code since} is {@code null} or has been superseded by a full
+     * compaction, all blob references are collected as by {@link
+     * #collectBlobReferences(Consumer)}. Use {@link
+     * BinaryReferencesWatermark#isIncrementalTo(BinaryReferencesWatermark)}
+     * on the returned watermark to tell both cases apart.
+     *
+     * @param collector reference collector called back for each blob reference found
+     * @param since     the watermark returned by a previous collection or {@code null}
+     * @return the watermark up to which the blob references have been collected
+     */
+    @NotNull
+    public abstract BinaryReferencesWatermark collectBlobReferences(Consumer<String> collector, @Nullable BinaryReferencesWatermark since) throws IOException;
 }
@@ -310,6 +310,11 @@ abstract class AbstractGarbageCollectionStrategy implements GarbageCollectionStr
                 return compactionResult.gcInfo();
             }
 
+            @Override
+            public SegmentGCOptions getGCOptions() {
+                return context.getGCOptions();
+            }
+
         };
     }
 
@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Objects;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Marks the point up to which the binary references of a segment store have
+ * been collected. Binary references are collected from the tar files in the
+ * order they have been written, so the point is given by the index of the
+ * last tar file collected from. Together with the full generation of the
+ * store at that point a watermark allows to collect the binary references
+ * incrementally, only from the tar files written since.
+ * <p>
+ * An incremental collection is only performed as long as the full generation
+ * of the store does not change. After a full compaction the binary references
+ * are collected from all tar files again, so that references only contained
+ * in reclaimed segments are eventually dropped.
+ *
+ * @see AbstractFileStore#collectBlobReferences(java.util.function.Consumer, BinaryReferencesWatermark)
+ */
+public final class BinaryReferencesWatermark {
+
+    private final int fullGeneration;
+
+    private final int tarIndex;
+
+    public BinaryReferencesWatermark(int fullGeneration, int tarIndex) {
+        checkArgument(fullGeneration >= 0, "fullGeneration must not be negative");
+        checkArgument(tarIndex >= -1, "tarIndex must not be less than -1");
+        this.fullGeneration = fullGeneration;
+        this.tarIndex = tarIndex;
+    }
+
+    /**
+     * Parse a watermark from its string representation as returned by
+     * {@link #toString()}.
+     *
+     * @param watermark the string representation of a watermark
+     * @return the watermark or {@code null} if {@code watermark} is not valid
+     */
+    @Nullable
+    public static BinaryReferencesWatermark parse(@NotNull String watermark) {
+        String[] parts = watermark.trim().split(":");
+        if (parts.length != 2) {
+            return null;
+        }
+        try {
+            return new BinaryReferencesWatermark(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the full generation of the store when the binary references
+     * were collected.
+     */
+    public int getFullGeneration() {
+        return fullGeneration;
+    }
+
+    /**
+     * @return the index of the last tar file the binary references were
+     * collected from or {@code -1} if there was none.
+     */
+    public int getTarIndex() {
+        return tarIndex;
+    }
+
+    /**
+     * Determine whether the binary references collected up to this watermark
+     * were collected incrementally, starting at the {@code previous}
+     * watermark. In that case these references need to be added to those
+     * collected up to {@code previous} to obtain all binary references.
+     * Otherwise all binary references were collected.
+     *
+     * @param previous the watermark passed to the collection or {@code null}
+     * @return {@code true} iff the collection was incremental
+     */
+    public boolean isIncrementalTo(@Nullable BinaryReferencesWatermark previous) {
+        return previous != null && previous.fullGeneration == fullGeneration;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (other == null || getClass() != other.getClass()) {
+            return false;
+        }
+        BinaryReferencesWatermark that = (BinaryReferencesWatermark) other;
+        return fullGeneration == that.fullGeneration && tarIndex == that.tarIndex;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(fullGeneration, tarIndex);
+    }
+
+    @Override
+    public String toString() {
+        return fullGeneration + ":" + tarIndex;
+    }
+
+}
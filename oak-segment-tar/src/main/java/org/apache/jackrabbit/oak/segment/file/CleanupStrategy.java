@@ -26,6 +26,7 @@ import com.google.common.base.Predicate;
 import org.apache.jackrabbit.oak.segment.Revisions;
 import org.apache.jackrabbit.oak.segment.SegmentCache;
 import org.apache.jackrabbit.oak.segment.SegmentTracker;
+import org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions;
 import org.apache.jackrabbit.oak.segment.file.tar.GCGeneration;
 import org.apache.jackrabbit.oak.segment.file.tar.TarFiles;
 
@@ -55,6 +56,8 @@ interface CleanupStrategy {
 
         String getSegmentEvictionReason();
 
+        SegmentGCOptions getGCOptions();
+
     }
 
     List<String> cleanup(Context context) throws IOException;
@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file;
+
+/**
+ * Results of the online consistency check of the segment store.
+ *
+ * @see OnlineConsistencyChecker
+ */
+public interface ConsistencyCheckMBean {
+
+    String TYPE = "ConsistencyCheck";
+
+    /**
+     * @return  the last journal revision verified to be consistent or
+     *          {@code null} if no revision has been verified yet
+     */
+    String getLastVerifiedRevision();
+
+    /**
+     * @return  the journal timestamp of the last verified revision or
+     *          {@code 0} if no revision has been verified yet
+     */
+    long getLastVerifiedTimestamp();
+
+    /**
+     * @return  the time in milliseconds the last check finished at or
+     *          {@code 0} if no check has been run yet
+     */
+    long getLastCheckTime();
+
+    /**
+     * @return  the duration of the last check in milliseconds
+     */
+    long getLastCheckDuration();
+
+    /**
+     * @return  number of journal entries verified since the store was opened
+     */
+    long getVerifiedRevisionCount();
+
+    /**
+     * @return  number of nodes checked by the last check
+     */
+    long getCheckedNodeCount();
+
+    /**
+     * @return  number of checks that found an inconsistency since the store
+     *          was opened
+     */
+    long getFailedCheckCount();
+
+    /**
+     * @return  the inconsistent paths found by the last check
+     */
+    String[] getInconsistentPaths();
+
+    /**
+     * @return  the status of the consistency checker
+     */
+    String getStatus();
+
+    /**
+     * Verify the revisions written since the last verified revision. The
+     * check runs on the calling thread.
+     *
+     * @return  the status after the check
+     */
+    String checkConsistency();
+
+}
@@ -38,6 +38,7 @@ import java.util.function.Consumer;
 import com.google.common.base.Supplier;
 import com.google.common.io.Closer;
 import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.apache.jackrabbit.oak.segment.DefaultSegmentWriterBuilder;
 import org.apache.jackrabbit.oak.segment.RecordId;
 import org.apache.jackrabbit.oak.segment.Segment;
 import org.apache.jackrabbit.oak.segment.SegmentId;
@@ -59,6 +60,7 @@ import org.apache.jackrabbit.oak.stats.StatisticsProvider;
 import org.apache.jackrabbit.oak.stats.TimerStats;
 import org.apache.jackrabbit.oak.stats.TimerStats.Context;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -135,6 +137,16 @@ public class FileStore extends AbstractFileStore {
 
     private final boolean eagerSegmentCaching;
 
+    /**
+     * Prefetcher for segments referenced from segments loaded on demand or
+     * {@code null} if prefetching is disabled.
+     */
+    @Nullable
+    private final SegmentPrefetcher segmentPrefetcher;
+
+    @NotNull
+    private final OnlineConsistencyChecker consistencyChecker;
+
     FileStore(final FileStoreBuilder builder) throws InvalidFileStoreVersionException, IOException {
         super(builder);
 
@@ -145,6 +157,7 @@ public class FileStore extends AbstractFileStore {
         this.segmentWriter = defaultSegmentWriterBuilder("sys")
                 .withGeneration(() -> getGcGeneration().nonGC())
                 .withWriterPool()
+                .withStatisticsProvider(statsProvider)
                 .with(builder.getCacheManager()
                         .withAccessTracking("WRITE", statsProvider))
                 .build(this);
@@ -165,7 +178,9 @@ public class FileStore extends AbstractFileStore {
                 .withMaxFileSize(builder.getMaxFileSize() * MB)
                 .withPersistence(builder.getPersistence())
                 .withReaderCountStats(readerCountStats)
-                .withSegmentCountStats(segmentCountStats);
+                .withSegmentCountStats(segmentCountStats)
+                .withSegmentCodec(builder.getSegmentCodec())
+                .withFastStart(builder.getFastStart());
 
         this.tarFiles = tarFilesBuilder.build();
         long size = this.tarFiles.size();
@@ -192,16 +207,24 @@ public class FileStore extends AbstractFileStore {
                 .withCondition("not enough memory", () -> !sufficientMemory.get())
                 .withCondition("FileStore is shutting down", shutDown::isShutDown),
             this::flush,
-            generation ->
-                defaultSegmentWriterBuilder("c")
+            generation -> {
+                DefaultSegmentWriterBuilder writerBuilder = defaultSegmentWriterBuilder("c")
                     .with(builder.getCacheManager().withAccessTracking("COMPACT", statsProvider))
-                    .withGeneration(generation)
-                    .withoutWriterPool()
-                    .build(this)
+                    .withGeneration(generation);
+                // Concurrent compaction needs a thread safe writer with a
+                // segment buffer writer per compacting thread.
+                if (builder.getGcOptions().getConcurrency() > 1) {
+                    writerBuilder.withWriterPool();
+                } else {
+                    writerBuilder.withoutWriterPool();
+                }
+                return writerBuilder.build(this);
+            }
         );
 
         this.snfeListener = builder.getSnfeListener();
         this.eagerSegmentCaching = builder.getEagerSegmentCaching();
+        this.segmentPrefetcher = newSegmentPrefetcher(builder);
 
         TimerStats flushTimer = statsProvider.getTimer("oak.segment.flush", METRICS_ONLY);
         fileStoreScheduler.scheduleWithFixedDelay(format("TarMK flush [%s]", directory), 5, SECONDS, () -> {
@@ -216,6 +239,15 @@ public class FileStore extends AbstractFileStore {
         fileStoreScheduler.scheduleWithFixedDelay(format("TarMK filer reaper [%s]", directory), 5, SECONDS,
                                                   fileReaper::reap);
 
+        this.consistencyChecker = new OnlineConsistencyChecker(
+            persistence.getJournalFile(),
+            revision -> segmentReader.readNode(RecordId.fromString(tracker, revision)),
+            directory
+        );
+        if (builder.getConsistencyCheckInterval() > 0) {
+            consistencyChecker.start(builder.getConsistencyCheckInterval(), SECONDS);
+        }
+
         fileStoreScheduler.scheduleWithFixedDelay(format("TarMK disk space check [%s]", directory), 1, MINUTES, () -> {
            try (ShutDownCloser ignore = shutDown.tryKeepAlive()) {
                if (shutDown.isShutDown()) {
@@ -235,6 +267,58 @@ public class FileStore extends AbstractFileStore {
         log.debug("TAR files: {}", tarFiles);
     }
 
+    @Nullable
+    private SegmentPrefetcher newSegmentPrefetcher(FileStoreBuilder builder) {
+        if (builder.getSegmentPrefetchDepth() <= 0 || builder.getSegmentCacheSize() <= 0) {
+            return null;
+        }
+
+        log.info("Prefetching segments with depth {} using {} threads",
+            builder.getSegmentPrefetchDepth(), builder.getSegmentPrefetchThreads());
+
+        // Track about as many prefetched segments as fit into the segment cache
+        // assuming an average segment size of 128kB.
+        int maxPending = Math.max(1024, builder.getSegmentCacheSize() * 8);
+
+        return new SegmentPrefetcher(
+            builder.getSegmentPrefetchDepth(),
+            builder.getSegmentPrefetchThreads(),
+            maxPending,
+            new SegmentPrefetcher.SegmentSource() {
+
+                @Override
+                public String getArchiveName(@NotNull SegmentId id) {
+                    try (ShutDownCloser ignored = shutDown.tryKeepAlive()) {
+                        if (shutDown.isShutDown()) {
+                            return null;
+                        }
+                        return tarFiles.getArchiveName(id.getMostSignificantBits(), id.getLeastSignificantBits());
+                    }
+                }
+
+                @Override
+                public boolean containsSegment(@NotNull String archiveName, @NotNull SegmentId id) {
+                    try (ShutDownCloser ignored = shutDown.tryKeepAlive()) {
+                        return !shutDown.isShutDown()
+                            && tarFiles.containsSegment(archiveName, id.getMostSignificantBits(), id.getLeastSignificantBits());
+                    }
+                }
+
+                @Override
+                public Segment readSegment(@NotNull String archiveName, @NotNull SegmentId id) {
+                    try (ShutDownCloser ignored = shutDown.tryKeepAlive()) {
+                        if (shutDown.isShutDown()) {
+                            return null;
+                        }
+                        return readSegmentUncached(tarFiles, archiveName, id);
+                    }
+                }
+            },
+            segmentCache,
+            stats
+        );
+    }
+
     FileStore bind(TarRevisions revisions) throws IOException {
         try (ShutDownCloser ignored = shutDown.keepAlive()) {
             this.revisions = revisions;
@@ -313,6 +397,14 @@ public class FileStore extends AbstractFileStore {
         }
     }
 
+    /**
+     * @return the online consistency checker of this store
+     */
+    @NotNull
+    public ConsistencyCheckMBean getConsistencyChecker() {
+        return consistencyChecker;
+    }
+
     public FileStoreStats getStats() {
         return stats;
     }
@@ -437,6 +529,14 @@ public class FileStore extends AbstractFileStore {
         }
     }
 
+    @NotNull
+    @Override
+    public BinaryReferencesWatermark collectBlobReferences(Consumer<String> collector, @Nullable BinaryReferencesWatermark since) throws IOException {
+        try (ShutDownCloser ignored = shutDown.keepAlive()) {
+            return garbageCollector.collectBlobReferences(collector, since);
+        }
+    }
+
     /**
      * Cancel a running revision garbage collection compaction process as soon as possible.
      * Does nothing if gc is not running.
@@ -463,6 +563,13 @@ public class FileStore extends AbstractFileStore {
 
     @Override
     public void close() {
+        // Stop prefetching and consistency checks before shutting down as
+        // both need the store to be alive while reading segments
+        if (segmentPrefetcher != null) {
+            segmentPrefetcher.close();
+        }
+        consistencyChecker.close();
+
         try (ShutDownCloser ignored = shutDown.shutDown()) {
             // avoid deadlocks by closing (and joining) the background
             // thread before acquiring the synchronization lock
@@ -489,6 +596,14 @@ public class FileStore extends AbstractFileStore {
         log.info("TarMK closed: {}", directory);
     }
 
+    @Override
+    void onSegmentAccess(SegmentId id) {
+        super.onSegmentAccess(id);
+        if (segmentPrefetcher != null) {
+            segmentPrefetcher.onAccess(id);
+        }
+    }
+
     @Override
     public boolean containsSegment(SegmentId id) {
         try (ShutDownCloser ignored = shutDown.keepAlive()) {
@@ -500,7 +615,13 @@ public class FileStore extends AbstractFileStore {
     @NotNull
     public Segment readSegment(final SegmentId id) {
         try (ShutDownCloser ignored = shutDown.keepAlive()) {
-            return segmentCache.getSegment(id, () -> readSegmentUncached(tarFiles, id));
+            return segmentCache.getSegment(id, () -> {
+                Segment segment = readSegmentUncached(tarFiles, id);
+                if (segmentPrefetcher != null) {
+                    segmentPrefetcher.onDemandLoad(segment);
+                }
+                return segment;
+            });
         } catch (ExecutionException | UncheckedExecutionException e) {
             SegmentNotFoundException snfe = asSegmentNotFoundException(e, id);
             snfeListener.notify(id, snfe);
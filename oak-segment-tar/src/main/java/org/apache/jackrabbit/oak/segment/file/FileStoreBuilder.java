@@ -19,6 +19,7 @@
 
 package org.apache.jackrabbit.oak.segment.file;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.collect.Sets.newHashSet;
@@ -44,10 +45,13 @@ import org.apache.jackrabbit.oak.segment.RecordCache;
 import org.apache.jackrabbit.oak.segment.SegmentNotFoundExceptionListener;
 import org.apache.jackrabbit.oak.segment.WriterCacheManager;
 import org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions;
+import org.apache.jackrabbit.oak.segment.compression.SegmentCompression;
 import org.apache.jackrabbit.oak.segment.file.proc.Proc.Backend;
 import org.apache.jackrabbit.oak.segment.file.tar.GCGeneration;
+import org.apache.jackrabbit.oak.segment.file.tar.AccessMode;
 import org.apache.jackrabbit.oak.segment.file.tar.TarPersistence;
 import org.apache.jackrabbit.oak.segment.spi.monitor.*;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentCodec;
 import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentNodeStorePersistence;
 import org.apache.jackrabbit.oak.segment.tool.iotrace.IOTraceLogWriter;
 import org.apache.jackrabbit.oak.segment.tool.iotrace.IOTraceMonitor;
@@ -82,6 +86,12 @@ public class FileStoreBuilder {
 
     private int segmentCacheSize = DEFAULT_SEGMENT_CACHE_MB;
 
+    private boolean offHeapSegmentCache = getBoolean("oak.segment.cache.offHeap");
+
+    private int segmentPrefetchDepth = Integer.getInteger("oak.segment.prefetch.depth", 0);
+
+    private int segmentPrefetchThreads = Integer.getInteger("oak.segment.prefetch.threads", 4);
+
     private int stringCacheSize = DEFAULT_STRING_CACHE_MB;
 
     private int templateCacheSize = DEFAULT_TEMPLATE_CACHE_MB;
@@ -92,11 +102,22 @@ public class FileStoreBuilder {
 
     private int nodeDeduplicationCacheSize = DEFAULT_NODE_CACHE_SIZE;
 
+    private boolean adaptiveDeduplicationCaches = getBoolean("oak.segment.cache.adaptive");
+
     private boolean memoryMapping = MEMORY_MAPPING_DEFAULT;
 
     private boolean offHeapAccess = getBoolean("access.off.heap");
 
-    private SegmentNodeStorePersistence persistence;
+    private boolean fastStart = getBoolean("oak.segment.fastStart");
+
+    @NotNull
+    private AccessMode accessMode = AccessMode.RANDOM;
+
+    @Nullable
+    private SegmentCodec segmentCodec = SegmentCompression.forName(System.getProperty("oak.segment.compression"));
+
+    @Nullable
+    private SegmentNodeStorePersistence persistence;  // null -> tar persistence in directory
 
     @NotNull
     private StatisticsProvider statsProvider = StatisticsProvider.NOOP;
@@ -105,7 +126,7 @@ public class FileStoreBuilder {
     private SegmentGCOptions gcOptions = defaultGCOptions();
 
     @Nullable
-    private EvictingWriteCacheManager cacheManager;
+    private EvictingCacheManager cacheManager;
 
     private class FileStoreGCListener extends DelegatingGCMonitor implements GCListener {
         @Override
@@ -140,6 +161,8 @@ public class FileStoreBuilder {
 
     private boolean eagerSegmentCaching;
 
+    private long consistencyCheckInterval = Long.getLong("oak.segment.check.interval", 0);
+
     private boolean built;
 
     /**
@@ -156,7 +179,6 @@ public class FileStoreBuilder {
     private FileStoreBuilder(@NotNull File directory) {
         this.directory = checkNotNull(directory);
         this.gcListener.registerGCMonitor(new LoggingGCMonitor(LOG));
-        this.persistence = new TarPersistence(directory);
     }
 
     /**
@@ -195,6 +217,52 @@ public class FileStoreBuilder {
         return this;
     }
 
+    /**
+     * Keep the data of the segments in the segment cache in direct memory
+     * outside of the Java heap. The off heap segment cache uses LIRS eviction
+     * and its size (see {@link #withSegmentCacheSize(int)}) includes the off
+     * heap memory.
+     *
+     * @param offHeapSegmentCache
+     * @return this instance
+     */
+    @NotNull
+    public FileStoreBuilder withOffHeapSegmentCache(boolean offHeapSegmentCache) {
+        this.offHeapSegmentCache = offHeapSegmentCache;
+        return this;
+    }
+
+    /**
+     * Asynchronously prefetch the segments referenced from a segment loaded on
+     * demand into the segment cache. Only referenced segments from the same
+     * tar file are prefetched. Prefetching is disabled for a depth of {@code 0}
+     * or when the segment cache is disabled.
+     *
+     * @param segmentPrefetchDepth number of levels of referenced segments to
+     *                             prefetch. {@code 0} disables prefetching.
+     * @return this instance
+     */
+    @NotNull
+    public FileStoreBuilder withSegmentPrefetchDepth(int segmentPrefetchDepth) {
+        checkArgument(segmentPrefetchDepth >= 0, "segmentPrefetchDepth must not be negative");
+        this.segmentPrefetchDepth = segmentPrefetchDepth;
+        return this;
+    }
+
+    /**
+     * Number of threads used for prefetching segments.
+     *
+     * @param segmentPrefetchThreads number of threads. Must be positive.
+     * @return this instance
+     * @see #withSegmentPrefetchDepth(int)
+     */
+    @NotNull
+    public FileStoreBuilder withSegmentPrefetchThreads(int segmentPrefetchThreads) {
+        checkArgument(segmentPrefetchThreads > 0, "segmentPrefetchThreads must be positive");
+        this.segmentPrefetchThreads = segmentPrefetchThreads;
+        return this;
+    }
+
     /**
      * Size of the string cache in MB.
      *
@@ -255,6 +323,24 @@ public class FileStoreBuilder {
         return this;
     }
 
+    /**
+     * Turn adaptive sizing of the deduplication caches on or off. When on,
+     * the string, template and node deduplication caches are resized with
+     * each new generation depending on their hit rates and the heap headroom.
+     * The sizes configured via {@link #withStringDeduplicationCacheSize(int)},
+     * {@link #withTemplateDeduplicationCacheSize(int)} and
+     * {@link #withNodeDeduplicationCacheSize(int)} are used as initial sizes.
+     *
+     * @param adaptiveDeduplicationCaches
+     * @return this instance
+     * @see WriterCacheManager.Adaptive
+     */
+    @NotNull
+    public FileStoreBuilder withAdaptiveDeduplicationCaches(boolean adaptiveDeduplicationCaches) {
+        this.adaptiveDeduplicationCaches = adaptiveDeduplicationCaches;
+        return this;
+    }
+
     /**
      * Turn memory mapping on or off
      *
@@ -267,6 +353,40 @@ public class FileStoreBuilder {
         return this;
     }
 
+    /**
+     * Hint about the pattern in which segments are going to be read. Defaults
+     * to {@link AccessMode#RANDOM}. Tools scanning the whole repository should
+     * use {@link AccessMode#SEQUENTIAL}, which reads ahead larger blocks of
+     * tar files that are not memory mapped. Memory mapped tar files are always
+     * read without copying the segments. This setting only applies to the
+     * default tar persistence and is ignored for custom persistence.
+     *
+     * @param accessMode the access mode
+     * @return this instance
+     * @see #withCustomPersistence(SegmentNodeStorePersistence)
+     */
+    @NotNull
+    public FileStoreBuilder withAccessMode(@NotNull AccessMode accessMode) {
+        this.accessMode = checkNotNull(accessMode);
+        return this;
+    }
+
+    /**
+     * Codec for compressing data segments before they are written to the
+     * persistence. Defaults to the codec named by the {@code
+     * oak.segment.compression} system property (e.g. {@code deflate}) and to
+     * no compression if the property is not set. Compressed segments can
+     * always be read, regardless of this setting.
+     *
+     * @param segmentCodec the codec or {@code null} to disable compression
+     * @return this instance
+     */
+    @NotNull
+    public FileStoreBuilder withSegmentCodec(@Nullable SegmentCodec segmentCodec) {
+        this.segmentCodec = segmentCodec;
+        return this;
+    }
+
     /**
      * Turn off heap access on or off
      *
@@ -397,8 +517,42 @@ public class FileStoreBuilder {
         return this;
     }
 
+    /**
+     * Interval in seconds between the online consistency checks of the
+     * revisions written since the last check. Checks run in the background
+     * with minimum priority. A value of {@code 0} disables periodic checks.
+     *
+     * @param consistencyCheckInterval interval in seconds. Must not be
+     *                                 negative.
+     * @return this instance
+     * @see OnlineConsistencyChecker
+     */
+    @NotNull
+    public FileStoreBuilder withConsistencyCheckInterval(long consistencyCheckInterval) {
+        checkArgument(consistencyCheckInterval >= 0, "consistencyCheckInterval must not be negative");
+        this.consistencyCheckInterval = consistencyCheckInterval;
+        return this;
+    }
+
+    /**
+     * Enable the fast start. When enabled, a snapshot of the metadata of the
+     * tar files is written when the file store is closed. When the file store
+     * is opened again, the tar files contained in the snapshot are opened
+     * lazily, on first access, instead of being opened and validated on
+     * startup. After an unclean shutdown there is no snapshot and all tar
+     * files are opened and validated as usual.
+     *
+     * @param fastStart enables the fast start iff {@code true}.
+     * @return this instance
+     */
+    @NotNull
+    public FileStoreBuilder withFastStart(boolean fastStart) {
+        this.fastStart = fastStart;
+        return this;
+    }
+
     public Backend buildProcBackend(AbstractFileStore fileStore) throws IOException {
-        return new FileStoreProcBackend(fileStore, persistence);
+        return new FileStoreProcBackend(fileStore, getPersistence());
     }
 
     /**
@@ -423,7 +577,7 @@ public class FileStoreBuilder {
         checkState(!built, "Cannot re-use builder");
         built = true;
         directory.mkdirs();
-        TarRevisions revisions = new TarRevisions(persistence);
+        TarRevisions revisions = new TarRevisions(getPersistence());
         LOG.info("Creating file store {}", this);
         FileStore store;
         try {
@@ -463,7 +617,7 @@ public class FileStoreBuilder {
         checkState(directory.exists() && directory.isDirectory(),
                 "%s does not exist or is not a directory", directory);
         built = true;
-        ReadOnlyRevisions revisions = new ReadOnlyRevisions(persistence);
+        ReadOnlyRevisions revisions = new ReadOnlyRevisions(getPersistence());
         LOG.info("Creating file store {}", this);
         ReadOnlyFileStore store;
         try {
@@ -498,6 +652,18 @@ public class FileStoreBuilder {
         return segmentCacheSize;
     }
 
+    boolean getOffHeapSegmentCache() {
+        return offHeapSegmentCache;
+    }
+
+    int getSegmentPrefetchDepth() {
+        return segmentPrefetchDepth;
+    }
+
+    int getSegmentPrefetchThreads() {
+        return segmentPrefetchThreads;
+    }
+
     int getStringCacheSize() {
         return stringCacheSize;
     }
@@ -506,6 +672,11 @@ public class FileStoreBuilder {
         return templateCacheSize;
     }
 
+    @Nullable
+    SegmentCodec getSegmentCodec() {
+        return segmentCodec;
+    }
+
     boolean getMemoryMapping() {
         return memoryMapping;
     }
@@ -534,7 +705,11 @@ public class FileStoreBuilder {
         return snfeListener;
     }
 
+    @NotNull
     SegmentNodeStorePersistence getPersistence() {
+        if (persistence == null) {
+            persistence = new TarPersistence(directory, accessMode);
+        }
         return persistence;
     }
 
@@ -544,14 +719,20 @@ public class FileStoreBuilder {
      * @see #withNodeDeduplicationCacheSize(int)
      * @see #withStringDeduplicationCacheSize(int)
      * @see #withTemplateDeduplicationCacheSize(int)
+     * @see #withAdaptiveDeduplicationCaches(boolean)
      */
     @NotNull
     public WriterCacheManager getCacheManager() {
         if (cacheManager == null) {
-            cacheManager = new EvictingWriteCacheManager(stringDeduplicationCacheSize,
-                    templateDeduplicationCacheSize, nodeDeduplicationCacheSize);
+            if (adaptiveDeduplicationCaches) {
+                cacheManager = new EvictingAdaptiveWriteCacheManager(stringDeduplicationCacheSize,
+                        templateDeduplicationCacheSize, nodeDeduplicationCacheSize);
+            } else {
+                cacheManager = new EvictingWriteCacheManager(stringDeduplicationCacheSize,
+                        templateDeduplicationCacheSize, nodeDeduplicationCacheSize);
+            }
         }
-        return cacheManager;
+        return (WriterCacheManager) cacheManager;
     }
 
     IOMonitor getIOMonitor() {
@@ -575,6 +756,14 @@ public class FileStoreBuilder {
         return eagerSegmentCaching;
     }
 
+    boolean getFastStart() {
+        return fastStart;
+    }
+
+    long getConsistencyCheckInterval() {
+        return consistencyCheckInterval;
+    }
+
     @Override
     public String toString() {
         return "FileStoreBuilder{" +
@@ -583,18 +772,34 @@ public class FileStoreBuilder {
                 ", blobStore=" + blobStore +
                 ", maxFileSize=" + maxFileSize +
                 ", segmentCacheSize=" + segmentCacheSize +
+                ", offHeapSegmentCache=" + offHeapSegmentCache +
+                ", segmentPrefetchDepth=" + segmentPrefetchDepth +
+                ", segmentPrefetchThreads=" + segmentPrefetchThreads +
                 ", stringCacheSize=" + stringCacheSize +
                 ", templateCacheSize=" + templateCacheSize +
                 ", stringDeduplicationCacheSize=" + stringDeduplicationCacheSize +
                 ", templateDeduplicationCacheSize=" + templateDeduplicationCacheSize +
                 ", nodeDeduplicationCacheSize=" + nodeDeduplicationCacheSize +
+                ", adaptiveDeduplicationCaches=" + adaptiveDeduplicationCaches +
                 ", memoryMapping=" + memoryMapping +
                 ", offHeapAccess=" + offHeapAccess +
+                ", accessMode=" + accessMode +
+                ", segmentCodec=" + segmentCodec +
+                ", consistencyCheckInterval=" + consistencyCheckInterval +
+                ", fastStart=" + fastStart +
                 ", gcOptions=" + gcOptions +
                 '}';
     }
 
-    private static class EvictingWriteCacheManager extends WriterCacheManager.Default {
+    private interface EvictingCacheManager {
+
+        void evictOldGeneration(int newGeneration);
+
+        void evictGeneration(int newGeneration);
+    }
+
+    private static class EvictingWriteCacheManager extends WriterCacheManager.Default
+            implements EvictingCacheManager {
         public EvictingWriteCacheManager(
                 int stringCacheSize,
                 int templateCacheSize,
@@ -604,7 +809,8 @@ public class FileStoreBuilder {
                     PriorityCache.factory(nodeCacheSize, new NodeCacheWeigher()));
         }
 
-        void evictOldGeneration(final int newGeneration) {
+        @Override
+        public void evictOldGeneration(final int newGeneration) {
             evictCaches(new Predicate<Integer>() {
                 @Override
                 public boolean apply(Integer generation) {
@@ -613,7 +819,8 @@ public class FileStoreBuilder {
             });
         }
 
-        void evictGeneration(final int newGeneration) {
+        @Override
+        public void evictGeneration(final int newGeneration) {
             evictCaches(new Predicate<Integer>() {
                 @Override
                 public boolean apply(Integer generation) {
@@ -622,4 +829,25 @@ public class FileStoreBuilder {
             });
         }
     }
+
+    private static class EvictingAdaptiveWriteCacheManager extends WriterCacheManager.Adaptive
+            implements EvictingCacheManager {
+        public EvictingAdaptiveWriteCacheManager(
+                int stringCacheSize,
+                int templateCacheSize,
+                int nodeCacheSize) {
+            super(stringCacheSize, templateCacheSize, nodeCacheSize);
+        }
+
+        @Override
+        public void evictOldGeneration(final int newGeneration) {
+            evictCaches(generation -> generation < newGeneration);
+            resizeNodeCache();
+        }
+
+        @Override
+        public void evictGeneration(final int newGeneration) {
+            evictCaches(generation -> generation == newGeneration);
+        }
+    }
 }
@@ -39,7 +39,10 @@ public class FileStoreStats implements FileStoreStatsMBean, FileStoreMonitor, Se
     public static final String SEGMENT_REPO_SIZE = "SEGMENT_REPO_SIZE";
     public static final String SEGMENT_WRITES = "SEGMENT_WRITES";
     public static final String JOURNAL_WRITES = "JOURNAL_WRITES";
+    public static final String SEGMENT_PREFETCHES = "SEGMENT_PREFETCHES";
     private static final String SNFE_COUNT = "SNFE_COUNT";
+    private static final String SEGMENT_PREFETCH_HITS = "SEGMENT_PREFETCH_HITS";
+    private static final String SEGMENT_PREFETCH_WASTE = "SEGMENT_PREFETCH_WASTE";
 
     private final StatisticsProvider statisticsProvider;
     private final FileStore store;
@@ -47,6 +50,9 @@ public class FileStoreStats implements FileStoreStatsMBean, FileStoreMonitor, Se
     private final CounterStats repoSize;
     private final MeterStats journalWriteStats;
     private final CounterStats snfeCountStats;
+    private final MeterStats prefetchStats;
+    private final CounterStats prefetchHitStats;
+    private final CounterStats prefetchWasteStats;
 
     public FileStoreStats(StatisticsProvider statisticsProvider, FileStore store, long initialSize) {
         this.statisticsProvider = statisticsProvider;
@@ -55,6 +61,9 @@ public class FileStoreStats implements FileStoreStatsMBean, FileStoreMonitor, Se
         this.repoSize = statisticsProvider.getCounterStats(SEGMENT_REPO_SIZE, StatsOptions.DEFAULT);
         this.journalWriteStats = statisticsProvider.getMeter(JOURNAL_WRITES, StatsOptions.DEFAULT);
         this.snfeCountStats = statisticsProvider.getCounterStats(SNFE_COUNT, StatsOptions.DEFAULT);
+        this.prefetchStats = statisticsProvider.getMeter(SEGMENT_PREFETCHES, StatsOptions.DEFAULT);
+        this.prefetchHitStats = statisticsProvider.getCounterStats(SEGMENT_PREFETCH_HITS, StatsOptions.DEFAULT);
+        this.prefetchWasteStats = statisticsProvider.getCounterStats(SEGMENT_PREFETCH_WASTE, StatsOptions.DEFAULT);
         repoSize.inc(initialSize);
     }
 
@@ -68,6 +77,29 @@ public class FileStoreStats implements FileStoreStatsMBean, FileStoreMonitor, Se
         snfeCountStats.inc();
     }
 
+    //~-----------------------------< SegmentPrefetcher >
+
+    /**
+     * A segment has been prefetched into the segment cache.
+     */
+    void prefetched() {
+        prefetchStats.mark();
+    }
+
+    /**
+     * A prefetched segment has been accessed.
+     */
+    void prefetchHit() {
+        prefetchHitStats.inc();
+    }
+
+    /**
+     * A prefetched segment has not been accessed before being evicted.
+     */
+    void prefetchWasted() {
+        prefetchWasteStats.inc();
+    }
+
     //~-----------------------------< FileStoreMonitor >
 
     @Override
@@ -133,6 +165,27 @@ public class FileStoreStats implements FileStoreStatsMBean, FileStoreMonitor, Se
         return asCompositeData(getTimeSeries(JOURNAL_WRITES), JOURNAL_WRITES);
     }
 
+    @Override
+    public long getPrefetchCount() {
+        return prefetchStats.getCount();
+    }
+
+    @Override
+    public long getPrefetchHitCount() {
+        return prefetchHitStats.getCount();
+    }
+
+    @Override
+    public long getPrefetchWasteCount() {
+        return prefetchWasteStats.getCount();
+    }
+
+    @NotNull
+    @Override
+    public CompositeData getPrefetchStats() {
+        return asCompositeData(getTimeSeries(SEGMENT_PREFETCHES), SEGMENT_PREFETCHES);
+    }
+
     private TimeSeries getTimeSeries(String name) {
         return statisticsProvider.getStats().getTimeSeries(name, true);
     }
@@ -58,4 +58,25 @@ public interface FileStoreStatsMBean {
      * @return  time series of the writes to journal
      */
     CompositeData getJournalWriteStatsAsCompositeData();
+
+    /**
+     * @return  number of segments prefetched into the segment cache
+     */
+    long getPrefetchCount();
+
+    /**
+     * @return  number of prefetched segments that were accessed
+     */
+    long getPrefetchHitCount();
+
+    /**
+     * @return  number of prefetched segments that were evicted or loaded
+     *          again before being accessed
+     */
+    long getPrefetchWasteCount();
+
+    /**
+     * @return  time series of the segments prefetched into the segment cache
+     */
+    CompositeData getPrefetchStats();
 }
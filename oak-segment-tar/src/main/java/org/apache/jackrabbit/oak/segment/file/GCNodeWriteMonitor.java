@@ -18,6 +18,11 @@
  */
 package org.apache.jackrabbit.oak.segment.file;
 
+import static com.google.common.collect.Maps.newTreeMap;
+
+import java.util.Map;
+import java.util.SortedMap;
+
 import org.apache.jackrabbit.oak.spi.gc.GCMonitor;
 import org.jetbrains.annotations.NotNull;
 
@@ -62,6 +67,11 @@ public class GCNodeWriteMonitor {
      */
     private long binaries;
 
+    /**
+     * Number of compacted nodes per compacting thread
+     */
+    private final SortedMap<String, Long> workerNodes = newTreeMap();
+
     private boolean running = false;
 
     public GCNodeWriteMonitor(long gcProgressLog, @NotNull GCMonitor gcMonitor) {
@@ -88,15 +98,20 @@ public class GCNodeWriteMonitor {
             gcMonitor.info("unable to estimate number of nodes for compaction, missing gc history.");
         }
         nodes = 0;
+        workerNodes.clear();
         start = System.currentTimeMillis();
         running = true;
     }
 
     public synchronized void onNode() {
         nodes++;
+        workerNodes.merge(Thread.currentThread().getName(), 1L, Long::sum);
         if (gcProgressLog > 0 && nodes % gcProgressLog == 0) {
             gcMonitor.info("compacted {} nodes, {} properties, {} binaries in {} ms. {}",
                 nodes, properties, binaries, System.currentTimeMillis() - start, getPercentageDone());
+            if (workerNodes.size() > 1) {
+                gcMonitor.info("compacted nodes per worker: {}", workerNodes);
+            }
         }
     }
 
@@ -119,6 +134,14 @@ public class GCNodeWriteMonitor {
         return nodes;
     }
 
+    /**
+     * Compacted nodes in current cycle per compacting thread. With concurrent
+     * compaction each worker thread shows up separately.
+     */
+    public synchronized Map<String, Long> getCompactedNodesPerWorker() {
+        return newTreeMap(workerNodes);
+    }
+
     /**
      * Estimated nodes to compact in current cycle. Can be {@code -1} if the
      * estimation could not be performed.
@@ -42,6 +42,7 @@ import org.apache.jackrabbit.oak.segment.file.tar.GCGeneration;
 import org.apache.jackrabbit.oak.segment.file.tar.TarFiles;
 import org.apache.jackrabbit.oak.spi.blob.BlobStore;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 class GarbageCollector {
 
@@ -320,9 +321,19 @@ class GarbageCollector {
      *                  found
      */
     synchronized void collectBlobReferences(Consumer<String> collector) throws IOException {
+        collectBlobReferences(collector, null);
+    }
+
+    synchronized BinaryReferencesWatermark collectBlobReferences(Consumer<String> collector, @Nullable BinaryReferencesWatermark since) throws IOException {
         segmentWriter.flush();
-        tarFiles.collectBlobReferences(collector,
-            newOldReclaimer(lastCompactionType, getGcGeneration(), gcOptions.getRetainedGenerations()));
+        GCGeneration generation = getGcGeneration();
+        int sinceIndex = -1;
+        if (since != null && since.getFullGeneration() == generation.getFullGeneration()) {
+            sinceIndex = since.getTarIndex();
+        }
+        int tarIndex = tarFiles.collectBlobReferences(collector,
+            newOldReclaimer(lastCompactionType, generation, gcOptions.getRetainedGenerations()), sinceIndex);
+        return new BinaryReferencesWatermark(generation.getFullGeneration(), tarIndex);
     }
 
     void cancel() {
@@ -0,0 +1,422 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file;
+
+import static java.lang.Thread.MIN_PRIORITY;
+import static java.lang.Thread.currentThread;
+import static java.util.Collections.emptyList;
+import static org.apache.jackrabbit.oak.api.Type.BINARIES;
+import static org.apache.jackrabbit.oak.api.Type.BINARY;
+import static org.apache.jackrabbit.oak.commons.PathUtils.concat;
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.apache.jackrabbit.oak.api.Blob;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.segment.SegmentNodeState;
+import org.apache.jackrabbit.oak.segment.SegmentNotFoundException;
+import org.apache.jackrabbit.oak.segment.spi.persistence.JournalFile;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStateDiff;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Incremental consistency check of a {@link FileStore} while it is in use.
+ * <p>
+ * Each check verifies the records of the newest revision in the journal,
+ * which were written since the last verified revision. To this end the newest
+ * revision is compared against the last verified one and all changed
+ * properties and added or changed nodes are read. The last verified revision
+ * is persisted, so checks resume where they left off after a restart.
+ * <p>
+ * The whole tree is checked when there is no verified revision yet, when the
+ * last verified revision is no longer in the journal or readable, or when a
+ * compaction has run since. Compaction rewrites all records, so all of them
+ * need to be verified once.
+ * <p>
+ * Periodic checks run on a background thread with minimum priority.
+ */
+public class OnlineConsistencyChecker implements ConsistencyCheckMBean, Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(OnlineConsistencyChecker.class);
+
+    /**
+     * Name of the file the progress of the checker is persisted to.
+     */
+    static final String PROGRESS_FILE_NAME = "consistency.properties";
+
+    private static final String REVISION = "revision";
+
+    private static final String TIMESTAMP = "timestamp";
+
+    private static final int MAX_INCONSISTENT_PATHS = 100;
+
+    @NotNull
+    private final JournalFile journal;
+
+    @NotNull
+    private final Function<String, SegmentNodeState> revisionReader;
+
+    @NotNull
+    private final File progressFile;
+
+    private final Scheduler scheduler = new Scheduler("TarMK consistency check");
+
+    private final Object checkLock = new Object();
+
+    private final AtomicLong verifiedRevisionCount = new AtomicLong();
+
+    private final AtomicLong failedCheckCount = new AtomicLong();
+
+    private volatile boolean closed;
+
+    private volatile String lastVerifiedRevision;
+
+    private volatile long lastVerifiedTimestamp;
+
+    private volatile long lastCheckTime;
+
+    private volatile long lastCheckDuration;
+
+    private volatile long checkedNodeCount;
+
+    private volatile List<String> inconsistentPaths = emptyList();
+
+    private volatile String status = "Idle";
+
+    /**
+     * @param journal        the journal of the store
+     * @param revisionReader function reading the root node state of a
+     *                       revision from the journal
+     * @param directory      directory to persist the progress of the checker to
+     */
+    OnlineConsistencyChecker(
+            @NotNull JournalFile journal,
+            @NotNull Function<String, SegmentNodeState> revisionReader,
+            @NotNull File directory) {
+        this.journal = journal;
+        this.revisionReader = revisionReader;
+        this.progressFile = new File(directory, PROGRESS_FILE_NAME);
+        loadProgress();
+    }
+
+    /**
+     * Check the consistency periodically in the background.
+     *
+     * @param interval the delay between the end of a check and the start of
+     *                 the next one
+     * @param unit     the unit of {@code interval}
+     */
+    void start(long interval, @NotNull TimeUnit unit) {
+        scheduler.scheduleWithFixedDelay("TarMK consistency check", interval, unit, () -> {
+            currentThread().setPriority(MIN_PRIORITY);
+            checkConsistency();
+        });
+    }
+
+    /**
+     * Cancel a running check and stop checking in the background.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        scheduler.close();
+    }
+
+    @Override
+    public String checkConsistency() {
+        synchronized (checkLock) {
+            if (closed) {
+                return status;
+            }
+            status = "Running";
+            long start = System.currentTimeMillis();
+            try {
+                status = check();
+            } catch (IOException | RuntimeException e) {
+                log.warn("Consistency check failed", e);
+                status = "Failed: " + e.getMessage();
+            } finally {
+                lastCheckTime = System.currentTimeMillis();
+                lastCheckDuration = lastCheckTime - start;
+            }
+            return status;
+        }
+    }
+
+    private String check() throws IOException {
+        JournalEntry newest = null;
+        int newEntries = 0;
+        boolean baseFound = false;
+        try (JournalReader reader = new JournalReader(journal)) {
+            while (reader.hasNext()) {
+                JournalEntry entry = reader.next();
+                if (entry.getRevision().equals(lastVerifiedRevision)) {
+                    baseFound = true;
+                    break;
+                }
+                if (newest == null) {
+                    newest = entry;
+                }
+                newEntries++;
+            }
+        }
+        if (newest == null) {
+            return lastVerifiedRevision == null
+                    ? "No revisions to check"
+                    : "Consistent up to revision " + lastVerifiedRevision;
+        }
+
+        SegmentNodeState after = revisionReader.apply(newest.getRevision());
+        NodeState before = baseFound ? readBase(after) : EMPTY_NODE;
+        if (before == EMPTY_NODE) {
+            log.info("Checking consistency of the full tree at revision {}", newest.getRevision());
+        } else {
+            log.debug("Checking consistency of revision {} against {}", newest.getRevision(), lastVerifiedRevision);
+        }
+
+        Check check = new Check();
+        check.diff(before, after, "/");
+        if (closed) {
+            return "Cancelled";
+        }
+
+        checkedNodeCount = check.nodes;
+        inconsistentPaths = check.paths;
+        if (!check.paths.isEmpty()) {
+            failedCheckCount.incrementAndGet();
+            log.warn("Inconsistent revision {}. Paths: {}", newest.getRevision(), check.paths);
+            return "Inconsistent revision " + newest.getRevision();
+        }
+
+        lastVerifiedRevision = newest.getRevision();
+        lastVerifiedTimestamp = newest.getTimestamp();
+        verifiedRevisionCount.addAndGet(newEntries);
+        saveProgress();
+        return "Consistent up to revision " + lastVerifiedRevision;
+    }
+
+    /**
+     * Read the last verified revision to compare {@code after} against.
+     *
+     * @return the last verified revision or {@link
+     * org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState#EMPTY_NODE} if
+     * the full tree has to be checked.
+     */
+    @NotNull
+    private NodeState readBase(@NotNull SegmentNodeState after) {
+        try {
+            SegmentNodeState before = revisionReader.apply(lastVerifiedRevision);
+            if (!before.getRecordId().getSegmentId().getGcGeneration().equals(
+                    after.getRecordId().getSegmentId().getGcGeneration())) {
+                return EMPTY_NODE;
+            }
+            return before;
+        } catch (SegmentNotFoundException | IllegalArgumentException e) {
+            log.info("Last verified revision {} is not available", lastVerifiedRevision, e);
+            return EMPTY_NODE;
+        }
+    }
+
+    private class Check {
+
+        private final List<String> paths = new ArrayList<>();
+
+        private long nodes;
+
+        void diff(NodeState before, NodeState after, String path) {
+            if (closed) {
+                return;
+            }
+            nodes++;
+            try {
+                after.compareAgainstBaseState(before, new Diff(this, path));
+            } catch (RuntimeException e) {
+                inconsistent(path, e);
+            }
+        }
+
+        void inconsistent(String path, Exception e) {
+            log.debug("Inconsistent path {}", path, e);
+            if (paths.size() < MAX_INCONSISTENT_PATHS && !paths.contains(path)) {
+                paths.add(path);
+            }
+        }
+
+    }
+
+    private class Diff implements NodeStateDiff {
+
+        private final Check check;
+
+        private final String path;
+
+        Diff(Check check, String path) {
+            this.check = check;
+            this.path = path;
+        }
+
+        @Override
+        public boolean propertyAdded(PropertyState after) {
+            return checkProperty(after);
+        }
+
+        @Override
+        public boolean propertyChanged(PropertyState before, PropertyState after) {
+            return checkProperty(after);
+        }
+
+        @Override
+        public boolean propertyDeleted(PropertyState before) {
+            return !closed;
+        }
+
+        @Override
+        public boolean childNodeAdded(String name, NodeState after) {
+            check.diff(EMPTY_NODE, after, concat(path, name));
+            return !closed;
+        }
+
+        @Override
+        public boolean childNodeChanged(String name, NodeState before, NodeState after) {
+            check.diff(before, after, concat(path, name));
+            return !closed;
+        }
+
+        @Override
+        public boolean childNodeDeleted(String name, NodeState before) {
+            return !closed;
+        }
+
+        private boolean checkProperty(PropertyState property) {
+            try {
+                Type<?> type = property.getType();
+                if (type == BINARY) {
+                    property.getValue(BINARY).length();
+                } else if (type == BINARIES) {
+                    for (Blob blob : property.getValue(BINARIES)) {
+                        blob.length();
+                    }
+                } else {
+                    property.getValue(type);
+                }
+            } catch (RuntimeException e) {
+                check.inconsistent(path, e);
+            }
+            return !closed;
+        }
+
+    }
+
+    private void loadProgress() {
+        if (!progressFile.exists()) {
+            return;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(progressFile)) {
+            properties.load(in);
+            lastVerifiedRevision = properties.getProperty(REVISION);
+            lastVerifiedTimestamp = Long.parseLong(properties.getProperty(TIMESTAMP, "0"));
+        } catch (IOException | NumberFormatException e) {
+            log.warn("Unable to load the progress of the consistency check from {}", progressFile, e);
+        }
+    }
+
+    private void saveProgress() {
+        Properties properties = new Properties();
+        properties.setProperty(REVISION, lastVerifiedRevision);
+        properties.setProperty(TIMESTAMP, String.valueOf(lastVerifiedTimestamp));
+        File tmp = new File(progressFile.getParentFile(), progressFile.getName() + ".tmp");
+        try {
+            try (OutputStream out = new FileOutputStream(tmp)) {
+                properties.store(out, "Online consistency check");
+            }
+            Files.move(tmp.toPath(), progressFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.warn("Unable to save the progress of the consistency check to {}", progressFile, e);
+        }
+    }
+
+    @Override
+    @Nullable
+    public String getLastVerifiedRevision() {
+        return lastVerifiedRevision;
+    }
+
+    @Override
+    public long getLastVerifiedTimestamp() {
+        return lastVerifiedTimestamp;
+    }
+
+    @Override
+    public long getLastCheckTime() {
+        return lastCheckTime;
+    }
+
+    @Override
+    public long getLastCheckDuration() {
+        return lastCheckDuration;
+    }
+
+    @Override
+    public long getVerifiedRevisionCount() {
+        return verifiedRevisionCount.get();
+    }
+
+    @Override
+    public long getCheckedNodeCount() {
+        return checkedNodeCount;
+    }
+
+    @Override
+    public long getFailedCheckCount() {
+        return failedCheckCount.get();
+    }
+
+    @Override
+    public String[] getInconsistentPaths() {
+        return inconsistentPaths.toArray(new String[0]);
+    }
+
+    @Override
+    public String getStatus() {
+        return status;
+    }
+
+}
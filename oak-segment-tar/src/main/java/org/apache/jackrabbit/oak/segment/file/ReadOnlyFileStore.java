@@ -38,8 +38,10 @@ import org.apache.jackrabbit.oak.segment.Segment;
 import org.apache.jackrabbit.oak.segment.SegmentId;
 import org.apache.jackrabbit.oak.segment.SegmentWriter;
 import org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions;
+import org.apache.jackrabbit.oak.segment.file.tar.GCGeneration;
 import org.apache.jackrabbit.oak.segment.file.tar.TarFiles;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -175,7 +177,19 @@ public class ReadOnlyFileStore extends AbstractFileStore {
 
     @Override
     public void collectBlobReferences(Consumer<String> collector) throws IOException {
-        tarFiles.collectBlobReferences(collector,
-            newOldReclaimer(SegmentGCOptions.GCType.FULL, revisions.getHead().getSegmentId().getGcGeneration(), gcRetainedGenerations));
+        collectBlobReferences(collector, null);
+    }
+
+    @NotNull
+    @Override
+    public BinaryReferencesWatermark collectBlobReferences(Consumer<String> collector, @Nullable BinaryReferencesWatermark since) throws IOException {
+        GCGeneration generation = revisions.getHead().getSegmentId().getGcGeneration();
+        int sinceIndex = -1;
+        if (since != null && since.getFullGeneration() == generation.getFullGeneration()) {
+            sinceIndex = since.getTarIndex();
+        }
+        int tarIndex = tarFiles.collectBlobReferences(collector,
+            newOldReclaimer(SegmentGCOptions.GCType.FULL, generation, gcRetainedGenerations), sinceIndex);
+        return new BinaryReferencesWatermark(generation.getFullGeneration(), tarIndex);
     }
 }
@@ -0,0 +1,268 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.io.Closeable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor.DiscardPolicy;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import org.apache.jackrabbit.core.data.util.NamedThreadFactory;
+import org.apache.jackrabbit.oak.segment.Segment;
+import org.apache.jackrabbit.oak.segment.SegmentCache;
+import org.apache.jackrabbit.oak.segment.SegmentId;
+import org.apache.jackrabbit.oak.segment.SegmentNotFoundException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Asynchronous read-ahead of segments into the {@link SegmentCache}. Whenever
+ * a segment is loaded on demand, the data segments it references and that are
+ * contained in the same tar file are loaded into the segment cache in the
+ * background. This is repeated for the prefetched segments until the
+ * configured prefetch depth is reached.
+ * <p>
+ * Prefetching is best effort: prefetch tasks are dropped when the queue of
+ * pending tasks is full and failures to read a segment are ignored.
+ * <p>
+ * Prefetched segments are tracked until they are either accessed (a hit) or
+ * loaded on demand again or dropped from tracking without ever having been
+ * accessed (a waste).
+ */
+class SegmentPrefetcher implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(SegmentPrefetcher.class);
+
+    /**
+     * Maximum number of prefetch tasks waiting for execution.
+     */
+    private static final int MAX_QUEUED_TASKS = 1024;
+
+    /**
+     * Maximum number of slots of the {@link #pendingFilter}.
+     */
+    private static final int MAX_FILTER_SLOTS = 1 << 20;
+
+    /**
+     * Source of the segments to prefetch.
+     */
+    interface SegmentSource {
+
+        /**
+         * @return the name of the tar file containing the segment with the
+         * given id or {@code null} if not known.
+         */
+        @Nullable
+        String getArchiveName(@NotNull SegmentId id);
+
+        /**
+         * @return {@code true} iff the tar file with the given name contains
+         * the segment with the given id.
+         */
+        boolean containsSegment(@NotNull String archiveName, @NotNull SegmentId id);
+
+        /**
+         * @return the segment with the given id read from the tar file with
+         * the given name or {@code null} if that tar file does not contain
+         * the segment.
+         */
+        @Nullable
+        Segment readSegment(@NotNull String archiveName, @NotNull SegmentId id);
+    }
+
+    @NotNull
+    private final SegmentSource source;
+
+    @NotNull
+    private final SegmentCache segmentCache;
+
+    @NotNull
+    private final FileStoreStats stats;
+
+    private final int depth;
+
+    @NotNull
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Segments prefetched but not yet accessed.
+     */
+    @NotNull
+    private final Cache<SegmentId, Boolean> pending;
+
+    /**
+     * Counting filter over the ids in {@link #pending}. A slot holds the
+     * number of pending ids mapping to it. This lets {@link #onAccess(SegmentId)},
+     * which is called on every access to a memoised segment, skip the lookup
+     * in {@code pending} for all but a few of the segments not prefetched.
+     */
+    @NotNull
+    private final AtomicIntegerArray pendingFilter;
+
+    /**
+     * @param depth        number of levels of referenced segments to prefetch
+     * @param threads      number of threads prefetching segments
+     * @param maxPending   maximum number of prefetched segments to track for
+     *                     hits and waste
+     * @param source       source of the segments to prefetch
+     * @param segmentCache cache to prefetch the segments into
+     * @param stats        statistics receiving the prefetch metrics
+     */
+    SegmentPrefetcher(
+        int depth,
+        int threads,
+        int maxPending,
+        @NotNull SegmentSource source,
+        @NotNull SegmentCache segmentCache,
+        @NotNull FileStoreStats stats
+    ) {
+        checkArgument(depth > 0, "depth must be positive");
+        checkArgument(threads > 0, "threads must be positive");
+        this.depth = depth;
+        this.source = checkNotNull(source);
+        this.segmentCache = checkNotNull(segmentCache);
+        this.stats = checkNotNull(stats);
+        this.executor = new ThreadPoolExecutor(
+            threads, threads, 0, MILLISECONDS,
+            new LinkedBlockingQueue<>(MAX_QUEUED_TASKS),
+            new NamedThreadFactory("TarMK segment prefetch"),
+            new DiscardPolicy()
+        );
+        this.pending = CacheBuilder.newBuilder()
+            .maximumSize(maxPending)
+            .removalListener(this::onRemove)
+            .build();
+        this.pendingFilter = new AtomicIntegerArray(
+            Math.min(MAX_FILTER_SLOTS, Integer.highestOneBit(Math.max(1, maxPending)) << 2));
+    }
+
+    private int filterSlot(@NotNull SegmentId id) {
+        long bits = id.getMostSignificantBits() ^ id.getLeastSignificantBits();
+        return Long.hashCode(bits) & (pendingFilter.length() - 1);
+    }
+
+    private void addPending(@NotNull SegmentId id) {
+        // Count the id in the filter *before* adding it, so onAccess never
+        // misses a pending id
+        pendingFilter.incrementAndGet(filterSlot(id));
+        pending.put(id, Boolean.TRUE);
+    }
+
+    private void onRemove(@NotNull RemovalNotification<SegmentId, Boolean> notification) {
+        SegmentId id = notification.getKey();
+        if (id != null) {
+            pendingFilter.decrementAndGet(filterSlot(id));
+        }
+        if (notification.wasEvicted()) {
+            stats.prefetchWasted();
+        }
+    }
+
+    /**
+     * Notify this prefetcher about a segment that has been loaded on demand.
+     * Schedules the prefetching of the segments it references.
+     */
+    void onDemandLoad(@NotNull Segment segment) {
+        SegmentId id = segment.getSegmentId();
+        if (pending.asMap().remove(id) != null) {
+            // Prefetched, but got evicted from the cache before being accessed
+            stats.prefetchWasted();
+        }
+        if (id.isDataSegmentId()) {
+            executor.execute(() -> prefetchReferences(segment, null, depth));
+        }
+    }
+
+    /**
+     * Notify this prefetcher about an access to a segment memoised in its id.
+     */
+    void onAccess(@NotNull SegmentId id) {
+        if (pendingFilter.get(filterSlot(id)) > 0 && pending.asMap().remove(id) != null) {
+            stats.prefetchHit();
+        }
+    }
+
+    private void prefetchReferences(@NotNull Segment segment, @Nullable String archiveName, int depth) {
+        if (archiveName == null) {
+            archiveName = source.getArchiveName(segment.getSegmentId());
+            if (archiveName == null) {
+                return;
+            }
+        }
+        String archive = archiveName;
+        for (SegmentId reference : segment.getReferencedSegmentIds()) {
+            if (reference.isDataSegmentId() && source.containsSegment(archive, reference)) {
+                executor.execute(() -> prefetch(reference, archive, depth));
+            }
+        }
+    }
+
+    private void prefetch(@NotNull SegmentId id, @NotNull String archiveName, int depth) {
+        boolean[] loaded = {false};
+        Segment segment;
+        try {
+            segment = segmentCache.getSegment(id, () -> {
+                Segment s = source.readSegment(archiveName, id);
+                if (s == null) {
+                    throw new SegmentNotFoundException(id);
+                }
+                loaded[0] = true;
+                return s;
+            });
+        } catch (ExecutionException | RuntimeException e) {
+            // Not in the same tar file or not readable: nothing to prefetch
+            log.trace("Not prefetching segment {}", id, e);
+            return;
+        }
+
+        if (loaded[0]) {
+            addPending(id);
+            stats.prefetched();
+            if (depth > 1) {
+                prefetchReferences(segment, archiveName, depth - 1);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        try {
+            if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                log.warn("Timed out waiting for segment prefetch tasks to terminate");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        pending.invalidateAll();
+    }
+}
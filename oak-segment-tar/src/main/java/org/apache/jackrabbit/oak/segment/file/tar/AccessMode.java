@@ -0,0 +1,42 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file.tar;
+
+/**
+ * Hint about the expected pattern in which the segments of a tar file are
+ * read.
+ */
+public enum AccessMode {
+
+    /**
+     * Segments are read in no particular order. This is the access pattern of
+     * a repository serving requests.
+     */
+    RANDOM,
+
+    /**
+     * Segments are mostly read in the order they are stored in the tar files.
+     * This is the access pattern of tools scanning the whole repository.
+     * Reads that are not memory mapped read ahead a larger block of the tar
+     * file and serve subsequent reads from that block.
+     */
+    SEQUENTIAL
+
+}
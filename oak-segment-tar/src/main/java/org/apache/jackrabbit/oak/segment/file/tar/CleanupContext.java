@@ -22,6 +22,10 @@ import java.util.UUID;
 
 /**
  * Initial data and logic needed for the cleanup of unused TAR entries.
+ * <p>
+ * When cleaning up concurrently (see {@link TarFiles#cleanup(CleanupContext,
+ * int)}) the methods of this interface are called from several threads and
+ * implementations must be thread safe.
  */
 public interface CleanupContext {
 
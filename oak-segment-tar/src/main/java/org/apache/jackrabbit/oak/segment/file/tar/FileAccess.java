@@ -126,6 +126,66 @@ abstract class FileAccess {
 
     }
 
+    /**
+     * An implementation reading ahead a block of the underlying file and
+     * serving subsequent reads that fall into that block from memory. Reads
+     * larger than the block are passed through to the underlying file.
+     */
+    static class ReadAhead extends FileAccess {
+
+        private final FileAccess delegate;
+
+        private final int blockSize;
+
+        private Buffer block;
+
+        private int blockPosition;
+
+        ReadAhead(FileAccess delegate, int blockSize) {
+            this.delegate = delegate;
+            this.blockSize = blockSize;
+        }
+
+        @Override
+        boolean isMemoryMapped() {
+            return delegate.isMemoryMapped();
+        }
+
+        @Override
+        int length() throws IOException {
+            return delegate.length();
+        }
+
+        @Override
+        synchronized Buffer read(int position, int length) throws IOException {
+            if (length >= blockSize) {
+                return delegate.read(position, length);
+            }
+
+            if (block == null || position < blockPosition || position + length > blockPosition + block.limit()) {
+                block = delegate.read(position, Math.max(length, Math.min(blockSize, delegate.length() - position)));
+                blockPosition = position;
+            }
+
+            Buffer source = block.duplicate();
+            source.position(position - blockPosition);
+            source.limit(position - blockPosition + length);
+
+            // Copy the entry, so the block can be released once read past
+            Buffer entry = block.isDirect() ? Buffer.allocateDirect(length) : Buffer.allocate(length);
+            entry.put(source);
+            entry.flip();
+            return entry;
+        }
+
+        @Override
+        synchronized void close() throws IOException {
+            block = null;
+            delegate.close();
+        }
+
+    }
+
     /**
      * The implementation that uses random access file (reads are synchronized)
      * and off heap access.
@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file.tar;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+import org.apache.jackrabbit.oak.segment.spi.persistence.Buffer;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveEntry;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveManager;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveReader;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link SegmentArchiveReader} opening the underlying archive on first
+ * access. The name and the length of the archive and whether a segment is
+ * contained in it are answered from a {@link TarFilesSnapshot.Entry} where
+ * possible, without opening the archive.
+ */
+class LazySegmentArchiveReader implements SegmentArchiveReader {
+
+    private static final Logger log = LoggerFactory.getLogger(LazySegmentArchiveReader.class);
+
+    private final SegmentArchiveManager archiveManager;
+
+    private final TarFilesSnapshot.Entry entry;
+
+    private volatile SegmentArchiveReader delegate;
+
+    private boolean closed;
+
+    LazySegmentArchiveReader(SegmentArchiveManager archiveManager, TarFilesSnapshot.Entry entry) {
+        this.archiveManager = archiveManager;
+        this.entry = entry;
+    }
+
+    private SegmentArchiveReader delegate() throws IOException {
+        SegmentArchiveReader reader = delegate;
+        if (reader != null) {
+            return reader;
+        }
+        synchronized (this) {
+            if (closed) {
+                throw new IOException("Archive " + entry.getName() + " is closed");
+            }
+            if (delegate == null) {
+                log.debug("Opening tar file {}", entry.getName());
+                reader = archiveManager.open(entry.getName());
+                if (reader == null) {
+                    throw new IOException("Failed to open tar file " + entry.getName());
+                }
+                delegate = reader;
+            }
+            return delegate;
+        }
+    }
+
+    private SegmentArchiveReader delegateUnchecked() {
+        try {
+            return delegate();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return {@code true} if the underlying archive has been opened.
+     */
+    boolean isOpen() {
+        return delegate != null;
+    }
+
+    @Nullable
+    @Override
+    public Buffer readSegment(long msb, long lsb) throws IOException {
+        if (!entry.mightContain(msb, lsb)) {
+            return null;
+        }
+        return delegate().readSegment(msb, lsb);
+    }
+
+    @Override
+    public boolean containsSegment(long msb, long lsb) {
+        return entry.mightContain(msb, lsb) && delegateUnchecked().containsSegment(msb, lsb);
+    }
+
+    @Override
+    public List<SegmentArchiveEntry> listSegments() {
+        return delegateUnchecked().listSegments();
+    }
+
+    @Nullable
+    @Override
+    public Buffer getGraph() throws IOException {
+        return delegate().getGraph();
+    }
+
+    @Override
+    public boolean hasGraph() {
+        return delegateUnchecked().hasGraph();
+    }
+
+    @NotNull
+    @Override
+    public Buffer getBinaryReferences() throws IOException {
+        return delegate().getBinaryReferences();
+    }
+
+    @Override
+    public long length() {
+        return entry.getLength();
+    }
+
+    @NotNull
+    @Override
+    public String getName() {
+        return entry.getName();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        if (delegate != null) {
+            delegate.close();
+        }
+    }
+
+    @Override
+    public int getEntrySize(int size) {
+        return delegateUnchecked().getEntrySize(size);
+    }
+
+}
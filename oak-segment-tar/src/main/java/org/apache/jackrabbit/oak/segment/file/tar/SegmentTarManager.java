@@ -57,6 +57,13 @@ public class SegmentTarManager implements SegmentArchiveManager {
 
     private static final Logger log = LoggerFactory.getLogger(SegmentTarManager.class);
 
+    /**
+     * Size of the blocks read ahead from tar files that are not memory mapped
+     * when in {@link AccessMode#SEQUENTIAL sequential} access mode. Memory
+     * mapped tar files rely on the read ahead of the operating system.
+     */
+    private static final int READ_AHEAD_SIZE = Integer.getInteger("oak.segment.readAheadSize", 1024 * 1024);
+
     private final File segmentstoreDir;
 
     private final FileStoreMonitor fileStoreMonitor;
@@ -67,13 +74,21 @@ public class SegmentTarManager implements SegmentArchiveManager {
 
     private final boolean offHeapAccess;
 
+    private final AccessMode accessMode;
+
     public SegmentTarManager(File segmentstoreDir, FileStoreMonitor fileStoreMonitor, IOMonitor ioMonitor, boolean memoryMapping,
             boolean offHeapAccess) {
+        this(segmentstoreDir, fileStoreMonitor, ioMonitor, memoryMapping, offHeapAccess, AccessMode.RANDOM);
+    }
+
+    public SegmentTarManager(File segmentstoreDir, FileStoreMonitor fileStoreMonitor, IOMonitor ioMonitor, boolean memoryMapping,
+            boolean offHeapAccess, AccessMode accessMode) {
         this.segmentstoreDir = segmentstoreDir;
         this.fileStoreMonitor = fileStoreMonitor;
         this.ioMonitor = ioMonitor;
         this.memoryMapping = memoryMapping;
         this.offHeapAccess = offHeapAccess;
+        this.accessMode = accessMode;
     }
 
     @Override
@@ -112,6 +127,9 @@ public class SegmentTarManager implements SegmentArchiveManager {
                 } else {
                     random = new FileAccess.Random(access);
                 }
+                if (accessMode == AccessMode.SEQUENTIAL) {
+                    random = new FileAccess.ReadAhead(random, READ_AHEAD_SIZE);
+                }
 
                 // prevent the finally block from closing the file
                 // as the returned TarReader will take care of that
@@ -20,6 +20,8 @@ package org.apache.jackrabbit.oak.segment.file.tar;
 
 import static org.apache.jackrabbit.oak.segment.file.tar.SegmentTarWriter.getPaddingSize;
 import static org.apache.jackrabbit.oak.segment.file.tar.TarConstants.BLOCK_SIZE;
+import static org.apache.jackrabbit.oak.segment.file.tar.TarConstants.GRAPH_MAGIC;
+import static org.apache.jackrabbit.oak.segment.file.tar.binaries.BinaryReferencesIndexLoader.readBinaryReferencesIndexSize;
 import static org.apache.jackrabbit.oak.segment.file.tar.index.IndexLoader.newIndexLoader;
 
 import java.io.File;
@@ -31,6 +33,8 @@ import java.util.concurrent.TimeUnit;
 
 import com.google.common.base.Stopwatch;
 import org.apache.jackrabbit.oak.segment.file.tar.binaries.BinaryReferencesIndexLoader;
+import org.apache.jackrabbit.oak.segment.file.tar.bloom.BloomFilter;
+import org.apache.jackrabbit.oak.segment.file.tar.bloom.BloomFilterLoader;
 import org.apache.jackrabbit.oak.segment.file.tar.binaries.InvalidBinaryReferencesIndexException;
 import org.apache.jackrabbit.oak.segment.file.tar.index.Index;
 import org.apache.jackrabbit.oak.segment.file.tar.index.IndexEntry;
@@ -62,16 +66,26 @@ public class SegmentTarReader implements SegmentArchiveReader {
 
     private volatile Boolean hasGraph;
 
+    /**
+     * Bloom filter over the segments in this file or {@code null} if the file
+     * does not contain one.
+     */
+    private final BloomFilter bloomFilter;
+
     public SegmentTarReader(File file, FileAccess access, Index index, IOMonitor ioMonitor) {
         this.access = access;
         this.file = file;
         this.index = index;
         this.name = file.getName();
         this.ioMonitor = ioMonitor;
+        this.bloomFilter = loadBloomFilter();
     }
 
     @Override
     public Buffer readSegment(long msb, long lsb) throws IOException {
+        if (bloomFilter != null && !bloomFilter.mightContain(msb, lsb)) {
+            return null;
+        }
         int i = index.findEntry(msb, lsb);
         if (i == -1) {
             return null;
@@ -87,6 +101,9 @@ public class SegmentTarReader implements SegmentArchiveReader {
 
     @Override
     public boolean containsSegment(long msb, long lsb) {
+        if (bloomFilter != null && !bloomFilter.mightContain(msb, lsb)) {
+            return false;
+        }
         return index.findEntry(msb, lsb) != -1;
     }
 
@@ -128,6 +145,69 @@ public class SegmentTarReader implements SegmentArchiveReader {
         return null;
     }
 
+    /**
+     * Load the bloom filter preceding the binary references, the graph and the
+     * index. Files written before bloom filters were introduced don't have one,
+     * in which case all lookups go to the index. The same applies to truncated
+     * or corrupt files: a filter that cannot be loaded must not prevent the
+     * file from being opened.
+     */
+    private BloomFilter loadBloomFilter() {
+        try {
+            int end = access.length() - 2 * BLOCK_SIZE - getIndexEntrySize();
+            end -= getTrailingEntrySize(end, GRAPH_MAGIC);
+
+            int binaryReferencesSize = readBinaryReferencesIndexSize(readerAtEnd(end));
+            if (binaryReferencesSize > 0) {
+                end -= getEntrySize(binaryReferencesSize);
+            }
+
+            return BloomFilterLoader.loadBloomFilter(readerAtEnd(end));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Unable to load bloom filter of file {}", name, e);
+            return null;
+        }
+    }
+
+    /**
+     * A {@link ReaderAtEnd} positioned at {@code end}, which refuses to read
+     * outside of the data preceding that position.
+     */
+    private ReaderAtEnd readerAtEnd(int end) throws IOException {
+        if (end < 0 || end > access.length()) {
+            throw new IOException("Invalid end position " + end);
+        }
+        return (whence, amount) -> {
+            if (amount < 0 || whence < amount || whence > end) {
+                throw new IOException("Invalid read of " + amount + " bytes at " + whence + " bytes before " + end);
+            }
+            return access.read(end - whence, amount);
+        };
+    }
+
+    /**
+     * Size of the tar entry ending at {@code end}, given that its data ends
+     * with a footer of four integers where the third is the size and the
+     * fourth the magic number.
+     *
+     * @return the size of the entry or {@code 0} if the magic number does not
+     * match.
+     */
+    private int getTrailingEntrySize(int end, int magic) throws IOException {
+        if (end < 16 || end > access.length()) {
+            return 0;
+        }
+        Buffer footer = access.read(end - 16, 16);
+        if (footer.getInt(12) != magic) {
+            return 0;
+        }
+        int size = footer.getInt(8);
+        if (size < 0 || size > end) {
+            throw new IOException("Invalid size " + size + " of entry ending at " + end);
+        }
+        return getEntrySize(size);
+    }
+
     @Override
     public Buffer getGraph() throws IOException {
         int end = access.length() - 2 * BLOCK_SIZE - getIndexEntrySize();
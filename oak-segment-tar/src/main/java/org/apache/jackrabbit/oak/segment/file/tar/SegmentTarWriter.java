@@ -35,6 +35,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.zip.CRC32;
 
 import com.google.common.base.Stopwatch;
+import org.apache.jackrabbit.oak.segment.file.tar.bloom.BloomFilter;
 import org.apache.jackrabbit.oak.segment.file.tar.index.IndexEntry;
 import org.apache.jackrabbit.oak.segment.file.tar.index.IndexWriter;
 import org.apache.jackrabbit.oak.segment.file.tar.index.SimpleIndexEntry;
@@ -85,6 +86,12 @@ public class SegmentTarWriter implements SegmentArchiveWriter {
 
     private volatile long length;
 
+    /**
+     * Whether the bloom filter entry has already been written. The bloom filter
+     * precedes the binary references, the graph and the index.
+     */
+    private boolean bloomFilterWritten;
+
     public SegmentTarWriter(File file, FileStoreMonitor monitor, IOMonitor ioMonitor) {
         this.file = file;
         this.monitor = monitor;
@@ -153,6 +160,7 @@ public class SegmentTarWriter implements SegmentArchiveWriter {
 
     @Override
     public void writeGraph(byte[] data) throws IOException {
+        writeBloomFilter();
         int paddingSize = getPaddingSize(data.length);
         byte[] header = newEntryHeader(file.getName() + ".gph", data.length + paddingSize);
         access.write(header);
@@ -167,6 +175,7 @@ public class SegmentTarWriter implements SegmentArchiveWriter {
 
     @Override
     public void writeBinaryReferences(byte[] data) throws IOException {
+        writeBloomFilter();
         int paddingSize = getPaddingSize(data.length);
         byte[] header = newEntryHeader(file.getName() + ".brf", data.length + paddingSize);
         access.write(header);
@@ -189,7 +198,41 @@ public class SegmentTarWriter implements SegmentArchiveWriter {
         return index.size();
     }
 
+    /**
+     * Write a bloom filter over the ids of the segments in this file. The bloom
+     * filter is written before any of the other trailing entries so readers not
+     * aware of it are not affected.
+     */
+    private void writeBloomFilter() throws IOException {
+        if (bloomFilterWritten) {
+            return;
+        }
+        bloomFilterWritten = true;
+
+        BloomFilter filter;
+        synchronized (index) {
+            filter = BloomFilter.newBloomFilter(index.size());
+            for (IndexEntry entry : index.values()) {
+                filter.add(entry.getMsb(), entry.getLsb());
+            }
+        }
+
+        byte[] data = filter.write();
+        int paddingSize = getPaddingSize(data.length);
+        byte[] header = newEntryHeader(file.getName() + ".blm", data.length + paddingSize);
+        access.write(header);
+        if (paddingSize > 0) {
+            access.write(ZERO_BYTES, 0, paddingSize);
+        }
+        access.write(data);
+        monitor.written(header.length + paddingSize + data.length);
+
+        length = access.getFilePointer();
+    }
+
     private void writeIndex() throws IOException {
+        writeBloomFilter();
+
         IndexWriter writer = IndexWriter.newIndexWriter(BLOCK_SIZE);
 
         for (IndexEntry entry : index.values()) {
@@ -24,12 +24,17 @@ import static com.google.common.collect.Lists.newArrayList;
 import static com.google.common.collect.Maps.newHashMap;
 import static com.google.common.collect.Sets.newHashSet;
 import static java.util.Collections.emptySet;
+import static java.util.concurrent.Executors.newFixedThreadPool;
 
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -40,6 +45,11 @@ import java.util.Map.Entry;
 import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Consumer;
@@ -48,17 +58,21 @@ import java.util.regex.Pattern;
 
 import com.google.common.base.Predicate;
 import com.google.common.collect.Iterables;
+import org.apache.jackrabbit.core.data.util.NamedThreadFactory;
+import org.apache.jackrabbit.oak.segment.compression.CompressingSegmentArchiveManager;
 import org.apache.jackrabbit.oak.segment.file.FileReaper;
 import org.apache.jackrabbit.oak.segment.spi.monitor.FileStoreMonitor;
 import org.apache.jackrabbit.oak.segment.spi.monitor.FileStoreMonitorAdapter;
 import org.apache.jackrabbit.oak.segment.spi.monitor.IOMonitor;
 import org.apache.jackrabbit.oak.segment.spi.monitor.RemoteStoreMonitor;
 import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveManager;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentCodec;
 import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentNodeStorePersistence;
 import org.apache.jackrabbit.oak.segment.spi.persistence.Buffer;
 import org.apache.jackrabbit.oak.stats.CounterStats;
 import org.apache.jackrabbit.oak.stats.NoopStats;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -77,6 +91,24 @@ public class TarFiles implements Closeable {
 
     }
 
+    /**
+     * The TAR readers of a linked list of {@link Node}s by file name.
+     */
+    private static class ReadersByName {
+
+        final Node head;
+
+        final Map<String, TarReader> readers = new HashMap<>();
+
+        ReadersByName(Node head) {
+            this.head = head;
+            for (TarReader reader : iterable(head)) {
+                readers.put(reader.getFileName(), reader);
+            }
+        }
+
+    }
+
     public static class CleanupResult {
 
         private boolean interrupted;
@@ -135,6 +167,10 @@ public class TarFiles implements Closeable {
 
         private CounterStats segmentCountStats = NoopStats.INSTANCE;
 
+        private SegmentCodec segmentCodec;
+
+        private boolean fastStart;
+
         private Builder() {
             // Prevent external instantiation.
         }
@@ -200,6 +236,26 @@ public class TarFiles implements Closeable {
             return this;
         }
 
+        public Builder withSegmentCodec(SegmentCodec segmentCodec) {
+            this.segmentCodec = segmentCodec;
+            return this;
+        }
+
+        /**
+         * Enable or disable the fast start. When enabled, a snapshot of the
+         * metadata of the TAR readers is written on a clean shutdown. On the
+         * next startup the TAR files contained in the snapshot are opened
+         * lazily, on first access. The fast start has no effect on a read
+         * only instance.
+         *
+         * @param fastStart {@code true} to enable the fast start.
+         * @return this builder.
+         */
+        public Builder withFastStart(boolean fastStart) {
+            this.fastStart = fastStart;
+            return this;
+        }
+
         public TarFiles build() throws IOException {
             checkState(directory != null, "Directory not specified");
             checkState(tarRecovery != null, "TAR recovery strategy not specified");
@@ -245,8 +301,19 @@ public class TarFiles implements Closeable {
             return readOnly;
         }
 
+        public SegmentCodec getSegmentCodec() {
+            return segmentCodec;
+        }
+
+        public boolean isFastStart() {
+            return fastStart;
+        }
+
         private SegmentArchiveManager buildArchiveManager() throws IOException {
-            return persistence.createArchiveManager(memoryMapping, offHeapAccess, ioMonitor, readOnly && fileStoreMonitor == null ? new FileStoreMonitorAdapter() : fileStoreMonitor, remoteStoreMonitor);
+            SegmentArchiveManager archiveManager = persistence.createArchiveManager(memoryMapping, offHeapAccess, ioMonitor, readOnly && fileStoreMonitor == null ? new FileStoreMonitorAdapter() : fileStoreMonitor, remoteStoreMonitor);
+            // Always decorate, so compressed segments can be read even if
+            // compression is not enabled for writing.
+            return new CompressingSegmentArchiveManager(archiveManager, readOnly ? null : segmentCodec);
         }
     }
 
@@ -346,6 +413,12 @@ public class TarFiles implements Closeable {
      */
     private Node readers;
 
+    /**
+     * The TAR readers in {@link #readers} by file name. Built lazily on lookup
+     * whenever {@link #readers} changed since the last lookup.
+     */
+    private volatile ReadersByName readersByName;
+
     /**
      * The currently used TAR writer. Its access is protected by {@link #lock}.
      */
@@ -368,8 +441,15 @@ public class TarFiles implements Closeable {
      */
     private final CounterStats segmentCount;
 
+    /**
+     * The file the {@link TarFilesSnapshot} is written to on close or {@code
+     * null} if the fast start is disabled.
+     */
+    @Nullable
+    private final File snapshotFile;
+
     private static int getSegmentCount(TarReader reader) {
-        return reader.getEntries().length;
+        return reader.getSegmentCount();
     }
 
     private TarFiles(Builder builder) throws IOException {
@@ -382,6 +462,21 @@ public class TarFiles implements Closeable {
         Integer[] indices = map.keySet().toArray(new Integer[map.size()]);
         Arrays.sort(indices);
 
+        // The snapshot is only valid until the TAR files are modified. It is
+        // removed before opening the TAR files for writing, so that it doesn't
+        // survive an unclean shutdown.
+
+        Map<String, TarFilesSnapshot.Entry> snapshot = Collections.emptyMap();
+        File file = new File(builder.directory, TarFilesSnapshot.FILE_NAME);
+        if (!builder.readOnly) {
+            if (builder.fastStart) {
+                snapshot = TarFilesSnapshot.read(file);
+            }
+            TarFilesSnapshot.remove(file);
+        }
+        snapshotFile = builder.fastStart && !builder.readOnly ? file : null;
+        int lazy = 0;
+
         // TAR readers are stored in descending index order. The following loop
         // iterates the indices in ascending order, but prepends - instead of
         // appending - the corresponding TAR readers to the linked list. This
@@ -389,7 +484,11 @@ public class TarFiles implements Closeable {
 
         for (Integer index : indices) {
             TarReader r;
-            if (builder.readOnly) {
+            TarFilesSnapshot.Entry entry = getSnapshotEntry(snapshot, map.get(index), builder.persistence);
+            if (entry != null) {
+                r = TarReader.openLazily(entry, archiveManager);
+                lazy++;
+            } else if (builder.readOnly) {
                 r = TarReader.openRO(map.get(index), builder.tarRecovery, archiveManager);
             } else {
                 r = TarReader.open(map.get(index), builder.tarRecovery, archiveManager);
@@ -398,6 +497,9 @@ public class TarFiles implements Closeable {
             readers = new Node(r, readers);
             readerCount.inc();
         }
+        if (lazy > 0) {
+            log.info("Deferred opening {} out of {} TAR files", lazy, indices.length);
+        }
         if (builder.readOnly) {
             return;
         }
@@ -408,6 +510,33 @@ public class TarFiles implements Closeable {
         writer = new TarWriter(archiveManager, writeNumber, segmentCount);
     }
 
+    /**
+     * Determine the snapshot entry a TAR file can be lazily opened from. This
+     * is only possible if there is a single generation of the TAR file, which
+     * is contained in the snapshot. Otherwise the TAR file must be opened and
+     * possibly recovered as usual. The same applies if the TAR file has been
+     * replaced since the snapshot was written, which is detected by comparing
+     * the length of the TAR file where it is cheap to determine.
+     */
+    @Nullable
+    private static TarFilesSnapshot.Entry getSnapshotEntry(Map<String, TarFilesSnapshot.Entry> snapshot, Map<Character, String> generations, SegmentNodeStorePersistence persistence) {
+        if (generations.size() != 1) {
+            return null;
+        }
+        TarFilesSnapshot.Entry entry = snapshot.get(generations.values().iterator().next());
+        if (entry == null) {
+            return null;
+        }
+        if (persistence instanceof TarPersistence) {
+            File file = ((TarPersistence) persistence).getArchiveFile(entry.getName());
+            if (file.length() != entry.getLength()) {
+                log.info("TAR file {} changed since the snapshot was written", entry.getName());
+                return null;
+            }
+        }
+        return entry;
+    }
+
     @Override
     public void close() throws IOException {
         shutdown = true;
@@ -433,6 +562,10 @@ public class TarFiles implements Closeable {
             }
         }
 
+        if (snapshotFile != null && exception == null) {
+            writeSnapshot(head);
+        }
+
         for (TarReader reader : iterable(head)) {
             try {
                 reader.close();
@@ -450,6 +583,18 @@ public class TarFiles implements Closeable {
         }
     }
 
+    private void writeSnapshot(Node head) {
+        List<TarFilesSnapshot.Entry> entries = new ArrayList<>();
+        try {
+            for (TarReader reader : iterable(head)) {
+                entries.add(reader.getSnapshotEntry());
+            }
+            TarFilesSnapshot.write(snapshotFile, entries);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Unable to write TAR files snapshot {}", snapshotFile, e);
+        }
+    }
+
     @Override
     public String toString() {
         String w = null;
@@ -590,6 +735,92 @@ public class TarFiles implements Closeable {
         return null;
     }
 
+    /**
+     * Determine the name of the read only tar file containing a segment. This
+     * probes the bloom filter or index of each tar file, so callers should
+     * resolve the tar file once and use {@link #containsSegment(String, long,
+     * long)} and {@link #readSegment(String, long, long)} for further lookups.
+     *
+     * @param msb the most significant bits of the segment id
+     * @param lsb the least significant bits of the segment id
+     * @return the name of the tar file or {@code null} if the segment is not
+     * contained in any read only tar file.
+     */
+    @Nullable
+    public String getArchiveName(long msb, long lsb) {
+        Node head;
+
+        lock.readLock().lock();
+        try {
+            head = readers;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        for (TarReader reader : iterable(head)) {
+            if (reader.containsEntry(msb, lsb)) {
+                return reader.getFileName();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Check whether the read only tar file of the given name contains a
+     * segment.
+     *
+     * @param archiveName the name of the tar file
+     * @param msb         the most significant bits of the segment id
+     * @param lsb         the least significant bits of the segment id
+     * @return {@code true} iff the tar file exists and contains the segment.
+     */
+    public boolean containsSegment(String archiveName, long msb, long lsb) {
+        TarReader reader = getReader(archiveName);
+        return reader != null && reader.containsEntry(msb, lsb);
+    }
+
+    /**
+     * Read a segment from the read only tar file of the given name only.
+     *
+     * @param archiveName the name of the tar file to read from
+     * @param msb         the most significant bits of the segment id
+     * @param lsb         the least significant bits of the segment id
+     * @return the segment data or {@code null} if the tar file does not exist
+     * or does not contain the segment.
+     */
+    @Nullable
+    public Buffer readSegment(String archiveName, long msb, long lsb) {
+        TarReader reader = getReader(archiveName);
+        if (reader == null) {
+            return null;
+        }
+        try {
+            return reader.readEntry(msb, lsb);
+        } catch (IOException e) {
+            log.warn("Unable to read from TAR file", e);
+            return null;
+        }
+    }
+
+    @Nullable
+    private TarReader getReader(String archiveName) {
+        Node head;
+
+        lock.readLock().lock();
+        try {
+            head = readers;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        ReadersByName byName = readersByName;
+        if (byName == null || byName.head != head) {
+            byName = new ReadersByName(head);
+            readersByName = byName;
+        }
+        return byName.readers.get(archiveName);
+    }
+
     public void writeSegment(UUID id, byte[] buffer, int offset, int length, GCGeneration generation, Set<UUID> references, Set<String> binaryReferences) throws IOException {
         lock.writeLock().lock();
         try {
@@ -651,9 +882,24 @@ public class TarFiles implements Closeable {
     }
 
     public CleanupResult cleanup(CleanupContext context) throws IOException {
+        return cleanup(context, 1);
+    }
+
+    /**
+     * Remove the segments the passed {@code context} decides to reclaim. With
+     * a {@code concurrency} larger than {@code 1} the TAR readers are marked
+     * and swept by that many threads concurrently. The methods of the {@code
+     * context} must then be thread safe.
+     *
+     * @param context     An instance of {@link CleanupContext}.
+     * @param concurrency The number of threads marking and sweeping the TAR
+     *                    readers.
+     * @return An instance of {@link CleanupResult}.
+     */
+    public CleanupResult cleanup(CleanupContext context, int concurrency) throws IOException {
         CleanupResult result = new CleanupResult();
         result.removableFiles = new ArrayList<>();
-        result.reclaimedSegmentIds = new HashSet<>();
+        result.reclaimedSegmentIds = concurrency > 1 ? newConcurrentHashSet() : new HashSet<>();
 
         Set<UUID> references;
         Node head;
@@ -679,22 +925,34 @@ public class TarFiles implements Closeable {
             result.reclaimedSize += reader.size();
         }
 
-        Set<UUID> reclaim = newHashSet();
+        if (concurrency > 1) {
+            ExecutorService executor = newFixedThreadPool(concurrency, new NamedThreadFactory("TarMK cleanup"));
+            try {
+                if (!markAndSweepConcurrently(cleaned, references, context, result, executor)) {
+                    result.interrupted = true;
+                    return result;
+                }
+            } finally {
+                executor.shutdown();
+            }
+        } else {
+            Set<UUID> reclaim = newHashSet();
 
-        for (TarReader reader : cleaned.keySet()) {
-            if (shutdown) {
-                result.interrupted = true;
-                return result;
+            for (TarReader reader : cleaned.keySet()) {
+                if (shutdown) {
+                    result.interrupted = true;
+                    return result;
+                }
+                reader.mark(references, reclaim, context);
             }
-            reader.mark(references, reclaim, context);
-        }
 
-        for (TarReader reader : cleaned.keySet()) {
-            if (shutdown) {
-                result.interrupted = true;
-                return result;
+            for (TarReader reader : cleaned.keySet()) {
+                if (shutdown) {
+                    result.interrupted = true;
+                    return result;
+                }
+                cleaned.put(reader, reader.sweep(reclaim, result.reclaimedSegmentIds));
             }
-            cleaned.put(reader, reader.sweep(reclaim, result.reclaimedSegmentIds));
         }
 
         Node closeables;
@@ -793,6 +1051,102 @@ public class TarFiles implements Closeable {
         return result;
     }
 
+    /**
+     * Mark and sweep the TAR readers in {@code cleaned} concurrently using
+     * the passed {@code executor}. The readers are first marked concurrently,
+     * sharing a concurrent set of references. Then the segments that are only
+     * kept if referenced are resolved against those references. Finally the
+     * readers are swept concurrently and their replacements stored back into
+     * {@code cleaned}. At most one graph per thread is held in memory at any
+     * time.
+     *
+     * @return {@code false} if interrupted by a shutdown, {@code true}
+     * otherwise.
+     */
+    private boolean markAndSweepConcurrently(
+            Map<TarReader, TarReader> cleaned,
+            Set<UUID> initialReferences,
+            CleanupContext context,
+            CleanupResult result,
+            ExecutorService executor
+    ) throws IOException {
+        Set<UUID> references = newConcurrentHashSet();
+        references.addAll(initialReferences);
+        Set<UUID> reclaim = newConcurrentHashSet();
+        Map<UUID, List<UUID>> conditional = new ConcurrentHashMap<>();
+
+        List<Callable<TarReader>> marks = new ArrayList<>();
+        for (TarReader reader : cleaned.keySet()) {
+            marks.add(() -> {
+                if (!shutdown) {
+                    reader.markConcurrently(references, reclaim, conditional, context);
+                }
+                return reader;
+            });
+        }
+        invokeAll(executor, marks);
+        if (shutdown) {
+            return false;
+        }
+
+        // Transitively keep the segments only kept if referenced, which are
+        // referenced. Discard the rest.
+        Deque<UUID> pending = new ArrayDeque<>();
+        for (UUID id : conditional.keySet()) {
+            if (references.contains(id)) {
+                pending.push(id);
+            }
+        }
+        while (!pending.isEmpty()) {
+            for (UUID refId : conditional.get(pending.pop())) {
+                if (references.add(refId) && conditional.containsKey(refId)) {
+                    pending.push(refId);
+                }
+            }
+        }
+        for (UUID id : conditional.keySet()) {
+            if (!references.contains(id)) {
+                reclaim.add(id);
+            }
+        }
+
+        List<TarReader> readers = new ArrayList<>(cleaned.keySet());
+        List<Callable<TarReader>> sweeps = new ArrayList<>();
+        for (TarReader reader : readers) {
+            sweeps.add(() -> shutdown ? reader : reader.sweep(reclaim, result.reclaimedSegmentIds));
+        }
+        List<TarReader> swept = invokeAll(executor, sweeps);
+        if (shutdown) {
+            return false;
+        }
+        for (int i = 0; i < readers.size(); i++) {
+            cleaned.put(readers.get(i), swept.get(i));
+        }
+        return true;
+    }
+
+    private static <T> List<T> invokeAll(ExecutorService executor, List<Callable<T>> tasks) throws IOException {
+        try {
+            List<T> results = new ArrayList<>(tasks.size());
+            for (Future<T> future : executor.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while cleaning up TAR files");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private static Set<UUID> newConcurrentHashSet() {
+        return Collections.newSetFromMap(new ConcurrentHashMap<>());
+    }
+
     private static int getSegmentCount(Node head) {
         int c = 0;
         for (TarReader reader : iterable(head)) {
@@ -802,6 +1156,23 @@ public class TarFiles implements Closeable {
     }
 
     public void collectBlobReferences(Consumer<String> collector, Predicate<GCGeneration> reclaim) throws IOException {
+        collectBlobReferences(collector, reclaim, -1);
+    }
+
+    /**
+     * Collect the binary references from the TAR files with an index greater
+     * than {@code sinceIndex} only. Passing {@code -1} collects the binary
+     * references from all TAR files. The current TAR writer is closed first,
+     * so that all binary references written so far are contained in the TAR
+     * files collected from.
+     *
+     * @param collector  called back for each binary reference found.
+     * @param reclaim    determines the generations to skip.
+     * @param sinceIndex the index of the last TAR file already collected from.
+     * @return the highest index of the TAR files or {@code sinceIndex} if
+     * there is no TAR file with a greater index.
+     */
+    public int collectBlobReferences(Consumer<String> collector, Predicate<GCGeneration> reclaim, int sinceIndex) throws IOException {
         Node head;
         lock.writeLock().lock();
         try {
@@ -813,9 +1184,25 @@ public class TarFiles implements Closeable {
             lock.writeLock().unlock();
         }
 
+        int maxIndex = sinceIndex;
         for (TarReader reader : iterable(head)) {
-            reader.collectBlobReferences(collector, reclaim);
+            int index = getIndex(reader.getFileName());
+            if (index > sinceIndex) {
+                reader.collectBlobReferences(collector, reclaim);
+                maxIndex = Math.max(maxIndex, index);
+            }
         }
+        return maxIndex;
+    }
+
+    /**
+     * @return the index of a TAR file from its name, as in {@code 12} for
+     * {@code data00012a.tar}.
+     */
+    private static int getIndex(String fileName) {
+        Matcher matcher = FILE_NAME_PATTERN.matcher(fileName);
+        checkState(matcher.matches(), "Invalid TAR file name %s", fileName);
+        return Integer.parseInt(matcher.group(2));
     }
 
     public Iterable<UUID> getSegmentIds() {
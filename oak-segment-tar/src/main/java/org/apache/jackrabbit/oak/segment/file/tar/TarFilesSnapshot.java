@@ -0,0 +1,232 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file.tar;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.Collections.emptyMap;
+
+import java.io.ByteArrayInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import org.apache.jackrabbit.oak.segment.file.tar.bloom.BloomFilter;
+import org.apache.jackrabbit.oak.segment.file.tar.bloom.BloomFilterLoader;
+import org.apache.jackrabbit.oak.segment.spi.persistence.Buffer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A snapshot of the metadata of the TAR readers, written on a clean shutdown
+ * of {@link TarFiles} and used on the next startup to open the TAR readers
+ * lazily. For every TAR file the snapshot records its name, its length, the
+ * number of segments it contains and a {@link BloomFilter} over the ids of
+ * these segments. The bloom filter allows to answer most of the lookups for
+ * segments not contained in a TAR file without opening it.
+ * <p>
+ * The snapshot is only valid as long as the TAR files are not modified. It is
+ * therefore removed when {@link TarFiles} is opened for writing, so that an
+ * unclean shutdown always results in all TAR files being opened and validated
+ * on the next startup.
+ */
+class TarFilesSnapshot {
+
+    private static final Logger log = LoggerFactory.getLogger(TarFilesSnapshot.class);
+
+    /**
+     * Name of the file containing the snapshot.
+     */
+    static final String FILE_NAME = "tarfiles.snapshot";
+
+    /**
+     * Magic number of the snapshot file.
+     */
+    private static final int MAGIC = ('\n' << 24) + ('0' << 16) + ('S' << 8) + '\n';
+
+    private static final int VERSION = 1;
+
+    /**
+     * The metadata of a single TAR file.
+     */
+    static class Entry {
+
+        private final String name;
+
+        private final long length;
+
+        private final int segmentCount;
+
+        private final BloomFilter bloomFilter;
+
+        Entry(@NotNull String name, long length, int segmentCount, @NotNull BloomFilter bloomFilter) {
+            this.name = checkNotNull(name);
+            this.length = length;
+            this.segmentCount = segmentCount;
+            this.bloomFilter = checkNotNull(bloomFilter);
+        }
+
+        /**
+         * Create the metadata of a TAR file from the ids of the segments it
+         * contains.
+         */
+        static Entry newEntry(@NotNull String name, long length, @NotNull Collection<UUID> segments) {
+            BloomFilter bloomFilter = BloomFilter.newBloomFilter(segments.size());
+            for (UUID segment : segments) {
+                bloomFilter.add(segment.getMostSignificantBits(), segment.getLeastSignificantBits());
+            }
+            return new Entry(name, length, segments.size(), bloomFilter);
+        }
+
+        @NotNull
+        String getName() {
+            return name;
+        }
+
+        long getLength() {
+            return length;
+        }
+
+        int getSegmentCount() {
+            return segmentCount;
+        }
+
+        boolean mightContain(long msb, long lsb) {
+            return bloomFilter.mightContain(msb, lsb);
+        }
+
+    }
+
+    private TarFilesSnapshot() {
+        // Prevent instantiation.
+    }
+
+    /**
+     * Read the snapshot from {@code file}.
+     *
+     * @param file The file to read the snapshot from.
+     * @return The entries of the snapshot by the name of their TAR file. The
+     * map is empty if the file does not exist or is not a valid snapshot.
+     */
+    @NotNull
+    static Map<String, Entry> read(@NotNull File file) {
+        if (!file.exists()) {
+            return emptyMap();
+        }
+        try {
+            byte[] data = Files.readAllBytes(file.toPath());
+            if (data.length < Integer.BYTES || readChecksum(data) != checksum(data, data.length - Integer.BYTES)) {
+                log.warn("Ignoring TAR files snapshot {} with an invalid checksum", file);
+                return emptyMap();
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, 0, data.length - Integer.BYTES));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                log.warn("Ignoring invalid TAR files snapshot {}", file);
+                return emptyMap();
+            }
+            int count = in.readInt();
+            Map<String, Entry> entries = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                long length = in.readLong();
+                int segmentCount = in.readInt();
+                byte[] bloomFilter = new byte[in.readInt()];
+                in.readFully(bloomFilter);
+                BloomFilter filter = loadBloomFilter(bloomFilter);
+                if (filter == null) {
+                    log.warn("Ignoring TAR files snapshot {} with an invalid bloom filter for {}", file, name);
+                    return emptyMap();
+                }
+                entries.put(name, new Entry(name, length, segmentCount, filter));
+            }
+            return entries;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Unable to read TAR files snapshot {}", file, e);
+            return emptyMap();
+        }
+    }
+
+    private static int readChecksum(byte[] data) {
+        return Buffer.wrap(data, data.length - Integer.BYTES, Integer.BYTES).getInt();
+    }
+
+    private static int checksum(byte[] data, int length) {
+        CRC32 checksum = new CRC32();
+        checksum.update(data, 0, length);
+        return (int) checksum.getValue();
+    }
+
+    @Nullable
+    private static BloomFilter loadBloomFilter(byte[] data) throws IOException {
+        return BloomFilterLoader.loadBloomFilter((whence, amount) -> Buffer.wrap(data, data.length - whence, amount));
+    }
+
+    /**
+     * Write the snapshot to {@code file}. The snapshot is first written to a
+     * temporary file, which is then atomically moved in place.
+     *
+     * @param file    The file to write the snapshot to.
+     * @param entries The entries of the snapshot.
+     * @throws IOException if an error occurs while writing the snapshot.
+     */
+    static void write(@NotNull File file, @NotNull Collection<Entry> entries) throws IOException {
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        CRC32 checksum = new CRC32();
+        try (DataOutputStream out = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(new FileOutputStream(temp)), checksum))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(entries.size());
+            for (Entry entry : entries) {
+                byte[] bloomFilter = entry.bloomFilter.write();
+                out.writeUTF(entry.name);
+                out.writeLong(entry.length);
+                out.writeInt(entry.segmentCount);
+                out.writeInt(bloomFilter.length);
+                out.write(bloomFilter);
+            }
+            out.flush();
+            out.writeInt((int) checksum.getValue());
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Remove the snapshot from {@code file}, if any.
+     *
+     * @param file The file containing the snapshot.
+     * @throws IOException if an error occurs while removing the snapshot.
+     */
+    static void remove(@NotNull File file) throws IOException {
+        Files.deleteIfExists(file.toPath());
+    }
+
+}
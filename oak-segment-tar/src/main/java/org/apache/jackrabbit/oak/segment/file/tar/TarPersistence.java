@@ -52,19 +52,37 @@ public class TarPersistence implements SegmentNodeStorePersistence {
 
     private final File journal;
 
+    private final AccessMode accessMode;
+
     public TarPersistence(File directory) {
         this(directory, new File(directory, JOURNAL_FILE_NAME));
     }
 
     public TarPersistence(File directory, File journal) {
+        this(directory, journal, AccessMode.RANDOM);
+    }
+
+    public TarPersistence(File directory, AccessMode accessMode) {
+        this(directory, new File(directory, JOURNAL_FILE_NAME), accessMode);
+    }
+
+    public TarPersistence(File directory, File journal, AccessMode accessMode) {
         this.directory = directory;
         this.journal = journal;
+        this.accessMode = accessMode;
+    }
+
+    /**
+     * @return the file of the archive {@code archiveName} in this persistence.
+     */
+    File getArchiveFile(String archiveName) {
+        return new File(directory, archiveName);
     }
 
     @Override
     public SegmentArchiveManager createArchiveManager(boolean memoryMapping, boolean offHeapAccess, IOMonitor ioMonitor,
                                                       FileStoreMonitor fileStoreMonitor, RemoteStoreMonitor remoteStoreMonitor) {
-        return new SegmentTarManager(directory, fileStoreMonitor, ioMonitor, memoryMapping, offHeapAccess);
+        return new SegmentTarManager(directory, fileStoreMonitor, ioMonitor, memoryMapping, offHeapAccess, accessMode);
     }
 
     @Override
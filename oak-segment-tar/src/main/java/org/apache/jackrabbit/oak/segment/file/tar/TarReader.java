@@ -29,6 +29,7 @@ import static org.apache.jackrabbit.oak.segment.file.tar.GCGeneration.newGCGener
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -251,18 +252,48 @@ public class TarReader implements Closeable {
         return null;
     }
 
+    /**
+     * Creates a {@link TarReader} instance for a tar file described by an
+     * entry of a {@link TarFilesSnapshot}. The tar file is only opened when
+     * its content is accessed for the first time. Lookups of segments not
+     * contained in the tar file are mostly answered from the bloom filter of
+     * the snapshot entry without opening the tar file.
+     *
+     * @param entry          The metadata of the tar file.
+     * @param archiveManager The archive manager to open the tar file with.
+     * @return An instance of {@link TarReader}.
+     */
+    static TarReader openLazily(TarFilesSnapshot.Entry entry, SegmentArchiveManager archiveManager) {
+        return new TarReader(archiveManager, new LazySegmentArchiveReader(archiveManager, entry), entry);
+    }
+
     private final SegmentArchiveManager archiveManager;
 
     private final SegmentArchiveReader archive;
 
-    private final Set<UUID> segmentUUIDs;
+    /**
+     * The metadata this reader was lazily opened from or {@code null} if it
+     * was opened eagerly.
+     */
+    private final TarFilesSnapshot.Entry snapshotEntry;
+
+    private volatile Set<UUID> segmentUUIDs;
 
     private volatile boolean hasGraph;
 
     private TarReader(SegmentArchiveManager archiveManager, SegmentArchiveReader archive) {
+        this(archiveManager, archive, null);
+        this.segmentUUIDs = loadSegmentUUIDs();
+    }
+
+    private TarReader(SegmentArchiveManager archiveManager, SegmentArchiveReader archive, TarFilesSnapshot.Entry snapshotEntry) {
         this.archiveManager = archiveManager;
         this.archive = archive;
-        this.segmentUUIDs = archive.listSegments()
+        this.snapshotEntry = snapshotEntry;
+    }
+
+    private Set<UUID> loadSegmentUUIDs() {
+        return archive.listSegments()
                 .stream()
                 .map(e -> new UUID(e.getMsb(), e.getLsb()))
                 .collect(Collectors.toSet());
@@ -279,7 +310,41 @@ public class TarReader implements Closeable {
      * @return An instance of {@link Set}.
      */
     Set<UUID> getUUIDs() {
-        return segmentUUIDs;
+        Set<UUID> uuids = segmentUUIDs;
+        if (uuids == null) {
+            uuids = loadSegmentUUIDs();
+            segmentUUIDs = uuids;
+        }
+        return uuids;
+    }
+
+    /**
+     * Returns the number of segments in this TAR file. For a lazily opened
+     * TAR file this number is taken from its snapshot entry, without opening
+     * the file.
+     *
+     * @return the number of segments in this TAR file.
+     */
+    int getSegmentCount() {
+        if (snapshotEntry != null) {
+            return snapshotEntry.getSegmentCount();
+        }
+        return archive.listSegments().size();
+    }
+
+    /**
+     * Returns the metadata of this TAR file to be written to a {@link
+     * TarFilesSnapshot}. If this reader was opened lazily and the TAR file
+     * has not been opened since, the metadata is returned without opening it.
+     *
+     * @return An instance of {@link TarFilesSnapshot.Entry}.
+     */
+    @NotNull
+    TarFilesSnapshot.Entry getSnapshotEntry() {
+        if (snapshotEntry != null) {
+            return snapshotEntry;
+        }
+        return TarFilesSnapshot.Entry.newEntry(archive.getName(), archive.length(), getUUIDs());
     }
 
     /**
@@ -427,6 +492,62 @@ public class TarReader implements Closeable {
         }
     }
 
+    /**
+     * Mark phase of a concurrent cleanup. Unlike {@link #mark(Set, Set,
+     * CleanupContext)} this method does not depend on the TAR readers being
+     * marked in any particular order and can be called for several readers
+     * concurrently, passing the same thread safe sets and map.
+     * <p>
+     * Each entry falls into one of three classes. Entries the {@code context}
+     * reclaims whether they are referenced or not are added to {@code
+     * reclaimable}. Entries the {@code context} keeps whether they are
+     * referenced or not are kept and the references they are followed to are
+     * added to {@code references}. The remaining entries are only kept if
+     * they are referenced. They are added to {@code conditional} together
+     * with the references to follow should they be kept. Resolving these
+     * entries against the {@code references} is left to the caller once all
+     * readers have been marked.
+     *
+     * @param references  The set of references to keep.
+     * @param reclaimable The set of segments to remove.
+     * @param conditional The segments only to keep if referenced, mapped to
+     *                    the references to follow if kept.
+     * @param context     An instance of {@link CleanupContext}.
+     */
+    void markConcurrently(
+            Set<UUID> references,
+            Set<UUID> reclaimable,
+            Map<UUID, List<UUID>> conditional,
+            CleanupContext context
+    ) throws IOException {
+        Map<UUID, List<UUID>> graph = getGraph();
+        for (SegmentArchiveEntry entry : getEntries()) {
+            UUID id = new UUID(entry.getMsb(), entry.getLsb());
+            GCGeneration generation = GCGeneration.newGCGeneration(entry);
+            if (context.shouldReclaim(id, generation, true)) {
+                reclaimable.add(id);
+            } else {
+                List<UUID> follow = null;
+                for (UUID refId : getReferences(id, graph)) {
+                    if (context.shouldFollow(id, refId)) {
+                        if (follow == null) {
+                            follow = new ArrayList<>();
+                        }
+                        follow.add(refId);
+                    }
+                }
+                if (follow == null) {
+                    follow = Collections.emptyList();
+                }
+                if (context.shouldReclaim(id, generation, false)) {
+                    conditional.put(id, follow);
+                } else {
+                    references.addAll(follow);
+                }
+            }
+        }
+    }
+
     /**
      * Try to remove every segment contained in a user-provided set.
      * <p>
@@ -52,6 +52,28 @@ public class BinaryReferencesIndexLoader {
         }
     }
 
+    /**
+     * Read the size of a binary references index from its footer without
+     * loading the index. The medium the index is read from is represented by
+     * an instance of {@link ReaderAtEnd}, which should behave as it is
+     * positioned at the end of the binary references index.
+     *
+     * @param reader An instance of {@link ReaderAtEnd}.
+     * @return The size of the binary references index in bytes or {@code -1}
+     * if no binary references index was found.
+     * @throws IOException if an error occurs while reading the footer.
+     */
+    public static int readBinaryReferencesIndexSize(ReaderAtEnd reader) throws IOException {
+        // Both versions share the same footer layout: checksum, count, size, magic
+        Buffer meta = reader.readAtEnd(BinaryReferencesIndexLoaderV2.FOOTER_SIZE, BinaryReferencesIndexLoaderV2.FOOTER_SIZE);
+        int size = meta.getInt(8);
+        int magic = meta.getInt(12);
+        if (magic != BinaryReferencesIndexLoaderV1.MAGIC && magic != BinaryReferencesIndexLoaderV2.MAGIC) {
+            return -1;
+        }
+        return size;
+    }
+
     public static BinaryReferencesIndex parseBinaryReferencesIndex(Buffer buffer) throws InvalidBinaryReferencesIndexException {
         switch (readMagic(buffer)) {
             case BinaryReferencesIndexLoaderV1.MAGIC:
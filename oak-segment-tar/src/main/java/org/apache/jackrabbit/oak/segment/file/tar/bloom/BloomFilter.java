@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file.tar.bloom;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.zip.CRC32;
+
+import org.apache.jackrabbit.oak.segment.spi.persistence.Buffer;
+
+/**
+ * A bloom filter over the segment ids contained in a tar file. The filter
+ * answers whether a segment might be contained in the tar file, allowing to
+ * skip the index lookup for most of the segments not contained in it.
+ * <p>
+ * The serialized form of the filter consists of the bit set as a sequence of
+ * longs followed by a footer of four integers: the checksum of the bit set,
+ * the number of hash functions, the size of the serialized filter including
+ * the footer and the magic number {@link #MAGIC}.
+ */
+public class BloomFilter {
+
+    /**
+     * Magic number of the serialized bloom filter.
+     */
+    public static final int MAGIC = ('\n' << 24) + ('0' << 16) + ('F' << 8) + '\n';
+
+    static final int FOOTER_SIZE = 16;
+
+    /**
+     * Number of bits per entry. Together with {@link #HASH_COUNT} this results
+     * in a false positive probability of about 1%.
+     */
+    private static final int BITS_PER_ENTRY = 10;
+
+    private static final int HASH_COUNT = 7;
+
+    private final long[] bits;
+
+    private final int hashCount;
+
+    BloomFilter(long[] bits, int hashCount) {
+        checkArgument(bits.length > 0, "bits must not be empty");
+        checkArgument(hashCount > 0, "hashCount must be positive");
+        this.bits = bits;
+        this.hashCount = hashCount;
+    }
+
+    /**
+     * Create a new, empty bloom filter sized for the given number of entries.
+     *
+     * @param expectedEntries the number of entries to be added to the filter.
+     * @return A new instance of {@link BloomFilter}.
+     */
+    public static BloomFilter newBloomFilter(int expectedEntries) {
+        checkArgument(expectedEntries >= 0, "expectedEntries must not be negative");
+        long bitCount = Math.max(64, (long) expectedEntries * BITS_PER_ENTRY);
+        return new BloomFilter(new long[(int) ((bitCount + 63) / 64)], HASH_COUNT);
+    }
+
+    /**
+     * Add a segment id to this filter.
+     *
+     * @param msb The most significant bits of the segment id.
+     * @param lsb The least significant bits of the segment id.
+     */
+    public void add(long msb, long lsb) {
+        long h1 = mix(msb ^ lsb);
+        long h2 = mix(h1) | 1;
+        long bitCount = (long) bits.length * 64;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    /**
+     * Determine whether a segment id might have been added to this filter.
+     *
+     * @param msb The most significant bits of the segment id.
+     * @param lsb The least significant bits of the segment id.
+     * @return {@code false} if the segment id has definitely not been added,
+     * {@code true} otherwise.
+     */
+    public boolean mightContain(long msb, long lsb) {
+        long h1 = mix(msb ^ lsb);
+        long h2 = mix(h1) | 1;
+        long bitCount = (long) bits.length * 64;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Serialize this filter.
+     *
+     * @return The serialized filter.
+     */
+    public byte[] write() {
+        int size = bits.length * Long.BYTES + FOOTER_SIZE;
+        Buffer buffer = Buffer.allocate(size);
+        for (long b : bits) {
+            buffer.putLong(b);
+        }
+
+        CRC32 checksum = new CRC32();
+        checksum.update(buffer.array(), 0, bits.length * Long.BYTES);
+
+        buffer.putInt((int) checksum.getValue());
+        buffer.putInt(hashCount);
+        buffer.putInt(size);
+        buffer.putInt(MAGIC);
+        return buffer.array();
+    }
+
+    /**
+     * Finalizer of the 64 bit MurmurHash3 to spread the bits of the already
+     * random segment ids over all hash functions.
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file.tar.bloom;
+
+import static org.apache.jackrabbit.oak.segment.file.tar.bloom.BloomFilter.FOOTER_SIZE;
+import static org.apache.jackrabbit.oak.segment.file.tar.bloom.BloomFilter.MAGIC;
+
+import java.io.IOException;
+import java.util.zip.CRC32;
+
+import org.apache.jackrabbit.oak.segment.spi.persistence.Buffer;
+import org.apache.jackrabbit.oak.segment.util.ReaderAtEnd;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public final class BloomFilterLoader {
+
+    private static final Logger log = LoggerFactory.getLogger(BloomFilterLoader.class);
+
+    private BloomFilterLoader() {
+    }
+
+    /**
+     * Load a bloom filter. The filter is read backward. The medium the filter
+     * is read from is represented by an instance of {@link ReaderAtEnd}, which
+     * should behave as it is positioned at the end of the filter.
+     * <p>
+     * Tar files written before bloom filters were introduced do not contain a
+     * filter. In this case the data read does not carry the {@link
+     * BloomFilter#MAGIC magic number}.
+     *
+     * @param reader An instance of {@link ReaderAtEnd}.
+     * @return The bloom filter or {@code null} if none was found or if it is
+     * invalid.
+     * @throws IOException if an error occurs while reading the filter.
+     */
+    public static BloomFilter loadBloomFilter(ReaderAtEnd reader) throws IOException {
+        Buffer meta = reader.readAtEnd(FOOTER_SIZE, FOOTER_SIZE);
+
+        int crc32 = meta.getInt();
+        int hashCount = meta.getInt();
+        int size = meta.getInt();
+        int magic = meta.getInt();
+
+        if (magic != MAGIC) {
+            return null;
+        }
+
+        if (hashCount <= 0) {
+            log.warn("Invalid number of hash functions in bloom filter");
+            return null;
+        }
+
+        if (size <= FOOTER_SIZE || (size - FOOTER_SIZE) % Long.BYTES != 0) {
+            log.warn("Invalid bloom filter size");
+            return null;
+        }
+
+        Buffer data = reader.readAtEnd(size, size - FOOTER_SIZE);
+        byte[] b = new byte[size - FOOTER_SIZE];
+        data.get(b);
+
+        CRC32 checksum = new CRC32();
+        checksum.update(b);
+        if (crc32 != (int) checksum.getValue()) {
+            log.warn("Invalid bloom filter checksum");
+            return null;
+        }
+
+        Buffer bytes = Buffer.wrap(b);
+        long[] bits = new long[b.length / Long.BYTES];
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] = bytes.getLong();
+        }
+        return new BloomFilter(bits, hashCount);
+    }
+
+}
@@ -0,0 +1,335 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.segment.scheduler;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.lang.Thread.currentThread;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.apache.jackrabbit.oak.api.Type.LONG;
+
+import java.io.Closeable;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.segment.Revisions;
+import org.apache.jackrabbit.oak.segment.SegmentNodeBuilder;
+import org.apache.jackrabbit.oak.segment.SegmentNodeState;
+import org.apache.jackrabbit.oak.segment.SegmentNodeStoreStats;
+import org.apache.jackrabbit.oak.segment.SegmentReader;
+import org.apache.jackrabbit.oak.spi.commit.ChangeDispatcher;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.Observer;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Base class of the {@link Scheduler}s of the segment node store. It keeps
+ * track of the head state, dispatches changes to observers and manages
+ * checkpoints. Subclasses implement how commits are scheduled and the lock
+ * serializing updates of the head.
+ */
+abstract class AbstractScheduler implements Scheduler {
+
+    abstract static class Builder<B extends Builder<B>> {
+        @NotNull
+        final SegmentReader reader;
+
+        @NotNull
+        final Revisions revisions;
+
+        @NotNull
+        final SegmentNodeStoreStats stats;
+
+        boolean dispatchChanges = true;
+
+        Builder(@NotNull Revisions revisions, @NotNull SegmentReader reader,
+                @NotNull SegmentNodeStoreStats stats) {
+            this.revisions = checkNotNull(revisions);
+            this.reader = checkNotNull(reader);
+            this.stats = checkNotNull(stats);
+        }
+
+        @SuppressWarnings("unchecked")
+        @NotNull
+        public B dispatchChanges(boolean dispatchChanges) {
+            this.dispatchChanges = dispatchChanges;
+            return (B) this;
+        }
+
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(AbstractScheduler.class);
+
+    /**
+     * Maximum number of milliseconds to wait before re-attempting to update the current
+     * head state after a failed update caused by a concurrent head state update.
+     */
+    private static final long MAXIMUM_BACKOFF = MILLISECONDS.convert(10, SECONDS);
+
+    /**
+     * Sets the number of seconds to wait for the attempt to grab the lock to
+     * create a checkpoint
+     */
+    private final int checkpointsLockWaitTime = Integer.getInteger("oak.checkpoints.lockWaitTime", 10);
+
+    static final String ROOT = "root";
+
+    @NotNull
+    final SegmentReader reader;
+
+    @NotNull
+    final Revisions revisions;
+
+    protected final AtomicReference<SegmentNodeState> head;
+
+    final SegmentNodeStoreStats stats;
+
+    private final Random random = new Random();
+
+    /**
+     * The dispatcher of changes to observers or {@code null} if changes are
+     * not dispatched.
+     */
+    @Nullable
+    private final ChangeDispatcher changeDispatcher;
+
+    AbstractScheduler(Builder<?> builder) {
+        this.reader = builder.reader;
+        this.revisions = builder.revisions;
+        this.stats = builder.stats;
+        this.head = new AtomicReference<SegmentNodeState>(reader.readHeadState(revisions));
+        this.changeDispatcher = builder.dispatchChanges
+                ? new ChangeDispatcher(head.get().getChildNode(ROOT))
+                : null;
+    }
+
+    /**
+     * Try to acquire the lock serializing updates of the {@link #head}.
+     */
+    abstract boolean tryLockHead(long timeout, TimeUnit unit) throws InterruptedException;
+
+    /**
+     * Try to acquire the lock serializing updates of the {@link #head} if it
+     * is immediately available.
+     */
+    abstract boolean tryLockHead();
+
+    /**
+     * Release the lock acquired by {@link #tryLockHead()} or
+     * {@link #tryLockHead(long, TimeUnit)}.
+     */
+    abstract void unlockHead();
+
+    /**
+     * Called whenever a commit is retried because of a concurrent update of
+     * the head.
+     */
+    void onCommitRetried() {
+        // nothing to do by default
+    }
+
+    /**
+     * Refreshes the head state. Should only be called while holding the lock
+     * serializing updates of the {@link #head}.
+     *
+     * @param dispatchChanges
+     *            if set to true the changes would also be dispatched
+     */
+    void refreshHead(boolean dispatchChanges) {
+        SegmentNodeState state = reader.readHeadState(revisions);
+        if (!state.getRecordId().equals(head.get().getRecordId())) {
+            head.set(state);
+            if (dispatchChanges) {
+                contentChanged(state.getChildNode(ROOT), CommitInfo.EMPTY_EXTERNAL);
+            }
+        }
+    }
+
+    /**
+     * Updates the {@link #head} after it has been successfully set to
+     * {@code after} in {@link Revisions} and dispatches the change.
+     */
+    void headUpdated(SegmentNodeState after, CommitInfo info) {
+        head.set(after);
+        contentChanged(after.getChildNode(ROOT), info);
+    }
+
+    private void contentChanged(NodeState root, CommitInfo info) {
+        if (changeDispatcher != null) {
+            changeDispatcher.contentChanged(root, info);
+        }
+    }
+
+    /**
+     * Register an observer with the change dispatcher. Only to be called by
+     * subclasses implementing {@link org.apache.jackrabbit.oak.spi.commit.Observable}.
+     */
+    Closeable addChangeObserver(Observer observer) {
+        checkNotNull(changeDispatcher, "Changes are not dispatched");
+        return changeDispatcher.addObserver(observer);
+    }
+
+    /**
+     * Applies {@code commit} on top of the current head. Should only be called
+     * while holding the lock serializing updates of the {@link #head}.
+     * Concurrent updates of the head can then only originate from outside
+     * this scheduler, in which case the update is retried with an exponential
+     * backoff.
+     *
+     * @return the new head state
+     */
+    SegmentNodeState applyWithBackoff(Commit commit) throws CommitFailedException, InterruptedException {
+        long start = System.nanoTime();
+
+        int count = 0;
+        for (long backoff = 1; backoff < MAXIMUM_BACKOFF; backoff *= 2) {
+            refreshHead(true);
+            SegmentNodeState before = head.get();
+            SegmentNodeState after = commit.apply(before);
+
+            if (revisions.setHead(before.getRecordId(), after.getRecordId())) {
+                headUpdated(after, commit.info());
+                return after;
+            }
+
+            count++;
+            onCommitRetried();
+            int randNs = random.nextInt(1_000_000);
+            log.info("Scheduler detected concurrent commits. Retrying after {} ms and {} ns", backoff, randNs);
+            Thread.sleep(backoff, randNs);
+        }
+
+        long finish = System.nanoTime();
+
+        String message = String.format(
+                "The commit could not be executed after %d attempts. Total wait time: %d ms",
+                count, NANOSECONDS.toMillis(finish - start));
+        throw new CommitFailedException("Segment", 3, message);
+    }
+
+    @Override
+    public String checkpoint(long lifetime, @NotNull Map<String, String> properties) {
+        checkArgument(lifetime > 0);
+        checkNotNull(properties);
+        String name = UUID.randomUUID().toString();
+        try {
+            if (tryLockHead(checkpointsLockWaitTime, SECONDS)) {
+                try {
+                    if (createCheckpoint(name, lifetime, properties)) {
+                        return name;
+                    }
+                } finally {
+                    // Explicitly give up reference to the previous root state
+                    // otherwise they would block cleanup. See OAK-3347
+                    refreshHead(true);
+                    unlockHead();
+                }
+            }
+            log.warn("Failed to create checkpoint {} in {} seconds.", name, checkpointsLockWaitTime);
+        } catch (InterruptedException e) {
+            currentThread().interrupt();
+            log.error("Failed to create checkpoint {}.", name, e);
+        } catch (Exception e) {
+            log.error("Failed to create checkpoint {}.", name, e);
+        }
+        return name;
+    }
+
+    private boolean createCheckpoint(String name, long lifetime, Map<String, String> properties) {
+        long now = System.currentTimeMillis();
+
+        refreshHead(true);
+
+        SegmentNodeState state = head.get();
+        SegmentNodeBuilder builder = state.builder();
+
+        NodeBuilder checkpoints = builder.child("checkpoints");
+        for (String n : checkpoints.getChildNodeNames()) {
+            NodeBuilder cp = checkpoints.getChildNode(n);
+            PropertyState ts = cp.getProperty("timestamp");
+            if (ts == null || ts.getType() != LONG || now > ts.getValue(LONG)) {
+                cp.remove();
+            }
+        }
+
+        NodeBuilder cp = checkpoints.child(name);
+        if (Long.MAX_VALUE - now > lifetime) {
+            cp.setProperty("timestamp", now + lifetime);
+        } else {
+            cp.setProperty("timestamp", Long.MAX_VALUE);
+        }
+        cp.setProperty("created", now);
+
+        NodeBuilder props = cp.setChildNode("properties");
+        for (Entry<String, String> p : properties.entrySet()) {
+            props.setProperty(p.getKey(), p.getValue());
+        }
+        cp.setChildNode(ROOT, state.getChildNode(ROOT));
+
+        SegmentNodeState newState = builder.getNodeState();
+        if (revisions.setHead(state.getRecordId(), newState.getRecordId())) {
+            refreshHead(false);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean removeCheckpoint(String name) {
+        checkNotNull(name);
+
+        // try 5 times
+        for (int i = 0; i < 5; i++) {
+            if (tryLockHead()) {
+                try {
+                    refreshHead(true);
+
+                    SegmentNodeState state = head.get();
+                    SegmentNodeBuilder builder = state.builder();
+
+                    NodeBuilder cp = builder.child("checkpoints").child(name);
+                    if (cp.exists()) {
+                        cp.remove();
+                        SegmentNodeState newState = builder.getNodeState();
+                        if (revisions.setHead(state.getRecordId(), newState.getRecordId())) {
+                            refreshHead(false);
+                            return true;
+                        }
+                    }
+                } finally {
+                    unlockHead();
+                }
+            }
+        }
+        return false;
+    }
+
+}
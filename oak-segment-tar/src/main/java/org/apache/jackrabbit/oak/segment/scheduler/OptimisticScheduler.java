@@ -0,0 +1,213 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.segment.scheduler;
+
+import static java.lang.Thread.currentThread;
+
+import java.io.Closeable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.segment.Revisions;
+import org.apache.jackrabbit.oak.segment.SegmentNodeState;
+import org.apache.jackrabbit.oak.segment.SegmentNodeStoreStats;
+import org.apache.jackrabbit.oak.segment.SegmentOverflowException;
+import org.apache.jackrabbit.oak.segment.SegmentReader;
+import org.apache.jackrabbit.oak.spi.commit.Observable;
+import org.apache.jackrabbit.oak.spi.commit.Observer;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link Scheduler} that applies commits optimistically. Rebasing a commit
+ * and running its commit hooks happens concurrently with other commits. Only
+ * the final compare-and-set of the head state in {@link Revisions} (together
+ * with dispatching the change to observers) is serialized.
+ * <p>
+ * A commit that loses the race for the head is re-applied on top of the new
+ * head. Commits touching disjoint subtrees therefore only pay for a cheap
+ * rebase. After {@link #MAX_OPTIMISTIC_RETRIES} failed attempts a commit
+ * falls back to holding the head lock for its whole rebase, which guarantees
+ * progress under heavy contention on the same content.
+ */
+public class OptimisticScheduler extends AbstractScheduler {
+
+    public static class OptimisticSchedulerBuilder extends Builder<OptimisticSchedulerBuilder> {
+
+        private OptimisticSchedulerBuilder(@NotNull Revisions revisions, @NotNull SegmentReader reader,
+                @NotNull SegmentNodeStoreStats stats) {
+            super(revisions, reader, stats);
+        }
+
+        @NotNull
+        public OptimisticScheduler build() {
+            if (dispatchChanges) {
+                return new ObservableOptimisticScheduler(this);
+            } else {
+                return new OptimisticScheduler(this);
+            }
+        }
+
+    }
+
+    public static OptimisticSchedulerBuilder builder(@NotNull Revisions revisions, @NotNull SegmentReader reader,
+            @NotNull SegmentNodeStoreStats stats) {
+        return new OptimisticSchedulerBuilder(revisions, reader, stats);
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(OptimisticScheduler.class);
+
+    /**
+     * Number of times a commit is re-applied on top of a concurrently updated
+     * head before falling back to applying it while holding the head lock.
+     */
+    static final int MAX_OPTIMISTIC_RETRIES = Integer
+            .getInteger("oak.scheduler.optimistic.maxRetries", 10);
+
+    /**
+     * Lock serializing updates of the {@link #head} variable and the
+     * corresponding update of the head in {@link Revisions}. It is only held
+     * for the compare-and-set of the head, never while commit hooks run
+     * (except for commits falling back after too many retries).
+     */
+    private final ReentrantLock headLock = new ReentrantLock(true);
+
+    public OptimisticScheduler(OptimisticSchedulerBuilder builder) {
+        super(builder);
+    }
+
+    @Override
+    boolean tryLockHead(long timeout, TimeUnit unit) throws InterruptedException {
+        return headLock.tryLock(timeout, unit);
+    }
+
+    @Override
+    boolean tryLockHead() {
+        return headLock.tryLock();
+    }
+
+    @Override
+    void unlockHead() {
+        headLock.unlock();
+    }
+
+    @Override
+    void onCommitRetried() {
+        stats.onCommitRetried(currentThread());
+    }
+
+    @Override
+    public NodeState getHeadNodeState() {
+        if (headLock.tryLock()) {
+            try {
+                refreshHead(true);
+            } finally {
+                headLock.unlock();
+            }
+        }
+        return head.get();
+    }
+
+    @Override
+    public NodeState schedule(@NotNull Commit commit, SchedulerOption... schedulingOptions)
+            throws CommitFailedException {
+        long queuedTime = System.nanoTime();
+        stats.onCommitQueued(currentThread(), commit::getGCGeneration);
+        boolean dequeued = false;
+        try {
+            // only do the merge if there are some changes to commit
+            if (!commit.hasChanges()) {
+                dequeue(queuedTime);
+                dequeued = true;
+                return head.get().getChildNode(ROOT);
+            }
+
+            for (int retries = 0; retries < MAX_OPTIMISTIC_RETRIES; retries++) {
+                SegmentNodeState before = reader.readHeadState(revisions);
+                SegmentNodeState after = commit.apply(before);
+
+                long beforeCommitTime = System.nanoTime();
+                headLock.lock();
+                try {
+                    refreshHead(true);
+                    if (before.getRecordId().equals(head.get().getRecordId())
+                            && revisions.setHead(before.getRecordId(), after.getRecordId())) {
+                        dequeue(queuedTime);
+                        dequeued = true;
+                        headUpdated(after, commit.info());
+                        return applied(commit, after, beforeCommitTime);
+                    }
+                } finally {
+                    headLock.unlock();
+                }
+
+                onCommitRetried();
+                log.debug("Scheduler detected concurrent commits. Re-applying commit, attempt {}", retries + 1);
+            }
+
+            log.debug("Commit could not be applied optimistically after {} attempts. " +
+                    "Applying while holding the head lock", MAX_OPTIMISTIC_RETRIES);
+            headLock.lock();
+            try {
+                dequeue(queuedTime);
+                dequeued = true;
+                long beforeCommitTime = System.nanoTime();
+                return applied(commit, applyWithBackoff(commit), beforeCommitTime);
+            } finally {
+                headLock.unlock();
+            }
+        } catch (InterruptedException e) {
+            currentThread().interrupt();
+            throw new CommitFailedException("Segment", 2, "Merge interrupted", e);
+        } catch (SegmentOverflowException e) {
+            throw new CommitFailedException("Segment", 3, "Merge failed", e);
+        } finally {
+            if (!dequeued) {
+                dequeue(queuedTime);
+            }
+        }
+    }
+
+    private void dequeue(long queuedTime) {
+        stats.onCommitDequeued(currentThread(), System.nanoTime() - queuedTime);
+    }
+
+    /**
+     * Housekeeping after the head has been successfully updated to {@code after}.
+     */
+    private NodeState applied(Commit commit, SegmentNodeState after, long beforeCommitTime) {
+        SegmentNodeState merged = (SegmentNodeState) after.getChildNode(ROOT);
+        commit.applied(merged);
+        stats.onCommit(currentThread(), System.nanoTime() - beforeCommitTime);
+        return merged;
+    }
+
+    private static class ObservableOptimisticScheduler extends OptimisticScheduler implements Observable {
+
+        public ObservableOptimisticScheduler(OptimisticSchedulerBuilder builder) {
+            super(builder);
+        }
+
+        @Override
+        public Closeable addObserver(Observer observer) {
+            return addChangeObserver(observer);
+        }
+    }
+}
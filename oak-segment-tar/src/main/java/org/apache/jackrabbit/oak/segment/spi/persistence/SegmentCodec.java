@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.spi.persistence;
+
+import java.io.IOException;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A codec compressing the data of segments before they are written to a
+ * {@link SegmentArchiveWriter} and decompressing it after it has been read
+ * from a {@link SegmentArchiveReader}.
+ * <p>
+ * The {@link #getId() id} of the codec is recorded with every compressed
+ * segment, so segments compressed with different codecs and uncompressed
+ * segments can coexist in the same and across archives. Implementations
+ * must therefore never change the format of the data they produce for a
+ * given id. A new version of a codec must use a new id.
+ * <p>
+ * Implementations must be thread safe.
+ */
+public interface SegmentCodec {
+
+    /**
+     * The id of this codec recorded with every segment compressed by it. Ids
+     * {@code 0} to {@code 63} are reserved for the codecs shipped with Oak.
+     *
+     * @return the id of this codec, between {@code 0} and {@code 127}.
+     */
+    byte getId();
+
+    /**
+     * @return a human readable name of this codec.
+     */
+    @NotNull
+    String getName();
+
+    /**
+     * Compress the given data.
+     *
+     * @param data   the data to compress
+     * @param offset the start offset in {@code data}
+     * @param length the number of bytes to compress
+     * @return the compressed data
+     */
+    @NotNull
+    byte[] compress(@NotNull byte[] data, int offset, int length) throws IOException;
+
+    /**
+     * Decompress the given data.
+     *
+     * @param data               the data to decompress
+     * @param offset             the start offset in {@code data}
+     * @param length             the number of bytes to decompress
+     * @param uncompressedLength the length of the data before compression
+     * @return the decompressed data of length {@code uncompressedLength}
+     * @throws IOException if the data cannot be decompressed
+     */
+    @NotNull
+    byte[] decompress(@NotNull byte[] data, int offset, int length, int uncompressedLength) throws IOException;
+
+}
@@ -0,0 +1,291 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.standby.client;
+
+import static com.google.common.collect.Lists.newArrayList;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+
+import org.apache.jackrabbit.core.data.util.NamedThreadFactory;
+import org.apache.jackrabbit.oak.segment.SegmentId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Copies a hierarchy of segments from the primary using several connections
+ * concurrently. Each connection is served by its own thread, which picks the
+ * next task from a shared queue: either reading the references of a data
+ * segment or copying a segment.
+ * <p>
+ * The graph of missing segments is discovered breadth first, starting at the
+ * root segment. A segment is copied as soon as all the missing segments it
+ * references have been copied, so the local store never contains a segment
+ * referencing a segment that is not there yet. Should the references form a
+ * cycle, the cycle is broken arbitrarily once there is nothing else left to
+ * do, which matches the behaviour of the sequential traversal.
+ */
+class ParallelSegmentCopier {
+
+    private static final Logger log = LoggerFactory.getLogger(ParallelSegmentCopier.class);
+
+    /**
+     * Destination of the copied segments.
+     */
+    interface SegmentSink {
+
+        void writeSegment(UUID id, byte[] data) throws Exception;
+
+    }
+
+    private static class Node {
+
+        final UUID id;
+
+        final Set<UUID> missing = new HashSet<>();
+
+        final List<Node> dependents = new ArrayList<>();
+
+        boolean referencesRead;
+
+        boolean scheduled;
+
+        boolean written;
+
+        Node(UUID id) {
+            this.id = id;
+        }
+
+    }
+
+    private interface Task {
+
+        void execute(StandbyClient client) throws Exception;
+
+    }
+
+    private final List<StandbyClient> clients;
+
+    private final Predicate<UUID> isLocal;
+
+    private final SegmentSink sink;
+
+    private final Object lock = new Object();
+
+    // All the following fields are guarded by lock
+
+    private final Map<UUID, Node> nodes = new HashMap<>();
+
+    private final Deque<Task> tasks = new ArrayDeque<>();
+
+    private int runningTasks;
+
+    private int unwrittenNodes;
+
+    private Exception failure;
+
+    ParallelSegmentCopier(List<StandbyClient> clients, Predicate<UUID> isLocal, SegmentSink sink) {
+        this.clients = clients;
+        this.isLocal = isLocal;
+        this.sink = sink;
+    }
+
+    /**
+     * Copy the segment with the passed identifier and all the segments it
+     * transitively references which are not yet in the local store.
+     */
+    void copy(UUID root) throws Exception {
+        if (isLocal.test(root)) {
+            return;
+        }
+
+        synchronized (lock) {
+            addNode(root);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(clients.size(), new NamedThreadFactory("standby-copy"));
+        try {
+            List<Future<?>> futures = newArrayList();
+            for (StandbyClient client : clients) {
+                futures.add(executor.submit(() -> {
+                    work(client);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        synchronized (lock) {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    private void work(StandbyClient client) throws InterruptedException {
+        while (true) {
+            Task task;
+
+            synchronized (lock) {
+                while (true) {
+                    if (failure != null) {
+                        return;
+                    }
+                    if (!tasks.isEmpty()) {
+                        task = tasks.poll();
+                        runningTasks++;
+                        break;
+                    }
+                    if (runningTasks == 0) {
+                        if (unwrittenNodes == 0) {
+                            return;
+                        }
+                        breakCycle();
+                        continue;
+                    }
+                    lock.wait();
+                }
+            }
+
+            Exception error = null;
+
+            try {
+                task.execute(client);
+            } catch (Exception e) {
+                error = e;
+            }
+
+            synchronized (lock) {
+                runningTasks--;
+                if (error != null && failure == null) {
+                    failure = error;
+                }
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private Node addNode(UUID id) {
+        Node node = new Node(id);
+        nodes.put(id, node);
+        unwrittenNodes++;
+
+        if (SegmentId.isDataSegmentId(id.getLeastSignificantBits())) {
+            tasks.addLast(client -> readReferences(client, node));
+        } else {
+            // Bulk segments don't reference other segments
+            node.referencesRead = true;
+            schedule(node);
+        }
+
+        return node;
+    }
+
+    private void schedule(Node node) {
+        node.scheduled = true;
+        // Copying segments takes precedence over discovering new ones, so
+        // that the segments don't wait longer than necessary
+        tasks.addFirst(client -> copySegment(client, node));
+    }
+
+    private void breakCycle() {
+        for (Node node : nodes.values()) {
+            if (!node.written && !node.scheduled && node.referencesRead) {
+                log.debug("Breaking reference cycle at segment {}", node.id);
+                schedule(node);
+                return;
+            }
+        }
+        failure = new IllegalStateException("Unable to determine the next segment to copy from primary");
+    }
+
+    private void readReferences(StandbyClient client, Node node) throws Exception {
+        log.debug("Inspecting segment {}", node.id);
+
+        Iterable<String> references = client.getReferences(node.id.toString());
+
+        if (references == null) {
+            throw new IllegalStateException(String.format("Unable to read references of segment %s from primary", node.id));
+        }
+
+        List<UUID> missing = newArrayList();
+        for (String s : references) {
+            UUID referenced = UUID.fromString(s);
+            log.debug("Found reference from {} to {}", node.id, referenced);
+            if (!referenced.equals(node.id) && !isLocal.test(referenced)) {
+                missing.add(referenced);
+            }
+        }
+
+        synchronized (lock) {
+            for (UUID id : missing) {
+                Node referenced = nodes.get(id);
+                if (referenced == null) {
+                    referenced = addNode(id);
+                }
+                if (!referenced.written) {
+                    node.missing.add(id);
+                    referenced.dependents.add(node);
+                }
+            }
+            node.referencesRead = true;
+            if (node.missing.isEmpty()) {
+                schedule(node);
+            }
+        }
+    }
+
+    private void copySegment(StandbyClient client, Node node) throws Exception {
+        byte[] data = client.getSegment(node.id.toString());
+
+        if (data == null) {
+            throw new IllegalStateException("Unable to read segment " + node.id);
+        }
+
+        log.info("Copying {} segment {} from primary", SegmentId.isDataSegmentId(node.id.getLeastSignificantBits()) ? "data" : "bulk", node.id);
+        sink.writeSegment(node.id, data);
+
+        synchronized (lock) {
+            node.written = true;
+            unwrittenNodes--;
+            for (Node dependent : node.dependents) {
+                dependent.missing.remove(node.id);
+                if (dependent.missing.isEmpty() && dependent.referencesRead && !dependent.scheduled) {
+                    schedule(dependent);
+                }
+            }
+            node.dependents.clear();
+        }
+    }
+
+}
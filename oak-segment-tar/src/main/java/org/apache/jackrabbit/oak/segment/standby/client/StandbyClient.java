@@ -17,8 +17,11 @@
 
 package org.apache.jackrabbit.oak.segment.standby.client;
 
+import static java.util.Collections.emptyList;
+
 import java.io.File;
 import java.io.InputStream;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.TimeUnit;
@@ -53,6 +56,9 @@ import org.apache.jackrabbit.oak.segment.standby.codec.GetReferencesResponse;
 import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentRequest;
 import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentRequestEncoder;
 import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentResponse;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentsRequest;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentsRequestEncoder;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentsResponse;
 import org.apache.jackrabbit.oak.segment.standby.codec.ResponseDecoder;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
@@ -62,10 +68,19 @@ class StandbyClient implements AutoCloseable {
 
     private static final Logger log = LoggerFactory.getLogger(StandbyClient.class);
 
+    /**
+     * Maximum number of segments in a single 'get segments' request. The
+     * server reads requests line by line with a limit of 8192 characters,
+     * which leaves room for at most about 200 segment identifiers.
+     */
+    static final int MAX_SEGMENTS_PER_REQUEST = 128;
+
     private final BlockingQueue<GetHeadResponse> headQueue = new LinkedBlockingDeque<>();
 
     private final BlockingQueue<GetSegmentResponse> segmentQueue = new LinkedBlockingDeque<>();
 
+    private final BlockingQueue<GetSegmentsResponse> segmentsQueue = new LinkedBlockingDeque<>();
+
     private final BlockingQueue<GetBlobResponse> blobQueue = new LinkedBlockingDeque<>();
 
     private final BlockingQueue<GetReferencesResponse> referencesQueue = new LinkedBlockingDeque<>();
@@ -76,6 +91,8 @@ class StandbyClient implements AutoCloseable {
 
     private Channel channel;
 
+    private Boolean batchSupported;
+
     StandbyClient(String host, int port, NioEventLoopGroup group, String clientId, boolean secure, int readTimeoutMs, File spoolFolder) throws InterruptedException {
         this.clientId = clientId;
         this.readTimeoutMs = readTimeoutMs;
@@ -113,6 +130,7 @@ class StandbyClient implements AutoCloseable {
                     p.addLast(new StringEncoder(CharsetUtil.UTF_8));
                     p.addLast(new GetHeadRequestEncoder());
                     p.addLast(new GetSegmentRequestEncoder());
+                    p.addLast(new GetSegmentsRequestEncoder());
                     p.addLast(new GetBlobRequestEncoder());
                     p.addLast(new GetReferencesRequestEncoder());
 
@@ -120,6 +138,7 @@ class StandbyClient implements AutoCloseable {
 
                     p.addLast(new GetHeadResponseHandler(headQueue));
                     p.addLast(new GetSegmentResponseHandler(segmentQueue));
+                    p.addLast(new GetSegmentsResponseHandler(segmentsQueue));
                     p.addLast(new GetBlobResponseHandler(blobQueue));
                     p.addLast(new GetReferencesResponseHandler(referencesQueue));
 
@@ -171,6 +190,54 @@ class StandbyClient implements AutoCloseable {
         return response.getSegmentData();
     }
 
+    /**
+     * Determine whether the server understands 'get segments' requests.
+     * Servers predating them silently drop such requests. To detect this
+     * without waiting for a timeout, an empty 'get segments' request is sent,
+     * immediately followed by a 'get head' request. The server processes
+     * requests in order, so a server supporting batches answers the former
+     * before the latter.
+     *
+     * @return {@code true} if {@link #requestSegments(List)} can be used
+     * with this server.
+     */
+    boolean isBatchSupported() throws InterruptedException {
+        if (batchSupported == null) {
+            channel.write(new GetSegmentsRequest(clientId, emptyList()));
+            if (getHead() == null) {
+                return false;
+            }
+            batchSupported = segmentsQueue.poll() != null;
+            log.debug("Server {} batched segment requests", batchSupported ? "supports" : "does not support");
+        }
+        return batchSupported;
+    }
+
+    /**
+     * Request a batch of segments without waiting for them. The segments
+     * that could be read by the server are returned in order by subsequent
+     * calls to {@link #nextSegment()}.
+     *
+     * @param segmentIds the identifiers of the segments, at most
+     *                   {@link #MAX_SEGMENTS_PER_REQUEST}
+     */
+    void requestSegments(List<String> segmentIds) {
+        // the end of batch markers are only needed by isBatchSupported()
+        segmentsQueue.clear();
+        channel.writeAndFlush(new GetSegmentsRequest(clientId, segmentIds));
+    }
+
+    /**
+     * Wait for the next segment requested through {@link
+     * #requestSegments(List)}.
+     *
+     * @return the next segment or {@code null} if it did not arrive in time.
+     */
+    @Nullable
+    GetSegmentResponse nextSegment() throws InterruptedException {
+        return segmentQueue.poll(readTimeoutMs, TimeUnit.MILLISECONDS);
+    }
+
     @Nullable
     InputStream getBlob(String blobId) throws InterruptedException {
         channel.writeAndFlush(new GetBlobRequest(clientId, blobId));
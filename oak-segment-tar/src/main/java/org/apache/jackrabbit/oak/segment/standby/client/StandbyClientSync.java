@@ -19,10 +19,14 @@
 
 package org.apache.jackrabbit.oak.segment.standby.client;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -51,6 +55,12 @@ public final class StandbyClientSync implements ClientStandbyStatusMBean, Runnab
 
     private static final AtomicInteger standbyRunCounter = new AtomicInteger();
 
+    /**
+     * Default number of connections to the primary. With more than one
+     * connection, missing segments are copied concurrently.
+     */
+    private static final int CONNECTIONS = Integer.getInteger("oak.standby.client.connections", 1);
+
     private final String host;
 
     private final int port;
@@ -69,6 +79,8 @@ public final class StandbyClientSync implements ClientStandbyStatusMBean, Runnab
 
     private final File spoolFolder;
 
+    private final int connections;
+
     private final StandbyClientSyncExecution execution;
 
     private final AtomicBoolean active = new AtomicBoolean(false);
@@ -96,6 +108,11 @@ public final class StandbyClientSync implements ClientStandbyStatusMBean, Runnab
     }
 
     public StandbyClientSync(String host, int port, FileStore store, boolean secure, int readTimeoutMs, boolean autoClean, File spoolFolder) {
+        this(host, port, store, secure, readTimeoutMs, autoClean, spoolFolder, CONNECTIONS);
+    }
+
+    public StandbyClientSync(String host, int port, FileStore store, boolean secure, int readTimeoutMs, boolean autoClean, File spoolFolder, int connections) {
+        checkArgument(connections > 0, "connections must be greater than 0");
         this.state = STATUS_INITIALIZING;
         this.lastSuccessfulRequest = -1;
         this.syncStartTimestamp = -1;
@@ -111,6 +128,7 @@ public final class StandbyClientSync implements ClientStandbyStatusMBean, Runnab
         this.group = new NioEventLoopGroup(0, new NamedThreadFactory("standby"));
         this.execution = new StandbyClientSyncExecution(fileStore, () -> running);
         this.spoolFolder = spoolFolder;
+        this.connections = connections;
         try {
             ManagementFactory.getPlatformMBeanServer().registerMBean(new StandardMBean(this, ClientStandbyStatusMBean.class), new ObjectName(this.getMBeanName()));
         } catch (Exception e) {
@@ -161,8 +179,16 @@ public final class StandbyClientSync implements ClientStandbyStatusMBean, Runnab
 
                 GCGeneration genBefore = headGeneration(fileStore);
 
-                try (StandbyClient client = new StandbyClient(host, port, group, observer.getID(), secure, readTimeoutMs, spoolFolder)) {
-                    execution.execute(client);
+                List<StandbyClient> clients = new ArrayList<>(connections);
+                try {
+                    for (int i = 0; i < connections; i++) {
+                        clients.add(new StandbyClient(host, port, group, observer.getID(), secure, readTimeoutMs, spoolFolder));
+                    }
+                    execution.execute(clients);
+                } finally {
+                    for (StandbyClient client : clients) {
+                        client.close();
+                    }
                 }
 
                 fileStore.flush();
@@ -268,6 +294,21 @@ public final class StandbyClientSync implements ClientStandbyStatusMBean, Runnab
         return syncEndTimestamp;
     }
 
+    @Override
+    public long getTransferredSegments() {
+        return execution.getTransferredSegments();
+    }
+
+    @Override
+    public long getTransferredSegmentBytes() {
+        return execution.getTransferredSegmentBytes();
+    }
+
+    @Override
+    public long getSegmentTransferRate() {
+        return execution.getSegmentTransferRate();
+    }
+
     private void closeGroup() {
         if (group == null) {
             return;
@@ -17,11 +17,19 @@
 
 package org.apache.jackrabbit.oak.segment.standby.client;
 
+import static com.google.common.collect.Lists.newArrayList;
+import static java.util.Collections.singletonList;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.google.common.base.Stopwatch;
 import com.google.common.base.Supplier;
@@ -32,6 +40,7 @@ import org.apache.jackrabbit.oak.segment.SegmentNodeBuilder;
 import org.apache.jackrabbit.oak.segment.SegmentNodeState;
 import org.apache.jackrabbit.oak.segment.SegmentNotFoundException;
 import org.apache.jackrabbit.oak.segment.file.FileStore;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentResponse;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -46,12 +55,25 @@ class StandbyClientSyncExecution {
 
     private static final Logger log = LoggerFactory.getLogger(StandbyClientSyncExecution.class);
 
+    /**
+     * Maximum number of segments requested from the primary but not yet
+     * received. Batched requests are only used with primaries supporting
+     * them. A window of {@code 1} disables batching.
+     */
+    private static final int SEGMENT_WINDOW = Integer.getInteger("oak.standby.segment.window", 64);
+
     private final FileStore store;
 
     private final SegmentIdProvider idProvider;
 
     private final Supplier<Boolean> running;
 
+    private final AtomicLong transferredSegments = new AtomicLong();
+
+    private final AtomicLong transferredSegmentBytes = new AtomicLong();
+
+    private final AtomicLong transferNanos = new AtomicLong();
+
     StandbyClientSyncExecution(FileStore store, Supplier<Boolean> running) {
         this.store = store;
         this.idProvider = store.getSegmentIdProvider();
@@ -59,6 +81,16 @@ class StandbyClientSyncExecution {
     }
 
     void execute(StandbyClient client) throws Exception {
+        execute(singletonList(client));
+    }
+
+    /**
+     * Synchronize with the primary using the passed clients. The head state is
+     * fetched and diffed through the first client. If more than one client is
+     * passed, missing segments are copied concurrently over all of them.
+     */
+    void execute(List<StandbyClient> clients) throws Exception {
+        StandbyClient client = clients.get(0);
         RecordId remoteHead = getHead(client);
 
         if (remoteHead == null) {
@@ -74,7 +106,7 @@ class StandbyClientSyncExecution {
         SegmentNodeState before = store.getHead();
         SegmentNodeBuilder builder = before.builder();
         SegmentNodeState current = newSegmentNodeState(remoteHead);
-        compareAgainstBaseState(client, current, before, builder);
+        compareAgainstBaseState(clients, current, before, builder);
         store.getRevisions().setHead(before.getRecordId(), remoteHead);
         log.info("Updated head state in {}", stopwatch);
     }
@@ -92,18 +124,32 @@ class StandbyClientSyncExecution {
         return store.getReader().readNode(id);
     }
 
-    private void compareAgainstBaseState(StandbyClient client, SegmentNodeState current, SegmentNodeState before, SegmentNodeBuilder builder) throws Exception {
+    private void compareAgainstBaseState(List<StandbyClient> clients, SegmentNodeState current, SegmentNodeState before, SegmentNodeBuilder builder) throws Exception {
         while (true) {
             try {
-                current.compareAgainstBaseState(before, new StandbyDiff(builder, store, client, running));
+                current.compareAgainstBaseState(before, new StandbyDiff(builder, store, clients.get(0), running));
                 return;
             } catch (SegmentNotFoundException e) {
                 log.debug("Found missing segment {}", e.getSegmentId());
-                copySegmentHierarchyFromPrimary(client, UUID.fromString(e.getSegmentId()));
+                UUID segmentId = UUID.fromString(e.getSegmentId());
+                if (clients.size() > 1) {
+                    copySegmentHierarchyFromPrimary(clients, segmentId);
+                } else {
+                    copySegmentHierarchyFromPrimary(clients.get(0), segmentId);
+                }
             }
         }
     }
 
+    private void copySegmentHierarchyFromPrimary(List<StandbyClient> clients, UUID segmentId) throws Exception {
+        long start = System.nanoTime();
+        try {
+            new ParallelSegmentCopier(clients, this::isLocal, this::writeSegment).copy(segmentId);
+        } finally {
+            transferNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
     private void copySegmentHierarchyFromPrimary(StandbyClient client, UUID segmentId) throws Exception {
         Set<UUID> visited = new HashSet<>();
         List<UUID> bulk = new LinkedList<>();
@@ -111,14 +157,60 @@ class StandbyClientSyncExecution {
 
         deriveTopologicalOrder(client, segmentId, visited, data, bulk);
 
-        for (UUID id : bulk) {
-            log.info("Copying bulk segment {} from primary", id);
-            copySegmentFromPrimary(client, id);
+        long start = System.nanoTime();
+        try {
+            if (SEGMENT_WINDOW > 1 && client.isBatchSupported()) {
+                List<UUID> ids = newArrayList(bulk);
+                ids.addAll(data);
+                copySegmentsFromPrimary(client, ids);
+            } else {
+                for (UUID id : bulk) {
+                    log.info("Copying bulk segment {} from primary", id);
+                    copySegmentFromPrimary(client, id);
+                }
+
+                for (UUID id : data) {
+                    log.info("Copying data segment {} from primary", id);
+                    copySegmentFromPrimary(client, id);
+                }
+            }
+        } finally {
+            transferNanos.addAndGet(System.nanoTime() - start);
         }
+    }
+
+    /**
+     * Copy the segments from the primary in the passed order, keeping up to
+     * {@link #SEGMENT_WINDOW} segments in flight. A new batch is requested
+     * as soon as half of the window has been received, so the primary can
+     * send the next segments while the previous ones are written locally.
+     */
+    private void copySegmentsFromPrimary(StandbyClient client, List<UUID> ids) throws Exception {
+        Iterator<UUID> pending = ids.iterator();
+        Deque<UUID> inFlight = new ArrayDeque<>();
+
+        while (pending.hasNext() || !inFlight.isEmpty()) {
+            if (pending.hasNext() && inFlight.size() <= SEGMENT_WINDOW / 2) {
+                int batchSize = Math.min(SEGMENT_WINDOW - inFlight.size(), StandbyClient.MAX_SEGMENTS_PER_REQUEST);
+                List<String> batch = newArrayList();
+                while (pending.hasNext() && batch.size() < batchSize) {
+                    UUID id = pending.next();
+                    inFlight.add(id);
+                    batch.add(id.toString());
+                }
+                log.debug("Requesting {} segments from primary", batch.size());
+                client.requestSegments(batch);
+            }
+
+            UUID expected = inFlight.remove();
+            GetSegmentResponse response = client.nextSegment();
+
+            if (response == null || !expected.toString().equals(response.getSegmentId())) {
+                throw new IllegalStateException("Unable to read segment " + expected);
+            }
 
-        for (UUID id : data) {
-            log.info("Copying data segment {} from primary", id);
-            copySegmentFromPrimary(client, id);
+            log.info("Copying {} segment {} from primary", SegmentId.isDataSegmentId(expected.getLeastSignificantBits()) ? "data" : "bulk", expected);
+            writeSegment(expected, response.getSegmentData());
         }
     }
 
@@ -171,10 +263,42 @@ class StandbyClientSyncExecution {
             throw new IllegalStateException("Unable to read segment " + uuid);
         }
 
+        writeSegment(uuid, data);
+    }
+
+    private void writeSegment(UUID uuid, byte[] data) throws Exception {
         long msb = uuid.getMostSignificantBits();
         long lsb = uuid.getLeastSignificantBits();
         SegmentId segmentId = idProvider.newSegmentId(msb, lsb);
         store.writeSegment(segmentId, data, 0, data.length);
+        transferredSegments.incrementAndGet();
+        transferredSegmentBytes.addAndGet(data.length);
+    }
+
+    /**
+     * @return the number of segments copied from the primary.
+     */
+    long getTransferredSegments() {
+        return transferredSegments.get();
+    }
+
+    /**
+     * @return the number of bytes of the segments copied from the primary.
+     */
+    long getTransferredSegmentBytes() {
+        return transferredSegmentBytes.get();
+    }
+
+    /**
+     * @return the average number of bytes per second of segment data copied
+     * from the primary, measured over the time spent copying segments.
+     */
+    long getSegmentTransferRate() {
+        long millis = TimeUnit.NANOSECONDS.toMillis(transferNanos.get());
+        if (millis == 0) {
+            return 0;
+        }
+        return transferredSegmentBytes.get() * 1000 / millis;
     }
 
 }
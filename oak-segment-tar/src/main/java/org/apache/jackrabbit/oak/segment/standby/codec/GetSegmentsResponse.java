@@ -0,0 +1,47 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.standby.codec;
+
+/**
+ * Marks the end of the segments sent in response to a
+ * {@link GetSegmentsRequest}.
+ */
+public class GetSegmentsResponse {
+
+    private final String clientId;
+
+    private final int segmentCount;
+
+    public GetSegmentsResponse(String clientId, int segmentCount) {
+        this.clientId = clientId;
+        this.segmentCount = segmentCount;
+    }
+
+    public String getClientId() {
+        return clientId;
+    }
+
+    /**
+     * @return the number of segments sent for the batch. This is less than
+     * the number of requested segments if some of them could not be read.
+     */
+    public int getSegmentCount() {
+        return segmentCount;
+    }
+
+}
@@ -0,0 +1,41 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.standby.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToByteEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Encodes a 'get segments' response.
+ */
+public class GetSegmentsResponseEncoder extends MessageToByteEncoder<GetSegmentsResponse> {
+
+    private static final Logger log = LoggerFactory.getLogger(GetSegmentsResponseEncoder.class);
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, GetSegmentsResponse msg, ByteBuf out) throws Exception {
+        log.debug("Sent {} segments to client {}", msg.getSegmentCount(), msg.getClientId());
+        out.writeInt(5);
+        out.writeByte(Messages.HEADER_SEGMENTS);
+        out.writeInt(msg.getSegmentCount());
+    }
+
+}
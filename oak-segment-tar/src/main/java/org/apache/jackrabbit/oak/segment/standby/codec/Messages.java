@@ -19,6 +19,8 @@
 
 package org.apache.jackrabbit.oak.segment.standby.codec;
 
+import com.google.common.base.Joiner;
+
 final class Messages {
 
     static final byte HEADER_RECORD = 0x00;
@@ -29,6 +31,8 @@ final class Messages {
 
     static final byte HEADER_REFERENCES = 0x03;
 
+    static final byte HEADER_SEGMENTS = 0x04;
+
     static final String GET_HEAD = "h";
 
     static final String GET_SEGMENT = "s.";
@@ -37,6 +41,8 @@ final class Messages {
 
     static final String GET_REFERENCES = "r.";
 
+    static final String GET_SEGMENTS = "sl.";
+
     private static final String MAGIC = "Standby-CMD@";
 
     private static final String SEPARATOR = ":";
@@ -76,6 +82,14 @@ final class Messages {
         return newGetSegmentRequest(clientId, segmentId, true);
     }
 
+    static String newGetSegmentsRequest(String clientId, Iterable<String> segmentIds, boolean delimited) {
+        return newRequest(clientId, GET_SEGMENTS + Joiner.on(",").join(segmentIds), delimited);
+    }
+
+    static String newGetSegmentsRequest(String clientId, Iterable<String> segmentIds) {
+        return newGetSegmentsRequest(clientId, segmentIds, true);
+    }
+
     static String newGetReferencesRequest(String clientId, String segmentId, boolean delimited) {
         return newRequest(clientId, GET_REFERENCES + segmentId, delimited);
     }
@@ -17,6 +17,9 @@
 
 package org.apache.jackrabbit.oak.segment.standby.codec;
 
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+
 import java.util.List;
 
 import io.netty.channel.ChannelHandlerContext;
@@ -44,6 +47,9 @@ public class RequestDecoder extends MessageToMessageDecoder<String> {
         } else if (request.startsWith(Messages.GET_SEGMENT)) {
             log.debug("Parsed 'get segment' message");
             out.add(new GetSegmentRequest(Messages.extractClientFrom(msg), request.substring(Messages.GET_SEGMENT.length())));
+        } else if (request.startsWith(Messages.GET_SEGMENTS)) {
+            log.debug("Parsed 'get segments' message");
+            out.add(new GetSegmentsRequest(Messages.extractClientFrom(msg), parseList(request.substring(Messages.GET_SEGMENTS.length()))));
         } else if (request.startsWith(Messages.GET_REFERENCES)) {
             log.debug("Parsed 'get references' message");
             out.add(new GetReferencesRequest(Messages.extractClientFrom(msg), request.substring(Messages.GET_REFERENCES.length())));
@@ -52,4 +58,11 @@ public class RequestDecoder extends MessageToMessageDecoder<String> {
         }
     }
 
+    private static List<String> parseList(String list) {
+        if (list.isEmpty()) {
+            return emptyList();
+        }
+        return asList(list.split(","));
+    }
+
 }
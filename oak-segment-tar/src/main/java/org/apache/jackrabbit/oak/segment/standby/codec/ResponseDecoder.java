@@ -96,6 +96,10 @@ public class ResponseDecoder extends ByteToMessageDecoder {
                 log.debug("Decoding 'get references' response");
                 decodeGetReferencesResponse(length, in, out);
                 break;
+            case Messages.HEADER_SEGMENTS:
+                log.debug("Decoding 'get segments' response");
+                decodeGetSegmentsResponse(in, out);
+                break;
             default:
                 log.debug("Invalid type, dropping message");
         }
@@ -127,6 +131,10 @@ public class ResponseDecoder extends ByteToMessageDecoder {
         out.add(new GetSegmentResponse(null, segmentId, data));
     }
 
+    private static void decodeGetSegmentsResponse(ByteBuf in, List<Object> out) {
+        out.add(new GetSegmentsResponse(null, in.readInt()));
+    }
+
     private void decodeGetBlobResponse(int length, ByteBuf in, List<Object> out) throws IOException {
         byte mask = in.readByte();
         long blobLength = in.readLong();
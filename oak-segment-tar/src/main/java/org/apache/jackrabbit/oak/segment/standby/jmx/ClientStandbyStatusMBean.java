@@ -33,6 +33,15 @@ public interface ClientStandbyStatusMBean extends StandbyStatusMBean {
     @Description("Local timestamp of the moment when the last sync cycle ended")
     long getSyncEndTimestamp();
 
+    @Description("number of segments transferred from the primary")
+    long getTransferredSegments();
+
+    @Description("number of bytes of segments transferred from the primary")
+    long getTransferredSegmentBytes();
+
+    @Description("average number of bytes per second transferred while copying segments from the primary")
+    long getSegmentTransferRate();
+
     // expose the informations as operations, too
 
     @Description("number of consecutive failed requests")
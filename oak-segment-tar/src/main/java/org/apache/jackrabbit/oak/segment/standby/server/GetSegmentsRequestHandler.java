@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.standby.server;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentResponse;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentsRequest;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentsResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Streams the segments of a batch back to the client in the order they were
+ * requested. Segments that cannot be read are skipped. The batch is always
+ * terminated by a {@link GetSegmentsResponse}.
+ */
+class GetSegmentsRequestHandler extends SimpleChannelInboundHandler<GetSegmentsRequest> {
+
+    private static final Logger log = LoggerFactory.getLogger(GetSegmentsRequestHandler.class);
+
+    private final StandbySegmentReader reader;
+
+    GetSegmentsRequestHandler(StandbySegmentReader reader) {
+        this.reader = reader;
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, GetSegmentsRequest msg) throws Exception {
+        log.debug("Reading {} segments for client {}", msg.getSegmentIds().size(), msg.getClientId());
+
+        int count = 0;
+
+        for (String segmentId : msg.getSegmentIds()) {
+            byte[] data = reader.readSegment(segmentId);
+
+            if (data == null) {
+                log.debug("Segment {} not found, skipping it in the response to client {}", segmentId, msg.getClientId());
+                continue;
+            }
+
+            ctx.writeAndFlush(new GetSegmentResponse(msg.getClientId(), segmentId, data));
+            count++;
+        }
+
+        ctx.writeAndFlush(new GetSegmentsResponse(msg.getClientId(), count));
+    }
+
+}
@@ -24,6 +24,7 @@ import io.netty.channel.ChannelInboundHandlerAdapter;
 import org.apache.jackrabbit.oak.segment.standby.codec.GetBlobRequest;
 import org.apache.jackrabbit.oak.segment.standby.codec.GetHeadRequest;
 import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentRequest;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentsRequest;
 import org.apache.jackrabbit.oak.segment.standby.store.CommunicationObserver;
 
 /**
@@ -46,6 +47,8 @@ class RequestObserverHandler extends ChannelInboundHandlerAdapter {
             onGetHeadRequest((GetHeadRequest) msg, address);
         } else if (msg instanceof GetSegmentRequest) {
             onGetSegmentRequest((GetSegmentRequest) msg, address);
+        } else if (msg instanceof GetSegmentsRequest) {
+            onGetSegmentsRequest((GetSegmentsRequest) msg, address);
         } else if (msg instanceof GetBlobRequest) {
             onGetBlobRequest((GetBlobRequest) msg, address);
         }
@@ -61,6 +64,10 @@ class RequestObserverHandler extends ChannelInboundHandlerAdapter {
         observer.gotMessageFrom(request.getClientId(), "get segment", address.getAddress().getHostAddress(), address.getPort());
     }
 
+    private void onGetSegmentsRequest(GetSegmentsRequest request, InetSocketAddress address) throws Exception {
+        observer.gotMessageFrom(request.getClientId(), "get segments", address.getAddress().getHostAddress(), address.getPort());
+    }
+
     private void onGetBlobRequest(GetBlobRequest request, InetSocketAddress address) throws Exception {
         observer.gotMessageFrom(request.getClientId(), "get blob id", address.getAddress().getHostAddress(), address.getPort());
     }
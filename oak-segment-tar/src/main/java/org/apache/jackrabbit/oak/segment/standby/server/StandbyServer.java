@@ -49,6 +49,7 @@ import org.apache.jackrabbit.oak.segment.standby.codec.GetBlobResponseEncoder;
 import org.apache.jackrabbit.oak.segment.standby.codec.GetHeadResponseEncoder;
 import org.apache.jackrabbit.oak.segment.standby.codec.GetReferencesResponseEncoder;
 import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentResponseEncoder;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentsResponseEncoder;
 import org.apache.jackrabbit.oak.segment.standby.codec.RequestDecoder;
 import org.apache.jackrabbit.oak.segment.standby.store.CommunicationObserver;
 import org.slf4j.Logger;
@@ -228,6 +229,7 @@ class StandbyServer implements AutoCloseable {
                 
                 p.addLast(new GetHeadResponseEncoder());
                 p.addLast(new GetSegmentResponseEncoder());
+                p.addLast(new GetSegmentsResponseEncoder());
                 p.addLast(new GetBlobResponseEncoder(builder.blobChunkSize));
                 p.addLast(new GetReferencesResponseEncoder());
                 p.addLast(new ResponseObserverHandler(builder.observer));
@@ -236,6 +238,7 @@ class StandbyServer implements AutoCloseable {
 
                 p.addLast(new GetHeadRequestHandler(builder.standbyHeadReader));
                 p.addLast(new GetSegmentRequestHandler(builder.standbySegmentReader));
+                p.addLast(new GetSegmentsRequestHandler(builder.standbySegmentReader));
                 p.addLast(new GetBlobRequestHandler(builder.standbyBlobReader));
                 p.addLast(new GetReferencesRequestHandler(builder.standbyReferencesReader));
 
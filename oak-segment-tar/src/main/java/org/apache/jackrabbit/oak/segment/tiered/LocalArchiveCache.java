@@ -0,0 +1,383 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.segment.tiered;
+
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.jackrabbit.oak.segment.spi.monitor.FileStoreMonitorAdapter;
+import org.apache.jackrabbit.oak.segment.spi.monitor.IOMonitorAdapter;
+import org.apache.jackrabbit.oak.segment.spi.monitor.RemoteStoreMonitorAdapter;
+import org.apache.jackrabbit.oak.segment.spi.persistence.Buffer;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveEntry;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveManager;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveReader;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveWriter;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentNodeStorePersistence;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded set of local copies of archives with least recently used eviction.
+ * Local copies are either added once they have been completely written or
+ * copied in the background from a remote reader.
+ * <p>
+ * Closing this cache stops the background copies and closes the readers of
+ * the local copies.
+ */
+class LocalArchiveCache implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(LocalArchiveCache.class);
+
+    private final SegmentArchiveManager localManager;
+
+    private final File directory;
+
+    private final long maxSize;
+
+    private final Map<String, LocalArchive> archives = new ConcurrentHashMap<>();
+
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Archives removed while their local copy was being written.
+     */
+    private final Set<String> invalidated = ConcurrentHashMap.newKeySet();
+
+    private final ExecutorService copier = newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "TarMK tiered archive copier");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Logical clock for determining the least recently used archive.
+     */
+    private final AtomicLong clock = new AtomicLong();
+
+    private final LongAdder localReads = new LongAdder();
+
+    private final LongAdder remoteReads = new LongAdder();
+
+    /**
+     * Total size of the archives in {@link #archives}. Guarded by {@code this}.
+     */
+    private long size;
+
+    /**
+     * Whether this cache has been closed. Guarded by {@code this}.
+     */
+    private boolean closed;
+
+    LocalArchiveCache(SegmentNodeStorePersistence localPersistence, File directory, long maxSize) throws IOException {
+        this.directory = directory;
+        this.maxSize = maxSize;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create directory " + directory);
+        }
+
+        // Local copies may be stale or incomplete after a restart
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(".tar"));
+        if (files != null) {
+            for (File file : files) {
+                if (!file.delete()) {
+                    log.warn("Unable to remove stale local archive {}", file);
+                }
+            }
+        }
+
+        // Memory mapping is disabled so local copies can be evicted safely
+        // while being read. Such reads fail and fall back to the remote archive.
+        this.localManager = localPersistence.createArchiveManager(false, false,
+                new IOMonitorAdapter(), new FileStoreMonitorAdapter(), new RemoteStoreMonitorAdapter());
+    }
+
+    File getDirectory() {
+        return directory;
+    }
+
+    long getLocalReadCount() {
+        return localReads.sum();
+    }
+
+    long getRemoteReadCount() {
+        return remoteReads.sum();
+    }
+
+    synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * @return  the local copy of the archive {@code name} or {@code null} if none.
+     */
+    @Nullable
+    LocalArchive get(String name) {
+        LocalArchive archive = archives.get(name);
+        if (archive != null) {
+            archive.lastAccess = clock.incrementAndGet();
+        }
+        return archive;
+    }
+
+    boolean contains(String name) {
+        return archives.containsKey(name);
+    }
+
+    /**
+     * Create a writer for the local copy of an archive being written, or
+     * {@code null} if the archive should not be copied locally.
+     */
+    @Nullable
+    SegmentArchiveWriter newWriter(String name) {
+        if (maxSize == 0 || !pending.add(name)) {
+            return null;
+        }
+        try {
+            return localManager.create(name);
+        } catch (IOException e) {
+            log.warn("Unable to create local archive {}", name, e);
+            pending.remove(name);
+            return null;
+        }
+    }
+
+    /**
+     * Called once the local copy of the archive {@code name} has been
+     * completely written through a writer obtained from {@link #newWriter(String)}.
+     * @param complete  {@code false} if writing the local copy failed.
+     */
+    void written(String name, boolean complete) {
+        try {
+            boolean valid = !invalidated.remove(name);
+            if (complete && valid) {
+                add(name);
+            } else {
+                localManager.delete(name);
+            }
+        } finally {
+            pending.remove(name);
+        }
+    }
+
+    /**
+     * Copy the archive read by {@code remote} to a local archive in the
+     * background, unless it is already present or being copied.
+     */
+    void copyInBackground(String name, SegmentArchiveReader remote) {
+        if (maxSize == 0 || remote.length() > maxSize || archives.containsKey(name) || !pending.add(name)) {
+            return;
+        }
+        try {
+            copier.execute(() -> {
+                boolean complete = false;
+                try {
+                    SegmentArchiveWriter writer = localManager.create(name);
+                    try {
+                        copy(remote, writer);
+                        complete = true;
+                    } finally {
+                        writer.close();
+                    }
+                } catch (IOException | RuntimeException e) {
+                    log.debug("Unable to copy archive {} to the local directory", name, e);
+                    complete = false;
+                } finally {
+                    written(name, complete);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.remove(name);
+        }
+    }
+
+    private static void copy(SegmentArchiveReader reader, SegmentArchiveWriter writer) throws IOException {
+        for (SegmentArchiveEntry entry : reader.listSegments()) {
+            Buffer buffer = reader.readSegment(entry.getMsb(), entry.getLsb());
+            if (buffer == null) {
+                throw new IOException("Segment " + entry.getMsb() + "." + entry.getLsb() + " not found");
+            }
+            byte[] data = toByteArray(buffer);
+            writer.writeSegment(entry.getMsb(), entry.getLsb(), data, 0, data.length,
+                    entry.getGeneration(), entry.getFullGeneration(), entry.isCompacted());
+        }
+        Buffer binaryReferences = reader.getBinaryReferences();
+        if (binaryReferences != null) {
+            writer.writeBinaryReferences(toByteArray(binaryReferences));
+        }
+        if (reader.hasGraph()) {
+            Buffer graph = reader.getGraph();
+            if (graph != null) {
+                writer.writeGraph(toByteArray(graph));
+            }
+        }
+    }
+
+    private static byte[] toByteArray(Buffer buffer) {
+        Buffer duplicate = buffer.duplicate();
+        byte[] data = new byte[duplicate.remaining()];
+        duplicate.get(data);
+        return data;
+    }
+
+    private void add(String name) {
+        SegmentArchiveReader reader;
+        try {
+            reader = localManager.open(name);
+        } catch (IOException e) {
+            log.warn("Unable to open local archive {}", name, e);
+            reader = null;
+        }
+        if (reader == null) {
+            localManager.delete(name);
+            return;
+        }
+
+        LocalArchive archive = new LocalArchive(name, reader);
+        archive.lastAccess = clock.incrementAndGet();
+        synchronized (this) {
+            if (closed) {
+                archive.close();
+                localManager.delete(name);
+                return;
+            }
+            LocalArchive previous = archives.put(name, archive);
+            if (previous != null) {
+                size -= previous.length;
+                previous.close();
+            }
+            size += archive.length;
+            evict(archive);
+        }
+    }
+
+    /**
+     * Remove the local copies of the least recently used archives until the
+     * total size does not exceed the maximum size. {@code keep} is only
+     * removed if it alone exceeds the maximum size.
+     */
+    private synchronized void evict(LocalArchive keep) {
+        while (size > maxSize && !archives.isEmpty()) {
+            LocalArchive lru = null;
+            for (LocalArchive archive : archives.values()) {
+                if (archive != keep && (lru == null || archive.lastAccess < lru.lastAccess)) {
+                    lru = archive;
+                }
+            }
+            if (lru == null) {
+                lru = keep;
+            }
+            log.debug("Evicting local archive {}", lru.name);
+            remove(lru.name);
+        }
+    }
+
+    /**
+     * Remove the local copy of the archive {@code name}, if any.
+     */
+    synchronized void remove(String name) {
+        if (pending.contains(name)) {
+            invalidated.add(name);
+        }
+        LocalArchive archive = archives.remove(name);
+        if (archive != null) {
+            size -= archive.length;
+            archive.close();
+            localManager.delete(name);
+        }
+    }
+
+    @Override
+    public void close() {
+        copier.shutdownNow();
+        try {
+            if (!copier.awaitTermination(1, TimeUnit.MINUTES)) {
+                log.warn("Timed out waiting for archive copies to terminate");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            closed = true;
+            for (LocalArchive archive : archives.values()) {
+                archive.close();
+            }
+            archives.clear();
+            size = 0;
+        }
+    }
+
+    void onLocalRead() {
+        localReads.increment();
+    }
+
+    void onRemoteRead() {
+        remoteReads.increment();
+    }
+
+    /**
+     * The local copy of an archive.
+     */
+    static class LocalArchive {
+
+        private final String name;
+
+        private final SegmentArchiveReader reader;
+
+        private final long length;
+
+        private volatile long lastAccess;
+
+        LocalArchive(String name, SegmentArchiveReader reader) {
+            this.name = name;
+            this.reader = reader;
+            this.length = reader.length();
+        }
+
+        @Nullable
+        Buffer readSegment(long msb, long lsb) throws IOException {
+            return reader.readSegment(msb, lsb);
+        }
+
+        @NotNull
+        String getName() {
+            return name;
+        }
+
+        private void close() {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                log.debug("Unable to close local archive {}", name, e);
+            }
+        }
+    }
+
+}
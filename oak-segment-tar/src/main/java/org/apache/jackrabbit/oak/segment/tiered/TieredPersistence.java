@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.segment.tiered;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.jackrabbit.oak.segment.file.tar.TarPersistence;
+import org.apache.jackrabbit.oak.segment.spi.monitor.FileStoreMonitor;
+import org.apache.jackrabbit.oak.segment.spi.monitor.IOMonitor;
+import org.apache.jackrabbit.oak.segment.spi.monitor.RemoteStoreMonitor;
+import org.apache.jackrabbit.oak.segment.spi.persistence.GCJournalFile;
+import org.apache.jackrabbit.oak.segment.spi.persistence.JournalFile;
+import org.apache.jackrabbit.oak.segment.spi.persistence.ManifestFile;
+import org.apache.jackrabbit.oak.segment.spi.persistence.RepositoryLock;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveManager;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentNodeStorePersistence;
+
+/**
+ * A {@link SegmentNodeStorePersistence} keeping a bounded local copy of the
+ * recently read and written archives of a (usually remote) persistence.
+ * <p>
+ * The remote persistence is authoritative. All archives are written through
+ * to it, and journal, GC journal, manifest and repository lock are taken from
+ * it. Archives written through this persistence are also written to TAR files
+ * in a local directory. Archives a segment is read from remotely are copied
+ * there in the background. Segment reads are served from the local copy when present and
+ * from the remote persistence otherwise.
+ * <p>
+ * The total size of the local copies is bounded. When the bound is exceeded
+ * the least recently accessed archives are removed from the local directory.
+ * The local directory is a cache. Its content is discarded when a new
+ * instance is created.
+ * <p>
+ * This persistence must be closed once the file stores using it have been
+ * closed, to stop the background copies and release the local copies.
+ */
+public class TieredPersistence implements SegmentNodeStorePersistence, Closeable {
+
+    private final SegmentNodeStorePersistence remotePersistence;
+
+    private final LocalArchiveCache localArchives;
+
+    /**
+     * Create a new instance.
+     * @param remotePersistence  the persistence to write through to
+     * @param localDirectory     the directory to keep the local copies of the
+     *                           archives in
+     * @param maxLocalSize       maximum size in bytes of the local copies of
+     *                           the archives
+     */
+    public TieredPersistence(SegmentNodeStorePersistence remotePersistence, File localDirectory, long maxLocalSize) throws IOException {
+        this.remotePersistence = checkNotNull(remotePersistence);
+        checkArgument(maxLocalSize >= 0, "maxLocalSize must not be negative");
+        this.localArchives = new LocalArchiveCache(new TarPersistence(localDirectory), localDirectory, maxLocalSize);
+    }
+
+    @Override
+    public SegmentArchiveManager createArchiveManager(boolean memoryMapping, boolean offHeapAccess, IOMonitor ioMonitor, FileStoreMonitor fileStoreMonitor, RemoteStoreMonitor remoteStoreMonitor) throws IOException {
+        return new TieredSegmentArchiveManager(
+                remotePersistence.createArchiveManager(memoryMapping, offHeapAccess, ioMonitor, fileStoreMonitor, remoteStoreMonitor),
+                localArchives,
+                ioMonitor);
+    }
+
+    @Override
+    public boolean segmentFilesExist() {
+        return remotePersistence.segmentFilesExist();
+    }
+
+    @Override
+    public JournalFile getJournalFile() {
+        return remotePersistence.getJournalFile();
+    }
+
+    @Override
+    public GCJournalFile getGCJournalFile() throws IOException {
+        return remotePersistence.getGCJournalFile();
+    }
+
+    @Override
+    public ManifestFile getManifestFile() throws IOException {
+        return remotePersistence.getManifestFile();
+    }
+
+    @Override
+    public RepositoryLock lockRepository() throws IOException {
+        return remotePersistence.lockRepository();
+    }
+
+    /**
+     * @return  the number of segments read from the local copies of the archives
+     */
+    public long getLocalReadCount() {
+        return localArchives.getLocalReadCount();
+    }
+
+    /**
+     * @return  the number of segments read from the remote persistence
+     */
+    public long getRemoteReadCount() {
+        return localArchives.getRemoteReadCount();
+    }
+
+    /**
+     * @return  the current size in bytes of the local copies of the archives
+     */
+    public long getLocalSize() {
+        return localArchives.getSize();
+    }
+
+    @Override
+    public void close() {
+        localArchives.close();
+    }
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.segment.tiered;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.jackrabbit.oak.segment.spi.monitor.IOMonitor;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveManager;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveReader;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveWriter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * {@link SegmentArchiveManager} of the {@link TieredPersistence}. The archives
+ * are managed by the remote archive manager. Local copies are created when
+ * archives are written or read remotely and removed when archives are deleted or
+ * renamed.
+ */
+public class TieredSegmentArchiveManager implements SegmentArchiveManager {
+
+    private final SegmentArchiveManager remoteArchiveManager;
+
+    private final LocalArchiveCache localArchives;
+
+    private final IOMonitor ioMonitor;
+
+    TieredSegmentArchiveManager(SegmentArchiveManager remoteArchiveManager, LocalArchiveCache localArchives, IOMonitor ioMonitor) {
+        this.remoteArchiveManager = remoteArchiveManager;
+        this.localArchives = localArchives;
+        this.ioMonitor = ioMonitor;
+    }
+
+    @Override
+    public @NotNull List<String> listArchives() throws IOException {
+        return remoteArchiveManager.listArchives();
+    }
+
+    @Override
+    public @Nullable SegmentArchiveReader open(@NotNull String archiveName) throws IOException {
+        return wrap(remoteArchiveManager.open(archiveName));
+    }
+
+    @Override
+    public @Nullable SegmentArchiveReader forceOpen(String archiveName) throws IOException {
+        return wrap(remoteArchiveManager.forceOpen(archiveName));
+    }
+
+    private SegmentArchiveReader wrap(SegmentArchiveReader remote) {
+        if (remote == null) {
+            return null;
+        }
+        return new TieredSegmentArchiveReader(remote, localArchives, ioMonitor);
+    }
+
+    @Override
+    public @NotNull SegmentArchiveWriter create(@NotNull String archiveName) throws IOException {
+        localArchives.remove(archiveName);
+        return new TieredSegmentArchiveWriter(
+                remoteArchiveManager.create(archiveName),
+                localArchives.newWriter(archiveName),
+                localArchives);
+    }
+
+    @Override
+    public boolean delete(@NotNull String archiveName) {
+        localArchives.remove(archiveName);
+        return remoteArchiveManager.delete(archiveName);
+    }
+
+    @Override
+    public boolean renameTo(@NotNull String from, @NotNull String to) {
+        localArchives.remove(from);
+        localArchives.remove(to);
+        return remoteArchiveManager.renameTo(from, to);
+    }
+
+    @Override
+    public void copyFile(@NotNull String from, @NotNull String to) throws IOException {
+        localArchives.remove(to);
+        remoteArchiveManager.copyFile(from, to);
+    }
+
+    @Override
+    public boolean exists(@NotNull String archiveName) {
+        return remoteArchiveManager.exists(archiveName);
+    }
+
+    @Override
+    public void recoverEntries(@NotNull String archiveName, @NotNull LinkedHashMap<UUID, byte[]> entries) throws IOException {
+        remoteArchiveManager.recoverEntries(archiveName, entries);
+    }
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.segment.tiered;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.jackrabbit.oak.segment.spi.monitor.IOMonitor;
+import org.apache.jackrabbit.oak.segment.spi.persistence.Buffer;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveEntry;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveReader;
+import org.apache.jackrabbit.oak.segment.tiered.LocalArchiveCache.LocalArchive;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Reads segments from the local copy of an archive if present and from the
+ * remote archive otherwise. A read from the remote archive triggers the copy
+ * of the archive to the local directory. All other information is read from the remote
+ * archive, whose readers keep it in memory.
+ */
+class TieredSegmentArchiveReader implements SegmentArchiveReader {
+
+    private final SegmentArchiveReader remote;
+
+    private final LocalArchiveCache localArchives;
+
+    private final IOMonitor ioMonitor;
+
+    private final File localFile;
+
+    TieredSegmentArchiveReader(SegmentArchiveReader remote, LocalArchiveCache localArchives, IOMonitor ioMonitor) {
+        this.remote = remote;
+        this.localArchives = localArchives;
+        this.ioMonitor = ioMonitor;
+        this.localFile = new File(localArchives.getDirectory(), remote.getName());
+    }
+
+    @Override
+    public @Nullable Buffer readSegment(long msb, long lsb) throws IOException {
+        // The index of the remote archive is in memory. Checking it first
+        // avoids looking for segments not contained in this archive.
+        if (!remote.containsSegment(msb, lsb)) {
+            return null;
+        }
+        LocalArchive local = localArchives.get(remote.getName());
+        if (local != null) {
+            try {
+                long start = System.nanoTime();
+                Buffer buffer = local.readSegment(msb, lsb);
+                if (buffer != null) {
+                    ioMonitor.afterSegmentRead(localFile, msb, lsb, buffer.remaining(), System.nanoTime() - start);
+                    localArchives.onLocalRead();
+                    return buffer;
+                }
+            } catch (IOException e) {
+                // The local copy has been evicted concurrently. Fall back to
+                // the remote archive.
+            }
+        }
+        localArchives.onRemoteRead();
+        localArchives.copyInBackground(remote.getName(), remote);
+        return remote.readSegment(msb, lsb);
+    }
+
+    @Override
+    public boolean containsSegment(long msb, long lsb) {
+        return remote.containsSegment(msb, lsb);
+    }
+
+    @Override
+    public List<SegmentArchiveEntry> listSegments() {
+        return remote.listSegments();
+    }
+
+    @Override
+    public @Nullable Buffer getGraph() throws IOException {
+        return remote.getGraph();
+    }
+
+    @Override
+    public boolean hasGraph() {
+        return remote.hasGraph();
+    }
+
+    @Override
+    public @NotNull Buffer getBinaryReferences() throws IOException {
+        return remote.getBinaryReferences();
+    }
+
+    @Override
+    public long length() {
+        return remote.length();
+    }
+
+    @Override
+    public @NotNull String getName() {
+        return remote.getName();
+    }
+
+    @Override
+    public void close() throws IOException {
+        remote.close();
+    }
+
+    @Override
+    public int getEntrySize(int size) {
+        return remote.getEntrySize(size);
+    }
+
+}
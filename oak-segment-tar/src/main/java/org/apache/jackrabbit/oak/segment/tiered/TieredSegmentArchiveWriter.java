@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.segment.tiered;
+
+import java.io.IOException;
+
+import org.apache.jackrabbit.oak.segment.spi.persistence.Buffer;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveWriter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes an archive through to the remote archive and to its local copy.
+ * Failing to write the local copy only discards the local copy.
+ */
+class TieredSegmentArchiveWriter implements SegmentArchiveWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(TieredSegmentArchiveWriter.class);
+
+    private final SegmentArchiveWriter remote;
+
+    private final LocalArchiveCache localArchives;
+
+    /**
+     * Writer of the local copy or {@code null} if there is none.
+     */
+    @Nullable
+    private volatile SegmentArchiveWriter local;
+
+    TieredSegmentArchiveWriter(SegmentArchiveWriter remote, @Nullable SegmentArchiveWriter local, LocalArchiveCache localArchives) {
+        this.remote = remote;
+        this.local = local;
+        this.localArchives = localArchives;
+    }
+
+    @Override
+    public void writeSegment(long msb, long lsb, @NotNull byte[] data, int offset, int size, int generation, int fullGeneration, boolean isCompacted) throws IOException {
+        remote.writeSegment(msb, lsb, data, offset, size, generation, fullGeneration, isCompacted);
+        SegmentArchiveWriter local = this.local;
+        if (local != null) {
+            try {
+                local.writeSegment(msb, lsb, data, offset, size, generation, fullGeneration, isCompacted);
+            } catch (IOException e) {
+                discardLocal(e);
+            }
+        }
+    }
+
+    @Override
+    public @Nullable Buffer readSegment(long msb, long lsb) throws IOException {
+        if (!remote.containsSegment(msb, lsb)) {
+            return null;
+        }
+        SegmentArchiveWriter local = this.local;
+        if (local != null) {
+            try {
+                Buffer buffer = local.readSegment(msb, lsb);
+                if (buffer != null) {
+                    localArchives.onLocalRead();
+                    return buffer;
+                }
+            } catch (IOException e) {
+                discardLocal(e);
+            }
+        }
+        localArchives.onRemoteRead();
+        return remote.readSegment(msb, lsb);
+    }
+
+    @Override
+    public boolean containsSegment(long msb, long lsb) {
+        return remote.containsSegment(msb, lsb);
+    }
+
+    @Override
+    public void writeGraph(@NotNull byte[] data) throws IOException {
+        remote.writeGraph(data);
+        SegmentArchiveWriter local = this.local;
+        if (local != null) {
+            try {
+                local.writeGraph(data);
+            } catch (IOException e) {
+                discardLocal(e);
+            }
+        }
+    }
+
+    @Override
+    public void writeBinaryReferences(@NotNull byte[] data) throws IOException {
+        remote.writeBinaryReferences(data);
+        SegmentArchiveWriter local = this.local;
+        if (local != null) {
+            try {
+                local.writeBinaryReferences(data);
+            } catch (IOException e) {
+                discardLocal(e);
+            }
+        }
+    }
+
+    @Override
+    public long getLength() {
+        return remote.getLength();
+    }
+
+    @Override
+    public int getEntryCount() {
+        return remote.getEntryCount();
+    }
+
+    @Override
+    public void close() throws IOException {
+        remote.close();
+        SegmentArchiveWriter local;
+        synchronized (this) {
+            local = this.local;
+            this.local = null;
+        }
+        if (local != null) {
+            boolean complete = false;
+            try {
+                local.close();
+                complete = local.isCreated();
+            } catch (IOException e) {
+                log.warn("Unable to close local copy of archive {}", getName(), e);
+            } finally {
+                localArchives.written(local.getName(), complete);
+            }
+        }
+    }
+
+    @Override
+    public boolean isCreated() {
+        return remote.isCreated();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        remote.flush();
+        SegmentArchiveWriter local = this.local;
+        if (local != null) {
+            try {
+                local.flush();
+            } catch (IOException e) {
+                discardLocal(e);
+            }
+        }
+    }
+
+    @Override
+    public @NotNull String getName() {
+        return remote.getName();
+    }
+
+    private synchronized void discardLocal(IOException e) {
+        SegmentArchiveWriter local = this.local;
+        if (local != null) {
+            log.warn("Unable to write local copy of archive {}. Discarding it.", getName(), e);
+            this.local = null;
+            try {
+                local.close();
+            } catch (IOException ignore) {
+                // ignore
+            } finally {
+                localArchives.written(local.getName(), false);
+            }
+        }
+    }
+
+}
@@ -40,6 +40,7 @@ import org.apache.jackrabbit.oak.segment.SegmentNodeStoreBuilders;
 import org.apache.jackrabbit.oak.segment.file.FileStoreBuilder;
 import org.apache.jackrabbit.oak.segment.file.JournalReader;
 import org.apache.jackrabbit.oak.segment.file.ReadOnlyFileStore;
+import org.apache.jackrabbit.oak.segment.file.tar.AccessMode;
 import org.apache.jackrabbit.oak.segment.file.tar.LocalJournalFile;
 import org.apache.jackrabbit.oak.segment.file.tar.TarPersistence;
 import org.apache.jackrabbit.oak.segment.file.tooling.ConsistencyChecker;
@@ -313,7 +314,7 @@ public class Check {
 
         FileStoreBuilder builder = fileStoreBuilder(path)
             .withMemoryMapping(mmap)
-            .withCustomPersistence(new TarPersistence(this.path, this.journal));
+            .withCustomPersistence(new TarPersistence(this.path, this.journal, AccessMode.SEQUENTIAL));
 
         if (ioStatistics) {
             builder.withIOMonitor(ioMonitor);
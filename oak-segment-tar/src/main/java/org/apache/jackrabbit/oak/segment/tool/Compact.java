@@ -43,6 +43,7 @@ import org.apache.jackrabbit.oak.segment.file.FileStore;
 import org.apache.jackrabbit.oak.segment.file.FileStoreBuilder;
 import org.apache.jackrabbit.oak.segment.file.InvalidFileStoreVersionException;
 import org.apache.jackrabbit.oak.segment.file.JournalReader;
+import org.apache.jackrabbit.oak.segment.file.tar.AccessMode;
 import org.apache.jackrabbit.oak.segment.file.tar.LocalJournalFile;
 import org.jetbrains.annotations.Nullable;
 
@@ -310,6 +311,7 @@ public class Compact {
         FileStoreBuilder builder = fileStoreBuilder(path.getAbsoluteFile())
             .withStrictVersionCheck(strictVersionCheck)
             .withSegmentCacheSize(segmentCacheSize)
+            .withAccessMode(AccessMode.SEQUENTIAL)
             .withGCOptions(defaultGCOptions()
                 .setOffline()
                 .setGCLogInterval(gcLogInterval));
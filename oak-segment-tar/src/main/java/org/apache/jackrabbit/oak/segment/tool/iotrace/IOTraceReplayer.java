@@ -0,0 +1,339 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jackrabbit.oak.segment.tool.iotrace;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.UniformReservoir;
+import org.apache.jackrabbit.core.data.util.NamedThreadFactory;
+import org.apache.jackrabbit.oak.api.jmx.CacheStatsMBean;
+import org.apache.jackrabbit.oak.segment.SegmentId;
+import org.apache.jackrabbit.oak.segment.SegmentNotFoundException;
+import org.apache.jackrabbit.oak.segment.file.FileStore;
+import org.apache.jackrabbit.oak.segment.spi.monitor.IOMonitor;
+import org.apache.jackrabbit.oak.segment.spi.monitor.IOMonitorAdapter;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * This utility class replays IO traces collected by an {@link IOTracer}
+ * against a {@link FileStore}. Replaying a trace recorded in production
+ * against a file store configured with different cache and prefetch settings
+ * allows evaluating those settings offline.
+ * <p>
+ * The segments of the trace are read through their {@link SegmentId segment
+ * ids} and thus through the segment cache of the file store, in the order
+ * they appear in the trace, by a configurable number of threads. Since the
+ * file store is created by a factory, it can be backed by any persistence,
+ * e.g. TAR files or Azure. The outcome of a replay is summarised by a
+ * {@link Result}, which contains a histogram of the read latencies and the
+ * hit rate of the segment cache.
+ */
+public class IOTraceReplayer {
+
+    /**
+     * Name of the column of the trace containing the segment ids.
+     */
+    private static final String SEGMENT_ID = "segmentId";
+
+    @NotNull
+    private final Function<IOMonitor, FileStore> fileStoreFactory;
+
+    private final int concurrency;
+
+    private IOTraceReplayer(@NotNull Function<IOMonitor, FileStore> fileStoreFactory, int concurrency) {
+        this.fileStoreFactory = checkNotNull(fileStoreFactory);
+        checkArgument(concurrency > 0, "concurrency must be positive");
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Create a new {@code IOTraceReplayer} instance.
+     * @param fileStoreFactory  A factory for creating the {@link FileStore} to replay
+     *                          the trace against with the passed {@link IOMonitor}
+     *                          for monitoring segment IO.
+     * @param concurrency       The number of threads concurrently reading segments.
+     * @return A new {@code IOTraceReplayer} instance.
+     */
+    @NotNull
+    public static IOTraceReplayer newIOTraceReplayer(
+            @NotNull Function<IOMonitor, FileStore> fileStoreFactory,
+            int concurrency) {
+        return new IOTraceReplayer(fileStoreFactory, concurrency);
+    }
+
+    /**
+     * Parse the segment ids from an IO trace in the CSV format written by
+     * {@link IOTracer}. The first line must be the header of the trace.
+     * @param trace  the IO trace
+     * @return  the segment ids in the order they appear in the trace
+     * @throws IOException  if reading the trace fails or the trace has no
+     *                      {@code segmentId} column.
+     */
+    @NotNull
+    public static List<UUID> parseTrace(@NotNull Reader trace) throws IOException {
+        BufferedReader reader = new BufferedReader(checkNotNull(trace));
+        String header = reader.readLine();
+        if (header == null) {
+            return new ArrayList<>();
+        }
+
+        int column = -1;
+        String[] fields = header.split(",");
+        for (int k = 0; k < fields.length; k++) {
+            if (SEGMENT_ID.equals(fields[k].trim())) {
+                column = k;
+            }
+        }
+        if (column < 0) {
+            throw new IOException("Invalid IO trace. Missing " + SEGMENT_ID + " column in header: " + header);
+        }
+
+        List<UUID> segmentIds = new ArrayList<>();
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            String[] values = line.split(",", -1);
+            if (values.length <= column) {
+                throw new IOException("Invalid IO trace. Missing " + SEGMENT_ID + " in line: " + line);
+            }
+            try {
+                segmentIds.add(UUID.fromString(values[column].trim()));
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Invalid IO trace. Malformed " + SEGMENT_ID + " in line: " + line, e);
+            }
+        }
+        return segmentIds;
+    }
+
+    /**
+     * Replay an IO trace.
+     * @param trace  the IO trace in the CSV format written by {@link IOTracer}
+     * @return  the result of the replay
+     * @throws IOException  if reading the trace fails or the replay was
+     *                      interrupted.
+     */
+    @NotNull
+    public Result replay(@NotNull Reader trace) throws IOException {
+        return replay(parseTrace(trace));
+    }
+
+    /**
+     * Replay the reads of the passed segments.
+     * @param segmentIds  the ids of the segments to read in the order to read them.
+     * @return  the result of the replay
+     * @throws IOException  if the replay was interrupted.
+     */
+    @NotNull
+    public Result replay(@NotNull List<UUID> segmentIds) throws IOException {
+        checkNotNull(segmentIds);
+        ReadCounter readCounter = new ReadCounter();
+        try (FileStore fileStore = fileStoreFactory.apply(readCounter)) {
+            CacheStatsMBean cacheStats = fileStore.getSegmentCacheStats();
+            cacheStats.resetStats();
+            readCounter.reset();
+
+            Result result = new Result();
+            AtomicInteger next = new AtomicInteger();
+            List<Callable<Void>> readers = new ArrayList<>(concurrency);
+            for (int k = 0; k < concurrency; k++) {
+                readers.add(() -> {
+                    for (int i = next.getAndIncrement(); i < segmentIds.size(); i = next.getAndIncrement()) {
+                        UUID id = segmentIds.get(i);
+                        SegmentId segmentId = fileStore.getSegmentIdProvider()
+                                .newSegmentId(id.getMostSignificantBits(), id.getLeastSignificantBits());
+                        long start = System.nanoTime();
+                        try {
+                            segmentId.getSegment();
+                            result.latencies.update(System.nanoTime() - start);
+                        } catch (SegmentNotFoundException e) {
+                            result.missing.increment();
+                        }
+                    }
+                    return null;
+                });
+            }
+
+            long start = System.nanoTime();
+            ExecutorService executor = newFixedThreadPool(concurrency, new NamedThreadFactory("IOTrace replay"));
+            try {
+                for (Future<Void> future : executor.invokeAll(readers)) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while replaying IO trace");
+            } catch (ExecutionException e) {
+                throw new IOException(e.getCause());
+            } finally {
+                executor.shutdown();
+            }
+
+            result.elapsed = System.nanoTime() - start;
+            result.cacheHitCount = cacheStats.getHitCount();
+            result.cacheRequestCount = cacheStats.getRequestCount();
+            result.segmentReads = readCounter.reads.sum();
+            result.segmentReadBytes = readCounter.bytes.sum();
+            result.segmentReadTime = readCounter.time.sum();
+            return result;
+        }
+    }
+
+    /**
+     * Counts the segments read from the persistence.
+     */
+    private static class ReadCounter extends IOMonitorAdapter {
+        private final LongAdder reads = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder time = new LongAdder();
+
+        @Override
+        public void afterSegmentRead(File file, long msb, long lsb, int length, long elapsed) {
+            reads.increment();
+            bytes.add(length);
+            time.add(elapsed);
+        }
+
+        void reset() {
+            reads.reset();
+            bytes.reset();
+            time.reset();
+        }
+    }
+
+    /**
+     * The result of replaying an IO trace.
+     */
+    public static class Result {
+        private final Histogram latencies = new Histogram(new UniformReservoir());
+        private final LongAdder missing = new LongAdder();
+        private long elapsed;
+        private long cacheHitCount;
+        private long cacheRequestCount;
+        private long segmentReads;
+        private long segmentReadBytes;
+        private long segmentReadTime;
+
+        private Result() {}
+
+        /**
+         * @return  the number of segments successfully read
+         */
+        public long getReadCount() {
+            return latencies.getCount();
+        }
+
+        /**
+         * @return  the number of segments of the trace not found in the file store
+         */
+        public long getMissingCount() {
+            return missing.sum();
+        }
+
+        /**
+         * @return  the wall clock time of the replay in nanoseconds
+         */
+        public long getElapsed() {
+            return elapsed;
+        }
+
+        /**
+         * @return  a snapshot of the histogram of the latencies of the segment
+         *          reads in nanoseconds
+         */
+        @NotNull
+        public Snapshot getLatencies() {
+            return latencies.getSnapshot();
+        }
+
+        /**
+         * @return  the ratio of segment reads served by the segment cache
+         */
+        public double getCacheHitRate() {
+            return cacheRequestCount == 0 ? 0 : (double) cacheHitCount / cacheRequestCount;
+        }
+
+        /**
+         * @return  the number of segments read from the persistence
+         */
+        public long getSegmentReads() {
+            return segmentReads;
+        }
+
+        /**
+         * @return  the number of bytes read from the persistence
+         */
+        public long getSegmentReadBytes() {
+            return segmentReadBytes;
+        }
+
+        /**
+         * @return  the time spent reading segments from the persistence in
+         *          nanoseconds, summed over all threads
+         */
+        public long getSegmentReadTime() {
+            return segmentReadTime;
+        }
+
+        @Override
+        public String toString() {
+            Snapshot snapshot = getLatencies();
+            return String.format(
+                    "reads=%d, missing=%d, elapsed=%d ms, cache hit rate=%.3f, " +
+                    "segment reads=%d (%d kB, %d ms), latency [us] " +
+                    "mean=%.1f, p50=%.1f, p75=%.1f, p95=%.1f, p99=%.1f, p999=%.1f, max=%.1f",
+                    getReadCount(),
+                    getMissingCount(),
+                    NANOSECONDS.toMillis(elapsed),
+                    getCacheHitRate(),
+                    segmentReads,
+                    segmentReadBytes / 1024,
+                    NANOSECONDS.toMillis(segmentReadTime),
+                    snapshot.getMean() / 1000,
+                    snapshot.getMedian() / 1000,
+                    snapshot.get75thPercentile() / 1000,
+                    snapshot.get95thPercentile() / 1000,
+                    snapshot.get99thPercentile() / 1000,
+                    snapshot.get999thPercentile() / 1000,
+                    snapshot.getMax() / 1000.0);
+        }
+    }
+
+}
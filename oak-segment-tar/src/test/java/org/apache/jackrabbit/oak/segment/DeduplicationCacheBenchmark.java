@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment;
+
+import static org.apache.jackrabbit.oak.segment.file.FileStoreBuilder.fileStoreBuilder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jackrabbit.oak.segment.WriterCacheManager.Adaptive;
+import org.apache.jackrabbit.oak.segment.file.FileStore;
+import org.apache.jackrabbit.oak.segment.file.FileStoreBuilder;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+
+/**
+ * Replays a bulk import into a file store once with fixed size and once with
+ * adaptive deduplication caches. The import is split into phases separated
+ * by a full compaction, so each phase is written in a new generation and the
+ * adaptive caches get a chance to resize.
+ */
+public class DeduplicationCacheBenchmark {
+
+    private static final int PHASES = 4;
+
+    private static final int COMMITS_PER_PHASE = 200;
+
+    private static final int NODES_PER_COMMIT = 500;
+
+    /**
+     * Number of distinct property values. Larger than the default string
+     * cache so the fixed size cache thrashes.
+     */
+    private static final int VALUES = 40000;
+
+    /**
+     * Number of distinct node types, each resulting in a distinct template.
+     */
+    private static final int TYPES = 5000;
+
+    public static void main(String... args) throws Exception {
+        for (int i = 0; i < 3; i++) {
+            run(false);
+            run(true);
+        }
+    }
+
+    private static void run(boolean adaptive) throws Exception {
+        File directory = Files.createTempDirectory("dedup-benchmark").toFile();
+        try {
+            FileStoreBuilder builder = fileStoreBuilder(directory)
+                    .withAdaptiveDeduplicationCaches(adaptive);
+            try (FileStore store = builder.build()) {
+                SegmentNodeStore nodeStore = SegmentNodeStoreBuilders.builder(store).build();
+                WriterCacheManager cacheManager = builder.getCacheManager();
+                Random random = new Random(42);
+
+                long start = System.nanoTime();
+                for (int phase = 0; phase < PHASES; phase++) {
+                    for (int commit = 0; commit < COMMITS_PER_PHASE; commit++) {
+                        NodeBuilder root = nodeStore.getRoot().builder();
+                        NodeBuilder parent = root.child("import").child("p" + phase).child("c" + commit);
+                        for (int node = 0; node < NODES_PER_COMMIT; node++) {
+                            NodeBuilder child = parent.child("n" + node);
+                            child.setProperty("type" + random.nextInt(TYPES), true);
+                            child.setProperty("value", "value-" + skewed(random, VALUES));
+                            child.setProperty("title", "title-" + skewed(random, VALUES));
+                        }
+                        nodeStore.merge(root, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+                    }
+                    store.flush();
+                    store.compactFull();
+                }
+                long time = System.nanoTime() - start;
+
+                store.flush();
+                System.out.printf("%-8s time=%5d ms, size=%6d kB, string hit rate=%.3f, template hit rate=%.3f",
+                        adaptive ? "adaptive" : "fixed",
+                        time / 1000000,
+                        FileUtils.sizeOfDirectory(directory) / 1024,
+                        cacheManager.getStringCacheStats().getHitRate(),
+                        cacheManager.getTemplateCacheStats().getHitRate());
+                if (cacheManager instanceof Adaptive) {
+                    Adaptive stats = (Adaptive) cacheManager;
+                    System.out.printf(", dedup ratio=%.3f, saved=%d kB, saved/op=%.0f B, sizes=%d/%d/%d",
+                            stats.getDeduplicationRatio(),
+                            stats.getSavedBytes() / 1024,
+                            stats.getSavedBytesPerWriteOperation(),
+                            stats.getStringCacheSize(),
+                            stats.getTemplateCacheSize(),
+                            stats.getNodeCacheSize());
+                }
+                System.out.println();
+            }
+        } finally {
+            FileUtils.deleteQuietly(directory);
+        }
+    }
+
+    /**
+     * Values skewed towards the lower end of the range, like the values of
+     * real content.
+     */
+    private static int skewed(Random random, int range) {
+        double x = random.nextDouble();
+        return (int) (x * x * range);
+    }
+
+}
@@ -136,6 +136,37 @@ public class DefaultSegmentWriterTest {
         ListRecord one = writeList(MAX_ELEMENTS + 1, blockId);
     }
 
+    @Test
+    public void testListRecordCompare() throws IOException {
+        int size = LEVEL_SIZE * 3 + 7;
+        List<RecordId> before = newArrayList();
+        for (int i = 0; i < size; i++) {
+            before.add(writer.writeString("value" + i));
+        }
+        List<RecordId> after = newArrayList(before);
+        List<Integer> changed = Arrays.asList(0, LEVEL_SIZE + 1, 2 * LEVEL_SIZE + 5, size - 1);
+        for (int index : changed) {
+            after.set(index, writer.writeString("changed" + index));
+        }
+
+        ListRecord beforeList = new ListRecord(writer.writeList(before), size);
+        ListRecord afterList = new ListRecord(writer.writeList(after), size);
+
+        List<Integer> reported = newArrayList();
+        assertTrue(afterList.compare(beforeList, (index, beforeId, afterId) -> {
+            assertEquals(before.get(index), beforeId);
+            assertEquals(after.get(index), afterId);
+            reported.add(index);
+            return true;
+        }));
+        assertEquals(changed, reported);
+
+        assertTrue(afterList.compare(afterList, (index, beforeId, afterId) -> {
+            throw new AssertionError("Unexpected change at " + index);
+        }));
+        assertFalse(afterList.compare(beforeList, (index, beforeId, afterId) -> false));
+    }
+
     private ListRecord writeList(int size, RecordId id) throws IOException {
         List<RecordId> list = Collections.nCopies(size, id);
         return new ListRecord(writer.writeList(list), size);
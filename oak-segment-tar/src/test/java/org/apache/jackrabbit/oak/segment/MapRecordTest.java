@@ -24,13 +24,16 @@ import static org.easymock.EasyMock.createControl;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
 
 import java.io.IOException;
+import java.util.Random;
 import java.util.Set;
 import java.util.regex.Pattern;
 
 import com.google.common.collect.Sets;
 import org.apache.jackrabbit.oak.segment.memory.MemoryStore;
+import org.apache.jackrabbit.oak.spi.state.DefaultNodeStateDiff;
 import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
 import org.apache.jackrabbit.oak.spi.state.NodeStateDiff;
@@ -44,11 +47,13 @@ public class MapRecordTest {
     private final NodeStateDiff diff =
             createControl().createMock("diff", NodeStateDiff.class);
 
+    private final MemoryStore store;
+
     private NodeBuilder builder;
 
     // TODO frm replace this with JUnit test initialization
     public MapRecordTest() throws IOException {
-        MemoryStore store = new MemoryStore();
+        store = new MemoryStore();
         RecordId id = store.getWriter().writeNode(EMPTY_NODE);
         SegmentNodeState node = new SegmentNodeState(store.getReader(), store.getWriter(), store.getBlobStore(), id);
         builder = node.builder();
@@ -98,4 +103,78 @@ public class MapRecordTest {
         verify(diff);
     }
 
+    @Test
+    public void testCompareLeavesAndBranches() {
+        Random random = new Random(42);
+        for (int size : new int[] {10, 31, 32, 33, 200, 2000}) {
+            Set<String> beforeNames = newHashSet();
+            for (int i = 0; i < size; i++) {
+                beforeNames.add("n" + random.nextInt(10 * size));
+            }
+            Set<String> afterNames = newHashSet();
+            for (String name : beforeNames) {
+                if (random.nextInt(10) != 0) {
+                    afterNames.add(name);
+                }
+            }
+            for (int i = 0; i < size / 10 + 1; i++) {
+                afterNames.add("n" + random.nextInt(10 * size));
+            }
+
+            NodeBuilder builder = EMPTY_NODE.builder();
+            for (String name : beforeNames) {
+                builder.child(name).setProperty("p", 0);
+            }
+            NodeState before = writeNode(builder.getNodeState());
+            builder = before.builder();
+
+            Set<String> changedNames = newHashSet();
+            for (String name : beforeNames) {
+                if (!afterNames.contains(name)) {
+                    builder.getChildNode(name).remove();
+                } else if (random.nextInt(5) == 0) {
+                    builder.child(name).setProperty("p", 1);
+                    changedNames.add(name);
+                }
+            }
+            for (String name : afterNames) {
+                builder.child(name);
+            }
+            NodeState after = writeNode(builder.getNodeState());
+
+            Set<String> added = newHashSet();
+            Set<String> deleted = newHashSet();
+            Set<String> changed = newHashSet();
+            after.compareAgainstBaseState(before, new DefaultNodeStateDiff() {
+                @Override
+                public boolean childNodeAdded(String name, NodeState after) {
+                    return added.add(name);
+                }
+
+                @Override
+                public boolean childNodeChanged(String name, NodeState before, NodeState after) {
+                    return changed.add(name);
+                }
+
+                @Override
+                public boolean childNodeDeleted(String name, NodeState before) {
+                    return deleted.add(name);
+                }
+            });
+
+            assertEquals(Sets.difference(afterNames, beforeNames), added);
+            assertEquals(Sets.difference(beforeNames, afterNames), deleted);
+            assertEquals(changedNames, changed);
+        }
+    }
+
+    private NodeState writeNode(NodeState node) {
+        try {
+            RecordId id = store.getWriter().writeNode(node);
+            return store.getReader().readNode(id);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
 }
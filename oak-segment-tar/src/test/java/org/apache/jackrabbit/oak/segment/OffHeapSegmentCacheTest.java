@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.segment;
+
+import static org.apache.jackrabbit.oak.segment.file.FileStoreBuilder.fileStoreBuilder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.google.common.base.Strings;
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.api.jmx.CacheStatsMBean;
+import org.apache.jackrabbit.oak.segment.file.FileStore;
+import org.apache.jackrabbit.oak.segment.file.InvalidFileStoreVersionException;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class OffHeapSegmentCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder(new File("target"));
+
+    @Test
+    public void readThroughOffHeapCache() throws Exception {
+        File directory = folder.getRoot();
+        writeContent(directory);
+
+        try (FileStore store = fileStoreBuilder(directory)
+                .withOffHeapSegmentCache(true)
+                .withSegmentCacheSize(16)
+                .build()) {
+            SegmentNodeStore nodeStore = SegmentNodeStoreBuilders.builder(store).build();
+            NodeState root = nodeStore.getRoot();
+            for (int i = 0; i < 1000; i++) {
+                assertEquals("value" + i, root.getChildNode("node" + i).getString("p"));
+            }
+
+            CacheStatsMBean stats = store.getSegmentCacheStats();
+            assertTrue(stats.getElementCount() > 0);
+            assertTrue(stats.estimateCurrentWeight() > 0);
+            assertTrue(stats.estimateCurrentWeight() <= stats.getMaxTotalWeight());
+        }
+    }
+
+    @Test
+    public void evictionBoundsOffHeapCache() throws Exception {
+        File directory = folder.getRoot();
+        try (FileStore store = fileStoreBuilder(directory)
+                .withOffHeapSegmentCache(true)
+                .withSegmentCacheSize(1)
+                .build()) {
+            SegmentNodeStore nodeStore = SegmentNodeStoreBuilders.builder(store).build();
+            NodeBuilder builder = nodeStore.getRoot().builder();
+            for (int i = 0; i < 10000; i++) {
+                builder.child("node" + i).setProperty("p", "value" + i);
+                builder.child("node" + i).setProperty("padding", Strings.repeat("x", 1000) + i);
+            }
+            nodeStore.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+            store.flush();
+
+            NodeState root = nodeStore.getRoot();
+            for (int i = 0; i < 10000; i++) {
+                assertEquals("value" + i, root.getChildNode("node" + i).getString("p"));
+            }
+
+            assertTrue(store.getSegmentCacheStats().getEvictionCount() > 0);
+        }
+    }
+
+    private static void writeContent(File directory)
+    throws InvalidFileStoreVersionException, IOException, CommitFailedException {
+        try (FileStore store = fileStoreBuilder(directory).build()) {
+            SegmentNodeStore nodeStore = SegmentNodeStoreBuilders.builder(store).build();
+            NodeBuilder builder = nodeStore.getRoot().builder();
+            for (int i = 0; i < 1000; i++) {
+                builder.child("node" + i).setProperty("p", "value" + i);
+            }
+            nodeStore.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment;
+
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static org.apache.jackrabbit.oak.segment.DefaultSegmentWriterBuilder.defaultSegmentWriterBuilder;
+import static org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions.defaultGCOptions;
+import static org.apache.jackrabbit.oak.segment.file.FileStoreBuilder.fileStoreBuilder;
+import static org.apache.jackrabbit.oak.segment.file.tar.GCGeneration.newGCGeneration;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.commons.concurrent.ExecutorCloser;
+import org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions;
+import org.apache.jackrabbit.oak.segment.file.FileStore;
+import org.apache.jackrabbit.oak.segment.file.GCNodeWriteMonitor;
+import org.apache.jackrabbit.oak.segment.file.InvalidFileStoreVersionException;
+import org.apache.jackrabbit.oak.segment.file.cancel.Canceller;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.gc.GCMonitor;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ParallelCompactorTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder(new File("target"));
+
+    private FileStore fileStore;
+
+    private SegmentNodeStore nodeStore;
+
+    private ExecutorService executor;
+
+    private GCNodeWriteMonitor monitor;
+
+    @Before
+    public void setup() throws IOException, InvalidFileStoreVersionException {
+        fileStore = fileStoreBuilder(folder.getRoot()).build();
+        nodeStore = SegmentNodeStoreBuilders.builder(fileStore).build();
+        executor = newFixedThreadPool(4);
+        monitor = new GCNodeWriteMonitor(-1, GCMonitor.EMPTY);
+    }
+
+    @After
+    public void tearDown() {
+        new ExecutorCloser(executor).close();
+        fileStore.close();
+    }
+
+    @Test
+    public void testCompact() throws Exception {
+        Compactor compactor = createCompactor();
+        addTestContent(nodeStore);
+
+        monitor.init(0, 0, 0);
+        SegmentNodeState uncompacted = (SegmentNodeState) nodeStore.getRoot();
+        SegmentNodeState compacted = compactor.compact(uncompacted, Canceller.newCanceller());
+        assertNotNull(compacted);
+        assertFalse(uncompacted == compacted);
+        assertEquals(uncompacted, compacted);
+        assertEquals(uncompacted.getSegment().getGcGeneration().nextFull(), compacted.getSegment().getGcGeneration());
+        assertTrue(monitor.getCompactedNodesPerWorker().size() > 1);
+
+        modifyTestContent(nodeStore);
+        NodeState modified = nodeStore.getRoot();
+        compacted = compactor.compact(uncompacted, modified, compacted, Canceller.newCanceller());
+        assertNotNull(compacted);
+        assertFalse(modified == compacted);
+        assertEquals(modified, compacted);
+        assertEquals(uncompacted.getSegment().getGcGeneration().nextFull(), compacted.getSegment().getGcGeneration());
+    }
+
+    @Test
+    public void testCancel() throws CommitFailedException, IOException {
+        Compactor compactor = createCompactor();
+        addTestContent(nodeStore);
+
+        assertNull(compactor.compact(nodeStore.getRoot(), Canceller.newCanceller().withCondition("reason", () -> true)));
+    }
+
+    @Test
+    public void testCompactManyChildren() throws Exception {
+        Compactor compactor = createCompactor();
+        NodeBuilder builder = nodeStore.getRoot().builder();
+        NodeBuilder parent = builder.setChildNode("many");
+        for (int i = 0; i <= ParallelCompactor.MAX_SPLIT_CHILDREN; i++) {
+            parent.setChildNode("n-" + i).setProperty("p", i);
+        }
+        nodeStore.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+
+        monitor.init(0, 0, 0);
+        SegmentNodeState uncompacted = (SegmentNodeState) nodeStore.getRoot();
+        SegmentNodeState compacted = compactor.compact(uncompacted, Canceller.newCanceller());
+        assertNotNull(compacted);
+        assertEquals(uncompacted, compacted);
+    }
+
+    @Test
+    public void testConcurrentFullCompaction() throws Exception {
+        File directory = folder.newFolder();
+        SegmentGCOptions gcOptions = defaultGCOptions().setConcurrency(4);
+        try (FileStore store = fileStoreBuilder(directory).withGCOptions(gcOptions).build()) {
+            SegmentNodeStore nodeStore = SegmentNodeStoreBuilders.builder(store).build();
+            addTestContent(nodeStore);
+            NodeState before = nodeStore.getRoot();
+
+            assertTrue(store.compactFull());
+            assertEquals(before, nodeStore.getRoot());
+        }
+    }
+
+    private Compactor createCompactor() {
+        SegmentWriter writer = defaultSegmentWriterBuilder("c")
+                .withGeneration(newGCGeneration(1, 1, true))
+                .withWriterPool()
+                .build(fileStore);
+        return new ParallelCompactor(fileStore.getReader(), writer, fileStore.getBlobStore(), monitor, executor);
+    }
+
+    private static void addTestContent(SegmentNodeStore nodeStore) throws CommitFailedException {
+        NodeBuilder builder = nodeStore.getRoot().builder();
+        builder.setProperty("p", "root");
+        for (int i = 0; i < 10; i++) {
+            NodeBuilder child = builder.setChildNode("n-" + i);
+            child.setProperty("p", i);
+            for (int j = 0; j < 10; j++) {
+                NodeBuilder grandChild = child.setChildNode("n-" + j);
+                for (int k = 0; k < 10; k++) {
+                    grandChild.setChildNode("n-" + k).setProperty("p", i * j * k);
+                }
+            }
+        }
+        nodeStore.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+    }
+
+    private static void modifyTestContent(SegmentNodeStore nodeStore) throws CommitFailedException {
+        NodeBuilder builder = nodeStore.getRoot().builder();
+        builder.removeProperty("p");
+        builder.getChildNode("n-0").remove();
+        builder.getChildNode("n-1").setProperty("p", "changed");
+        builder.getChildNode("n-2").getChildNode("n-2").remove();
+        builder.getChildNode("n-3").getChildNode("n-3").getChildNode("n-3").setProperty("q", "added");
+        builder.setChildNode("added").setChildNode("n-0").setChildNode("n-0");
+        nodeStore.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+    }
+}
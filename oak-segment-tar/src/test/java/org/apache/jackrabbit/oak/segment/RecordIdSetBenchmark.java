@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.segment;
+
+import static java.lang.System.arraycopy;
+import static java.util.Arrays.binarySearch;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.jackrabbit.oak.segment.memory.MemoryStore;
+
+/**
+ * Compares lookup time and heap footprint of {@link RecordIdSet} against a
+ * set keyed by the string representation of the segment ids, which is how
+ * {@code RecordIdSet} used to be implemented.
+ */
+public class RecordIdSetBenchmark {
+
+    public static void main(String... args) throws Exception {
+        for (int k = 0; k < 6; k++) {
+            test();
+        }
+    }
+
+    private static void test() throws Exception {
+        int segmentCount = 10000;
+        int recordCount = 100;
+
+        MemoryStore store = new MemoryStore();
+        Random r = new Random(1);
+        RecordId[] ids = new RecordId[segmentCount * recordCount];
+        for (int i = 0; i < segmentCount; i++) {
+            SegmentId segmentId = new SegmentId(store, r.nextLong(), r.nextLong());
+            for (int j = 0; j < recordCount; j++) {
+                ids[i * recordCount + j] = new RecordId(segmentId, r.nextInt(0x40000));
+            }
+        }
+
+        long memory = usedMemory();
+        long time = System.currentTimeMillis();
+        RecordIdSet set = new RecordIdSet();
+        for (RecordId id : ids) {
+            set.addIfNotPresent(id);
+        }
+        for (RecordId id : ids) {
+            set.contains(id);
+        }
+        time = System.currentTimeMillis() - time;
+        memory = usedMemory() - memory;
+        System.out.println("RecordIdSet: " + time + " ms, " + memory / 1024 + " kB " + set.hashCode());
+
+        memory = usedMemory();
+        time = System.currentTimeMillis();
+        StringKeyedSet stringKeyedSet = new StringKeyedSet();
+        for (RecordId id : ids) {
+            stringKeyedSet.addIfNotPresent(id);
+        }
+        for (RecordId id : ids) {
+            stringKeyedSet.contains(id);
+        }
+        time = System.currentTimeMillis() - time;
+        memory = usedMemory() - memory;
+        System.out.println("StringKeyedSet: " + time + " ms, " + memory / 1024 + " kB " + stringKeyedSet.hashCode());
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int k = 0; k < 3; k++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    static class StringKeyedSet {
+        private final Map<String, int[]> seenIds = new HashMap<String, int[]>();
+
+        boolean addIfNotPresent(RecordId id) {
+            String segmentId = id.getSegmentId().toString();
+            int[] elements = seenIds.get(segmentId);
+            int n = id.getRecordNumber();
+            if (elements == null) {
+                seenIds.put(segmentId, new int[]{n});
+                return true;
+            }
+            int k = binarySearch(elements, n);
+            if (k >= 0) {
+                return false;
+            }
+            int l = -k - 1;
+            int[] e = new int[elements.length + 1];
+            arraycopy(elements, 0, e, 0, l);
+            e[l] = n;
+            arraycopy(elements, l, e, l + 1, elements.length - l);
+            seenIds.put(segmentId, e);
+            return true;
+        }
+
+        boolean contains(RecordId id) {
+            int[] elements = seenIds.get(id.getSegmentId().toString());
+            return elements != null && binarySearch(elements, id.getRecordNumber()) >= 0;
+        }
+    }
+
+}
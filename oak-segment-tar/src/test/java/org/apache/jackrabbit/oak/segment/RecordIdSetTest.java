@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.apache.jackrabbit.oak.segment.memory.MemoryStore;
+import org.junit.Test;
+
+public class RecordIdSetTest {
+
+    private final RecordIdSet set = new RecordIdSet();
+
+    @Test
+    public void addIfNotPresent() throws Exception {
+        SegmentId segmentId = new SegmentId(new MemoryStore(), 1, 2);
+        RecordId id = new RecordId(segmentId, 42);
+        assertFalse(set.contains(id));
+        assertTrue(set.addIfNotPresent(id));
+        assertFalse(set.addIfNotPresent(id));
+        assertTrue(set.contains(id));
+        assertTrue(set.contains(new RecordId(new SegmentId(new MemoryStore(), 1, 2), 42)));
+        assertFalse(set.contains(new RecordId(segmentId, 43)));
+    }
+
+    @Test
+    public void manySegments() throws Exception {
+        MemoryStore store = new MemoryStore();
+        SegmentId[] segmentIds = new SegmentId[1000];
+        Random rnd = new Random(42);
+        for (int k = 0; k < segmentIds.length; k++) {
+            // colliding lsbs for every other segment
+            segmentIds[k] = new SegmentId(store, rnd.nextLong(), k % 2 == 0 ? k : 0);
+        }
+        for (int n = 0; n < 10; n++) {
+            for (SegmentId segmentId : segmentIds) {
+                assertTrue(set.addIfNotPresent(new RecordId(segmentId, n)));
+            }
+        }
+        for (SegmentId segmentId : segmentIds) {
+            for (int n = 0; n < 10; n++) {
+                assertTrue(set.contains(new RecordId(segmentId, n)));
+                assertFalse(set.addIfNotPresent(new RecordId(segmentId, n)));
+            }
+            assertFalse(set.contains(new RecordId(segmentId, 10)));
+        }
+    }
+
+}
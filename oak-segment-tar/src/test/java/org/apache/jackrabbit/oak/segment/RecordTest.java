@@ -28,6 +28,7 @@ import static org.apache.jackrabbit.oak.api.Type.STRINGS;
 import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
 import static org.apache.jackrabbit.oak.segment.file.FileStoreBuilder.fileStoreBuilder;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.fail;
 
@@ -236,4 +237,30 @@ public class RecordTest {
         assertNotNull(state.getProperty("jcr:mixinTypes"));
     }
 
+    @Test
+    public void testMultiValuedPropertyEquality() throws IOException {
+        List<String> values = newArrayList();
+        for (int i = 0; i < 1000; i++) {
+            values.add("value" + i);
+        }
+        List<String> changed = newArrayList(values);
+        changed.set(700, "changed");
+
+        PropertyState a = writeProperty(values);
+        PropertyState b = writeProperty(values);
+        PropertyState c = writeProperty(changed);
+
+        assertEquals(a, b);
+        assertFalse(a.equals(c));
+        assertFalse(c.equals(b));
+        assertEquals(c, writeProperty(changed));
+    }
+
+    private PropertyState writeProperty(List<String> values) throws IOException {
+        NodeBuilder builder = EMPTY_NODE.builder();
+        builder.setProperty("p", values, STRINGS);
+        NodeState state = new SegmentNodeState(store.getReader(), writer, store.getBlobStore(), writer.writeNode(builder.getNodeState()));
+        return state.getProperty("p");
+    }
+
 }
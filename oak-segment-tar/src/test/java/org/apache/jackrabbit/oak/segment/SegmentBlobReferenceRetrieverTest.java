@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment;
+
+import static com.google.common.collect.Sets.newHashSet;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions.defaultGCOptions;
+import static org.apache.jackrabbit.oak.segment.file.FileStoreBuilder.fileStoreBuilder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.jackrabbit.oak.api.Blob;
+import org.apache.jackrabbit.oak.plugins.blob.datastore.DataStoreBlobStore;
+import org.apache.jackrabbit.oak.plugins.blob.datastore.OakFileDataStore;
+import org.apache.jackrabbit.oak.segment.file.BinaryReferencesWatermark;
+import org.apache.jackrabbit.oak.segment.file.FileStore;
+import org.apache.jackrabbit.oak.spi.blob.BlobStore;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SegmentBlobReferenceRetrieverTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder(new File("target"));
+
+    @Test
+    public void collectReferencesSinceWatermark() throws Exception {
+        try (FileStore fileStore = newFileStore()) {
+            SegmentNodeStore nodeStore = SegmentNodeStoreBuilders.builder(fileStore).build();
+            String a = addBlob(nodeStore, "a");
+
+            Set<String> references = newHashSet();
+            BinaryReferencesWatermark watermark = fileStore.collectBlobReferences(references::add, null);
+            assertEquals(newHashSet(a), references);
+
+            String b = addBlob(nodeStore, "b");
+
+            references.clear();
+            BinaryReferencesWatermark next = fileStore.collectBlobReferences(references::add, watermark);
+            assertTrue(next.isIncrementalTo(watermark));
+            assertTrue(next.getTarIndex() > watermark.getTarIndex());
+            assertEquals(newHashSet(b), references);
+        }
+    }
+
+    @Test
+    public void collectReferencesIncrementally() throws Exception {
+        File directory = folder.newFolder("references");
+        try (FileStore fileStore = newFileStore()) {
+            SegmentNodeStore nodeStore = SegmentNodeStoreBuilders.builder(fileStore).build();
+            SegmentBlobReferenceRetriever retriever = new SegmentBlobReferenceRetriever(fileStore, directory);
+
+            String a = addBlob(nodeStore, "a");
+            assertEquals(newHashSet(a), collectReferences(retriever));
+
+            String b = addBlob(nodeStore, "b");
+            assertEquals(newHashSet(a, b), collectReferences(retriever));
+            assertEquals(newHashSet(a, b), collectReferences(retriever));
+        }
+    }
+
+    @Test
+    public void collectAllReferencesAfterFullGC() throws Exception {
+        File directory = folder.newFolder("references");
+        try (FileStore fileStore = newFileStore()) {
+            SegmentNodeStore nodeStore = SegmentNodeStoreBuilders.builder(fileStore).build();
+            SegmentBlobReferenceRetriever retriever = new SegmentBlobReferenceRetriever(fileStore, directory);
+
+            String a = addBlob(nodeStore, "a");
+            String b = addBlob(nodeStore, "b");
+            assertEquals(newHashSet(a, b), collectReferences(retriever));
+
+            NodeBuilder builder = nodeStore.getRoot().builder();
+            builder.removeProperty("a");
+            nodeStore.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+            fileStore.fullGC();
+
+            BinaryReferencesWatermark before = readWatermark(directory);
+            assertEquals(newHashSet(b), collectReferences(retriever));
+            assertFalse(readWatermark(directory).isIncrementalTo(before));
+        }
+    }
+
+    private FileStore newFileStore() throws Exception {
+        return fileStoreBuilder(folder.newFolder("segmentstore"))
+            .withBlobStore(newBlobStore(folder.newFolder("blobstore")))
+            .withGCOptions(defaultGCOptions().setGcSizeDeltaEstimation(1).setRetainedGenerations(1))
+            .build();
+    }
+
+    private static Set<String> collectReferences(SegmentBlobReferenceRetriever retriever) throws Exception {
+        Set<String> references = newHashSet();
+        retriever.collectReferences((reference, nodeId) -> references.add(reference));
+        return references;
+    }
+
+    private static BinaryReferencesWatermark readWatermark(File directory) throws Exception {
+        File file = new File(directory, SegmentBlobReferenceRetriever.WATERMARK_FILE);
+        return BinaryReferencesWatermark.parse(new String(Files.readAllBytes(file.toPath()), UTF_8));
+    }
+
+    private static String addBlob(SegmentNodeStore nodeStore, String name) throws Exception {
+        byte[] data = new byte[18000];
+        new Random().nextBytes(data);
+        Blob blob = nodeStore.createBlob(new ByteArrayInputStream(data));
+        NodeBuilder builder = nodeStore.getRoot().builder();
+        builder.setProperty(name, blob);
+        nodeStore.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+        return blob.getContentIdentity();
+    }
+
+    private static BlobStore newBlobStore(File directory) {
+        OakFileDataStore delegate = new OakFileDataStore();
+        delegate.setPath(directory.getAbsolutePath());
+        delegate.init(null);
+        return new DataStoreBlobStore(delegate);
+    }
+
+}
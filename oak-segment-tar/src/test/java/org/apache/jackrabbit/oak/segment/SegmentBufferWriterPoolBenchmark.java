@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment;
+
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.Executors.newScheduledThreadPool;
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
+import static org.apache.jackrabbit.oak.segment.DefaultSegmentWriterBuilder.defaultSegmentWriterBuilder;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+
+import com.codahale.metrics.Histogram;
+import com.google.common.collect.Lists;
+import org.apache.jackrabbit.oak.plugins.metric.MetricStatisticsProvider;
+import org.apache.jackrabbit.oak.segment.SegmentBufferWriterPool.PoolType;
+import org.apache.jackrabbit.oak.segment.memory.MemoryStore;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.stats.StatsOptions;
+
+/**
+ * Many threads writing small changes through a pool of segment buffer
+ * writers, flushing regularly. Compares the number of segments, their fill
+ * ratio and the contention on the pool for the different pool types.
+ */
+public class SegmentBufferWriterPoolBenchmark {
+
+    private static final int THREADS = 64;
+
+    private static final int COMMITS_PER_THREAD = 2000;
+
+    private static final int COMMITS_PER_FLUSH = 500;
+
+    public static void main(String... args) throws Exception {
+        for (int i = 0; i < 3; i++) {
+            for (PoolType poolType : PoolType.values()) {
+                run(poolType);
+            }
+        }
+    }
+
+    private static void run(PoolType poolType) throws Exception {
+        ScheduledExecutorService scheduler = newScheduledThreadPool(1);
+        ExecutorService executor = newFixedThreadPool(THREADS);
+        try (MetricStatisticsProvider statistics = new MetricStatisticsProvider(
+                ManagementFactory.getPlatformMBeanServer(), scheduler)) {
+            MemoryStore store = new MemoryStore();
+            SegmentWriter writer = defaultSegmentWriterBuilder("b")
+                    .withWriterPool(poolType)
+                    .withStatisticsProvider(statistics)
+                    .build(store);
+
+            long start = System.nanoTime();
+            List<Future<?>> futures = Lists.newArrayList();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int c = 0; c < COMMITS_PER_THREAD; c++) {
+                        NodeBuilder builder = EMPTY_NODE.builder();
+                        builder.setProperty("thread", thread);
+                        builder.setProperty("commit", c);
+                        builder.child("child").setProperty("value", "value-" + thread + '-' + c);
+                        writer.writeNode(builder.getNodeState());
+                        if (c % COMMITS_PER_FLUSH == 0) {
+                            writer.flush();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            writer.flush();
+            long time = System.nanoTime() - start;
+
+            String prefix = "oak.segment.writer-pool-b.";
+            Histogram fill = statistics.getRegistry().histogram(prefix + "segment-fill");
+            System.out.printf("%-16s time=%5d ms, segments=%5d, mean fill=%5.1f%%, writers=%4d, contended=%6d of %7d%n",
+                    poolType,
+                    time / 1000000,
+                    fill.getCount(),
+                    fill.getSnapshot().getMean(),
+                    statistics.getCounterStats(prefix + "writer-count", StatsOptions.DEFAULT).getCount(),
+                    statistics.getCounterStats(prefix + "contended-count", StatsOptions.DEFAULT).getCount(),
+                    statistics.getCounterStats(prefix + "borrow-count", StatsOptions.DEFAULT).getCount());
+        } finally {
+            executor.shutdown();
+            scheduler.shutdown();
+        }
+    }
+
+}
@@ -70,6 +70,16 @@ public class SegmentIdTableBenchmark {
         }
         time = System.currentTimeMillis() - time;
         System.out.println("SegmentIdTable: " + time);
+
+        long memory = usedMemory();
+        SegmentIdTable footprint = new SegmentIdTable();
+        SegmentId[] ids = new SegmentId[count];
+        for (int j = 0; j < count; j++) {
+            ids[j] = footprint.newSegmentId(j, array[j], maker);
+        }
+        memory = usedMemory() - memory;
+        System.out.println("SegmentIdTable footprint: " + memory / 1024 + " kB for "
+                + footprint.getEntryCount() + " of " + ids.length + " ids");
         
         time = System.currentTimeMillis();
         ConcurrentTable cm = new ConcurrentTable(store, 16 * 1024);
@@ -95,6 +105,14 @@ public class SegmentIdTableBenchmark {
 //        System.out.println("WeakHashMap: " + time);
     }
     
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int k = 0; k < 3; k++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
     static class ConcurrentTable {
         private final SegmentStore store;
         volatile WeakReference<SegmentId>[] map;
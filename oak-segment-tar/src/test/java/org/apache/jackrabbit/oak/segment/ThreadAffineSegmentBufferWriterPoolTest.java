@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment;
+
+import static com.google.common.collect.Sets.newHashSet;
+import static java.util.Collections.emptyList;
+import static java.util.concurrent.Executors.newScheduledThreadPool;
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.apache.jackrabbit.oak.segment.WriteOperationHandler.WriteOperation;
+import org.apache.jackrabbit.oak.segment.file.tar.GCGeneration;
+import org.apache.jackrabbit.oak.segment.memory.MemoryStore;
+import org.apache.jackrabbit.oak.stats.DefaultStatisticsProvider;
+import org.apache.jackrabbit.oak.stats.StatsOptions;
+import org.junit.After;
+import org.junit.Test;
+
+public class ThreadAffineSegmentBufferWriterPoolTest {
+
+    private final MemoryStore store = new MemoryStore();
+
+    private final RecordId rootId = store.getRevisions().getHead();
+
+    private final ScheduledExecutorService scheduler = newScheduledThreadPool(1);
+
+    private final DefaultStatisticsProvider statistics = new DefaultStatisticsProvider(scheduler);
+
+    private GCGeneration gcGeneration = GCGeneration.NULL;
+
+    private final ExecutorService[] executors = new ExecutorService[] {
+            newSingleThreadExecutor(), newSingleThreadExecutor(), newSingleThreadExecutor()};
+
+    public ThreadAffineSegmentBufferWriterPoolTest() throws IOException { }
+
+    @After
+    public void tearDown() {
+        for (ExecutorService executor : executors) {
+            executor.shutdown();
+        }
+        scheduler.shutdown();
+    }
+
+    private ThreadAffineSegmentBufferWriterPool newPool(int stripes) {
+        return new ThreadAffineSegmentBufferWriterPool(
+                store.getSegmentIdProvider(),
+                store.getReader(),
+                "t",
+                () -> gcGeneration,
+                statistics,
+                stripes
+        );
+    }
+
+    private SegmentBufferWriter writerOf(ThreadAffineSegmentBufferWriterPool pool, GCGeneration generation)
+    throws IOException {
+        SegmentBufferWriter[] writer = new SegmentBufferWriter[1];
+        pool.execute(generation, w -> {
+            writer[0] = w;
+            return rootId;
+        });
+        return writer[0];
+    }
+
+    private long count(String name) {
+        return statistics.getCounterStats("oak.segment.writer-pool-t." + name, StatsOptions.DEFAULT).getCount();
+    }
+
+    @Test
+    public void testThreadAffinity() throws IOException {
+        ThreadAffineSegmentBufferWriterPool pool = newPool(4);
+        GCGeneration gen = pool.getGCGeneration();
+        SegmentBufferWriter writer = writerOf(pool, gen);
+        assertSame(writer, writerOf(pool, gen));
+        assertSame(writer, writerOf(pool, gen));
+        assertEquals(3, count("borrow-count"));
+        assertEquals(1, count("writer-count"));
+        assertEquals(0, count("contended-count"));
+    }
+
+    @Test
+    public void testBoundedWriters() throws Exception {
+        ThreadAffineSegmentBufferWriterPool pool = newPool(2);
+        GCGeneration gen = pool.getGCGeneration();
+        Set<SegmentBufferWriter> writers = newHashSet();
+        for (int i = 0; i < 20; i++) {
+            ExecutorService executor = newSingleThreadExecutor();
+            try {
+                writers.add(executor.submit(() -> writerOf(pool, gen)).get());
+            } finally {
+                executor.shutdown();
+            }
+        }
+        assertTrue(writers.size() <= 2);
+        assertEquals(writers.size(), count("writer-count"));
+    }
+
+    @Test
+    public void testContention() throws Exception {
+        ThreadAffineSegmentBufferWriterPool pool = newPool(1);
+        GCGeneration gen = pool.getGCGeneration();
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        WriteOperation blocking = writer -> {
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return rootId;
+        };
+
+        Future<RecordId> res1 = executors[0].submit(() -> pool.execute(gen, blocking));
+        entered.await();
+        Future<RecordId> res2 = executors[1].submit(() -> pool.execute(gen, writer -> rootId));
+        while (count("contended-count") == 0) {
+            Thread.sleep(1);
+        }
+        assertFalse(res2.isDone());
+
+        release.countDown();
+        assertEquals(rootId, res1.get());
+        assertEquals(rootId, res2.get());
+        assertEquals(1, count("contended-count"));
+        assertEquals(1, count("writer-count"));
+    }
+
+    @Test
+    public void testFlush() throws Exception {
+        ThreadAffineSegmentBufferWriterPool pool = newPool(4);
+        GCGeneration gen = pool.getGCGeneration();
+        SegmentBufferWriter writer = writerOf(pool, gen);
+        pool.execute(gen, w -> {
+            w.prepare(RecordType.VALUE, 8, emptyList(), store);
+            w.writeLong(42);
+            return rootId;
+        });
+
+        pool.flush(store);
+        assertEquals(1, statistics.getHistogram("oak.segment.writer-pool-t.segment-fill", StatsOptions.DEFAULT).getCount());
+        assertNotEquals(writer, writerOf(pool, gen));
+    }
+
+    @Test
+    public void testCompaction() throws IOException {
+        ThreadAffineSegmentBufferWriterPool pool = newPool(1);
+        GCGeneration gen = pool.getGCGeneration();
+        SegmentBufferWriter writer = writerOf(pool, gen);
+
+        // Simulate compaction by increasing the global gc generation
+        gcGeneration = gcGeneration.nextFull();
+        SegmentBufferWriter compacted = writerOf(pool, gcGeneration);
+        assertNotEquals(writer, compacted);
+        assertEquals(gcGeneration, compacted.getGCGeneration());
+        assertSame(compacted, writerOf(pool, gcGeneration));
+    }
+
+    @Test
+    public void testFlushBlocks() throws Exception {
+        ThreadAffineSegmentBufferWriterPool pool = newPool(4);
+        GCGeneration gen = pool.getGCGeneration();
+        Future<RecordId> res = executors[0].submit(() -> pool.execute(gen, writer -> {
+            try {
+                // This should deadlock as flush waits for this write
+                // operation to finish
+                executors[1].submit(() -> {
+                    pool.flush(store);
+                    return null;
+                }).get(100, MILLISECONDS);
+                return null;    // No deadlock -> null indicates test failure
+            } catch (Exception e) {
+                return rootId;  // Deadlock -> rootId indicates test pass
+            }
+        }));
+
+        assertEquals(rootId, res.get());
+    }
+
+}
@@ -19,11 +19,20 @@
 
 package org.apache.jackrabbit.oak.segment;
 
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
+import com.google.common.cache.CacheStats;
+import org.apache.jackrabbit.oak.segment.WriterCacheManager.Adaptive;
+import org.apache.jackrabbit.oak.segment.WriterCacheManager.AdaptiveSize;
 import org.apache.jackrabbit.oak.segment.WriterCacheManager.Default;
 import org.apache.jackrabbit.oak.segment.WriterCacheManager.Empty;
+import org.apache.jackrabbit.oak.segment.memory.MemoryStore;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
 import org.junit.Test;
 
 public class WriteCacheManagerTest {
@@ -50,4 +59,127 @@ public class WriteCacheManagerTest {
                 cache.getStringCache(1));
     }
 
+    private static CacheStats stats(long hits, long misses, long evictions) {
+        return new CacheStats(hits, misses, 0, 0, 0, evictions);
+    }
+
+    @Test
+    public void adaptiveSizeGrowsOnHighHitRate() {
+        AdaptiveSize size = new AdaptiveSize(100, () -> 1.0);
+        assertEquals(200, size.resize(stats(5000, 5000, 10)));
+        assertEquals(400, size.resize(stats(5000, 5000, 10)));
+        assertEquals(400, size.resize(stats(5000, 5000, 10)));
+    }
+
+    @Test
+    public void adaptiveSizeKeptWithoutEvictions() {
+        AdaptiveSize size = new AdaptiveSize(100, () -> 1.0);
+        assertEquals(100, size.resize(stats(5000, 5000, 0)));
+    }
+
+    @Test
+    public void adaptiveSizeKeptOnFewRequests() {
+        AdaptiveSize size = new AdaptiveSize(100, () -> 1.0);
+        assertEquals(100, size.resize(stats(0, 10, 0)));
+        assertEquals(100, size.resize(stats(10, 0, 10)));
+    }
+
+    @Test
+    public void adaptiveSizeShrinksOnLowHitRate() {
+        AdaptiveSize size = new AdaptiveSize(100, () -> 1.0);
+        assertEquals(50, size.resize(stats(1, 5000, 10)));
+        assertEquals(25, size.resize(stats(1, 5000, 10)));
+        assertEquals(25, size.resize(stats(1, 5000, 10)));
+    }
+
+    @Test
+    public void adaptiveSizeShrinksOnLowHeadroom() {
+        AdaptiveSize size = new AdaptiveSize(100, () -> 0.1);
+        assertEquals(50, size.resize(stats(5000, 5000, 10)));
+    }
+
+    @Test
+    public void adaptiveSizeOfEmptyCache() {
+        AdaptiveSize size = new AdaptiveSize(0, () -> 1.0);
+        assertEquals(0, size.resize(stats(5000, 5000, 10)));
+    }
+
+    @Test
+    public void adaptiveGenerations() {
+        Adaptive cache = new Adaptive(100, 100, 128, () -> 1.0);
+        Cache<String, RecordId> strings = cache.getStringCache(0);
+        for (int i = 0; i < 1000; i++) {
+            // Half of the lookups go to a small set of hot keys
+            String key = i % 2 == 0 ? "hot-" + i % 10 : "cold-" + i;
+            if (strings.get(key) == null) {
+                strings.put(key, RecordId.NULL);
+            }
+        }
+        assertEquals(100, cache.getStringCacheSize());
+
+        // A new generation is sized after the previous one
+        cache.getStringCache(1);
+        assertEquals(200, cache.getStringCacheSize());
+
+        // Requesting a generation again does not resize
+        cache.getStringCache(1);
+        cache.getStringCache(0);
+        assertEquals(200, cache.getStringCacheSize());
+    }
+
+    @Test
+    public void adaptiveNodeCacheGenerations() {
+        Adaptive cache = new Adaptive(100, 100, 128, () -> 1.0);
+        Cache<String, RecordId> nodes = cache.getNodeCache(0);
+        for (int i = 0; i < 256; i++) {
+            nodes.put("node-" + i, RecordId.NULL, (byte) (i / 128));
+        }
+        String cached = null;
+        for (int i = 0; i < 1000; i++) {
+            String key = "node-" + (128 + i % 128);
+            if (nodes.get(key) != null) {
+                cached = key;
+            }
+        }
+        assertNotNull(cached);
+        assertEquals(128, cache.getNodeCacheSize());
+
+        // Requesting a new generation keeps the entries of the previous one
+        Cache<String, RecordId> next = cache.getNodeCache(1);
+        assertEquals(128, cache.getNodeCacheSize());
+        assertNotNull(nodes.get(cached));
+        assertNull(next.get(cached));
+
+        // The cache is only resized once the previous generation is unused
+        cache.resizeNodeCache();
+        assertEquals(256, cache.getNodeCacheSize());
+        assertNull(nodes.get(cached));
+    }
+
+    @Test
+    public void deduplicationStats() throws Exception {
+        Adaptive cache = new Adaptive(100, 100, 128, () -> 1.0);
+        MemoryStore store = new MemoryStore();
+        SegmentWriter writer = DefaultSegmentWriterBuilder.defaultSegmentWriterBuilder("test")
+                .withWriterPool()
+                .with(cache)
+                .build(store);
+
+        assertEquals(0, cache.getDeduplicationRatio(), 0);
+        NodeBuilder builder = EMPTY_NODE.builder();
+        for (int i = 0; i < 10; i++) {
+            builder.child("node-" + i).setProperty("p", "the same value");
+        }
+        writer.writeNode(builder.getNodeState());
+        writer.flush();
+
+        // The value and the template of all but the first child are
+        // deduplicated
+        assertEquals(1, cache.getWriteOperationCount());
+        assertTrue(cache.getDeduplicatedRecordCount() >= 18);
+        assertTrue(cache.getDeduplicationRatio() > 0);
+        assertTrue(cache.getSavedBytes() >= 9 * ("the same value".length() + 1) + 9 * (4 + 6 * 3 + 1));
+        assertEquals(cache.getSavedBytes(), cache.getSavedBytesPerWriteOperation(), 0);
+    }
+
 }
@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.compression;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Random;
+import java.util.UUID;
+
+import org.apache.jackrabbit.oak.segment.file.tar.SegmentTarManager;
+import org.apache.jackrabbit.oak.segment.spi.monitor.FileStoreMonitorAdapter;
+import org.apache.jackrabbit.oak.segment.spi.monitor.IOMonitorAdapter;
+import org.apache.jackrabbit.oak.segment.spi.persistence.Buffer;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveManager;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveReader;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveWriter;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CompressingSegmentArchiveManagerTest {
+
+    private static final long DATA_LSB = 0xA000000000000001L;
+
+    private static final long BULK_LSB = 0xB000000000000001L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder(new File("target"));
+
+    private SegmentArchiveManager rawManager;
+
+    @Before
+    public void setUp() throws IOException {
+        rawManager = new SegmentTarManager(folder.newFolder(), new FileStoreMonitorAdapter(), new IOMonitorAdapter(), false, false);
+    }
+
+    private static byte[] newSegment(int size) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) ('a' + i % 7);
+        }
+        data[0] = '0';
+        data[1] = 'a';
+        data[2] = 'K';
+        return data;
+    }
+
+    private static void write(SegmentArchiveWriter writer, long msb, long lsb, byte[] data) throws IOException {
+        writer.writeSegment(msb, lsb, data, 0, data.length, 0, 0, false);
+    }
+
+    private static byte[] toArray(Buffer buffer) {
+        byte[] data = new byte[buffer.remaining()];
+        buffer.duplicate().get(data);
+        return data;
+    }
+
+    @Test
+    public void dataSegmentsAreCompressed() throws IOException {
+        SegmentArchiveManager manager = new CompressingSegmentArchiveManager(rawManager, new DeflateSegmentCodec());
+        byte[] data = newSegment(16 * 1024);
+
+        SegmentArchiveWriter writer = manager.create("data00000a.tar");
+        write(writer, 1, DATA_LSB, data);
+        writer.flush();
+        assertTrue(Arrays.equals(data, toArray(writer.readSegment(1, DATA_LSB))));
+        writer.close();
+
+        SegmentArchiveReader reader = manager.open("data00000a.tar");
+        assertNotNull(reader);
+        assertTrue(Arrays.equals(data, toArray(reader.readSegment(1, DATA_LSB))));
+        reader.close();
+
+        SegmentArchiveReader raw = rawManager.open("data00000a.tar");
+        assertNotNull(raw);
+        Buffer stored = raw.readSegment(1, DATA_LSB);
+        assertTrue(stored.remaining() < data.length);
+        assertEquals('C', stored.get(stored.position()));
+        raw.close();
+    }
+
+    @Test
+    public void bulkAndIncompressibleSegmentsAreStoredAsIs() throws IOException {
+        SegmentArchiveManager manager = new CompressingSegmentArchiveManager(rawManager, new DeflateSegmentCodec());
+        byte[] bulk = newSegment(4096);
+        byte[] random = new byte[4096];
+        new Random(42).nextBytes(random);
+        random[0] = '0';
+        random[1] = 'a';
+        random[2] = 'K';
+
+        SegmentArchiveWriter writer = manager.create("data00000a.tar");
+        write(writer, 1, BULK_LSB, bulk);
+        write(writer, 2, DATA_LSB, random);
+        writer.close();
+
+        SegmentArchiveReader raw = rawManager.open("data00000a.tar");
+        assertNotNull(raw);
+        assertTrue(Arrays.equals(bulk, toArray(raw.readSegment(1, BULK_LSB))));
+        assertTrue(Arrays.equals(random, toArray(raw.readSegment(2, DATA_LSB))));
+        raw.close();
+    }
+
+    @Test
+    public void uncompressedArchivesRemainReadable() throws IOException {
+        byte[] data = newSegment(8192);
+        SegmentArchiveWriter writer = rawManager.create("data00000a.tar");
+        write(writer, 1, DATA_LSB, data);
+        writer.close();
+
+        SegmentArchiveManager manager = new CompressingSegmentArchiveManager(rawManager, null);
+        SegmentArchiveReader reader = manager.open("data00000a.tar");
+        assertNotNull(reader);
+        assertTrue(Arrays.equals(data, toArray(reader.readSegment(1, DATA_LSB))));
+        reader.close();
+    }
+
+    @Test
+    public void recoveredEntriesAreDecompressed() throws IOException {
+        SegmentArchiveManager manager = new CompressingSegmentArchiveManager(rawManager, new DeflateSegmentCodec());
+        byte[] data = newSegment(8192);
+
+        SegmentArchiveWriter writer = manager.create("data00000a.tar");
+        write(writer, 1, DATA_LSB, data);
+        writer.flush();
+
+        LinkedHashMap<UUID, byte[]> entries = new LinkedHashMap<>();
+        manager.recoverEntries("data00000a.tar", entries);
+        assertEquals(1, entries.size());
+        assertTrue(Arrays.equals(data, entries.get(new UUID(1, DATA_LSB))));
+        writer.close();
+    }
+
+}
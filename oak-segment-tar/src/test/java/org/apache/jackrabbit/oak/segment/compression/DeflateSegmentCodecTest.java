@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.compression;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class DeflateSegmentCodecTest {
+
+    private final DeflateSegmentCodec codec = new DeflateSegmentCodec();
+
+    @Test
+    public void roundTrip() throws IOException {
+        byte[] data = new byte[256 * 1024];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i % 31);
+        }
+        byte[] compressed = codec.compress(data, 0, data.length);
+        assertTrue(compressed.length < data.length);
+        assertArrayEquals(data, codec.decompress(compressed, 0, compressed.length, data.length));
+    }
+
+    @Test
+    public void roundTripIncompressible() throws IOException {
+        byte[] data = new byte[100 * 1024];
+        new Random(42).nextBytes(data);
+        byte[] compressed = codec.compress(data, 10, data.length - 10);
+        assertArrayEquals(
+                Arrays.copyOfRange(data, 10, data.length),
+                codec.decompress(compressed, 0, compressed.length, data.length - 10));
+    }
+
+    @Test(expected = IOException.class)
+    public void corruptData() throws IOException {
+        byte[] data = new byte[1024];
+        byte[] compressed = codec.compress(data, 0, data.length);
+        codec.decompress(compressed, 0, compressed.length / 2, data.length);
+    }
+
+}
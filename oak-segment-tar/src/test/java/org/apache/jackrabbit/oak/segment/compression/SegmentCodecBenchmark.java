@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.compression;
+
+import static org.apache.jackrabbit.oak.segment.SegmentId.isDataSegmentId;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+import org.apache.jackrabbit.oak.segment.file.tar.SegmentTarManager;
+import org.apache.jackrabbit.oak.segment.spi.monitor.FileStoreMonitorAdapter;
+import org.apache.jackrabbit.oak.segment.spi.monitor.IOMonitorAdapter;
+import org.apache.jackrabbit.oak.segment.spi.persistence.Buffer;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveEntry;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveManager;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveReader;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentCodec;
+
+/**
+ * Measures compression ratio and throughput of the {@link SegmentCodec}s on
+ * the data segments of an existing segment store. Usage: {@code
+ * SegmentCodecBenchmark <store directory> [<max segments>]}.
+ */
+public class SegmentCodecBenchmark {
+
+    public static void main(String... args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: SegmentCodecBenchmark <store directory> [<max segments>]");
+            return;
+        }
+        int maxSegments = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+        List<byte[]> segments = readDataSegments(new File(args[0]), maxSegments);
+        System.out.println("Read " + segments.size() + " data segments");
+
+        for (int level : new int[] {1, 6}) {
+            SegmentCodec codec = new DeflateSegmentCodec(level);
+            test(codec, segments);
+            test(codec, segments);
+            test(codec, segments);
+        }
+    }
+
+    private static List<byte[]> readDataSegments(File directory, int maxSegments) throws IOException {
+        SegmentArchiveManager manager = new CompressingSegmentArchiveManager(
+                new SegmentTarManager(directory, new FileStoreMonitorAdapter(), new IOMonitorAdapter(), false, false), null);
+        List<byte[]> segments = Lists.newArrayList();
+        for (String archive : manager.listArchives()) {
+            SegmentArchiveReader reader = manager.open(archive);
+            if (reader == null) {
+                continue;
+            }
+            try {
+                for (SegmentArchiveEntry entry : reader.listSegments()) {
+                    if (segments.size() >= maxSegments) {
+                        return segments;
+                    }
+                    if (!isDataSegmentId(entry.getLsb())) {
+                        continue;
+                    }
+                    Buffer buffer = reader.readSegment(entry.getMsb(), entry.getLsb());
+                    if (buffer != null) {
+                        byte[] data = new byte[buffer.remaining()];
+                        buffer.get(data);
+                        segments.add(data);
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        }
+        return segments;
+    }
+
+    private static void test(SegmentCodec codec, List<byte[]> segments) throws IOException {
+        long raw = 0;
+        long compressed = 0;
+        long compressTime = 0;
+        long decompressTime = 0;
+        for (byte[] segment : segments) {
+            long time = System.nanoTime();
+            byte[] c = codec.compress(segment, 0, segment.length);
+            compressTime += System.nanoTime() - time;
+
+            time = System.nanoTime();
+            codec.decompress(c, 0, c.length, segment.length);
+            decompressTime += System.nanoTime() - time;
+
+            raw += segment.length;
+            compressed += c.length;
+        }
+        System.out.printf("%s: ratio %.2f, compress %.1f MB/s, decompress %.1f MB/s%n",
+                codec, (double) raw / Math.max(1, compressed),
+                mbPerSecond(raw, compressTime), mbPerSecond(raw, decompressTime));
+    }
+
+    private static double mbPerSecond(long bytes, long nanos) {
+        return bytes / 1024.0 / 1024.0 / Math.max(1, nanos) * 1e9;
+    }
+
+}
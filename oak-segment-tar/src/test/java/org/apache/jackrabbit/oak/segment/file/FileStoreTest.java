@@ -27,6 +27,7 @@ import java.io.File;
 import org.apache.jackrabbit.oak.segment.SegmentId;
 import org.apache.jackrabbit.oak.segment.SegmentNodeBuilder;
 import org.apache.jackrabbit.oak.segment.SegmentNodeState;
+import org.apache.jackrabbit.oak.segment.compression.DeflateSegmentCodec;
 import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
@@ -84,5 +85,24 @@ public class FileStoreTest {
         }
     }
 
+    @Test
+    public void compressedSegments() throws Exception {
+        try (FileStore fileStore = fileStoreBuilder(getFileStoreFolder()).withSegmentCodec(new DeflateSegmentCodec()).build()) {
+            SegmentNodeState head = fileStore.getHead();
+            SegmentNodeBuilder builder = head.builder();
+            for (int i = 0; i < 1000; i++) {
+                builder.child("n" + i).setProperty("p", "value " + i);
+            }
+            SegmentNodeState newHead = builder.getNodeState();
+            fileStore.getRevisions().setHead(head.getRecordId(), newHead.getRecordId());
+        }
+
+        try (FileStore fileStore = fileStoreBuilder(getFileStoreFolder()).withSegmentCodec(null).build()) {
+            SegmentNodeState head = fileStore.getHead();
+            for (int i = 0; i < 1000; i++) {
+                assertEquals("value " + i, head.getChildNode("n" + i).getString("p"));
+            }
+        }
+    }
 
 }
@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file;
+
+import static org.apache.jackrabbit.oak.segment.file.FileStoreBuilder.fileStoreBuilder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.apache.jackrabbit.oak.segment.SegmentNodeBuilder;
+import org.apache.jackrabbit.oak.segment.SegmentNodeState;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class OnlineConsistencyCheckerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder(new File("target"));
+
+    private static void addNodes(FileStore store, String prefix, int count) throws Exception {
+        SegmentNodeState head = store.getHead();
+        SegmentNodeBuilder builder = head.builder();
+        for (int i = 0; i < count; i++) {
+            builder.child(prefix + i).setProperty("p", "value " + i);
+        }
+        store.getRevisions().setHead(head.getRecordId(), builder.getNodeState().getRecordId());
+        store.flush();
+    }
+
+    @Test
+    public void incrementalCheck() throws Exception {
+        try (FileStore store = fileStoreBuilder(folder.getRoot()).build()) {
+            ConsistencyCheckMBean checker = store.getConsistencyChecker();
+            assertNull(checker.getLastVerifiedRevision());
+
+            addNodes(store, "a", 100);
+            assertTrue(checker.checkConsistency().startsWith("Consistent"));
+            assertEquals(store.getRevisions().getPersistedHead().toString10(), checker.getLastVerifiedRevision());
+            long fullCheck = checker.getCheckedNodeCount();
+            assertTrue(fullCheck > 100);
+            assertEquals(0, checker.getInconsistentPaths().length);
+
+            addNodes(store, "b", 2);
+            assertTrue(checker.checkConsistency().startsWith("Consistent"));
+            assertEquals(store.getRevisions().getPersistedHead().toString10(), checker.getLastVerifiedRevision());
+            assertTrue(checker.getCheckedNodeCount() < fullCheck);
+            assertEquals(0, checker.getFailedCheckCount());
+        }
+    }
+
+    @Test
+    public void progressIsPersisted() throws Exception {
+        String verified;
+        try (FileStore store = fileStoreBuilder(folder.getRoot()).build()) {
+            addNodes(store, "a", 10);
+            store.getConsistencyChecker().checkConsistency();
+            verified = store.getConsistencyChecker().getLastVerifiedRevision();
+            assertNotNull(verified);
+        }
+        assertTrue(new File(folder.getRoot(), OnlineConsistencyChecker.PROGRESS_FILE_NAME).exists());
+
+        try (FileStore store = fileStoreBuilder(folder.getRoot()).build()) {
+            ConsistencyCheckMBean checker = store.getConsistencyChecker();
+            assertEquals(verified, checker.getLastVerifiedRevision());
+
+            addNodes(store, "b", 1);
+            checker.checkConsistency();
+            assertTrue(checker.getCheckedNodeCount() < 10);
+        }
+    }
+
+    @Test
+    public void fullCheckAfterCompaction() throws Exception {
+        try (FileStore store = fileStoreBuilder(folder.getRoot()).build()) {
+            ConsistencyCheckMBean checker = store.getConsistencyChecker();
+            addNodes(store, "a", 100);
+            checker.checkConsistency();
+            long fullCheck = checker.getCheckedNodeCount();
+
+            store.compactFull();
+            store.flush();
+            assertTrue(checker.checkConsistency().startsWith("Consistent"));
+            assertTrue(checker.getCheckedNodeCount() >= fullCheck);
+        }
+    }
+
+}
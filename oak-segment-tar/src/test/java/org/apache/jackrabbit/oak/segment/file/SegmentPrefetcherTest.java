@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file;
+
+import static org.apache.jackrabbit.oak.segment.file.FileStoreBuilder.fileStoreBuilder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import com.google.common.base.Strings;
+import org.apache.jackrabbit.oak.commons.concurrent.ExecutorCloser;
+import org.apache.jackrabbit.oak.segment.SegmentNodeStore;
+import org.apache.jackrabbit.oak.segment.SegmentNodeStoreBuilders;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.stats.DefaultStatisticsProvider;
+import org.apache.jackrabbit.oak.stats.StatisticsProvider;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SegmentPrefetcherTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder(new File("target"));
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+    @After
+    public void shutDown() {
+        new ExecutorCloser(executor).close();
+    }
+
+    @Test
+    public void prefetchReferencedSegments() throws Exception {
+        File directory = folder.newFolder();
+        try (FileStore store = fileStoreBuilder(directory).build()) {
+            SegmentNodeStore nodeStore = SegmentNodeStoreBuilders.builder(store).build();
+            String value = Strings.repeat("x", 1024);
+            for (int i = 0; i < 10; i++) {
+                NodeBuilder root = nodeStore.getRoot().builder();
+                NodeBuilder parent = root.child("c" + i);
+                for (int j = 0; j < 200; j++) {
+                    parent.child("n" + j).setProperty("p", value + j);
+                }
+                nodeStore.merge(root, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+                store.flush();
+            }
+        }
+
+        StatisticsProvider statsProvider = new DefaultStatisticsProvider(executor);
+        try (FileStore store = fileStoreBuilder(directory)
+                .withStatisticsProvider(statsProvider)
+                .withSegmentPrefetchDepth(2)
+                .withSegmentPrefetchThreads(2)
+                .build()) {
+            FileStoreStats stats = store.getStats();
+            NodeState root = SegmentNodeStoreBuilders.builder(store).build().getRoot();
+
+            long deadline = System.currentTimeMillis() + 10000;
+            while (stats.getPrefetchCount() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(stats.getPrefetchCount() > 0);
+
+            traverse(root);
+            assertTrue(stats.getPrefetchHitCount() > 0);
+        }
+    }
+
+    @Test
+    public void noPrefetchByDefault() throws Exception {
+        StatisticsProvider statsProvider = new DefaultStatisticsProvider(executor);
+        try (FileStore store = fileStoreBuilder(folder.newFolder())
+                .withStatisticsProvider(statsProvider)
+                .build()) {
+            traverse(SegmentNodeStoreBuilders.builder(store).build().getRoot());
+            assertEquals(0, store.getStats().getPrefetchCount());
+        }
+    }
+
+    private static void traverse(NodeState node) {
+        node.getProperties().forEach(p -> p.getValue(p.getType()));
+        for (ChildNodeEntry child : node.getChildNodeEntries()) {
+            traverse(child.getNodeState());
+        }
+    }
+
+}
@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file.tar;
+
+import static java.util.Collections.emptySet;
+import static java.util.UUID.randomUUID;
+import static org.apache.jackrabbit.oak.segment.file.tar.GCGeneration.newGCGeneration;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jackrabbit.oak.segment.file.tar.TarFiles.CleanupResult;
+import org.apache.jackrabbit.oak.segment.spi.monitor.FileStoreMonitorAdapter;
+import org.apache.jackrabbit.oak.segment.spi.monitor.IOMonitorAdapter;
+import org.apache.jackrabbit.oak.segment.spi.monitor.RemoteStoreMonitorAdapter;
+
+/**
+ * Compares sequential and concurrent cleanup of synthetic stores of different
+ * sizes. Each store consists of many TAR files containing a random graph of
+ * segments, half of which belong to an old generation.
+ */
+public class CleanupBenchmark {
+
+    private static final int SEGMENTS_PER_TAR = 200;
+
+    private static final int SEGMENT_SIZE = 4096;
+
+    private static final int[] TAR_COUNTS = {50, 200, 500};
+
+    private static final int[] CONCURRENCIES = {1, 2, 4, 8};
+
+    public static void main(String... args) throws Exception {
+        for (int tars : TAR_COUNTS) {
+            for (int concurrency : CONCURRENCIES) {
+                run(tars, concurrency);
+            }
+        }
+    }
+
+    private static void run(int tars, int concurrency) throws IOException {
+        File directory = Files.createTempDirectory("cleanup-benchmark").toFile();
+        try (TarFiles tarFiles = newTarFiles(directory)) {
+            Random random = new Random(42);
+            byte[] buffer = new byte[SEGMENT_SIZE];
+            List<UUID> ids = new ArrayList<>();
+            Set<UUID> old = new HashSet<>();
+            for (int tar = 0; tar < tars; tar++) {
+                for (int i = 0; i < SEGMENTS_PER_TAR; i++) {
+                    UUID id = randomUUID();
+                    Set<UUID> references = new HashSet<>();
+                    for (int k = random.nextInt(4); k > 0 && !ids.isEmpty(); k--) {
+                        references.add(ids.get(random.nextInt(ids.size())));
+                    }
+                    random.nextBytes(buffer);
+                    tarFiles.writeSegment(id, buffer, 0, buffer.length, newGCGeneration(1, 1, false), references, emptySet());
+                    ids.add(id);
+                    if (tar < tars / 2) {
+                        old.add(id);
+                    }
+                }
+                tarFiles.newWriter();
+            }
+
+            Set<UUID> roots = new HashSet<>(ids.subList(ids.size() - 100, ids.size()));
+            long start = System.nanoTime();
+            CleanupResult result = tarFiles.cleanup(new CleanupContext() {
+
+                @Override
+                public Collection<UUID> initialReferences() {
+                    return roots;
+                }
+
+                @Override
+                public boolean shouldReclaim(UUID id, GCGeneration generation, boolean referenced) {
+                    return old.contains(id) || !referenced;
+                }
+
+                @Override
+                public boolean shouldFollow(UUID from, UUID to) {
+                    return true;
+                }
+
+            }, concurrency);
+            long time = System.nanoTime() - start;
+
+            System.out.printf("tars=%4d, concurrency=%2d, time=%6d ms, reclaimed=%7d segments, %6d kB%n",
+                    tars,
+                    concurrency,
+                    time / 1000000,
+                    result.getReclaimedSegmentIds().size(),
+                    result.getReclaimedSize() / 1024);
+        } finally {
+            FileUtils.deleteQuietly(directory);
+        }
+    }
+
+    private static TarFiles newTarFiles(File directory) throws IOException {
+        return TarFiles.builder()
+                .withDirectory(directory)
+                .withTarRecovery((id, data, recovery) -> {
+                    // Intentionally left blank
+                })
+                .withIOMonitor(new IOMonitorAdapter())
+                .withFileStoreMonitor(new FileStoreMonitorAdapter())
+                .withMaxFileSize(Integer.MAX_VALUE)
+                .withRemoteStoreMonitor(new RemoteStoreMonitorAdapter())
+                .build();
+    }
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file.tar;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+import org.apache.jackrabbit.oak.segment.spi.persistence.Buffer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FileAccessTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder(new File("target"));
+
+    @Test
+    public void readAheadReadsSameDataAsUnderlyingFile() throws Exception {
+        File file = folder.newFile();
+        byte[] data = new byte[10000];
+        new Random(42).nextBytes(data);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.write(data);
+        }
+
+        FileAccess random = new FileAccess.Random(new RandomAccessFile(file, "r"));
+        FileAccess readAhead = new FileAccess.ReadAhead(new FileAccess.Random(new RandomAccessFile(file, "r")), 1000);
+        try {
+            assertEquals(random.length(), readAhead.length());
+
+            // sequential reads within and across block boundaries
+            for (int position = 0; position + 300 <= data.length; position += 300) {
+                assertEquals(random.read(position, 300), readAhead.read(position, 300));
+            }
+
+            // backward, larger than block and up to the end of the file
+            assertEquals(random.read(100, 50), readAhead.read(100, 50));
+            assertEquals(random.read(2000, 1500), readAhead.read(2000, 1500));
+            assertEquals(random.read(9900, 100), readAhead.read(9900, 100));
+        } finally {
+            random.close();
+            readAhead.close();
+        }
+    }
+
+    @Test
+    public void readAheadReturnsIndependentBuffers() throws Exception {
+        File file = folder.newFile();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.write(new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+        }
+
+        FileAccess readAhead = new FileAccess.ReadAhead(new FileAccess.Random(new RandomAccessFile(file, "r")), 4);
+        try {
+            Buffer first = readAhead.read(0, 2);
+            Buffer second = readAhead.read(6, 2);
+            assertEquals(2, first.remaining());
+            assertEquals(1, first.get(0));
+            assertEquals(2, first.get(1));
+            assertEquals(7, second.get(0));
+            assertEquals(8, second.get(1));
+        } finally {
+            readAhead.close();
+        }
+    }
+
+}
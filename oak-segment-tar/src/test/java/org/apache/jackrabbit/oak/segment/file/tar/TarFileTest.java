@@ -23,11 +23,16 @@ import static com.google.common.collect.Lists.newArrayList;
 import static com.google.common.collect.Maps.newHashMap;
 import static org.apache.jackrabbit.oak.segment.file.tar.GCGeneration.newGCGeneration;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
 import static org.mockito.internal.util.collections.Sets.newSet;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -56,13 +61,16 @@ public class TarFileTest {
 
     protected SegmentArchiveManager archiveManager;
 
+    private File archiveDirectory;
+
     @Before
     public void setUp() throws IOException {
-        archiveManager = new SegmentTarManager(folder.newFolder(), new FileStoreMonitorAdapter(), new IOMonitorAdapter(), false, false);
+        archiveDirectory = folder.newFolder();
+        archiveManager = new SegmentTarManager(archiveDirectory, new FileStoreMonitorAdapter(), new IOMonitorAdapter(), false, false);
     }
 
     protected long getWriteAndReadExpectedSize() {
-        return 5120;
+        return 6144;
     }
 
     @Test
@@ -83,6 +91,72 @@ public class TarFileTest {
         }
     }
 
+    @Test
+    public void testContainsEntryWithBloomFilter() throws Exception {
+        List<UUID> ids = newArrayList();
+        byte[] data = "Hello, World!".getBytes(UTF_8);
+
+        try (TarWriter writer = new TarWriter(archiveManager, "data00000a.tar")) {
+            for (int i = 0; i < 100; i++) {
+                UUID id = UUID.randomUUID();
+                ids.add(id);
+                writer.writeEntry(id.getMostSignificantBits(), id.getLeastSignificantBits(), data, 0, data.length, generation(0));
+            }
+        }
+
+        try (TarReader reader = TarReader.open("data00000a.tar", archiveManager)) {
+            for (UUID id : ids) {
+                assertTrue(reader.containsEntry(id.getMostSignificantBits(), id.getLeastSignificantBits()));
+                assertEquals(Buffer.wrap(data), reader.readEntry(id.getMostSignificantBits(), id.getLeastSignificantBits()));
+            }
+            for (int i = 0; i < 100; i++) {
+                UUID id = UUID.randomUUID();
+                assertFalse(reader.containsEntry(id.getMostSignificantBits(), id.getLeastSignificantBits()));
+                assertNull(reader.readEntry(id.getMostSignificantBits(), id.getLeastSignificantBits()));
+            }
+            assertNotNull(reader.getGraph());
+            assertNotNull(reader.getBinaryReferences());
+        }
+    }
+
+    @Test
+    public void testCorruptBinaryReferencesBeforeBloomFilter() throws Exception {
+        assumeTrue(archiveManager instanceof SegmentTarManager);
+        List<UUID> ids = newArrayList();
+        byte[] data = "Hello, World!".getBytes(UTF_8);
+
+        try (TarWriter writer = new TarWriter(archiveManager, "data00000a.tar")) {
+            for (int i = 0; i < 10; i++) {
+                UUID id = UUID.randomUUID();
+                ids.add(id);
+                writer.writeEntry(id.getMostSignificantBits(), id.getLeastSignificantBits(), data, 0, data.length, generation(0));
+            }
+        }
+
+        // make the size of the binary references point before the start of the file
+        File file = new File(archiveDirectory, "data00000a.tar");
+        try (RandomAccessFile access = new RandomAccessFile(file, "rw")) {
+            for (long position = 0; position < access.length(); position += 512) {
+                byte[] header = new byte[512];
+                access.seek(position);
+                access.readFully(header);
+                if (new String(header, 0, 100, UTF_8).trim().endsWith(".brf")) {
+                    int size = Integer.parseInt(new String(header, 124, 11, UTF_8).trim(), 8);
+                    access.seek(position + 512 + size - 8);
+                    access.writeInt(Integer.MAX_VALUE - 1024);
+                    break;
+                }
+            }
+        }
+
+        try (TarReader reader = TarReader.open("data00000a.tar", archiveManager)) {
+            for (UUID id : ids) {
+                assertTrue(reader.containsEntry(id.getMostSignificantBits(), id.getLeastSignificantBits()));
+                assertEquals(Buffer.wrap(data), reader.readEntry(id.getMostSignificantBits(), id.getLeastSignificantBits()));
+            }
+        }
+    }
+
     @Test
     public void testGCGeneration() throws Exception {
         UUID id = UUID.randomUUID();
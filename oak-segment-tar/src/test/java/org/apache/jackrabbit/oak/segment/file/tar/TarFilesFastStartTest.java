@@ -0,0 +1,294 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file.tar;
+
+import static java.util.Collections.emptySet;
+import static java.util.UUID.randomUUID;
+import static org.apache.jackrabbit.oak.segment.file.tar.GCGeneration.newGCGeneration;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jackrabbit.oak.segment.spi.monitor.FileStoreMonitor;
+import org.apache.jackrabbit.oak.segment.spi.monitor.FileStoreMonitorAdapter;
+import org.apache.jackrabbit.oak.segment.spi.monitor.IOMonitor;
+import org.apache.jackrabbit.oak.segment.spi.monitor.IOMonitorAdapter;
+import org.apache.jackrabbit.oak.segment.spi.monitor.RemoteStoreMonitor;
+import org.apache.jackrabbit.oak.segment.spi.monitor.RemoteStoreMonitorAdapter;
+import org.apache.jackrabbit.oak.segment.spi.persistence.Buffer;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveManager;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TarFilesFastStartTest {
+
+    private static final int FILE_COUNT = 5;
+
+    private static final int SEGMENTS_PER_FILE = 10;
+
+    private final Random random = new Random(42);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder(new File("target"));
+
+    private final AtomicInteger opened = new AtomicInteger();
+
+    /**
+     * Persistence counting the number of archives opened for reading.
+     */
+    private class CountingPersistence extends TarPersistence {
+
+        CountingPersistence(File directory) {
+            super(directory);
+        }
+
+        @Override
+        public SegmentArchiveManager createArchiveManager(boolean memoryMapping, boolean offHeapAccess, IOMonitor ioMonitor, FileStoreMonitor fileStoreMonitor, RemoteStoreMonitor remoteStoreMonitor) {
+            SegmentArchiveManager delegate = super.createArchiveManager(memoryMapping, offHeapAccess, ioMonitor, fileStoreMonitor, remoteStoreMonitor);
+            return (SegmentArchiveManager) Proxy.newProxyInstance(
+                    getClass().getClassLoader(),
+                    new Class<?>[] {SegmentArchiveManager.class},
+                    (proxy, method, args) -> {
+                        if (method.getName().equals("open")) {
+                            opened.incrementAndGet();
+                        }
+                        try {
+                            return method.invoke(delegate, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    });
+        }
+    }
+
+    private TarFiles newTarFiles(boolean fastStart) throws IOException {
+        return newTarFiles(folder.getRoot(), fastStart);
+    }
+
+    private TarFiles newTarFiles(File directory, boolean fastStart) throws IOException {
+        return TarFiles.builder()
+                .withDirectory(directory)
+                .withTarRecovery((id, data, recovery) -> {
+                    // Intentionally left blank
+                })
+                .withIOMonitor(new IOMonitorAdapter())
+                .withFileStoreMonitor(new FileStoreMonitorAdapter())
+                .withRemoteStoreMonitor(new RemoteStoreMonitorAdapter())
+                .withMaxFileSize(TarFilesTest.MAX_FILE_SIZE)
+                .withPersistence(new CountingPersistence(directory))
+                .withFastStart(fastStart)
+                .build();
+    }
+
+    private File snapshotFile() {
+        return new File(folder.getRoot(), TarFilesSnapshot.FILE_NAME);
+    }
+
+    private Map<UUID, byte[]> writeSegments(TarFiles tarFiles) throws IOException {
+        Map<UUID, byte[]> segments = new HashMap<>();
+        for (int i = 0; i < FILE_COUNT; i++) {
+            for (int j = 0; j < SEGMENTS_PER_FILE; j++) {
+                UUID id = randomUUID();
+                byte[] data = new byte[512];
+                random.nextBytes(data);
+                tarFiles.writeSegment(id, data, 0, data.length, newGCGeneration(1, 1, false), emptySet(), emptySet());
+                segments.put(id, data);
+            }
+            tarFiles.newWriter();
+        }
+        return segments;
+    }
+
+    private static byte[] readSegment(TarFiles tarFiles, UUID id) {
+        Buffer buffer = tarFiles.readSegment(id.getMostSignificantBits(), id.getLeastSignificantBits());
+        assertNotNull(buffer);
+        byte[] data = new byte[buffer.remaining()];
+        buffer.get(data);
+        return data;
+    }
+
+    @Test
+    public void testSnapshotWrittenOnClose() throws Exception {
+        try (TarFiles tarFiles = newTarFiles(true)) {
+            writeSegments(tarFiles);
+            assertFalse(snapshotFile().exists());
+        }
+        assertTrue(snapshotFile().exists());
+        assertEquals(FILE_COUNT, TarFilesSnapshot.read(snapshotFile()).size());
+    }
+
+    @Test
+    public void testNoSnapshotWithoutFastStart() throws Exception {
+        try (TarFiles tarFiles = newTarFiles(false)) {
+            writeSegments(tarFiles);
+        }
+        assertFalse(snapshotFile().exists());
+    }
+
+    @Test
+    public void testReadersOpenedLazily() throws Exception {
+        Map<UUID, byte[]> segments;
+        try (TarFiles tarFiles = newTarFiles(true)) {
+            segments = writeSegments(tarFiles);
+        }
+
+        opened.set(0);
+        try (TarFiles tarFiles = newTarFiles(true)) {
+            assertEquals(0, opened.get());
+            assertFalse(snapshotFile().exists());
+            assertEquals(FILE_COUNT, tarFiles.readerCount());
+            assertEquals(FILE_COUNT * SEGMENTS_PER_FILE, tarFiles.segmentCount());
+            assertTrue(tarFiles.size() > 0);
+
+            UUID id = segments.keySet().iterator().next();
+            assertArrayEquals(segments.get(id), readSegment(tarFiles, id));
+            assertTrue(opened.get() >= 1);
+            assertTrue(opened.get() < FILE_COUNT);
+
+            for (Map.Entry<UUID, byte[]> segment : segments.entrySet()) {
+                assertArrayEquals(segment.getValue(), readSegment(tarFiles, segment.getKey()));
+            }
+            assertEquals(FILE_COUNT, opened.get());
+        }
+    }
+
+    @Test
+    public void testSnapshotRewrittenAfterLazyStart() throws Exception {
+        Map<UUID, byte[]> segments;
+        try (TarFiles tarFiles = newTarFiles(true)) {
+            segments = writeSegments(tarFiles);
+        }
+        try (TarFiles tarFiles = newTarFiles(true)) {
+            segments.putAll(writeSegments(tarFiles));
+        }
+
+        opened.set(0);
+        try (TarFiles tarFiles = newTarFiles(true)) {
+            assertEquals(0, opened.get());
+            assertEquals(2 * FILE_COUNT, tarFiles.readerCount());
+            assertEquals(2 * FILE_COUNT * SEGMENTS_PER_FILE, tarFiles.segmentCount());
+            for (Map.Entry<UUID, byte[]> segment : segments.entrySet()) {
+                assertArrayEquals(segment.getValue(), readSegment(tarFiles, segment.getKey()));
+            }
+        }
+    }
+
+    @Test
+    public void testMissingSegmentsMostlyAnsweredWithoutOpening() throws Exception {
+        try (TarFiles tarFiles = newTarFiles(true)) {
+            writeSegments(tarFiles);
+        }
+
+        opened.set(0);
+        try (TarFiles tarFiles = newTarFiles(true)) {
+            for (int i = 0; i < 100; i++) {
+                UUID id = randomUUID();
+                assertFalse(tarFiles.containsSegment(id.getMostSignificantBits(), id.getLeastSignificantBits()));
+            }
+            assertTrue(opened.get() < FILE_COUNT);
+        }
+    }
+
+    @Test
+    public void testReadersOpenedEagerlyAfterUncleanShutdown() throws Exception {
+        try (TarFiles tarFiles = newTarFiles(true)) {
+            writeSegments(tarFiles);
+        }
+
+        // Opening the TAR files for writing removes the snapshot. Opening them
+        // again without closing them first simulates an unclean shutdown.
+        newTarFiles(true);
+        assertFalse(snapshotFile().exists());
+
+        opened.set(0);
+        try (TarFiles tarFiles = newTarFiles(true)) {
+            assertEquals(FILE_COUNT, opened.get());
+            assertEquals(FILE_COUNT * SEGMENTS_PER_FILE, tarFiles.segmentCount());
+        }
+    }
+
+    @Test
+    public void testInvalidSnapshotIgnored() throws Exception {
+        Map<UUID, byte[]> segments;
+        try (TarFiles tarFiles = newTarFiles(true)) {
+            segments = writeSegments(tarFiles);
+        }
+
+        byte[] snapshot = Files.readAllBytes(snapshotFile().toPath());
+        snapshot[snapshot.length / 2] ^= 0xFF;
+        Files.write(snapshotFile().toPath(), snapshot);
+        assertTrue(TarFilesSnapshot.read(snapshotFile()).isEmpty());
+
+        opened.set(0);
+        try (TarFiles tarFiles = newTarFiles(true)) {
+            assertEquals(FILE_COUNT, opened.get());
+            for (Map.Entry<UUID, byte[]> segment : segments.entrySet()) {
+                assertArrayEquals(segment.getValue(), readSegment(tarFiles, segment.getKey()));
+            }
+        }
+    }
+
+    @Test
+    public void testReplacedTarFileOpenedEagerly() throws Exception {
+        try (TarFiles tarFiles = newTarFiles(true)) {
+            writeSegments(tarFiles);
+        }
+
+        // Replace the first TAR file with one of a different length and
+        // content, e.g. as by restoring a backup
+        File other = folder.newFolder();
+        Map<UUID, byte[]> replaced = new HashMap<>();
+        try (TarFiles tarFiles = newTarFiles(other, false)) {
+            for (int j = 0; j < 2 * SEGMENTS_PER_FILE; j++) {
+                UUID id = randomUUID();
+                byte[] data = new byte[512];
+                random.nextBytes(data);
+                tarFiles.writeSegment(id, data, 0, data.length, newGCGeneration(1, 1, false), emptySet(), emptySet());
+                replaced.put(id, data);
+            }
+        }
+        File[] files = other.listFiles((dir, name) -> name.endsWith(".tar"));
+        assertNotNull(files);
+        assertEquals(1, files.length);
+        Files.copy(files[0].toPath(), new File(folder.getRoot(), files[0].getName()).toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        opened.set(0);
+        try (TarFiles tarFiles = newTarFiles(true)) {
+            assertEquals(1, opened.get());
+            for (Map.Entry<UUID, byte[]> segment : replaced.entrySet()) {
+                assertArrayEquals(segment.getValue(), readSegment(tarFiles, segment.getKey()));
+            }
+        }
+    }
+
+}
@@ -32,9 +32,11 @@ import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
@@ -277,6 +279,23 @@ public class TarFilesTest {
         assertEquals(references, new HashSet<>(asList("a", "b", "c")));
     }
 
+    @Test
+    public void testCollectBlobReferencesSinceIndex() throws Exception {
+        writeSegmentWithBinaryReferences(randomUUID(), "a");
+        int index = tarFiles.collectBlobReferences(s -> {}, gen -> false, -1);
+
+        writeSegmentWithBinaryReferences(randomUUID(), "b", "c");
+
+        Set<String> references = new HashSet<>();
+        int next = tarFiles.collectBlobReferences(references::add, gen -> false, index);
+        assertEquals(new HashSet<>(asList("b", "c")), references);
+        assertTrue(next > index);
+
+        references.clear();
+        assertEquals(next, tarFiles.collectBlobReferences(references::add, gen -> false, next));
+        assertEquals(emptySet(), references);
+    }
+
     @Test
     public void testCollectBlobReferencesWithGenerationFilter() throws Exception {
         GCGeneration ok = newGCGeneration(1, 1, false);
@@ -391,4 +410,127 @@ public class TarFilesTest {
         assertTrue(result.getReclaimedSegmentIds().isEmpty());
         assertEquals(0, result.getReclaimedSize());
     }
+
+    @Test
+    public void testConcurrentCleanup() throws Exception {
+        UUID a = randomUUID();
+        UUID b = randomUUID();
+        UUID c = randomUUID();
+        UUID d = randomUUID();
+        UUID e = randomUUID();
+
+        writeSegment(a);
+        writeSegment(b);
+        tarFiles.newWriter();
+        writeSegmentWithReferences(c, a, b);
+        writeSegment(d);
+        tarFiles.newWriter();
+        writeSegmentWithReferences(e, a, d);
+        tarFiles.newWriter();
+
+        // Same graph as in testCleanup(), spread across several TAR files.
+        // The two segments `b` and `c` will be reclaimed.
+
+        CleanupResult result = tarFiles.cleanup(new CleanupContext() {
+
+            @Override
+            public Collection<UUID> initialReferences() {
+                return singletonList(e);
+            }
+
+            @Override
+            public boolean shouldReclaim(UUID id, GCGeneration generation, boolean referenced) {
+                return !referenced;
+            }
+
+            @Override
+            public boolean shouldFollow(UUID from, UUID to) {
+                return true;
+            }
+
+        }, 4);
+
+        assertFalse(result.isInterrupted());
+        assertFalse(result.getRemovableFiles().isEmpty());
+        assertEquals(new HashSet<>(asList(c, b)), result.getReclaimedSegmentIds());
+        assertTrue(result.getReclaimedSize() > 0);
+        assertTrue(containsSegment(a));
+        assertTrue(containsSegment(d));
+        assertTrue(containsSegment(e));
+    }
+
+    @Test
+    public void testConcurrentCleanupMatchesSequentialCleanup() throws Exception {
+        Random rnd = new Random(42);
+        List<UUID> ids = new ArrayList<>();
+        Set<UUID> old = new HashSet<>();
+
+        try (TarFiles sequential = TarFiles.builder()
+            .withDirectory(folder.newFolder())
+            .withTarRecovery((id, data, recovery) -> {
+                // Intentionally left blank
+            })
+            .withIOMonitor(new IOMonitorAdapter())
+            .withFileStoreMonitor(new FileStoreMonitorAdapter())
+            .withMaxFileSize(MAX_FILE_SIZE)
+            .withRemoteStoreMonitor(new RemoteStoreMonitorAdapter())
+            .build()
+        ) {
+            // Write the same random DAG of segments over many TAR files into
+            // both stores. Some segments belong to an old generation and are
+            // reclaimed regardless of being referenced, the others are only
+            // reclaimed if not referenced.
+            for (int i = 0; i < 200; i++) {
+                UUID id = randomUUID();
+                Set<UUID> references = new HashSet<>();
+                for (int k = rnd.nextInt(4); k > 0 && !ids.isEmpty(); k--) {
+                    references.add(ids.get(rnd.nextInt(ids.size())));
+                }
+                byte[] buffer = randomData();
+                for (TarFiles files : asList(tarFiles, sequential)) {
+                    files.writeSegment(id, buffer, 0, buffer.length, newGCGeneration(1, 1, false), references, emptySet());
+                    if (i % 10 == 9) {
+                        files.newWriter();
+                    }
+                }
+                ids.add(id);
+                if (rnd.nextInt(5) == 0) {
+                    old.add(id);
+                }
+            }
+
+            Set<UUID> roots = new HashSet<>(ids.subList(ids.size() - 5, ids.size()));
+            CleanupContext context = new CleanupContext() {
+
+                @Override
+                public Collection<UUID> initialReferences() {
+                    return roots;
+                }
+
+                @Override
+                public boolean shouldReclaim(UUID id, GCGeneration generation, boolean referenced) {
+                    return old.contains(id) || !referenced;
+                }
+
+                @Override
+                public boolean shouldFollow(UUID from, UUID to) {
+                    return true;
+                }
+
+            };
+
+            CleanupResult expected = sequential.cleanup(context);
+            CleanupResult result = tarFiles.cleanup(context, 4);
+
+            assertFalse(result.isInterrupted());
+            assertFalse(result.getReclaimedSegmentIds().isEmpty());
+            assertEquals(expected.getReclaimedSegmentIds(), result.getReclaimedSegmentIds());
+            assertEquals(expected.getReclaimedSize(), result.getReclaimedSize());
+            assertEquals(expected.getRemovableFiles().size(), result.getRemovableFiles().size());
+            for (UUID id : ids) {
+                assertEquals(sequential.containsSegment(id.getMostSignificantBits(), id.getLeastSignificantBits()), containsSegment(id));
+            }
+        }
+    }
+
 }
@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file.tar.bloom;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.UUID;
+
+import org.apache.jackrabbit.oak.segment.spi.persistence.Buffer;
+import org.junit.Test;
+
+public class BloomFilterTest {
+
+    private static BloomFilter loadBloomFilter(Buffer buffer) throws Exception {
+        return BloomFilterLoader.loadBloomFilter((whence, length) -> {
+            Buffer slice = buffer.duplicate();
+            slice.position(slice.limit() - whence);
+            slice.limit(slice.position() + length);
+            return slice.slice();
+        });
+    }
+
+    @Test
+    public void testNoFalseNegatives() throws Exception {
+        UUID[] ids = new UUID[1000];
+        BloomFilter filter = BloomFilter.newBloomFilter(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = UUID.randomUUID();
+            filter.add(ids[i].getMostSignificantBits(), ids[i].getLeastSignificantBits());
+        }
+
+        BloomFilter loaded = loadBloomFilter(Buffer.wrap(filter.write()));
+        assertNotNull(loaded);
+        for (UUID id : ids) {
+            assertTrue(filter.mightContain(id.getMostSignificantBits(), id.getLeastSignificantBits()));
+            assertTrue(loaded.mightContain(id.getMostSignificantBits(), id.getLeastSignificantBits()));
+        }
+    }
+
+    @Test
+    public void testFalsePositiveRate() throws Exception {
+        BloomFilter filter = BloomFilter.newBloomFilter(1000);
+        for (int i = 0; i < 1000; i++) {
+            UUID id = UUID.randomUUID();
+            filter.add(id.getMostSignificantBits(), id.getLeastSignificantBits());
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++) {
+            UUID id = UUID.randomUUID();
+            if (filter.mightContain(id.getMostSignificantBits(), id.getLeastSignificantBits())) {
+                falsePositives++;
+            }
+        }
+        assertTrue("Too many false positives: " + falsePositives, falsePositives < 500);
+    }
+
+    @Test
+    public void testEmptyFilter() throws Exception {
+        BloomFilter loaded = loadBloomFilter(Buffer.wrap(BloomFilter.newBloomFilter(0).write()));
+        assertNotNull(loaded);
+    }
+
+    @Test
+    public void testMissingFilter() throws Exception {
+        byte[] data = new byte[1024];
+        new Random(42).nextBytes(data);
+        assertNull(loadBloomFilter(Buffer.wrap(data)));
+    }
+
+    @Test
+    public void testInvalidChecksum() throws Exception {
+        BloomFilter filter = BloomFilter.newBloomFilter(10);
+        filter.add(1, 2);
+        byte[] data = filter.write();
+        data[0] ^= 1;
+        assertNull(loadBloomFilter(Buffer.wrap(data)));
+    }
+
+}
@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.scheduler;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.commons.concurrent.ExecutorCloser;
+import org.apache.jackrabbit.oak.segment.RecordId;
+import org.apache.jackrabbit.oak.segment.SegmentNodeState;
+import org.apache.jackrabbit.oak.segment.SegmentNodeStoreStats;
+import org.apache.jackrabbit.oak.segment.memory.MemoryStore;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.stats.StatisticsProvider;
+import org.junit.Test;
+
+public class OptimisticSchedulerTest {
+
+    private NodeState getRoot(Scheduler scheduler) {
+        return scheduler.getHeadNodeState().getChildNode("root");
+    }
+
+    @Test
+    public void concurrentCommitsToDisjointSubtrees() throws Exception {
+        MemoryStore ms = new MemoryStore();
+        SegmentNodeStoreStats stats = new SegmentNodeStoreStats(StatisticsProvider.NOOP);
+        OptimisticScheduler scheduler = OptimisticScheduler.builder(ms.getRevisions(), ms.getReader(), stats)
+                .build();
+
+        ExecutorService executorService = newFixedThreadPool(10);
+        try {
+            List<Future<?>> results = newArrayList();
+            for (int i = 0; i < 100; i++) {
+                String name = "node" + i;
+                results.add(executorService.submit(() -> {
+                    NodeBuilder builder = getRoot(scheduler).builder();
+                    builder.child(name).setProperty("p", name);
+                    return scheduler.schedule(new Commit(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY));
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            new ExecutorCloser(executorService).close();
+        }
+
+        NodeState root = getRoot(scheduler);
+        assertEquals(100, root.getChildNodeCount(Long.MAX_VALUE));
+        for (int i = 0; i < 100; i++) {
+            assertTrue(root.hasChildNode("node" + i));
+        }
+    }
+
+    /**
+     * Same as {@link LockBasedSchedulerTest#testSimulatedRaceOnRevisions()}
+     * for the optimistic scheduler: changes to the head state from outside
+     * the scheduler must not cause commits to get lost.
+     */
+    @Test
+    public void testSimulatedRaceOnRevisions() throws Exception {
+        final MemoryStore ms = new MemoryStore();
+        SegmentNodeStoreStats stats = new SegmentNodeStoreStats(StatisticsProvider.NOOP);
+        final OptimisticScheduler scheduler = OptimisticScheduler.builder(ms.getRevisions(), ms.getReader(), stats)
+                .build();
+
+        final RecordId initialHead = ms.getRevisions().getHead();
+        ExecutorService executorService = newFixedThreadPool(10);
+        final AtomicInteger count = new AtomicInteger();
+        final Random rand = new Random();
+
+        try {
+            Callable<PropertyState> commitTask = () -> {
+                String property = "prop" + count.incrementAndGet();
+                NodeBuilder builder = getRoot(scheduler).builder();
+                builder.setProperty(property, "value");
+                Commit commit = new Commit(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+                SegmentNodeState result = (SegmentNodeState) scheduler.schedule(commit);
+
+                return result.getProperty(property);
+            };
+
+            Callable<Void> parallelTask = () -> {
+                Thread.sleep(rand.nextInt(10));
+                ms.getRevisions().setHead(ms.getRevisions().getHead(), initialHead);
+                return null;
+            };
+
+            List<Future<?>> results = newArrayList();
+            for (int i = 0; i < 100; i++) {
+                results.add(executorService.submit(commitTask));
+                executorService.submit(parallelTask);
+            }
+
+            for (Future<?> result : results) {
+                assertNotNull(
+                        "PropertyState must not be null! The corresponding commit got lost because of a race condition.",
+                        result.get());
+            }
+        } finally {
+            new ExecutorCloser(executorService).close();
+        }
+    }
+}
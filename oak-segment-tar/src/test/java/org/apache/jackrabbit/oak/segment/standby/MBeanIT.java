@@ -213,6 +213,8 @@ public class MBeanIT extends TestBase {
             assertEquals("1", jmxServer.invoke(clientStatus, "calcSecondsSinceLastSuccess", null, null).toString());
 
             assertEquals(1L, jmxServer.getAttribute(connectionStatus, "TransferredSegments"));
+            assertEquals(1L, jmxServer.getAttribute(clientStatus, "TransferredSegments"));
+            assertTrue((Long) jmxServer.getAttribute(clientStatus, "TransferredSegmentBytes") > 0);
 
             // stop the master
             jmxServer.invoke(serverStatus, "stop", null, null);
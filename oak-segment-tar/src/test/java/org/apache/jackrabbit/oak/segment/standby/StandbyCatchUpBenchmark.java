@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.standby;
+
+import static org.apache.jackrabbit.oak.segment.file.FileStoreBuilder.fileStoreBuilder;
+
+import java.io.File;
+import java.net.ServerSocket;
+
+import com.google.common.base.Stopwatch;
+import org.apache.commons.io.FileUtils;
+import org.apache.jackrabbit.oak.segment.SegmentNodeStoreBuilders;
+import org.apache.jackrabbit.oak.segment.file.FileStore;
+import org.apache.jackrabbit.oak.segment.standby.client.StandbyClientSync;
+import org.apache.jackrabbit.oak.segment.standby.server.StandbyServerSync;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeStore;
+
+/**
+ * Runs a primary and a standby in the same JVM and measures how long it takes
+ * the standby to catch up with the primary from scratch, using an increasing
+ * number of connections.
+ */
+public class StandbyCatchUpBenchmark {
+
+    public static void main(String... args) throws Exception {
+        int nodes = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+
+        File root = new File("target", "standby-benchmark-" + System.currentTimeMillis());
+        try (FileStore primary = fileStoreBuilder(new File(root, "primary")).build()) {
+            addContent(SegmentNodeStoreBuilders.builder(primary).build(), nodes);
+            primary.flush();
+
+            int port = freePort();
+            try (StandbyServerSync server = StandbyServerSync.builder()
+                    .withPort(port)
+                    .withFileStore(primary)
+                    .withBlobChunkSize(1024 * 1024)
+                    .build()) {
+                server.start();
+                for (int connections : new int[] {1, 2, 4, 8}) {
+                    run(root, primary, port, connections);
+                }
+            }
+        } finally {
+            FileUtils.deleteQuietly(root);
+        }
+    }
+
+    private static void run(File root, FileStore primary, int port, int connections) throws Exception {
+        File directory = new File(root, "standby-" + connections);
+        try (
+            FileStore standby = fileStoreBuilder(directory).build();
+            StandbyClientSync client = new StandbyClientSync("127.0.0.1", port, standby, false, 60000, false, new File(directory, "spool"), connections)
+        ) {
+            Stopwatch stopwatch = Stopwatch.createStarted();
+            client.run();
+            stopwatch.stop();
+            if (!primary.getHead().equals(standby.getHead())) {
+                throw new IllegalStateException("Standby did not catch up");
+            }
+            System.out.printf("connections: %d, segments: %d, bytes: %d, time: %s%n",
+                    connections, client.getTransferredSegments(), client.getTransferredSegmentBytes(), stopwatch);
+        }
+    }
+
+    private static void addContent(NodeStore store, int nodes) throws Exception {
+        for (int k = 0; k < nodes; k += 10000) {
+            NodeBuilder builder = store.getRoot().builder();
+            NodeBuilder content = builder.child("content").child("c" + k);
+            for (int i = k; i < Math.min(nodes, k + 10000); i++) {
+                NodeBuilder c = content.child("n" + i);
+                c.setProperty("p", "v" + i);
+                c.setProperty("q", i);
+            }
+            store.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+        }
+    }
+
+    private static int freePort() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+}
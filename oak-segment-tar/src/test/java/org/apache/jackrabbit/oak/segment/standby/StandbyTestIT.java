@@ -102,6 +102,38 @@ public class StandbyTestIT extends TestBase {
         }
     }
 
+    @Test
+    public void testSyncWithMultipleConnections() throws Exception {
+        int blobSize = MB;
+        FileStore primary = serverFileStore.fileStore();
+        FileStore secondary = clientFileStore.fileStore();
+
+        NodeStore store = SegmentNodeStoreBuilders.builder(primary).build();
+        try (
+            StandbyServerSync serverSync = StandbyServerSync.builder()
+                .withPort(serverPort.getPort())
+                .withFileStore(primary)
+                .withBlobChunkSize(MB)
+                .build();
+            StandbyClientSync clientSync = new StandbyClientSync(getServerHost(), serverPort.getPort(), secondary, false, getClientTimeout(), false, folder.newFolder(), 4)
+        ) {
+            serverSync.start();
+            addTestContent(store, "server", blobSize, 1000);
+            primary.flush();
+
+            clientSync.run();
+            assertEquals(primary.getHead(), secondary.getHead());
+            assertEquals(0, clientSync.getFailedRequests());
+
+            addTestContent(store, "server2", blobSize, 1000);
+            primary.flush();
+
+            clientSync.run();
+            assertEquals(primary.getHead(), secondary.getHead());
+            assertTrue(clientSync.getTransferredSegments() > 0);
+        }
+    }
+
     /**
      * OAK-2430
      */
@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.standby.client;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Maps.newHashMap;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.synchronizedList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import org.junit.Test;
+
+public class ParallelSegmentCopierTest {
+
+    private final Map<UUID, List<String>> references = newHashMap();
+
+    private final Set<UUID> local = new HashSet<>();
+
+    private final List<UUID> written = synchronizedList(newArrayList());
+
+    private static UUID dataId(int n) {
+        return new UUID(n, 0xA000000000000000L | n);
+    }
+
+    private static UUID bulkId(int n) {
+        return new UUID(n, 0xB000000000000000L | n);
+    }
+
+    private void addSegment(UUID id, UUID... referenced) {
+        List<String> list = newArrayList();
+        for (UUID r : referenced) {
+            list.add(r.toString());
+        }
+        references.put(id, list);
+    }
+
+    private StandbyClient newClient() throws Exception {
+        StandbyClient client = mock(StandbyClient.class);
+        when(client.getReferences(anyString())).thenAnswer(invocation -> {
+            List<String> list = references.get(UUID.fromString(invocation.getArgument(0)));
+            return list == null ? emptyList() : list;
+        });
+        when(client.getSegment(anyString())).thenAnswer(invocation -> {
+            UUID id = UUID.fromString(invocation.getArgument(0));
+            return references.containsKey(id) ? new byte[] {1} : null;
+        });
+        return client;
+    }
+
+    private ParallelSegmentCopier newCopier(int clients) throws Exception {
+        List<StandbyClient> list = newArrayList();
+        for (int i = 0; i < clients; i++) {
+            list.add(newClient());
+        }
+        return new ParallelSegmentCopier(list, local::contains, (id, data) -> {
+            synchronized (local) {
+                written.add(id);
+                local.add(id);
+            }
+        });
+    }
+
+    private void assertWrittenAfterReferences() {
+        for (int i = 0; i < written.size(); i++) {
+            for (String r : references.get(written.get(i))) {
+                int k = written.indexOf(UUID.fromString(r));
+                assertTrue(r + " must be written before " + written.get(i), k < i);
+            }
+        }
+    }
+
+    @Test
+    public void copyGraph() throws Exception {
+        // a diamond of data segments with bulk segments at the leaves
+        addSegment(bulkId(1));
+        addSegment(bulkId(2));
+        addSegment(dataId(4), bulkId(1));
+        addSegment(dataId(3), bulkId(1), bulkId(2));
+        addSegment(dataId(2), dataId(3), dataId(4));
+        addSegment(dataId(1), dataId(2), dataId(3));
+        for (int n = 10; n < 100; n++) {
+            addSegment(dataId(n), dataId(1), dataId(n - 1 < 10 ? 1 : n - 1));
+        }
+
+        newCopier(4).copy(dataId(99));
+
+        assertEquals(references.size(), written.size());
+        assertEquals(references.size(), new HashSet<>(written).size());
+        assertWrittenAfterReferences();
+    }
+
+    @Test
+    public void skipLocalSegments() throws Exception {
+        addSegment(bulkId(1));
+        addSegment(dataId(2), bulkId(1));
+        addSegment(dataId(1), dataId(2));
+        local.add(dataId(2));
+
+        newCopier(2).copy(dataId(1));
+
+        assertEquals(asList(dataId(1)), written);
+    }
+
+    @Test
+    public void copyCycle() throws Exception {
+        addSegment(dataId(1), dataId(2));
+        addSegment(dataId(2), dataId(3));
+        addSegment(dataId(3), dataId(1));
+
+        newCopier(3).copy(dataId(1));
+
+        assertEquals(3, written.size());
+        assertEquals(3, new HashSet<>(written).size());
+    }
+
+    @Test
+    public void failOnMissingSegment() throws Exception {
+        addSegment(dataId(1), dataId(2));
+
+        try {
+            newCopier(2).copy(dataId(1));
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains(dataId(2).toString()));
+        }
+
+        assertTrue(written.isEmpty());
+    }
+
+}
@@ -17,6 +17,8 @@
 
 package org.apache.jackrabbit.oak.segment.standby.codec;
 
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 
@@ -51,6 +53,23 @@ public class RequestDecoderTest {
         assertEquals("segmentId", request.getSegmentId());
     }
 
+    @Test
+    public void shouldDecodeValidGetSegmentsRequests() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel(new RequestDecoder());
+        channel.writeInbound(Messages.newGetSegmentsRequest("clientId", asList("a", "b"), false));
+        GetSegmentsRequest request = (GetSegmentsRequest) channel.readInbound();
+        assertEquals("clientId", request.getClientId());
+        assertEquals(asList("a", "b"), request.getSegmentIds());
+    }
+
+    @Test
+    public void shouldDecodeEmptyGetSegmentsRequests() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel(new RequestDecoder());
+        channel.writeInbound(Messages.newGetSegmentsRequest("clientId", emptyList(), false));
+        GetSegmentsRequest request = (GetSegmentsRequest) channel.readInbound();
+        assertEquals(emptyList(), request.getSegmentIds());
+    }
+
     @Test
     public void shouldDecodeValidGetReferencesRequests() throws Exception {
         EmbeddedChannel channel = new EmbeddedChannel(new RequestDecoder());
@@ -58,6 +58,19 @@ public class ResponseDecoderTest {
         assertNull(channel.readInbound());
     }
 
+    @Test
+    public void shouldDecodeValidGetSegmentsResponses() throws Exception {
+        ByteBuf buf = Unpooled.buffer();
+        buf.writeInt(5);
+        buf.writeByte(Messages.HEADER_SEGMENTS);
+        buf.writeInt(3);
+
+        EmbeddedChannel channel = new EmbeddedChannel(new ResponseDecoder(folder.newFolder()));
+        channel.writeInbound(buf);
+        GetSegmentsResponse response = (GetSegmentsResponse) channel.readInbound();
+        assertEquals(3, response.getSegmentCount());
+    }
+
     @Test
     public void shouldDecodeValidOneChunkGetBlobResponses() throws Exception {
         byte[] blobData = new byte[] {1, 2, 3};
@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.standby.server;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentResponse;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentsRequest;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentsResponse;
+import org.junit.Test;
+
+public class GetSegmentsRequestHandlerTest {
+
+    @Test
+    public void segmentsShouldBeSentInOrder() throws Exception {
+        byte[] a = new byte[] {1, 2};
+        byte[] c = new byte[] {3, 4, 5};
+
+        StandbySegmentReader reader = mock(StandbySegmentReader.class);
+        when(reader.readSegment("a")).thenReturn(a);
+        when(reader.readSegment("b")).thenReturn(null);
+        when(reader.readSegment("c")).thenReturn(c);
+
+        EmbeddedChannel channel = new EmbeddedChannel(new GetSegmentsRequestHandler(reader));
+        channel.writeInbound(new GetSegmentsRequest("clientId", asList("a", "b", "c")));
+
+        GetSegmentResponse first = (GetSegmentResponse) channel.readOutbound();
+        assertEquals("clientId", first.getClientId());
+        assertEquals("a", first.getSegmentId());
+        assertArrayEquals(a, first.getSegmentData());
+
+        GetSegmentResponse second = (GetSegmentResponse) channel.readOutbound();
+        assertEquals("c", second.getSegmentId());
+        assertArrayEquals(c, second.getSegmentData());
+
+        GetSegmentsResponse end = (GetSegmentsResponse) channel.readOutbound();
+        assertEquals("clientId", end.getClientId());
+        assertEquals(2, end.getSegmentCount());
+        assertNull(channel.readOutbound());
+    }
+
+    @Test
+    public void emptyRequestsShouldBeAnswered() throws Exception {
+        StandbySegmentReader reader = mock(StandbySegmentReader.class);
+        EmbeddedChannel channel = new EmbeddedChannel(new GetSegmentsRequestHandler(reader));
+        channel.writeInbound(new GetSegmentsRequest("clientId", asList()));
+        GetSegmentsResponse end = (GetSegmentsResponse) channel.readOutbound();
+        assertEquals(0, end.getSegmentCount());
+    }
+
+}
@@ -0,0 +1,248 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.segment.tiered;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.segment.SegmentNodeStore;
+import org.apache.jackrabbit.oak.segment.SegmentNodeStoreBuilders;
+import org.apache.jackrabbit.oak.segment.file.FileStore;
+import org.apache.jackrabbit.oak.segment.file.FileStoreBuilder;
+import org.apache.jackrabbit.oak.segment.file.InvalidFileStoreVersionException;
+import org.apache.jackrabbit.oak.segment.file.tar.TarPersistence;
+import org.apache.jackrabbit.oak.segment.spi.monitor.FileStoreMonitorAdapter;
+import org.apache.jackrabbit.oak.segment.spi.monitor.IOMonitorAdapter;
+import org.apache.jackrabbit.oak.segment.spi.monitor.RemoteStoreMonitorAdapter;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveManager;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveReader;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveWriter;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TieredPersistenceTest {
+
+    private static final long MB = 1024 * 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder(new File("target"));
+
+    private File remoteDirectory;
+
+    private File localDirectory;
+
+    @Before
+    public void setup() throws IOException {
+        remoteDirectory = folder.newFolder("remote");
+        localDirectory = folder.newFolder("local");
+    }
+
+    private FileStore newFileStore(TieredPersistence persistence) throws IOException, InvalidFileStoreVersionException {
+        return FileStoreBuilder.fileStoreBuilder(folder.newFolder())
+                .withCustomPersistence(persistence)
+                .withMaxFileSize(1)
+                .withSegmentCacheSize(0)
+                .build();
+    }
+
+    private static void writeContent(FileStore fileStore) throws CommitFailedException, IOException {
+        SegmentNodeStore nodeStore = SegmentNodeStoreBuilders.builder(fileStore).build();
+        Random random = new Random(42);
+        for (int k = 0; k < 10; k++) {
+            NodeBuilder builder = nodeStore.getRoot().builder();
+            NodeBuilder parent = builder.child("c" + k);
+            for (int j = 0; j < 100; j++) {
+                byte[] value = new byte[4096];
+                random.nextBytes(value);
+                parent.child("n" + j).setProperty("p", new String(value, "ISO-8859-1"));
+            }
+            nodeStore.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+            fileStore.flush();
+        }
+    }
+
+    private static void assertContent(FileStore fileStore) {
+        SegmentNodeStore nodeStore = SegmentNodeStoreBuilders.builder(fileStore).build();
+        NodeState root = nodeStore.getRoot();
+        for (int k = 0; k < 10; k++) {
+            for (int j = 0; j < 100; j++) {
+                assertNotNull(root.getChildNode("c" + k).getChildNode("n" + j).getString("p"));
+            }
+        }
+    }
+
+    private static long sizeOfTarFiles(File directory) {
+        long size = 0;
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(".tar"));
+        if (files != null) {
+            for (File file : files) {
+                size += file.length();
+            }
+        }
+        return size;
+    }
+
+    private static void awaitLocalSize(TieredPersistence persistence, long minSize) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (persistence.getLocalSize() < minSize && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void testWritesGoThroughToRemote() throws Exception {
+        TieredPersistence persistence = new TieredPersistence(new TarPersistence(remoteDirectory), localDirectory, 100 * MB);
+        try (FileStore fileStore = newFileStore(persistence)) {
+            writeContent(fileStore);
+        }
+
+        assertTrue(sizeOfTarFiles(remoteDirectory) > 0);
+        assertTrue(persistence.getLocalSize() > 0);
+        assertEquals(persistence.getLocalSize(), sizeOfTarFiles(localDirectory));
+
+        // The remote persistence on its own has the complete content
+        try (FileStore fileStore = FileStoreBuilder.fileStoreBuilder(remoteDirectory).build()) {
+            assertContent(fileStore);
+        }
+    }
+
+    @Test
+    public void testReadsAreServedLocally() throws Exception {
+        try (FileStore fileStore = FileStoreBuilder.fileStoreBuilder(remoteDirectory).withMaxFileSize(1).build()) {
+            writeContent(fileStore);
+        }
+
+        TieredPersistence persistence = new TieredPersistence(new TarPersistence(remoteDirectory), localDirectory, 100 * MB);
+        try (FileStore fileStore = newFileStore(persistence)) {
+            // The first reads go remote and copy the archives read from
+            assertContent(fileStore);
+            assertTrue(persistence.getRemoteReadCount() > 0);
+            awaitLocalSize(persistence, sizeOfTarFiles(remoteDirectory));
+            assertEquals(sizeOfTarFiles(remoteDirectory), persistence.getLocalSize());
+
+            long remoteReads = persistence.getRemoteReadCount();
+            assertContent(fileStore);
+            assertTrue(persistence.getLocalReadCount() > 0);
+            assertEquals(remoteReads, persistence.getRemoteReadCount());
+        } finally {
+            persistence.close();
+        }
+    }
+
+    @Test
+    public void testOpenDoesNotCopy() throws Exception {
+        SegmentArchiveManager remoteManager = new TarPersistence(remoteDirectory).createArchiveManager(false, false,
+                new IOMonitorAdapter(), new FileStoreMonitorAdapter(), new RemoteStoreMonitorAdapter());
+        SegmentArchiveWriter writer = remoteManager.create("data00000a.tar");
+        byte[] data = new byte[512];
+        new Random().nextBytes(data);
+        writer.writeSegment(1, 2, data, 0, data.length, 0, 0, false);
+        writer.close();
+
+        TieredPersistence persistence = new TieredPersistence(new TarPersistence(remoteDirectory), localDirectory, 100 * MB);
+        try {
+            SegmentArchiveManager manager = persistence.createArchiveManager(false, false,
+                    new IOMonitorAdapter(), new FileStoreMonitorAdapter(), new RemoteStoreMonitorAdapter());
+            try (SegmentArchiveReader reader = manager.open("data00000a.tar")) {
+                assertNotNull(reader);
+                assertEquals(0, persistence.getLocalSize());
+
+                assertNotNull(reader.readSegment(1, 2));
+                assertEquals(1, persistence.getRemoteReadCount());
+                awaitLocalSize(persistence, reader.length());
+                assertEquals(reader.length(), persistence.getLocalSize());
+            }
+        } finally {
+            persistence.close();
+        }
+        assertEquals(0, persistence.getLocalSize());
+    }
+
+    @Test
+    public void testLocalSizeIsBounded() throws Exception {
+        long maxLocalSize = 2 * MB;
+        TieredPersistence persistence = new TieredPersistence(new TarPersistence(remoteDirectory), localDirectory, maxLocalSize);
+        try (FileStore fileStore = newFileStore(persistence)) {
+            writeContent(fileStore);
+            assertTrue(sizeOfTarFiles(remoteDirectory) > maxLocalSize);
+            assertTrue(persistence.getLocalSize() > 0);
+            assertTrue(persistence.getLocalSize() <= maxLocalSize);
+            assertTrue(sizeOfTarFiles(localDirectory) <= maxLocalSize);
+            assertContent(fileStore);
+            assertTrue(persistence.getRemoteReadCount() > 0);
+        }
+    }
+
+    @Test
+    public void testWithoutLocalCopies() throws Exception {
+        TieredPersistence persistence = new TieredPersistence(new TarPersistence(remoteDirectory), localDirectory, 0);
+        try (FileStore fileStore = newFileStore(persistence)) {
+            writeContent(fileStore);
+            assertContent(fileStore);
+        }
+        assertEquals(0, persistence.getLocalSize());
+        assertEquals(0, sizeOfTarFiles(localDirectory));
+        assertEquals(0, persistence.getLocalReadCount());
+    }
+
+    @Test
+    public void testDeleteRemovesLocalCopy() throws Exception {
+        TieredPersistence persistence = new TieredPersistence(new TarPersistence(remoteDirectory), localDirectory, 100 * MB);
+        SegmentArchiveManager manager = persistence.createArchiveManager(false, false,
+                new IOMonitorAdapter(), new FileStoreMonitorAdapter(), new RemoteStoreMonitorAdapter());
+
+        SegmentArchiveWriter writer = manager.create("data00000a.tar");
+        byte[] data = new byte[512];
+        new Random().nextBytes(data);
+        writer.writeSegment(1, 2, data, 0, data.length, 0, 0, false);
+        writer.close();
+
+        assertTrue(new File(localDirectory, "data00000a.tar").exists());
+        try (SegmentArchiveReader reader = manager.open("data00000a.tar")) {
+            assertNotNull(reader);
+            assertNotNull(reader.readSegment(1, 2));
+            assertEquals(1, persistence.getLocalReadCount());
+        }
+
+        assertTrue(manager.delete("data00000a.tar"));
+        assertFalse(new File(localDirectory, "data00000a.tar").exists());
+        assertFalse(new File(remoteDirectory, "data00000a.tar").exists());
+        assertEquals(0, persistence.getLocalSize());
+    }
+
+    @Test
+    public void testStaleLocalCopiesAreDiscarded() throws Exception {
+        File stale = new File(localDirectory, "data00000a.tar");
+        assertTrue(stale.createNewFile());
+        new TieredPersistence(new TarPersistence(remoteDirectory), localDirectory, 100 * MB);
+        assertFalse(stale.exists());
+    }
+
+}
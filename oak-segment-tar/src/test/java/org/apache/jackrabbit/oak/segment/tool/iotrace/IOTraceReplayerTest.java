@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jackrabbit.oak.segment.tool.iotrace;
+
+import static java.util.UUID.randomUUID;
+import static org.apache.jackrabbit.oak.segment.file.FileStoreBuilder.fileStoreBuilder;
+import static org.apache.jackrabbit.oak.segment.tool.iotrace.IOTraceReplayer.newIOTraceReplayer;
+import static org.apache.jackrabbit.oak.segment.tool.iotrace.IOTraceReplayer.parseTrace;
+import static org.apache.jackrabbit.oak.segment.tool.iotrace.IOTracer.newIOTracer;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+
+import com.google.common.collect.ImmutableList;
+import org.apache.jackrabbit.oak.segment.SegmentNodeBuilder;
+import org.apache.jackrabbit.oak.segment.SegmentNodeState;
+import org.apache.jackrabbit.oak.segment.file.FileStore;
+import org.apache.jackrabbit.oak.segment.file.InvalidFileStoreVersionException;
+import org.apache.jackrabbit.oak.segment.spi.monitor.IOMonitor;
+import org.apache.jackrabbit.oak.segment.tool.iotrace.IOTraceReplayer.Result;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class IOTraceReplayerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder(new File("target"));
+
+    @Before
+    public void setup() throws IOException, InvalidFileStoreVersionException {
+        try (FileStore fileStore = fileStoreBuilder(folder.getRoot()).build()) {
+            for (int k = 0; k < 10; k++) {
+                SegmentNodeState currentHead = fileStore.getHead();
+                SegmentNodeBuilder root = currentHead.builder();
+                NodeBuilder builder = root.setChildNode("n" + k);
+                for (int j = 0; j < 10; j++) {
+                    builder.setChildNode("c" + j).setProperty("p", "value-" + k + "-" + j);
+                }
+                SegmentNodeState newHead = root.getNodeState();
+                fileStore.getRevisions().setHead(currentHead.getRecordId(), newHead.getRecordId());
+                fileStore.flush();
+            }
+        }
+    }
+
+    @NotNull
+    private FileStore createFileStore(IOMonitor ioMonitor, int segmentCacheSize) {
+        try {
+            return fileStoreBuilder(folder.getRoot())
+                    .withSegmentCacheSize(segmentCacheSize)
+                    .withIOMonitor(ioMonitor).build();
+        } catch (InvalidFileStoreVersionException | IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String collectTrace() throws IOException {
+        try (StringWriter out = new StringWriter()) {
+            IOTracer ioTracer = newIOTracer(
+                    ioMonitor -> createFileStore(ioMonitor, 0), out, BreadthFirstTrace.CONTEXT_SPEC);
+            ioTracer.collectTrace(
+                    new BreadthFirstTrace(3, "/", ioTracer::setContext));
+            return out.toString();
+        }
+    }
+
+    @Test
+    public void parseTraceWithContext() throws IOException {
+        UUID a = randomUUID();
+        UUID b = randomUUID();
+        String trace =
+                "timestamp,file,segmentId,length,elapsed,depth,count,path\n" +
+                "1522147945084,data00000a.tar," + a + ",181328,171849,1,2,/a\n" +
+                "\n" +
+                "1522147945096,data00000a.tar," + b + ",181328,131272,2,3,/a/b\n" +
+                "1522147945097,data00000a.tar," + a + ",181328,142766,2,4,\n";
+
+        assertEquals(ImmutableList.of(a, b, a), parseTrace(new StringReader(trace)));
+    }
+
+    @Test
+    public void parseEmptyTrace() throws IOException {
+        assertTrue(parseTrace(new StringReader("")).isEmpty());
+        assertTrue(parseTrace(new StringReader("timestamp,file,segmentId,length,elapsed\n")).isEmpty());
+    }
+
+    @Test(expected = IOException.class)
+    public void parseTraceWithoutSegmentIds() throws IOException {
+        parseTrace(new StringReader("timestamp,file,length,elapsed\n1,data00000a.tar,1,1\n"));
+    }
+
+    @Test(expected = IOException.class)
+    public void parseTraceWithMalformedSegmentId() throws IOException {
+        parseTrace(new StringReader("timestamp,file,segmentId,length,elapsed\n1,data00000a.tar,foo,1,1\n"));
+    }
+
+    @Test
+    public void replayWithoutCache() throws IOException {
+        String trace = collectTrace();
+        List<UUID> segmentIds = parseTrace(new StringReader(trace));
+        assertFalse(segmentIds.isEmpty());
+
+        Result result = newIOTraceReplayer(ioMonitor -> createFileStore(ioMonitor, 0), 1)
+                .replay(new StringReader(trace));
+
+        assertEquals(segmentIds.size(), result.getReadCount());
+        assertEquals(0, result.getMissingCount());
+        assertEquals(0, result.getCacheHitRate(), 0);
+        assertEquals(segmentIds.size(), result.getSegmentReads());
+        assertTrue(result.getSegmentReadBytes() > 0);
+        assertEquals(segmentIds.size(), result.getLatencies().size());
+    }
+
+    @Test
+    public void replayConcurrentlyWithCache() throws IOException {
+        List<UUID> segmentIds = parseTrace(new StringReader(collectTrace()));
+        List<UUID> repeated = new ArrayList<>();
+        for (int k = 0; k < 5; k++) {
+            repeated.addAll(segmentIds);
+        }
+
+        Result result = newIOTraceReplayer(ioMonitor -> createFileStore(ioMonitor, 16), 4)
+                .replay(repeated);
+
+        assertEquals(repeated.size(), result.getReadCount());
+        assertEquals(0, result.getMissingCount());
+        assertTrue(result.getCacheHitRate() > 0);
+        assertTrue(result.getSegmentReads() <= new HashSet<>(segmentIds).size() + 4);
+    }
+
+    @Test
+    public void replayMissingSegment() throws IOException {
+        UUID missing = new UUID(randomUUID().getMostSignificantBits(), 0xAL << 60);
+        Result result = newIOTraceReplayer(ioMonitor -> createFileStore(ioMonitor, 16), 2)
+                .replay(ImmutableList.of(missing));
+
+        assertEquals(0, result.getReadCount());
+        assertEquals(1, result.getMissingCount());
+    }
+
+}
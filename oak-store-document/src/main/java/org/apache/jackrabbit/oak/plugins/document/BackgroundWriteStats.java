@@ -27,6 +27,8 @@ class BackgroundWriteStats {
     long sweep;
     long lock;
     long write;
+    long writeNodes;
+    long writeRoot;
     long num;
     long calls;
     long totalWriteTime;
@@ -39,6 +41,8 @@ class BackgroundWriteStats {
                 ", sweep:" + sweep +
                 ", lock:" + lock +
                 ", write:" + write +
+                ", writeNodes:" + writeNodes +
+                ", writeRoot:" + writeRoot +
                 ", num:" + num +
                 ", calls:" + calls +
                 ", totalWriteTime:" + totalWriteTime;
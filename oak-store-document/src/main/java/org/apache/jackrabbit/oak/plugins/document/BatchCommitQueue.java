@@ -16,25 +16,32 @@
  */
 package org.apache.jackrabbit.oak.plugins.document;
 
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
 
+import org.apache.jackrabbit.oak.stats.StatisticsProvider;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.Maps;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
  * Queues updates on a commit root document and batches them into a single
- * call to the {@link DocumentStore}.
+ * call to the {@link DocumentStore}. When group commit is enabled, the
+ * updates on the other documents changed by concurrent commits are combined
+ * as well. See {@link GroupCommit}.
  */
 final class BatchCommitQueue {
 
     private static final Logger LOG = LoggerFactory.getLogger(BatchCommitQueue.class);
 
+    static final int DEFAULT_GROUP_COMMIT_MAX_OPS = 1000;
+
     /**
      * The pending batch commits.
      */
@@ -47,10 +54,79 @@ final class BatchCommitQueue {
 
     private final DocumentStore store;
 
+    private DocumentNodeStoreStatsCollector statsCollector
+            = new DocumentNodeStoreStats(StatisticsProvider.NOOP);
+
+    /**
+     * The time in milliseconds a group commit waits for other commits to
+     * join. Zero disables group commit.
+     */
+    private long groupCommitWindowMillis;
+
+    /**
+     * The maximum number of update operations in a group commit.
+     */
+    private int groupCommitMaxOps = DEFAULT_GROUP_COMMIT_MAX_OPS;
+
+    /**
+     * The group commit other commits can currently join or {@code null} if
+     * there is none.
+     */
+    private GroupCommit openGroup;
+
     BatchCommitQueue(@NotNull DocumentStore store) {
         this.store = checkNotNull(store);
     }
 
+    void setStatisticsCollector(@NotNull DocumentNodeStoreStatsCollector collector) {
+        this.statsCollector = checkNotNull(collector);
+    }
+
+    DocumentNodeStoreStatsCollector getStatisticsCollector() {
+        return statsCollector;
+    }
+
+    synchronized void setGroupCommit(long windowMillis, int maxOps) {
+        checkArgument(windowMillis >= 0, "windowMillis must not be negative");
+        checkArgument(maxOps > 0, "maxOps must be greater than 0");
+        this.groupCommitWindowMillis = windowMillis;
+        this.groupCommitMaxOps = maxOps;
+    }
+
+    synchronized boolean isGroupCommitEnabled() {
+        return groupCommitWindowMillis > 0;
+    }
+
+    /**
+     * Creates or updates the given documents of a commit. With group commit
+     * enabled, the operations are written together with those of other
+     * concurrent commits, unless they modify the same documents. Otherwise
+     * the operations are written with a single call to the store.
+     *
+     * @param ops the update operations of a commit.
+     * @return a callable returning the documents before the update, in the
+     *          order of the given operations.
+     */
+    Callable<List<NodeDocument>> createOrUpdate(final List<UpdateOp> ops) {
+        synchronized (this) {
+            if (groupCommitWindowMillis > 0 && !ops.isEmpty()) {
+                if (openGroup != null) {
+                    Callable<List<NodeDocument>> c = openGroup.add(ops);
+                    if (c != null) {
+                        return c;
+                    } else if (openGroup.isOpen(ops.size())) {
+                        // overlaps with a commit in the open group
+                        LOG.debug("Not grouping commit with overlapping changes");
+                        return direct(ops);
+                    }
+                }
+                openGroup = new GroupCommit(this, groupCommitWindowMillis, groupCommitMaxOps);
+                return openGroup.add(ops);
+            }
+        }
+        return direct(ops);
+    }
+
     Callable<NodeDocument> updateDocument(UpdateOp op) {
         String id = op.getId();
         // check if there is already a batch commit in progress for
@@ -94,6 +170,23 @@ final class BatchCommitQueue {
         }
     }
 
+    void closed(GroupCommit group) {
+        synchronized (this) {
+            if (openGroup == group) {
+                openGroup = null;
+            }
+        }
+    }
+
+    Callable<List<NodeDocument>> direct(final List<UpdateOp> ops) {
+        return new Callable<List<NodeDocument>>() {
+            @Override
+            public List<NodeDocument> call() {
+                return store.createOrUpdate(Collection.NODES, ops);
+            }
+        };
+    }
+
     DocumentStore getStore() {
         return store;
     }
@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.Iterables.transform;
+
+/**
+ * Speculatively reads the next page of child nodes while the current page of
+ * child nodes is iterated. A {@link DocumentNodeState} iterates over its child
+ * nodes page by page with an increasing page size. Whenever the iteration
+ * starts on a full page with more child nodes to come, this class reads the
+ * next page of child node names and the documents of those child nodes in a
+ * background task. Bundled child nodes are contained in the documents of their
+ * bundling root and are therefore read along with them.
+ * <p>
+ * The number of pending background tasks is bounded. A page is not prefetched
+ * when the bound is reached.
+ */
+class ChildrenPrefetcher {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ChildrenPrefetcher.class);
+
+    /**
+     * The maximum number of prefetched pages remembered for reporting hits.
+     */
+    private static final int MAX_PREFETCHED_PAGES = 1024;
+
+    private final DocumentNodeStore store;
+
+    private final Executor executor;
+
+    private final DocumentNodeStoreStatsCollector stats;
+
+    private final int maxPending;
+
+    private final AtomicInteger numPending = new AtomicInteger();
+
+    /**
+     * Pages currently read by a background task.
+     */
+    private final ConcurrentHashMap<NamePathRev, Boolean> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Pages read by a background task and not yet requested.
+     */
+    private final Cache<NamePathRev, Boolean> prefetched = CacheBuilder.newBuilder()
+            .maximumSize(MAX_PREFETCHED_PAGES).build();
+
+    ChildrenPrefetcher(@NotNull DocumentNodeStore store,
+                       @NotNull Executor executor,
+                       @NotNull DocumentNodeStoreStatsCollector stats,
+                       int maxPending) {
+        checkArgument(maxPending > 0, "maxPending must be greater than 0");
+        this.store = checkNotNull(store);
+        this.executor = checkNotNull(executor);
+        this.stats = checkNotNull(stats);
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * Called when the iteration over a page of child nodes starts.
+     *
+     * @param parent the parent node.
+     * @param name the name of the lower bound child node (exclusive) of the
+     *             page or the empty {@code String} for the first page.
+     * @param limit the page size.
+     * @param children the child nodes on the page.
+     */
+    void iterating(@NotNull DocumentNodeState parent,
+                   @NotNull String name,
+                   int limit,
+                   @NotNull DocumentNodeState.Children children) {
+        RevisionVector readRevision = parent.getLastRevision();
+        NamePathRev key = new NamePathRev(name, parent.getPath(), readRevision);
+        if (prefetched.asMap().remove(key) != null) {
+            stats.doneChildrenPrefetchHit();
+        }
+        List<String> names = children.children;
+        if (!children.hasMore || names.size() < limit || names.isEmpty()) {
+            // last page
+            return;
+        }
+        String nextName = names.get(names.size() - 1);
+        int nextLimit = Math.min(limit * 2, DocumentNodeState.MAX_FETCH_SIZE);
+        NamePathRev nextKey = new NamePathRev(nextName, parent.getPath(), readRevision);
+        if (prefetched.getIfPresent(nextKey) != null
+                || pending.putIfAbsent(nextKey, Boolean.TRUE) != null) {
+            // already prefetched or in progress
+            return;
+        }
+        if (numPending.incrementAndGet() > maxPending) {
+            release(nextKey);
+            stats.skippedChildrenPrefetch();
+            return;
+        }
+        try {
+            executor.execute(() -> prefetch(parent, nextName, nextLimit, nextKey));
+        } catch (RejectedExecutionException e) {
+            LOG.debug("Unable to prefetch children of {}", parent.getPath(), e);
+            release(nextKey);
+            stats.skippedChildrenPrefetch();
+        }
+    }
+
+    private void prefetch(DocumentNodeState parent,
+                          String name,
+                          int limit,
+                          NamePathRev key) {
+        try {
+            Stopwatch sw = Stopwatch.createStarted();
+            DocumentNodeState.Children children = store.getChildren(parent, name, limit);
+            RevisionVector readRevision = parent.getLastRevision();
+            int numDocuments = store.prefetch(transform(children.children,
+                    n -> new Path(parent.getPath(), n)), readRevision);
+            prefetched.put(key, Boolean.TRUE);
+            stats.doneChildrenPrefetch(numDocuments, sw.elapsed(TimeUnit.MICROSECONDS));
+        } catch (DocumentStoreException e) {
+            LOG.warn("Prefetching children of {} failed: {}", parent.getPath(), e.toString());
+        } finally {
+            release(key);
+        }
+    }
+
+    private void release(NamePathRev key) {
+        pending.remove(key);
+        numPending.decrementAndGet();
+    }
+}
@@ -363,7 +363,7 @@ public class Commit {
             if (conditionalCommit(changedNodes, commitValue)) {
                 success = true;
             } else {
-                List<NodeDocument> oldDocs = store.createOrUpdate(NODES, changedNodes);
+                List<NodeDocument> oldDocs = nodeStore.createOrUpdateNodes(changedNodes);
                 checkConflicts(oldDocs, changedNodes);
                 checkSplitCandidate(oldDocs);
 
@@ -525,7 +525,7 @@ public class Commit {
         if (doc == null) {
             return;
         }
-        if (doc.getMemory() > SPLIT_CANDIDATE_THRESHOLD || doc.hasBinary()) {
+        if (doc.getUncompactedMemory() > SPLIT_CANDIDATE_THRESHOLD || doc.hasBinary()) {
             nodeStore.addSplitCandidate(doc.getId());
         }
     }
@@ -0,0 +1,451 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedMap;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+import org.apache.jackrabbit.oak.cache.CacheValue;
+import org.apache.jackrabbit.oak.commons.StringUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * An immutable, compact {@code SortedMap} of revisions to values as used for
+ * the local maps of a sealed {@link NodeDocument}. The revisions are packed
+ * into primitive arrays and only turned into {@link Revision} instances when
+ * they are accessed. Short values are interned and shared across documents,
+ * while long values are kept as UTF-8 encoded byte arrays and decoded on
+ * access.
+ */
+final class CompactRevisionMap extends AbstractMap<Revision, String>
+        implements SortedMap<Revision, String>, CacheValue {
+
+    /**
+     * Values up to this length are interned.
+     */
+    static final int MAX_INTERNED_LENGTH = 10;
+
+    /**
+     * Values starting with this length are kept UTF-8 encoded.
+     */
+    static final int MIN_ENCODED_LENGTH = 128;
+
+    private static final Interner<String> VALUES = Interners.newWeakInterner();
+
+    private final Comparator<? super Revision> comparator;
+
+    /**
+     * {@code 1} if the keys are in {@link StableRevisionComparator} order,
+     * {@code -1} if they are in reverse order and {@code 0} for any other
+     * comparator. For the former two, keys are compared against the packed
+     * arrays without creating {@link Revision} instances.
+     */
+    private final int order;
+
+    private final long[] timestamps;
+
+    private final int[] counters;
+
+    /**
+     * The cluster ids. The cluster id of a branch revision is stored with all
+     * bits inverted.
+     */
+    private final int[] clusterIds;
+
+    /**
+     * The values, either a {@code String}, a {@code byte[]} with the UTF-8
+     * encoded value or {@code null}.
+     */
+    private final Object[] values;
+
+    /**
+     * Index of the first entry of this map in the arrays.
+     */
+    private final int from;
+
+    /**
+     * Index after the last entry of this map in the arrays.
+     */
+    private final int to;
+
+    private Set<Map.Entry<Revision, String>> entrySet;
+
+    private CompactRevisionMap(Comparator<? super Revision> comparator,
+                               long[] timestamps,
+                               int[] counters,
+                               int[] clusterIds,
+                               Object[] values,
+                               int from,
+                               int to) {
+        this.comparator = comparator;
+        this.order = comparator == null || comparator == StableRevisionComparator.INSTANCE ? 1
+                : comparator == StableRevisionComparator.REVERSE ? -1 : 0;
+        this.timestamps = timestamps;
+        this.counters = counters;
+        this.clusterIds = clusterIds;
+        this.values = values;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Creates a compact copy of the given map, if possible. This is the case
+     * when the map is a non-empty {@code SortedMap} with {@link Revision} keys
+     * and {@code String} or {@code null} values.
+     *
+     * @param map the map to copy.
+     * @return the compact copy or {@code null} if the map cannot be copied.
+     */
+    @Nullable
+    static CompactRevisionMap compact(@NotNull Map<?, ?> map) {
+        if (!(map instanceof SortedMap) || map.isEmpty()) {
+            return null;
+        }
+        for (Map.Entry<?, ?> e : map.entrySet()) {
+            if (!(e.getKey() instanceof Revision)) {
+                return null;
+            }
+            Object v = e.getValue();
+            if (v != null && !(v instanceof String)) {
+                return null;
+            }
+        }
+        @SuppressWarnings("unchecked")
+        Comparator<? super Revision> comparator =
+                ((SortedMap<Revision, ?>) map).comparator();
+        int size = map.size();
+        long[] timestamps = new long[size];
+        int[] counters = new int[size];
+        int[] clusterIds = new int[size];
+        Object[] values = new Object[size];
+        int i = 0;
+        for (Map.Entry<?, ?> e : map.entrySet()) {
+            Revision r = (Revision) e.getKey();
+            timestamps[i] = r.getTimestamp();
+            counters[i] = r.getCounter();
+            clusterIds[i] = r.isBranch() ? ~r.getClusterId() : r.getClusterId();
+            values[i] = encode((String) e.getValue());
+            i++;
+        }
+        return new CompactRevisionMap(comparator, timestamps, counters,
+                clusterIds, values, 0, size);
+    }
+
+    //-------------------------------------------------------------< Map >--
+
+    @Override
+    public int size() {
+        return to - from;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return from == to;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public String get(Object key) {
+        int idx = indexOf(key);
+        return idx < 0 ? null : valueAt(idx);
+    }
+
+    @NotNull
+    @Override
+    public Set<Map.Entry<Revision, String>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<Map.Entry<Revision, String>>() {
+                @NotNull
+                @Override
+                public Iterator<Map.Entry<Revision, String>> iterator() {
+                    return new EntryIterator();
+                }
+
+                @Override
+                public int size() {
+                    return CompactRevisionMap.this.size();
+                }
+            };
+        }
+        return entrySet;
+    }
+
+    //-------------------------------------------------------< SortedMap >--
+
+    @Nullable
+    @Override
+    public Comparator<? super Revision> comparator() {
+        return comparator;
+    }
+
+    @NotNull
+    @Override
+    public SortedMap<Revision, String> subMap(Revision fromKey, Revision toKey) {
+        int start = lowerBound(fromKey);
+        return subMap(start, Math.max(start, lowerBound(toKey)));
+    }
+
+    @NotNull
+    @Override
+    public SortedMap<Revision, String> headMap(Revision toKey) {
+        return subMap(from, lowerBound(toKey));
+    }
+
+    @NotNull
+    @Override
+    public SortedMap<Revision, String> tailMap(Revision fromKey) {
+        return subMap(lowerBound(fromKey), to);
+    }
+
+    @Override
+    public Revision firstKey() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return revisionAt(from);
+    }
+
+    @Override
+    public Revision lastKey() {
+        if (isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return revisionAt(to - 1);
+    }
+
+    //------------------------------------------------------< CacheValue >--
+
+    @Override
+    public int getMemory() {
+        // shallow size of this map, the three arrays with revisions and the
+        // array with values. The arrays are shared with sub maps
+        long size = 48;
+        int n = timestamps.length;
+        size += 16 + 8L * n;
+        size += 2 * (16 + 4L * n);
+        size += 16 + 8L * n;
+        for (Object v : values) {
+            if (v instanceof byte[]) {
+                size += 16 + ((byte[]) v).length;
+            } else if (v instanceof String && ((String) v).length() > MAX_INTERNED_LENGTH) {
+                size += StringUtils.estimateMemoryUsage((String) v);
+            }
+            // interned values are shared and not accounted here
+        }
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return the memory usage of this map as estimated by
+     *          {@link org.apache.jackrabbit.oak.plugins.document.util.Utils#estimateMemoryUsage(Map)}
+     *          for the map this compact map was created from.
+     */
+    int getUncompactedMemory() {
+        // overhead for map object and 32 bytes per revision
+        // plus 64 bytes per entry
+        long size = 112 + 96L * size();
+        for (int i = from; i < to; i++) {
+            Object v = values[i];
+            if (v instanceof byte[]) {
+                // approximated with one char per byte
+                size += 48 + 2L * ((byte[]) v).length;
+            } else if (v instanceof String) {
+                size += StringUtils.estimateMemoryUsage((String) v);
+            }
+        }
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    //-------------------------------------------------------< internal >--
+
+    private static Object encode(String value) {
+        if (value == null) {
+            return null;
+        } else if (value.length() <= MAX_INTERNED_LENGTH) {
+            return VALUES.intern(value);
+        } else if (value.length() >= MIN_ENCODED_LENGTH) {
+            return value.getBytes(UTF_8);
+        } else {
+            return value;
+        }
+    }
+
+    private Revision revisionAt(int idx) {
+        int clusterId = clusterIds[idx];
+        boolean branch = clusterId < 0;
+        return new Revision(timestamps[idx], counters[idx],
+                branch ? ~clusterId : clusterId, branch);
+    }
+
+    private String valueAt(int idx) {
+        Object v = values[idx];
+        if (v instanceof byte[]) {
+            return new String((byte[]) v, UTF_8);
+        }
+        return (String) v;
+    }
+
+    /**
+     * Compares the key at the given index with the given revision.
+     */
+    private int compareAt(int idx, Revision r) {
+        if (order == 0) {
+            return comparator.compare(revisionAt(idx), r);
+        }
+        // same as Revision.compareTo()
+        int comp = Long.compare(timestamps[idx], r.getTimestamp());
+        if (comp == 0) {
+            comp = Integer.compare(counters[idx], r.getCounter());
+        }
+        if (comp == 0) {
+            int clusterId = clusterIds[idx];
+            boolean branch = clusterId < 0;
+            comp = Integer.compare(branch ? ~clusterId : clusterId, r.getClusterId());
+            if (comp == 0 && branch != r.isBranch()) {
+                comp = branch ? -1 : 1;
+            }
+        }
+        return order * comp;
+    }
+
+    /**
+     * @return the index of the given key or a negative value if this map does
+     *          not contain the key.
+     */
+    private int indexOf(Object key) {
+        if (!(key instanceof Revision)) {
+            return -1;
+        }
+        Revision r = (Revision) key;
+        int idx = lowerBound(r);
+        if (idx < to && compareAt(idx, r) == 0) {
+            return idx;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the index of the first entry with a key greater or equal to the
+     *          given key or {@link #to} if there is no such entry.
+     */
+    private int lowerBound(Revision key) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareAt(mid, key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private SortedMap<Revision, String> subMap(int start, int end) {
+        if (start == from && end == to) {
+            return this;
+        }
+        return new CompactRevisionMap(comparator, timestamps, counters,
+                clusterIds, values, start, end);
+    }
+
+    private final class EntryIterator implements Iterator<Map.Entry<Revision, String>> {
+
+        private int next = from;
+
+        @Override
+        public boolean hasNext() {
+            return next < to;
+        }
+
+        @Override
+        public Map.Entry<Revision, String> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return new LazyEntry(next++);
+        }
+    }
+
+    /**
+     * An entry that decodes its value on first access.
+     */
+    private final class LazyEntry implements Map.Entry<Revision, String> {
+
+        private final int idx;
+
+        private final Revision key;
+
+        LazyEntry(int idx) {
+            this.idx = idx;
+            this.key = revisionAt(idx);
+        }
+
+        @Override
+        public Revision getKey() {
+            return key;
+        }
+
+        @Override
+        public String getValue() {
+            return valueAt(idx);
+        }
+
+        @Override
+        public String setValue(String value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> other = (Map.Entry<?, ?>) obj;
+            return key.equals(other.getKey())
+                    && Objects.equals(getValue(), other.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ Objects.hashCode(getValue());
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + getValue();
+        }
+    }
+}
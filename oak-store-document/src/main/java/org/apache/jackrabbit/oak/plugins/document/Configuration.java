@@ -151,6 +151,33 @@ import static org.apache.jackrabbit.oak.plugins.document.DocumentNodeStoreBuilde
                     "be pre-fetched in a background thread.")
     boolean prefetchExternalChanges() default DocumentNodeStoreService.DEFAULT_PREFETCH_EXTERNAL_CHANGES;
 
+    @AttributeDefinition(
+            name = "Pre-fetch children queue size",
+            description = "Integer value indicating the maximum number of pages " +
+                    "of child nodes pre-fetched concurrently in a background " +
+                    "thread while child nodes are iterated. A value of zero " +
+                    "disables the pre-fetch. Default is " +
+                    DocumentNodeStoreService.DEFAULT_PREFETCH_CHILDREN_QUEUE_SIZE)
+    int prefetchChildrenQueueSize() default DocumentNodeStoreService.DEFAULT_PREFETCH_CHILDREN_QUEUE_SIZE;
+
+    @AttributeDefinition(
+            name = "Group commit window (millis)",
+            description = "Long value indicating how long in milliseconds a " +
+                    "commit waits for concurrent commits to write their " +
+                    "changes together in a single call to the DocumentStore. " +
+                    "A value of zero disables group commit. Default is " +
+                    DocumentNodeStoreService.DEFAULT_GROUP_COMMIT_WINDOW_MILLIS)
+    long groupCommitWindowMillis() default DocumentNodeStoreService.DEFAULT_GROUP_COMMIT_WINDOW_MILLIS;
+
+    @AttributeDefinition(
+            name = "_lastRev write threads",
+            description = "Integer value indicating the number of threads " +
+                    "writing _lastRev updates in the background write. " +
+                    "Updates of nodes on the same depth are written " +
+                    "concurrently. Default is " +
+                    DocumentNodeStoreService.DEFAULT_LAST_REV_WRITE_THREADS)
+    int lastRevWriteThreads() default DocumentNodeStoreService.DEFAULT_LAST_REV_WRITE_THREADS;
+
     @AttributeDefinition(
             name = "NodeStoreProvider role",
             description = "Property indicating that this component will not register as a NodeStore but as a " +
@@ -56,6 +56,9 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -471,6 +474,21 @@ public final class DocumentNodeStore
     
     private final Executor executor;
 
+    /**
+     * Prefetches the next page of child nodes while child nodes are iterated
+     * or {@code null} if disabled.
+     */
+    @Nullable
+    private final ChildrenPrefetcher childrenPrefetcher;
+
+    /**
+     * Writes batches of _lastRev updates of nodes on the same depth in the
+     * background write, or {@code null} if the updates are written by the
+     * background update thread.
+     */
+    @Nullable
+    private final ExecutorService lastRevWriteExecutor;
+
     private final MissingLastRevSeeker lastRevSeeker;
 
     private final LastRevRecoveryAgent lastRevRecoveryAgent;
@@ -521,6 +539,16 @@ public final class DocumentNodeStore
                 builder.getCommitValueCacheSize(), this::getSweepRevisions);
         this.blobStore = builder.getBlobStore();
         this.nodeStoreStatsCollector = builder.getNodeStoreStatsCollector();
+        int prefetchChildrenQueueSize = builder.getPrefetchChildrenQueueSize();
+        if (prefetchChildrenQueueSize > 0 && !builder.isExecutorConfigured()) {
+            LOG.warn("Prefetch of child nodes disabled. No executor configured " +
+                    "to run it in the background.");
+            prefetchChildrenQueueSize = 0;
+        }
+        this.childrenPrefetcher = prefetchChildrenQueueSize > 0 ?
+                new ChildrenPrefetcher(this, builder.getExecutor(),
+                        nodeStoreStatsCollector, prefetchChildrenQueueSize) :
+                null;
         if (builder.isUseSimpleRevision()) {
             this.simpleRevisionCounter = new AtomicInteger(0);
         }
@@ -561,6 +589,8 @@ public final class DocumentNodeStore
             clusterNodeInfo.setLeaseFailureHandler(builder.getLeaseFailureHandler());
         }
         String threadNamePostfix = "(" + clusterId + ")";
+        lastRevWriteExecutor = createLastRevWriteExecutor(
+                builder.getLastRevWriteThreads(), threadNamePostfix);
         leaseUpdateThread = new Thread(new BackgroundLeaseUpdate(this, stopLeaseUpdateThread),
                 "DocumentNodeStore lease update thread " + threadNamePostfix);
         leaseUpdateThread.setDaemon(true);
@@ -608,6 +638,11 @@ public final class DocumentNodeStore
 
         diffCache = builder.getDiffCache(this.clusterId);
 
+        batchCommitQueue = new BatchCommitQueue(store);
+        batchCommitQueue.setStatisticsCollector(nodeStoreStatsCollector);
+        batchCommitQueue.setGroupCommit(builder.getGroupCommitWindowMillis(),
+                BatchCommitQueue.DEFAULT_GROUP_COMMIT_MAX_OPS);
+
         // check if root node exists
         NodeDocument rootDoc = store.find(NODES, Utils.getIdFromPath(ROOT));
         if (rootDoc == null) {
@@ -668,7 +703,6 @@ public final class DocumentNodeStore
                 new ChangeDispatcher(getRoot());
         commitQueue = new CommitQueue(this);
         commitQueue.setStatisticsCollector(nodeStoreStatsCollector);
-        batchCommitQueue = new BatchCommitQueue(store);
         // prepare background threads
         backgroundReadThread = new Thread(
                 new BackgroundReadOperation(this, isDisposed),
@@ -786,6 +820,10 @@ public final class DocumentNodeStore
             }
         }
 
+        if (lastRevWriteExecutor != null) {
+            lastRevWriteExecutor.shutdown();
+        }
+
         Utils.joinQuietly(clusterUpdateThread);
 
         // Stop lease update thread once no further document store operations
@@ -1318,7 +1356,26 @@ public final class DocumentNodeStore
         }
 
         final RevisionVector readRevision = parent.getLastRevision();
-        return transform(getChildren(parent, name, limit).children, new Function<String, DocumentNodeState>() {
+        final DocumentNodeState.Children children = getChildren(parent, name, limit);
+        final List<String> names = children.children;
+        if (childrenPrefetcher != null) {
+            childrenPrefetcher.iterating(parent, name, limit, children);
+        }
+        Iterable<String> prefetchingNames = new Iterable<String>() {
+            private final AtomicBoolean prefetched = new AtomicBoolean();
+
+            @Override
+            public Iterator<String> iterator() {
+                // read the documents of the children not yet cached at
+                // once instead of one by one in getNode(). Only done on
+                // the first iteration, later ones find them in the cache
+                if (prefetched.compareAndSet(false, true)) {
+                    prefetch(transform(names, n -> new Path(parent.getPath(), n)), readRevision);
+                }
+                return names.iterator();
+            }
+        };
+        return transform(prefetchingNames, new Function<String, DocumentNodeState>() {
             @Override
             public DocumentNodeState apply(String input) {
                 Path p = new Path(parent.getPath(), input);
@@ -1364,6 +1421,34 @@ public final class DocumentNodeStore
         });
     }
 
+    /**
+     * Reads the documents of the nodes with the given paths, which are not
+     * yet cached at the given revision, with a single call to the document
+     * store. This puts the documents into the document cache, so a subsequent
+     * {@link #getNode(Path, RevisionVector)} does not read them one by one.
+     *
+     * @param paths the paths of the nodes.
+     * @param readRevision the read revision.
+     * @return the number of documents read.
+     */
+    int prefetch(@NotNull Iterable<Path> paths,
+                 @NotNull RevisionVector readRevision) {
+        List<String> ids = new ArrayList<>();
+        for (Path p : paths) {
+            if (nodeCache.getIfPresent(new PathRev(p, readRevision)) == null) {
+                ids.add(Utils.getIdFromPath(p));
+            }
+        }
+        if (ids.size() < 2) {
+            // nothing to gain over a regular read
+            return 0;
+        }
+        final long start = PERFLOG.start();
+        int num = store.findAll(Collection.NODES, ids).size();
+        PERFLOG.end(start, 1, "prefetch: ids={}, found={}", ids.size(), num);
+        return num;
+    }
+
     @Nullable
     private DocumentNodeState readNode(Path path, RevisionVector readRevision) {
         final long start = PERFLOG.start();
@@ -1595,6 +1680,33 @@ public final class DocumentNodeStore
         throw e;
     }
 
+    /**
+     * Creates or updates the documents changed by a commit, other than the
+     * commit root update. With group commit enabled, the changes may be
+     * written together with those of other concurrent commits.
+     *
+     * @param changes the changes of a commit.
+     * @return the documents before the update in the order of the changes.
+     * @throws DocumentStoreException if the update fails with an error.
+     */
+    @NotNull
+    List<NodeDocument> createOrUpdateNodes(@NotNull List<UpdateOp> changes)
+            throws DocumentStoreException {
+        if (!batchCommitQueue.isGroupCommitEnabled()) {
+            return store.createOrUpdate(NODES, changes);
+        }
+        try {
+            return batchCommitQueue.createOrUpdate(changes).call();
+        } catch (InterruptedException e) {
+            throw DocumentStoreException.convert(e,
+                    "Interrupted while updating documents");
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw DocumentStoreException.convert(e);
+        }
+    }
+
     private NodeDocument batchUpdateCommitRoot(UpdateOp commit)
             throws DocumentStoreException {
         try {
@@ -2435,18 +2547,42 @@ public final class DocumentNodeStore
     //-----------------------------< internal >---------------------------------
 
     private BackgroundWriteStats backgroundWrite() {
-        return unsavedLastRevisions.persist(getDocumentStore(),
-                new Supplier<Revision>() {
+        Supplier<Revision> sweepRevision = new Supplier<Revision>() {
             @Override
             public Revision get() {
                 return getSweepRevisions().getRevision(getClusterId());
             }
-        }, new UnsavedModifications.Snapshot() {
+        };
+        UnsavedModifications.Snapshot snapshot = new UnsavedModifications.Snapshot() {
             @Override
             public void acquiring(Revision mostRecent) {
                 pushJournalEntry(mostRecent);
             }
-        }, backgroundOperationLock.writeLock());
+        };
+        if (lastRevWriteExecutor == null) {
+            return unsavedLastRevisions.persist(getDocumentStore(), sweepRevision,
+                    snapshot, backgroundOperationLock.writeLock());
+        }
+        return unsavedLastRevisions.persist(getDocumentStore(), sweepRevision,
+                snapshot, backgroundOperationLock.writeLock(), lastRevWriteExecutor);
+    }
+
+    @Nullable
+    private static ExecutorService createLastRevWriteExecutor(int numThreads,
+                                                              final String threadNamePostfix) {
+        if (numThreads <= 1) {
+            return null;
+        }
+        final AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+            @Override
+            public Thread newThread(@NotNull Runnable r) {
+                Thread t = new Thread(r, "DocumentNodeStore background write thread " +
+                        counter.incrementAndGet() + " " + threadNamePostfix);
+                t.setDaemon(true);
+                return t;
+            }
+        });
     }
 
     private void maybeRefreshHeadRevision() {
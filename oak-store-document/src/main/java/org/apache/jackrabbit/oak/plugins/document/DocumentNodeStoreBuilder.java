@@ -128,6 +128,9 @@ public class DocumentNodeStoreBuilder<T extends DocumentNodeStoreBuilder<T>> {
     private boolean useSimpleRevision;
     private boolean disableBranches;
     private boolean prefetchExternalChanges;
+    private int prefetchChildrenQueueSize;
+    private long groupCommitWindowMillis;
+    private int lastRevWriteThreads = 1;
     private Clock clock = Clock.SIMPLE;
     private Executor executor;
     private String persistentCacheURI = DEFAULT_PERSISTENT_CACHE_URI;
@@ -430,6 +433,15 @@ public class DocumentNodeStoreBuilder<T extends DocumentNodeStoreBuilder<T>> {
         return thisBuilder();
     }
 
+    /**
+     * @return {@code true} if an executor was set with
+     *      {@link #setExecutor(Executor)}, {@code false} if
+     *      {@link #getExecutor()} runs tasks in the calling thread.
+     */
+    boolean isExecutorConfigured() {
+        return executor != null;
+    }
+
     public T clock(Clock clock) {
         this.clock = clock;
         return thisBuilder();
@@ -513,6 +525,60 @@ public class DocumentNodeStoreBuilder<T extends DocumentNodeStoreBuilder<T>> {
         return prefetchExternalChanges;
     }
 
+    /**
+     * Sets the maximum number of pages of child nodes prefetched concurrently
+     * in the background while child nodes are iterated. A value of zero (the
+     * default) disables the prefetch. The prefetch runs on the executor
+     * configured with {@link #setExecutor(Executor)} and is disabled when
+     * no executor is configured.
+     *
+     * @param queueSize the maximum number of pending prefetch tasks.
+     * @return this
+     */
+    public T setPrefetchChildrenQueueSize(int queueSize) {
+        prefetchChildrenQueueSize = queueSize;
+        return thisBuilder();
+    }
+
+    public int getPrefetchChildrenQueueSize() {
+        return prefetchChildrenQueueSize;
+    }
+
+    /**
+     * Sets the time in milliseconds a commit waits for other concurrent
+     * commits to write their changes together with a single call to the
+     * {@code DocumentStore}. A value of zero (the default) disables group
+     * commit.
+     *
+     * @param windowMillis the group commit window in milliseconds.
+     * @return this
+     */
+    public T setGroupCommitWindowMillis(long windowMillis) {
+        groupCommitWindowMillis = windowMillis;
+        return thisBuilder();
+    }
+
+    public long getGroupCommitWindowMillis() {
+        return groupCommitWindowMillis;
+    }
+
+    /**
+     * Sets the number of threads writing _lastRev updates in the background
+     * write. Updates of nodes on the same depth are written concurrently. The
+     * default is one thread, which writes all updates sequentially.
+     *
+     * @param numThreads the number of threads.
+     * @return this
+     */
+    public T setLastRevWriteThreads(int numThreads) {
+        lastRevWriteThreads = numThreads;
+        return thisBuilder();
+    }
+
+    public int getLastRevWriteThreads() {
+        return lastRevWriteThreads;
+    }
+
     public T setJournalPropertyHandlerFactory(JournalPropertyHandlerFactory factory) {
         journalPropertyHandlerFactory = factory;
         return thisBuilder();
@@ -143,6 +143,9 @@ public class DocumentNodeStoreService {
     static final long DEFAULT_JOURNAL_GC_INTERVAL_MILLIS = 5*60*1000; // default is 5min
     static final long DEFAULT_JOURNAL_GC_MAX_AGE_MILLIS = 24*60*60*1000; // default is 24hours
     static final boolean DEFAULT_PREFETCH_EXTERNAL_CHANGES = false;
+    static final int DEFAULT_PREFETCH_CHILDREN_QUEUE_SIZE = 0;
+    static final long DEFAULT_GROUP_COMMIT_WINDOW_MILLIS = 0;
+    static final int DEFAULT_LAST_REV_WRITE_THREADS = 1;
     private static final String DEFAULT_PROP_HOME = "./repository";
     static final long DEFAULT_MAX_REPLICATION_LAG = 6 * 60 * 60;
     static final boolean DEFAULT_BUNDLING_DISABLED = false;
@@ -455,6 +458,9 @@ public class DocumentNodeStoreService {
                     }
                 }).
                 setPrefetchExternalChanges(config.prefetchExternalChanges()).
+                setPrefetchChildrenQueueSize(config.prefetchChildrenQueueSize()).
+                setGroupCommitWindowMillis(config.groupCommitWindowMillis()).
+                setLastRevWriteThreads(config.lastRevWriteThreads()).
                 setUpdateLimit(config.updateLimit()).
                 setJournalGCMaxAge(config.journalGCMaxAge()).
                 setNodeCachePathPredicate(createCachePredicate());
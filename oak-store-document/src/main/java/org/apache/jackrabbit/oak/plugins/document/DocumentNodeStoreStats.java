@@ -45,6 +45,9 @@ public class DocumentNodeStoreStats implements DocumentNodeStoreStatsCollector {
     static final String BGW_NUM = "DOCUMENT_NS_BGW_NUM";
     static final String BGW_NUM_WRITES_RATE = "DOCUMENT_NS_BGW_NUM_WRITE_RATE";
     private static final String BGW_TOTAL = "DOCUMENT_NS_BGW_TOTAL_TIME";
+    private static final String BGW_WRITE_LOCK = "DOCUMENT_NS_BGW_WRITE_LOCK";
+    private static final String BGW_WRITE_NODES = "DOCUMENT_NS_BGW_WRITE_NODES";
+    private static final String BGW_WRITE_ROOT = "DOCUMENT_NS_BGW_WRITE_ROOT";
 
     static final String LEASE_UPDATE = "DOCUMENT_NS_LEASE_UPDATE";
 
@@ -65,6 +68,16 @@ public class DocumentNodeStoreStats implements DocumentNodeStoreStatsCollector {
     static final String BRANCH_COMMIT_COUNT = "DOCUMENT_NS_BRANCH_COMMIT_COUNT";
     static final String MERGE_BRANCH_COMMIT_COUNT = "DOCUMENT_NS_MERGE_BRANCH_COMMIT_COUNT";
 
+    static final String PREFETCH_CHILDREN_COUNT = "DOCUMENT_NS_PREFETCH_CHILDREN_COUNT";
+    static final String PREFETCH_CHILDREN_HIT = "DOCUMENT_NS_PREFETCH_CHILDREN_HIT";
+    static final String PREFETCH_CHILDREN_SKIPPED = "DOCUMENT_NS_PREFETCH_CHILDREN_SKIPPED";
+    private static final String PREFETCH_CHILDREN_NUM_DOCS = "DOCUMENT_NS_PREFETCH_CHILDREN_NUM_DOCS";
+    private static final String PREFETCH_CHILDREN_TIME = "DOCUMENT_NS_PREFETCH_CHILDREN_TIME";
+
+    static final String GROUP_COMMIT_COUNT = "DOCUMENT_NS_GROUP_COMMIT_COUNT";
+    private static final String GROUP_COMMIT_NUM_COMMITS = "DOCUMENT_NS_GROUP_COMMIT_NUM_COMMITS";
+    private static final String GROUP_COMMIT_NUM_CHANGES = "DOCUMENT_NS_GROUP_COMMIT_NUM_CHANGES";
+
     // background read
     private final TimerStats readHead;
     private final TimerStats readCacheInvalidate;
@@ -83,6 +96,9 @@ public class DocumentNodeStoreStats implements DocumentNodeStoreStatsCollector {
     private final HistogramStats writeNum;
     private final TimerStats writeWrite;
     private final TimerStats writeTotal;
+    private final TimerStats writeLock;
+    private final TimerStats writeNodes;
+    private final TimerStats writeRoot;
     private final MeterStats numWritesRate;
 
     // lease update
@@ -107,6 +123,17 @@ public class DocumentNodeStoreStats implements DocumentNodeStoreStatsCollector {
     private final MeterStats branchCommitRate;
     private final MeterStats mergeBranchCommitRate;
 
+    // children prefetch stats
+    private final MeterStats prefetchChildrenRate;
+    private final MeterStats prefetchChildrenHitRate;
+    private final MeterStats prefetchChildrenSkippedRate;
+    private final HistogramStats prefetchChildrenNumDocs;
+    private final TimerStats prefetchChildrenTime;
+
+    // group commit stats
+    private final MeterStats groupCommitRate;
+    private final HistogramStats groupCommitNumCommits;
+    private final HistogramStats groupCommitNumChanges;
 
     public DocumentNodeStoreStats(StatisticsProvider sp) {
         readHead = sp.getTimer(BGR_READ_HEAD, StatsOptions.METRICS_ONLY);
@@ -124,6 +151,9 @@ public class DocumentNodeStoreStats implements DocumentNodeStoreStatsCollector {
         writeSweep = sp.getTimer(BGW_SWEEP, StatsOptions.METRICS_ONLY);
         writeWrite = sp.getTimer(BGW_WRITE, StatsOptions.METRICS_ONLY);
         writeTotal = sp.getTimer(BGW_TOTAL, StatsOptions.METRICS_ONLY);
+        writeLock = sp.getTimer(BGW_WRITE_LOCK, StatsOptions.METRICS_ONLY);
+        writeNodes = sp.getTimer(BGW_WRITE_NODES, StatsOptions.METRICS_ONLY);
+        writeRoot = sp.getTimer(BGW_WRITE_ROOT, StatsOptions.METRICS_ONLY);
         writeNum = sp.getHistogram(BGW_NUM, StatsOptions.METRICS_ONLY);
         numWritesRate = sp.getMeter(BGW_NUM_WRITES_RATE, StatsOptions.DEFAULT); //Enable time series
 
@@ -145,6 +175,16 @@ public class DocumentNodeStoreStats implements DocumentNodeStoreStatsCollector {
 
         branchCommitRate = sp.getMeter(BRANCH_COMMIT_COUNT, StatsOptions.DEFAULT);
         mergeBranchCommitRate = sp.getMeter(MERGE_BRANCH_COMMIT_COUNT, StatsOptions.DEFAULT);
+
+        prefetchChildrenRate = sp.getMeter(PREFETCH_CHILDREN_COUNT, StatsOptions.DEFAULT);
+        prefetchChildrenHitRate = sp.getMeter(PREFETCH_CHILDREN_HIT, StatsOptions.DEFAULT);
+        prefetchChildrenSkippedRate = sp.getMeter(PREFETCH_CHILDREN_SKIPPED, StatsOptions.METRICS_ONLY);
+        prefetchChildrenNumDocs = sp.getHistogram(PREFETCH_CHILDREN_NUM_DOCS, StatsOptions.METRICS_ONLY);
+        prefetchChildrenTime = sp.getTimer(PREFETCH_CHILDREN_TIME, StatsOptions.METRICS_ONLY);
+
+        groupCommitRate = sp.getMeter(GROUP_COMMIT_COUNT, StatsOptions.DEFAULT);
+        groupCommitNumCommits = sp.getHistogram(GROUP_COMMIT_NUM_COMMITS, StatsOptions.METRICS_ONLY);
+        groupCommitNumChanges = sp.getHistogram(GROUP_COMMIT_NUM_CHANGES, StatsOptions.METRICS_ONLY);
     }
 
     @Override
@@ -171,6 +211,9 @@ public class DocumentNodeStoreStats implements DocumentNodeStoreStatsCollector {
         writeSweep.update(stats.sweep, TimeUnit.MILLISECONDS);
         writeWrite.update(stats.write, TimeUnit.MILLISECONDS);
         writeTotal.update(stats.totalWriteTime, TimeUnit.MILLISECONDS);
+        writeLock.update(stats.lock, TimeUnit.MILLISECONDS);
+        writeNodes.update(stats.writeNodes, TimeUnit.MILLISECONDS);
+        writeRoot.update(stats.writeRoot, TimeUnit.MILLISECONDS);
 
         writeNum.update(stats.num);
 
@@ -245,4 +288,28 @@ public class DocumentNodeStoreStats implements DocumentNodeStoreStatsCollector {
     public void doneChangesApplied(long timeMicros) {
         mergeChangesApplied.update(timeMicros, TimeUnit.MICROSECONDS);
     }
+
+    @Override
+    public void doneChildrenPrefetch(int numDocuments, long timeMicros) {
+        prefetchChildrenRate.mark();
+        prefetchChildrenNumDocs.update(numDocuments);
+        prefetchChildrenTime.update(timeMicros, TimeUnit.MICROSECONDS);
+    }
+
+    @Override
+    public void doneChildrenPrefetchHit() {
+        prefetchChildrenHitRate.mark();
+    }
+
+    @Override
+    public void skippedChildrenPrefetch() {
+        prefetchChildrenSkippedRate.mark();
+    }
+
+    @Override
+    public void doneGroupCommit(int numCommits, int numChanges) {
+        groupCommitRate.mark();
+        groupCommitNumCommits.update(numCommits);
+        groupCommitNumChanges.update(numChanges);
+    }
 }
@@ -114,4 +114,34 @@ public interface DocumentNodeStoreStatsCollector {
      * @param timeMicros the time in microseconds.
      */
     void doneChangesApplied(long timeMicros);
+
+    /**
+     * Reports to the collector that the next page of child nodes was
+     * prefetched in the background.
+     *
+     * @param numDocuments the number of documents read from the store.
+     * @param timeMicros the time in microseconds it took to prefetch the page.
+     */
+    void doneChildrenPrefetch(int numDocuments, long timeMicros);
+
+    /**
+     * Reports to the collector that a page of child nodes was requested after
+     * it had been prefetched in the background.
+     */
+    void doneChildrenPrefetchHit();
+
+    /**
+     * Reports to the collector that the prefetch of a page of child nodes was
+     * skipped because too many prefetch tasks were pending.
+     */
+    void skippedChildrenPrefetch();
+
+    /**
+     * Reports to the collector that the changes of multiple commits were
+     * written with a single call to the {@code DocumentStore}.
+     *
+     * @param numCommits the number of commits in the group.
+     * @param numChanges the number of documents updated by the group.
+     */
+    void doneGroupCommit(int numCommits, int numChanges);
 }
@@ -16,6 +16,9 @@
  */
 package org.apache.jackrabbit.oak.plugins.document;
 
+import static com.google.common.collect.Sets.newLinkedHashSet;
+
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -81,6 +84,40 @@ public interface DocumentStore {
     <T extends Document> T find(Collection<T> collection, String key, int maxCacheAge)
             throws DocumentStoreException;
 
+    /**
+     * Get the documents with the given {@code keys}. This is equivalent to
+     * calling {@link #find(Collection, String)} for each of the keys, but an
+     * implementation may read the documents not served from a cache with a
+     * single or a few round trips to the backend storage.
+     * <p>
+     * The returned documents are immutable. The list does not contain an
+     * entry for a key without a document and is not sorted in any particular
+     * order. A key given more than once is only looked up once.
+     * <p>
+     * The default implementation calls {@link #find(Collection, String)} for
+     * each of the keys.
+     *
+     * @param <T> the document type
+     * @param collection the collection
+     * @param keys the keys
+     * @return the list of documents found (possibly empty)
+     * @throws DocumentStoreException if the operation failed. E.g. because of
+     *          an I/O error.
+     */
+    @NotNull
+    default <T extends Document> List<T> findAll(Collection<T> collection,
+                                                 Iterable<String> keys)
+            throws DocumentStoreException {
+        List<T> docs = new ArrayList<>();
+        for (String key : newLinkedHashSet(keys)) {
+            T doc = find(collection, key);
+            if (doc != null) {
+                docs.add(doc);
+            }
+        }
+        return docs;
+    }
+
     /**
      * Get a list of documents where the key is greater than a start value and
      * less than an end value.
@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.SettableFuture;
+
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.util.concurrent.Uninterruptibles.getUninterruptibly;
+import static org.apache.jackrabbit.oak.plugins.document.Collection.NODES;
+
+/**
+ * Combines the {@link UpdateOp}s of multiple concurrent commits into a single
+ * {@link DocumentStore#createOrUpdate(Collection, List)} call. The commit that
+ * opens the group waits for the group commit window to pass, or until the
+ * group is full, and then writes the changes of all commits in the group.
+ * Only commits that do not modify the same documents are grouped, hence each
+ * commit gets the same documents back as if it had written its changes on
+ * its own and can check for conflicts individually. If the write of a group
+ * fails, each commit of the group writes its changes on its own and only the
+ * commits whose own write fails fail.
+ */
+final class GroupCommit {
+
+    private static final Logger LOG = LoggerFactory.getLogger(GroupCommit.class);
+
+    private final BatchCommitQueue queue;
+    private final long deadlineNanos;
+    private final int maxOps;
+
+    private final List<UpdateOp> ops = Lists.newArrayList();
+    private final Set<String> ids = Sets.newHashSet();
+    private final SettableFuture<List<NodeDocument>> result = SettableFuture.create();
+
+    private int numCommits;
+    private boolean executing;
+
+    GroupCommit(BatchCommitQueue queue, long windowMillis, int maxOps) {
+        this.queue = queue;
+        this.deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.maxOps = maxOps;
+    }
+
+    /**
+     * Adds the given operations of a commit to this group. The first commit
+     * added to a group is the leader and writes the changes of the group.
+     *
+     * @param updates the update operations of a commit.
+     * @return a callable returning the documents before the update, or
+     *          {@code null} if the operations cannot be added to this group.
+     */
+    Callable<List<NodeDocument>> add(final List<UpdateOp> updates) {
+        final int offset;
+        final boolean leader;
+        synchronized (this) {
+            if (!isOpen(updates.size())) {
+                return null;
+            }
+            for (UpdateOp op : updates) {
+                if (ids.contains(op.getId())) {
+                    return null;
+                }
+            }
+            for (UpdateOp op : updates) {
+                ids.add(op.getId());
+            }
+            offset = ops.size();
+            leader = numCommits == 0;
+            ops.addAll(updates);
+            numCommits++;
+            if (ops.size() >= maxOps) {
+                // wake up leader
+                notifyAll();
+            }
+        }
+        return new Callable<List<NodeDocument>>() {
+            @Override
+            public List<NodeDocument> call() throws Exception {
+                if (leader) {
+                    execute();
+                }
+                try {
+                    List<NodeDocument> before = getUninterruptibly(result);
+                    return before.subList(offset, offset + updates.size());
+                } catch (ExecutionException e) {
+                    if (isSingleCommit()) {
+                        // fail with the same exception as the store call
+                        Throwables.propagateIfPossible(e.getCause());
+                        throw DocumentStoreException.convert(e.getCause());
+                    }
+                    // do not fail because of the changes of another commit
+                    LOG.debug("Group commit failed, writing {} updates individually",
+                            updates.size(), e.getCause());
+                    return queue.direct(updates).call();
+                }
+            }
+        };
+    }
+
+    /**
+     * @param numOps the number of update operations of a commit.
+     * @return {@code true} if a commit with the given number of operations
+     *          may join this group, unless it modifies a document already
+     *          modified in this group.
+     */
+    synchronized boolean isOpen(int numOps) {
+        return !executing && (numCommits == 0 || ops.size() + numOps <= maxOps);
+    }
+
+    private synchronized boolean isSingleCommit() {
+        return numCommits == 1;
+    }
+
+    private void execute() {
+        List<UpdateOp> batch;
+        int commits;
+        synchronized (this) {
+            long remaining;
+            while (ops.size() < maxOps
+                    && (remaining = deadlineNanos - System.nanoTime()) > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                } catch (InterruptedException e) {
+                    // stop waiting for more commits and write
+                    // the changes of those already in the group
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            checkState(!executing, "GroupCommit is already executing");
+            executing = true;
+            batch = Lists.newArrayList(ops);
+            commits = numCommits;
+        }
+        queue.closed(this);
+        try {
+            LOG.debug("Group committing {} updates of {} commits", batch.size(), commits);
+            List<NodeDocument> before = queue.getStore().createOrUpdate(NODES, batch);
+            checkState(before.size() == batch.size(),
+                    "Expected %s documents, but got %s", batch.size(), before.size());
+            result.set(before);
+            queue.getStatisticsCollector().doneGroupCommit(commits, batch.size());
+        } catch (Throwable t) {
+            // every commit in the group writes its changes on its own
+            result.setException(t);
+        }
+    }
+}
@@ -495,6 +495,26 @@ public final class NodeDocument extends Document {
         return flag != null && flag.intValue() == HAS_BINARY_VAL;
     }
 
+    /**
+     * Returns the estimated memory usage of this document as if its local
+     * maps were not kept in a {@link CompactRevisionMap}. Unlike
+     * {@link #getMemory()}, the estimate does not depend on whether this
+     * document is sealed and is used to decide whether this document is a
+     * split candidate.
+     *
+     * @return the estimated memory usage of the uncompacted document.
+     */
+    int getUncompactedMemory() {
+        long memory = getMemory();
+        for (Object value : data.values()) {
+            if (value instanceof CompactRevisionMap) {
+                CompactRevisionMap map = (CompactRevisionMap) value;
+                memory += map.getUncompactedMemory() - map.getMemory();
+            }
+        }
+        return (int) Math.min(memory, Integer.MAX_VALUE);
+    }
+
     /**
      * Returns the path of the main document if this document is part of a _prev
      * history tree. Otherwise this method simply returns {@link #getPath()}.
@@ -1872,6 +1892,26 @@ public final class NodeDocument extends Document {
 
     //----------------------------< internal >----------------------------------
 
+    /**
+     * Replaces the local maps with revision keys with a
+     * {@link CompactRevisionMap}. Sealed documents are kept in the
+     * {@link org.apache.jackrabbit.oak.plugins.document.cache.NodeDocumentCache}
+     * and the compact representation considerably reduces their footprint.
+     */
+    @NotNull
+    @Override
+    protected Map<?, ?> transformAndSeal(@NotNull Map<Object, Object> map,
+                                         @Nullable String key,
+                                         int level) {
+        if (level == 1) {
+            CompactRevisionMap compact = CompactRevisionMap.compact(map);
+            if (compact != null) {
+                return compact;
+            }
+        }
+        return super.transformAndSeal(map, key, level);
+    }
+
     private void previousDocumentNotFound(String prevId, Revision rev) {
         LOG.warn("Document with previous revisions not found: " + prevId);
         // main document may be stale, evict it from the cache if it is
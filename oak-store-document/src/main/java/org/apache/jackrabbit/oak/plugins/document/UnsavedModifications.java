@@ -20,7 +20,12 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 
@@ -38,6 +43,7 @@ import com.google.common.base.Supplier;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Uninterruptibles;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static org.apache.jackrabbit.oak.plugins.document.Collection.CLUSTER_NODES;
@@ -132,7 +138,9 @@ class UnsavedModifications {
     /**
      * Persist the pending changes to _lastRev to the given store. This method
      * will persist a snapshot of the pending revisions and current sweep
-     * revision by acquiring the passed lock for a short period of time.
+     * revision by acquiring the passed lock for a short period of time. The
+     * changes are written in the current thread, in batches of up to
+     * {@link #BACKGROUND_MULTI_UPDATE_LIMIT}, deepest nodes first.
      *
      * @param store the document store.
      * @param sweepRevision supplier for the current sweep revision.
@@ -146,6 +154,43 @@ class UnsavedModifications {
                                         @NotNull Supplier<Revision> sweepRevision,
                                         @NotNull Snapshot snapshot,
                                         @NotNull Lock lock) {
+        return persistPending(store, sweepRevision, snapshot, lock, null);
+    }
+
+    /**
+     * Persist the pending changes to _lastRev to the given store. This method
+     * will persist a snapshot of the pending revisions and current sweep
+     * revision by acquiring the passed lock for a short period of time. The
+     * changes of nodes on the same depth are written in batches, which run
+     * on the given executor.
+     *
+     * @param store the document store.
+     * @param sweepRevision supplier for the current sweep revision.
+     * @param snapshot callback when the snapshot of the pending changes is
+     *                 acquired.
+     * @param lock the lock to acquire to get a consistent snapshot of the
+     *             revisions to write back.
+     * @param executor the executor for the batches of changes.
+     * @return stats about the write operation.
+     */
+    public BackgroundWriteStats persist(@NotNull DocumentStore store,
+                                        @NotNull Supplier<Revision> sweepRevision,
+                                        @NotNull Snapshot snapshot,
+                                        @NotNull Lock lock,
+                                        @NotNull Executor executor) {
+        return persistPending(store, sweepRevision, snapshot, lock, checkNotNull(executor));
+    }
+
+    /**
+     * Persist the pending changes to _lastRev. The changes of nodes on the
+     * same depth are written concurrently on the given executor, or all
+     * changes in the current thread if the executor is {@code null}.
+     */
+    private BackgroundWriteStats persistPending(@NotNull DocumentStore store,
+                                                @NotNull Supplier<Revision> sweepRevision,
+                                                @NotNull Snapshot snapshot,
+                                                @NotNull Lock lock,
+                                                @Nullable Executor executor) {
         BackgroundWriteStats stats = new BackgroundWriteStats();
         if (map.size() == 0) {
             return stats;
@@ -171,32 +216,44 @@ class UnsavedModifications {
             lock.unlock();
         }
         stats.num = pending.size();
-        List<UpdateOp> updates = Lists.newArrayList();
-        Map<Path, Revision> pathToRevision = Maps.newHashMap();
-        for (Iterable<Map.Entry<Path, Revision>> batch : Iterables.partition(
-                pending.entrySet(), BACKGROUND_MULTI_UPDATE_LIMIT)) {
-            for (Map.Entry<Path, Revision> entry : batch) {
+        // the pending changes are sorted by depth, deepest first
+        if (executor == null) {
+            // write all non-root nodes in batches regardless of depth
+            List<Map.Entry<Path, Revision>> changes = Lists.newArrayList();
+            for (Map.Entry<Path, Revision> entry : pending.entrySet()) {
+                if (!entry.getKey().isRoot()) {
+                    changes.add(entry);
+                }
+            }
+            for (List<Map.Entry<Path, Revision>> batch : Lists.partition(
+                    changes, BACKGROUND_MULTI_UPDATE_LIMIT)) {
+                write(store, batch);
+                stats.calls++;
+            }
+        } else {
+            // nodes on the same depth are independent of each other and
+            // their batches are written concurrently. a depth is only
+            // written when all deeper nodes are written, which ensures the
+            // _lastRev of a node is never written before the one of a
+            // descendant
+            List<Map.Entry<Path, Revision>> sameDepth = Lists.newArrayList();
+            int depth = -1;
+            for (Map.Entry<Path, Revision> entry : pending.entrySet()) {
                 Path p = entry.getKey();
-                Revision r = entry.getValue();
                 if (p.isRoot()) {
                     // update root individually at the end
                     continue;
                 }
-                updates.add(newUpdateOp(p, r));
-                pathToRevision.put(entry.getKey(), r);
-            }
-            if (!updates.isEmpty()) {
-                store.createOrUpdate(NODES, updates);
-                stats.calls++;
-                for (Map.Entry<Path, Revision> entry : pathToRevision.entrySet()) {
-                    map.remove(entry.getKey(), entry.getValue());
-                    LOG.debug("Updated _lastRev to {} on {}", entry.getValue(), entry.getKey());
+                if (p.getDepth() != depth) {
+                    stats.calls += persist(store, sameDepth, executor);
+                    sameDepth.clear();
+                    depth = p.getDepth();
                 }
-                // clean up for next batch
-                updates.clear();
-                pathToRevision.clear();
+                sameDepth.add(entry);
             }
+            stats.calls += persist(store, sameDepth, executor);
         }
+        stats.writeNodes = sw.elapsed(TimeUnit.MILLISECONDS);
         // finally update remaining root document
         Revision rootRev = pending.get(Path.ROOT);
         if (rootRev != null) {
@@ -218,9 +275,71 @@ class UnsavedModifications {
         }
 
         stats.write = sw.elapsed(TimeUnit.MILLISECONDS);
+        stats.writeRoot = stats.write - stats.writeNodes;
         return stats;
     }
 
+    /**
+     * Writes the _lastRev changes of the given nodes in batches of up to
+     * {@link #BACKGROUND_MULTI_UPDATE_LIMIT} and waits until all batches are
+     * written. The nodes must not be ancestors of each other.
+     *
+     * @return the number of calls to the store.
+     */
+    private int persist(final DocumentStore store,
+                        List<Map.Entry<Path, Revision>> changes,
+                        Executor executor) {
+        List<FutureTask<Void>> tasks = Lists.newArrayList();
+        for (final List<Map.Entry<Path, Revision>> batch : Lists.partition(
+                changes, BACKGROUND_MULTI_UPDATE_LIMIT)) {
+            FutureTask<Void> task = new FutureTask<Void>(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    write(store, batch);
+                    return null;
+                }
+            });
+            tasks.add(task);
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                // write in this thread instead
+                task.run();
+            }
+        }
+        DocumentStoreException exception = null;
+        for (FutureTask<Void> task : tasks) {
+            try {
+                Uninterruptibles.getUninterruptibly(task);
+            } catch (ExecutionException e) {
+                if (exception == null) {
+                    exception = DocumentStoreException.convert(e.getCause());
+                }
+            }
+        }
+        if (exception != null) {
+            // do not write the _lastRev of ancestors
+            throw exception;
+        }
+        return tasks.size();
+    }
+
+    /**
+     * Writes the _lastRev changes of the given nodes with a single call to
+     * the store.
+     */
+    private void write(DocumentStore store, List<Map.Entry<Path, Revision>> batch) {
+        List<UpdateOp> updates = Lists.newArrayList();
+        for (Map.Entry<Path, Revision> entry : batch) {
+            updates.add(newUpdateOp(entry.getKey(), entry.getValue()));
+        }
+        store.createOrUpdate(NODES, updates);
+        for (Map.Entry<Path, Revision> entry : batch) {
+            map.remove(entry.getKey(), entry.getValue());
+            LOG.debug("Updated _lastRev to {} on {}", entry.getValue(), entry.getKey());
+        }
+    }
+
     @Override
     public String toString() {
         return map.toString();
@@ -18,6 +18,7 @@ package org.apache.jackrabbit.oak.plugins.document.cache;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -154,6 +155,26 @@ public class NodeDocumentCache implements Closeable {
         }
     }
 
+    /**
+     * Return the cached values for the given keys. The returned map does not
+     * contain an entry for a key without a cached value. A cached value may
+     * be {@link NodeDocument#NULL}.
+     *
+     * @param keys document keys
+     * @return the cached values by key
+     */
+    @NotNull
+    public Map<String, NodeDocument> getAllPresent(@NotNull Iterable<String> keys) {
+        Map<String, NodeDocument> docs = new HashMap<>();
+        for (String key : keys) {
+            NodeDocument doc = getIfPresent(key);
+            if (doc != null) {
+                docs.put(key, doc);
+            }
+        }
+        return docs;
+    }
+
     /**
      * Return the document matching given key, optionally loading it from an
      * external source.
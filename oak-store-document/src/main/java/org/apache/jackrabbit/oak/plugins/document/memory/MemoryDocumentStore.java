@@ -29,6 +29,7 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import org.apache.jackrabbit.oak.cache.CacheStats;
 import org.apache.jackrabbit.oak.plugins.document.Collection;
 import org.apache.jackrabbit.oak.plugins.document.Document;
@@ -126,6 +127,27 @@ public class MemoryDocumentStore implements DocumentStore {
         }
     }
 
+    @Override
+    @NotNull
+    public <T extends Document> List<T> findAll(Collection<T> collection,
+                                                Iterable<String> keys) {
+        Lock lock = rwLock.readLock();
+        lock.lock();
+        try {
+            ConcurrentSkipListMap<String, T> map = getMap(collection);
+            List<T> list = new ArrayList<T>();
+            for (String key : Sets.newLinkedHashSet(keys)) {
+                T doc = map.get(key);
+                if (doc != null) {
+                    list.add(doc);
+                }
+            }
+            return list;
+        } finally {
+            lock.unlock();
+        }
+    }
+
     @Override
     @NotNull
     public <T extends Document> List<T> query(Collection<T> collection,
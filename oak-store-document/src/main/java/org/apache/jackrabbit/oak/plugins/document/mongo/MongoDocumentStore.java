@@ -41,6 +41,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.mongodb.Block;
 import com.mongodb.DBObject;
@@ -589,6 +590,120 @@ public class MongoDocumentStore implements DocumentStore {
         }
     }
 
+    @SuppressWarnings("unchecked")
+    @NotNull
+    @Override
+    public <T extends Document> List<T> findAll(Collection<T> collection,
+                                                Iterable<String> keys) {
+        final long start = PERFLOG.start();
+        Set<String> lacking = Sets.newLinkedHashSet(keys);
+        int numKeys = lacking.size();
+        List<T> docs = new ArrayList<>(numKeys);
+        if (collection == Collection.NODES) {
+            for (Entry<String, NodeDocument> e : nodesCache.getAllPresent(lacking).entrySet()) {
+                lacking.remove(e.getKey());
+                stats.doneFindCached(collection, e.getKey());
+                if (e.getValue() != NodeDocument.NULL) {
+                    docs.add((T) e.getValue());
+                }
+            }
+        }
+        for (List<String> keyBatch : Iterables.partition(lacking, IN_CLAUSE_BATCH_SIZE)) {
+            docs.addAll(findUncachedWithRetry(collection, keyBatch));
+        }
+        PERFLOG.end(start, 1, "find: keys={}, uncached={}", numKeys, lacking.size());
+        return docs;
+    }
+
+    /**
+     * Finds the documents with the given keys with a single query and
+     * performs a number of retries if the read fails with an exception.
+     * Documents of the {@link Collection#NODES} collection are put into the
+     * cache unless they were changed concurrently. Keys of documents that do
+     * not exist are not cached.
+     *
+     * @param collection the collection to read from.
+     * @param keys the keys of the documents to find.
+     * @param <T> the document type of the given collection.
+     * @return the documents found.
+     */
+    @SuppressWarnings("unchecked")
+    @NotNull
+    private <T extends Document> List<T> findUncachedWithRetry(
+            Collection<T> collection, List<String> keys) {
+        log("findUncached", keys);
+        CacheChangesTracker tracker = null;
+        if (collection == Collection.NODES) {
+            tracker = nodesCache.registerTracker(new HashSet<>(keys));
+        }
+        try {
+            int numAttempts = queryRetries + 1;
+            MongoException ex = null;
+            for (int i = 0; i < numAttempts; i++) {
+                if (i > 0) {
+                    LOG.warn("Retrying read of " + keys.size() + " documents");
+                }
+                try {
+                    List<T> docs = findUncached(collection, keys);
+                    if (tracker != null) {
+                        nodesCache.putNonConflictingDocs(tracker, (List<NodeDocument>) docs);
+                    }
+                    return docs;
+                } catch (MongoException e) {
+                    ex = e;
+                }
+            }
+            throw handleException(ex, collection, keys);
+        } finally {
+            if (tracker != null) {
+                tracker.close();
+            }
+        }
+    }
+
+    @NotNull
+    private <T extends Document> List<T> findUncached(Collection<T> collection, List<String> keys) {
+        final Stopwatch watch = startWatch();
+        boolean isSlaveOk = false;
+        List<T> docs = new ArrayList<>(keys.size());
+        try {
+            DocumentReadPreference docReadPref = collection == Collection.NODES
+                    ? getReadPreference(-1) : getDefaultReadPreference(collection);
+            ReadPreference readPreference = getMongoReadPreference(collection, null, docReadPref);
+            MongoCollection<BasicDBObject> dbCollection = getDBCollection(collection, readPreference);
+            isSlaveOk = readPreference.isSlaveOk();
+
+            List<BasicDBObject> result = new ArrayList<>(keys.size());
+            Bson query = Filters.in(Document.ID, keys);
+            execute(session -> {
+                if (session != null) {
+                    dbCollection.find(session, query).into(result);
+                } else {
+                    dbCollection.find(query).into(result);
+                }
+                return null;
+            });
+            for (BasicDBObject o : result) {
+                T doc = convertFromDBObject(collection, o);
+                if (doc != null) {
+                    doc.seal();
+                    docs.add(doc);
+                }
+            }
+            return docs;
+        } finally {
+            long elapsed = watch.elapsed(TimeUnit.NANOSECONDS);
+            Set<String> found = new HashSet<>();
+            for (T doc : docs) {
+                found.add(doc.getId());
+            }
+            for (String key : keys) {
+                stats.doneFindUncached(elapsed / keys.size(), collection, key,
+                        found.contains(key), isSlaveOk);
+            }
+        }
+    }
+
     @NotNull
     @Override
     public <T extends Document> List<T> query(Collection<T> collection,
@@ -1074,7 +1189,7 @@ public class MongoDocumentStore implements DocumentStore {
 
             Map<String, T> oldDocs = new HashMap<String, T>();
             if (collection == Collection.NODES) {
-                oldDocs.putAll((Map<String, T>) getCachedNodes(operationsToCover.keySet()));
+                oldDocs.putAll((Map<String, T>) nodesCache.getAllPresent(operationsToCover.keySet()));
             }
 
             for (int i = 0; i <= bulkRetries; i++) {
@@ -1122,17 +1237,6 @@ public class MongoDocumentStore implements DocumentStore {
         return resultList;
     }
 
-    private Map<String, NodeDocument> getCachedNodes(Set<String> keys) {
-        Map<String, NodeDocument> nodes = new HashMap<String, NodeDocument>();
-        for (String key : keys) {
-            NodeDocument cached = nodesCache.getIfPresent(key);
-            if (cached != null) {
-                nodes.put(key, cached);
-            }
-        }
-        return nodes;
-    }
-
     private <T extends Document> Map<UpdateOp, T> bulkUpdate(Collection<T> collection,
                                                              List<UpdateOp> updateOperations,
                                                              Map<String, T> oldDocs) {
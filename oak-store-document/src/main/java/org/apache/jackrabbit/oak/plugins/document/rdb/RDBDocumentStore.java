@@ -281,6 +281,29 @@ public class RDBDocumentStore implements DocumentStore {
         return readDocumentCached(collection, id, maxCacheAge);
     }
 
+    @NotNull
+    @Override
+    public <T extends Document> List<T> findAll(Collection<T> collection, Iterable<String> ids) {
+        Set<String> lacking = Sets.newLinkedHashSet(ids);
+        List<T> result = new ArrayList<T>(lacking.size());
+        if (collection == Collection.NODES) {
+            for (Map.Entry<String, NodeDocument> entry : nodesCache.getAllPresent(lacking).entrySet()) {
+                NodeDocument doc = entry.getValue();
+                if (doc.getLastCheckTime() != 0) {
+                    lacking.remove(entry.getKey());
+                    stats.doneFindCached(Collection.NODES, entry.getKey());
+                    if (doc != NodeDocument.NULL) {
+                        result.add(castAsT(doc));
+                    }
+                }
+            }
+        }
+        if (!lacking.isEmpty()) {
+            result.addAll(readDocumentsUncachedAndCache(collection, lacking));
+        }
+        return result;
+    }
+
     @NotNull
     @Override
     public <T extends Document> List<T> query(Collection<T> collection, String fromKey, String toKey, int limit) {
@@ -505,6 +528,49 @@ public class RDBDocumentStore implements DocumentStore {
         return result;
     }
 
+    /**
+     * Reads the documents with the given keys, using IN clauses of at most
+     * {@link RDBJDBCTools#MAX_IN_CLAUSE} keys. Documents of the
+     * {@link Collection#NODES} collection are put into the cache unless they
+     * were changed concurrently.
+     */
+    private <T extends Document> List<T> readDocumentsUncachedAndCache(Collection<T> collection, Set<String> keys) {
+        final Stopwatch watch = startWatch();
+        List<T> result = new ArrayList<T>(keys.size());
+        Connection connection = null;
+        RDBTableMetaData tmd = getTable(collection);
+        try (CacheChangesTracker tracker = obtainTracker(collection, keys)) {
+            connection = this.ch.getROConnection();
+            List<RDBRow> rows = db.read(connection, tmd, keys);
+            connection.commit();
+
+            int size = rows.size();
+            for (int i = 0; i < size; i++) {
+                // free RDBRow as early as possible
+                RDBRow row = rows.set(i, null);
+                T doc = convertFromDBObject(collection, row);
+                doc.seal();
+                result.add(doc);
+            }
+            if (collection == Collection.NODES) {
+                nodesCache.putNonConflictingDocs(tracker, castAsNodeDocumentList(result));
+            }
+            return result;
+        } catch (Exception ex) {
+            throw asDocumentStoreException(ex, "trying to read: " + keys);
+        } finally {
+            this.ch.closeConnection(connection);
+            long elapsed = watch.elapsed(TimeUnit.NANOSECONDS);
+            Set<String> found = new HashSet<String>();
+            for (T doc : result) {
+                found.add(doc.getId());
+            }
+            for (String key : keys) {
+                stats.doneFindUncached(elapsed / keys.size(), collection, key, found.contains(key), false);
+            }
+        }
+    }
+
     @Nullable
     private <T extends Document> CacheChangesTracker obtainTracker(Collection<T> collection, Set<String> keys) {
         if (collection == Collection.NODES) {
@@ -70,6 +70,13 @@ public final class LeaseCheckDocumentStoreWrapper implements DocumentStore {
         return delegate.find(collection, key, maxCacheAge);
     }
 
+    @Override
+    public final <T extends Document> List<T> findAll(Collection<T> collection,
+            Iterable<String> keys) {
+        performLeaseCheck();
+        return delegate.findAll(collection, keys);
+    }
+
     @Override
     public final <T extends Document> List<T> query(Collection<T> collection,
             String fromKey, String toKey, int limit) {
@@ -88,6 +88,24 @@ public class LoggingDocumentStoreWrapper implements DocumentStore {
         }
     }
 
+    @NotNull
+    @Override
+    public <T extends Document> List<T> findAll(final Collection<T> collection,
+                                                final Iterable<String> keys) {
+        try {
+            logMethod("findAll", collection, keys);
+            return logResult(new Callable<List<T>>() {
+                @Override
+                public List<T> call() throws Exception {
+                    return store.findAll(collection, keys);
+                }
+            });
+        } catch (Exception e) {
+            logException(e);
+            throw convert(e);
+        }
+    }
+
     @NotNull
     @Override
     public <T extends Document> List<T> query(final Collection<T> collection,
@@ -50,6 +50,12 @@ public class SynchronizingDocumentStoreWrapper implements DocumentStore {
         return store.find(collection, key, maxCacheAge);
     }
 
+    @Override
+    @NotNull
+    public synchronized <T extends Document> List<T> findAll(final Collection<T> collection, final Iterable<String> keys) {
+        return store.findAll(collection, keys);
+    }
+
     @Override
     @NotNull
     public synchronized <T extends Document> List<T> query(final Collection<T> collection, final String fromKey,
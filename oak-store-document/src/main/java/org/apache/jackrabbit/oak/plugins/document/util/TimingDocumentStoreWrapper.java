@@ -117,6 +117,22 @@ public class TimingDocumentStoreWrapper implements DocumentStore {
         }
     }
 
+    @Override
+    @NotNull
+    public <T extends Document> List<T> findAll(Collection<T> collection, Iterable<String> keys) {
+        try {
+            long start = now();
+            List<T> result = base.findAll(collection, keys);
+            updateAndLogTimes("findAll", start, 0, size(result));
+            if (logCommonCall()) {
+                logCommonCall(start, "findAll " + collection + " " + keys);
+            }
+            return result;
+        } catch (Exception e) {
+            throw convert(e);
+        }
+    }
+
     @Override
     @NotNull
     public <T extends Document> List<T> query(Collection<T> collection,
@@ -35,6 +35,7 @@ import com.google.common.base.Function;
 import com.google.common.base.Predicate;
 import com.google.common.collect.AbstractIterator;
 
+import org.apache.jackrabbit.oak.cache.CacheValue;
 import org.apache.jackrabbit.oak.commons.OakVersion;
 import org.apache.jackrabbit.oak.commons.PathUtils;
 import org.apache.jackrabbit.oak.commons.StringUtils;
@@ -155,6 +156,9 @@ public class Utils {
                 size += 8;
             } else if (o instanceof Integer) {
                 size += 8;
+            } else if (o instanceof CacheValue) {
+                // e.g. a compact map of a sealed document
+                size += 8 + (long)((CacheValue) o).getMemory();
             } else if (o instanceof Map) {
                 size += 8 + (long)estimateMemoryUsage((Map<String, Object>) o);
             } else if (o == null) {
@@ -17,15 +17,18 @@
 package org.apache.jackrabbit.oak.plugins.document;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import com.google.common.collect.Iterables;
 
 import org.apache.jackrabbit.oak.plugins.document.memory.MemoryDocumentStore;
+import org.apache.jackrabbit.oak.plugins.document.util.Utils;
 import org.junit.Test;
 
 import static com.google.common.collect.Iterables.all;
 import static org.apache.jackrabbit.oak.plugins.document.TestUtils.IS_LAST_REV_UPDATE;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -61,13 +64,67 @@ public class BackgroundWriteTest {
         mk.dispose();
     }
 
+    @Test
+    public void concurrentWrite() {
+        TestStore store = new TestStore();
+        DocumentMK mk = new DocumentMK.Builder().setDocumentStore(store)
+                .setLastRevWriteThreads(4).setAsyncDelay(0).open();
+        List<String> paths = new ArrayList<String>();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            String child = "node-" + i;
+            sb.append("+\"").append(child).append("\":{}");
+            paths.add("/" + child);
+            for (int j = 0; j < 100; j++) {
+                String p = child + "/node-" + j;
+                paths.add("/" + p);
+                sb.append("+\"").append(p).append("\":{}");
+                for (int k = 0; k < 3; k++) {
+                    String q = p + "/node-" + k;
+                    paths.add("/" + q);
+                    sb.append("+\"").append(q).append("\":{}");
+                }
+            }
+        }
+        mk.commit("/", sb.toString(), null, null);
+        mk.runBackgroundOperations();
+        Revision r = mk.getNodeStore().newRevision();
+        UnsavedModifications pending = mk.getNodeStore().getPendingModifications();
+        pending.put(Path.ROOT, r);
+        for (String p : paths) {
+            pending.put(Path.fromString(p), r);
+        }
+        store.depths.clear();
+        mk.runBackgroundOperations();
+        assertTrue(pending.getPaths().isEmpty());
+
+        // batches of deeper nodes are written before those of their ancestors
+        // 30 batches on depth 3, 10 on depth 2 and one on depth 1
+        assertEquals(41, store.depths.size());
+        for (int i = 1; i < store.depths.size(); i++) {
+            assertTrue(store.depths.get(i - 1) >= store.depths.get(i));
+        }
+        mk.dispose();
+    }
+
     private static final class TestStore extends MemoryDocumentStore {
 
+        /**
+         * The depth of the nodes in the _lastRev updates, in the order the
+         * updates are started.
+         */
+        final List<Integer> depths = Collections.synchronizedList(new ArrayList<Integer>());
+
         @Override
         public <T extends Document> List<T> createOrUpdate(Collection<T> collection,
                                                            List<UpdateOp> updateOps) {
             if (all(updateOps, IS_LAST_REV_UPDATE)) {
                 assertTrue(updateOps.size() <= UnsavedModifications.BACKGROUND_MULTI_UPDATE_LIMIT);
+                int depth = Utils.getDepthFromId(updateOps.get(0).getId());
+                for (UpdateOp op : updateOps) {
+                    assertEquals(depth, Utils.getDepthFromId(op.getId()));
+                }
+                depths.add(depth);
             }
             return super.createOrUpdate(collection, updateOps);
         }
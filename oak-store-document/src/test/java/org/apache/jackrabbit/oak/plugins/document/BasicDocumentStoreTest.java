@@ -90,6 +90,49 @@ public class BasicDocumentStoreTest extends AbstractDocumentStoreTest {
         removeMe.add(id);
     }
 
+    @Test
+    public void testFindMultipleKeys() {
+        String base = this.getClass().getName() + ".testFindMultipleKeys-";
+        List<String> ids = new ArrayList<String>();
+        List<UpdateOp> ops = new ArrayList<UpdateOp>();
+        for (int i = 0; i < 3; i++) {
+            String id = base + i;
+            super.ds.remove(Collection.NODES, id);
+            UpdateOp up = new UpdateOp(id, true);
+            up.set("p", (long) i);
+            ops.add(up);
+            ids.add(id);
+            removeMe.add(id);
+        }
+        assertTrue(super.ds.create(Collection.NODES, ops));
+        super.ds.invalidateCache();
+
+        // one document cached, the others not
+        assertNotNull(super.ds.find(Collection.NODES, ids.get(0)));
+
+        List<String> keys = Lists.newArrayList(ids);
+        keys.add(base + "missing");
+        keys.add(ids.get(1));
+        List<NodeDocument> docs = super.ds.findAll(Collection.NODES, keys);
+        assertEquals(3, docs.size());
+        Set<String> found = new HashSet<String>();
+        for (NodeDocument doc : docs) {
+            found.add(doc.getId());
+            assertEquals(Long.valueOf(ids.indexOf(doc.getId())), doc.get("p"));
+        }
+        assertEquals(new HashSet<String>(ids), found);
+
+        // documents read by the bulk find must reflect subsequent updates
+        UpdateOp up = new UpdateOp(ids.get(2), false);
+        up.set("p", 42L);
+        assertNotNull(super.ds.findAndUpdate(Collection.NODES, up));
+        NodeDocument doc = super.ds.find(Collection.NODES, ids.get(2));
+        assertNotNull(doc);
+        assertEquals(42L, doc.get("p"));
+
+        assertTrue(super.ds.findAll(Collection.NODES, Collections.<String>emptyList()).isEmpty());
+    }
+
     @Test
     public void testValuesForSystemProps() {
         String id = this.getClass().getName() + ".testValuesForSystemProps";
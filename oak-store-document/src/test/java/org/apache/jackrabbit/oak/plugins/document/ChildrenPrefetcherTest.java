@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.apache.jackrabbit.oak.api.CommitFailedException;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class ChildrenPrefetcherTest {
+
+    @Rule
+    public DocumentMKBuilderProvider builderProvider = new DocumentMKBuilderProvider();
+
+    private DocumentNodeStoreStatsCollector statsCollector = mock(DocumentNodeStoreStatsCollector.class);
+
+    @Test
+    public void prefetchNextPage() throws Exception {
+        // run the prefetch in the calling thread to make the hits predictable
+        Executor executor = Runnable::run;
+        DocumentNodeStore ns = builderProvider.newBuilder()
+                .setAsyncDelay(0)
+                .setExecutor(executor)
+                .setNodeStoreStatsCollector(statsCollector)
+                .setPrefetchChildrenQueueSize(1)
+                .getNodeStore();
+        addChildren(ns, "test", 1000);
+        ns.getNodeCache().invalidateAll();
+        ns.getNodeChildrenCache().invalidateAll();
+
+        // pages of 100, 200, 400 and 300 child nodes
+        assertEquals(1000, countChildren(ns.getRoot().getChildNode("test")));
+        verify(statsCollector, times(3)).doneChildrenPrefetch(anyInt(), anyLong());
+        verify(statsCollector, times(3)).doneChildrenPrefetchHit();
+        verify(statsCollector, never()).skippedChildrenPrefetch();
+    }
+
+    @Test
+    public void noPrefetchOnLastPage() throws Exception {
+        DocumentNodeStore ns = builderProvider.newBuilder()
+                .setAsyncDelay(0)
+                .setNodeStoreStatsCollector(statsCollector)
+                .setPrefetchChildrenQueueSize(1)
+                .getNodeStore();
+        addChildren(ns, "test", 10);
+
+        assertEquals(10, countChildren(ns.getRoot().getChildNode("test")));
+        verify(statsCollector, never()).doneChildrenPrefetch(anyInt(), anyLong());
+        verify(statsCollector, never()).doneChildrenPrefetchHit();
+    }
+
+    @Test
+    public void skipWhenQueueFull() throws Exception {
+        List<Runnable> tasks = new ArrayList<>();
+        Executor executor = tasks::add;
+        DocumentNodeStore ns = builderProvider.newBuilder()
+                .setAsyncDelay(0)
+                .setExecutor(executor)
+                .setNodeStoreStatsCollector(statsCollector)
+                .setPrefetchChildrenQueueSize(1)
+                .getNodeStore();
+        addChildren(ns, "a", 200);
+        addChildren(ns, "b", 200);
+        tasks.clear();
+
+        ns.getRoot().getChildNode("a").getChildNodeEntries().iterator().next();
+        ns.getRoot().getChildNode("b").getChildNodeEntries().iterator().next();
+        assertEquals(1, tasks.size());
+        verify(statsCollector, times(1)).skippedChildrenPrefetch();
+
+        // running the pending task makes room for another prefetch
+        tasks.remove(0).run();
+        verify(statsCollector, times(1)).doneChildrenPrefetch(anyInt(), anyLong());
+        ns.getRoot().getChildNode("b").getChildNodeEntries().iterator().next();
+        assertEquals(1, tasks.size());
+    }
+
+    @Test
+    public void disabledWithoutExecutor() throws Exception {
+        DocumentNodeStore ns = builderProvider.newBuilder()
+                .setAsyncDelay(0)
+                .setNodeStoreStatsCollector(statsCollector)
+                .setPrefetchChildrenQueueSize(1)
+                .getNodeStore();
+        addChildren(ns, "test", 1000);
+
+        assertEquals(1000, countChildren(ns.getRoot().getChildNode("test")));
+        verify(statsCollector, never()).doneChildrenPrefetch(anyInt(), anyLong());
+    }
+
+    @Test
+    public void disabledByDefault() throws Exception {
+        DocumentNodeStore ns = builderProvider.newBuilder()
+                .setAsyncDelay(0)
+                .setNodeStoreStatsCollector(statsCollector)
+                .getNodeStore();
+        addChildren(ns, "test", 1000);
+
+        assertEquals(1000, countChildren(ns.getRoot().getChildNode("test")));
+        verify(statsCollector, never()).doneChildrenPrefetch(anyInt(), anyLong());
+    }
+
+    private static void addChildren(DocumentNodeStore ns, String name, int num)
+            throws CommitFailedException {
+        NodeBuilder builder = ns.getRoot().builder();
+        NodeBuilder parent = builder.child(name);
+        for (int i = 0; i < num; i++) {
+            parent.child("node-" + i);
+        }
+        ns.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+    }
+
+    private static int countChildren(NodeState state) {
+        int num = 0;
+        for (ChildNodeEntry ignored : state.getChildNodeEntries()) {
+            num++;
+        }
+        return num;
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+
+import org.apache.jackrabbit.oak.plugins.document.memory.MemoryDocumentStore;
+import org.junit.Test;
+
+import static org.apache.jackrabbit.oak.plugins.document.StableRevisionComparator.INSTANCE;
+import static org.apache.jackrabbit.oak.plugins.document.StableRevisionComparator.REVERSE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CompactRevisionMapTest {
+
+    @Test
+    public void sameAsTreeMap() {
+        SortedMap<Revision, String> expected = createMap(20);
+        SortedMap<Revision, String> compact = CompactRevisionMap.compact(expected);
+        assertNotNull(compact);
+        assertEquals(expected, compact);
+        assertEquals(expected.hashCode(), compact.hashCode());
+        assertEquals(Lists.newArrayList(expected.keySet()),
+                Lists.newArrayList(compact.keySet()));
+        assertEquals(Lists.newArrayList(expected.values()),
+                Lists.newArrayList(compact.values()));
+        assertEquals(expected.firstKey(), compact.firstKey());
+        assertEquals(expected.lastKey(), compact.lastKey());
+        assertEquals(REVERSE, compact.comparator());
+        for (Revision r : expected.keySet()) {
+            assertTrue(compact.containsKey(r));
+            assertEquals(expected.get(r), compact.get(r));
+        }
+        assertFalse(compact.containsKey(new Revision(1000, 0, 1)));
+        assertNull(compact.get(new Revision(1000, 0, 1)));
+        assertNull(compact.get("r1-0-1"));
+    }
+
+    @Test
+    public void subMaps() {
+        SortedMap<Revision, String> expected = createMap(20);
+        SortedMap<Revision, String> compact = CompactRevisionMap.compact(expected);
+        assertNotNull(compact);
+        Revision r5 = new Revision(5, 0, 1);
+        Revision r15 = new Revision(15, 0, 1);
+        Revision missing = new Revision(12, 1, 1);
+        assertEquals(expected.headMap(r5), compact.headMap(r5));
+        assertEquals(expected.tailMap(r5), compact.tailMap(r5));
+        assertEquals(expected.headMap(missing), compact.headMap(missing));
+        assertEquals(expected.tailMap(missing), compact.tailMap(missing));
+        assertEquals(expected.subMap(r15, r5), compact.subMap(r15, r5));
+        assertEquals(expected.subMap(r15, r5).headMap(missing),
+                compact.subMap(r15, r5).headMap(missing));
+        assertEquals(expected.subMap(r15, r5).firstKey(),
+                compact.subMap(r15, r5).firstKey());
+    }
+
+    @Test
+    public void branchRevisions() {
+        SortedMap<Revision, String> expected = new TreeMap<>(REVERSE);
+        expected.put(new Revision(1, 0, 1), "c");
+        expected.put(new Revision(1, 0, 1, true), "c");
+        expected.put(new Revision(2, 0, 0, true), "c");
+        SortedMap<Revision, String> compact = CompactRevisionMap.compact(expected);
+        assertNotNull(compact);
+        assertEquals(expected, compact);
+        assertEquals(Lists.newArrayList(expected.keySet()),
+                Lists.newArrayList(compact.keySet()));
+    }
+
+    @Test
+    public void lookups() {
+        Comparator<Revision> custom = (r1, r2) -> REVERSE.compare(r1, r2);
+        for (Comparator<Revision> c : Lists.newArrayList(INSTANCE, REVERSE, custom)) {
+            SortedMap<Revision, String> expected = new TreeMap<>(c);
+            for (int i = 0; i < 10; i++) {
+                expected.put(new Revision(i, 0, 1), "a" + i);
+                expected.put(new Revision(i, 1, 1, true), "b" + i);
+                expected.put(new Revision(i, 0, 2), "c" + i);
+            }
+            SortedMap<Revision, String> compact = CompactRevisionMap.compact(expected);
+            assertNotNull(compact);
+            for (int i = -1; i < 11; i++) {
+                for (Revision r : new Revision[]{
+                        new Revision(i, 0, 1), new Revision(i, 0, 1, true),
+                        new Revision(i, 1, 1), new Revision(i, 1, 1, true),
+                        new Revision(i, 0, 2), new Revision(i, 0, 3)}) {
+                    assertEquals(expected.containsKey(r), compact.containsKey(r));
+                    assertEquals(expected.get(r), compact.get(r));
+                    assertEquals(expected.headMap(r), compact.headMap(r));
+                    assertEquals(expected.tailMap(r), compact.tailMap(r));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void encodedValues() {
+        String longValue = "\"" + Strings.repeat("äbc", 100) + "\"";
+        SortedMap<Revision, String> expected = new TreeMap<>(REVERSE);
+        expected.put(new Revision(1, 0, 1), longValue);
+        expected.put(new Revision(2, 0, 1), null);
+        SortedMap<Revision, String> compact = CompactRevisionMap.compact(expected);
+        assertNotNull(compact);
+        assertEquals(longValue, compact.get(new Revision(1, 0, 1)));
+        assertTrue(compact.containsKey(new Revision(2, 0, 1)));
+        assertNull(compact.get(new Revision(2, 0, 1)));
+        assertEquals(expected, compact);
+    }
+
+    @Test
+    public void notCompacted() {
+        assertNull(CompactRevisionMap.compact(new TreeMap<Revision, String>(REVERSE)));
+        Map<String, String> stringKeys = new TreeMap<>();
+        stringKeys.put("foo", "bar");
+        assertNull(CompactRevisionMap.compact(stringKeys));
+        Map<Revision, Object> longValues = new TreeMap<>(REVERSE);
+        longValues.put(new Revision(1, 0, 1), 1L);
+        assertNull(CompactRevisionMap.compact(longValues));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void immutable() {
+        SortedMap<Revision, String> compact = CompactRevisionMap.compact(createMap(1));
+        assertNotNull(compact);
+        compact.put(new Revision(2, 0, 1), "c");
+    }
+
+    @Test
+    public void sealedDocument() {
+        NodeDocument doc = new NodeDocument(new MemoryDocumentStore());
+        doc.put(Document.ID, "1:/foo");
+        doc.put(NodeDocument.REVISIONS, createMap(10));
+        doc.put(NodeDocument.COMMIT_ROOT, createMap(10));
+        doc.put("prop", createMap(10));
+        int unsealed = doc.getMemory();
+        SortedMap<Revision, String> revisions = doc.getLocalRevisions();
+        doc.seal();
+        assertTrue(doc.getLocalRevisions() instanceof CompactRevisionMap);
+        assertEquals(revisions, doc.getLocalRevisions());
+        assertTrue(doc.getMemory() < unsealed);
+    }
+
+    private static SortedMap<Revision, String> createMap(int size) {
+        SortedMap<Revision, String> map = new TreeMap<>(REVERSE);
+        for (int i = 0; i < size; i++) {
+            map.put(new Revision(i, 0, 1), "\"value-" + i + "\"");
+        }
+        return map;
+    }
+}
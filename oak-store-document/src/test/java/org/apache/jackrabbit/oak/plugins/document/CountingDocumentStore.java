@@ -96,6 +96,17 @@ public class CountingDocumentStore implements DocumentStore {
         return delegate.find(collection, key, maxCacheAge);
     }
 
+    @NotNull
+    @Override
+    public <T extends Document> List<T> findAll(Collection<T> collection,
+                                                Iterable<String> keys) {
+        getStats(collection).numFindCalls++;
+        if (printStacks) {
+            new Exception("find [" + getStats(collection).numFindCalls + "] (" + collection + ") " + keys).printStackTrace();
+        }
+        return delegate.findAll(collection, keys);
+    }
+
     @NotNull
     @Override
     public <T extends Document> List<T> query(Collection<T> collection,
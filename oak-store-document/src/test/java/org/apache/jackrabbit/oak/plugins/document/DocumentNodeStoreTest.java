@@ -18,6 +18,7 @@ package org.apache.jackrabbit.oak.plugins.document;
 
 import static com.google.common.collect.ImmutableList.of;
 import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
 import static java.util.Collections.synchronizedList;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.apache.jackrabbit.oak.api.CommitFailedException.CONSTRAINT;
@@ -546,6 +547,49 @@ public class DocumentNodeStoreTest {
                 maxLimit.get() <= DocumentNodeState.INITIAL_FETCH_SIZE + 1);
     }
 
+    @Test
+    public void readChildDocumentsAtOnce() throws Exception {
+        final List<Integer> bulkReads = new ArrayList<>();
+        DocumentStore docStore = new MemoryDocumentStore() {
+            @NotNull
+            @Override
+            public <T extends Document> List<T> findAll(Collection<T> collection,
+                                                        Iterable<String> keys) {
+                if (collection == NODES) {
+                    bulkReads.add(Iterables.size(keys));
+                }
+                return super.findAll(collection, keys);
+            }
+        };
+        DocumentNodeStore ns = builderProvider.newBuilder()
+                .setDocumentStore(docStore)
+                .setAsyncDelay(0).getNodeStore();
+        NodeBuilder builder = ns.getRoot().builder();
+        for (int i = 0; i < 10; i++) {
+            builder.child("test").child("node-" + i);
+        }
+        ns.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+        ns.getNodeCache().invalidateAll();
+
+        NodeState test = ns.getRoot().getChildNode("test");
+        assertEquals(10, Iterables.size(test.getChildNodeEntries()));
+        assertEquals(singletonList(10), bulkReads);
+
+        // all children are cached now
+        bulkReads.clear();
+        assertEquals(10, Iterables.size(test.getChildNodeEntries()));
+        assertTrue(bulkReads.isEmpty());
+
+        // iterating the same children again must not read them again
+        ns.getNodeCache().invalidateAll();
+        Iterable<DocumentNodeState> children = ns.getChildNodes(
+                (DocumentNodeState) test, "", 100);
+        assertEquals(10, Iterables.size(children));
+        ns.getNodeCache().invalidateAll();
+        assertEquals(10, Iterables.size(children));
+        assertEquals(singletonList(10), bulkReads);
+    }
+
     // OAK-1972
     @Test
     public void readFromPreviousDoc() throws CommitFailedException {
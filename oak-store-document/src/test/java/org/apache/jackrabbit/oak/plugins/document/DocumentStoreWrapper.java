@@ -47,6 +47,13 @@ public class DocumentStoreWrapper implements DocumentStore {
         return store.find(collection, key, maxCacheAge);
     }
 
+    @NotNull
+    @Override
+    public <T extends Document> List<T> findAll(Collection<T> collection,
+                                                Iterable<String> keys) {
+        return store.findAll(collection, keys);
+    }
+
     @NotNull
     @Override
     public <T extends Document> List<T> query(Collection<T> collection,
@@ -0,0 +1,256 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.document;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jackrabbit.oak.plugins.document.memory.MemoryDocumentStore;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static java.util.Arrays.asList;
+import static org.apache.jackrabbit.oak.plugins.document.Collection.NODES;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class GroupCommitTest {
+
+    @Rule
+    public DocumentMKBuilderProvider builderProvider = new DocumentMKBuilderProvider();
+
+    private final RecordingStore store = new RecordingStore(new MemoryDocumentStore());
+
+    @Test
+    public void disabledByDefault() {
+        BatchCommitQueue queue = new BatchCommitQueue(store);
+        assertFalse(queue.isGroupCommitEnabled());
+    }
+
+    @Test
+    public void groupCommits() throws Exception {
+        BatchCommitQueue queue = new BatchCommitQueue(store);
+        queue.setGroupCommit(TimeUnit.MINUTES.toMillis(1), 4);
+
+        store.create(NODES, Collections.singletonList(newOp("1:/a", true)));
+        Callable<List<NodeDocument>> c1 = queue.createOrUpdate(asList(newOp("1:/a", false), newOp("1:/b", true)));
+        Callable<List<NodeDocument>> c2 = queue.createOrUpdate(asList(newOp("1:/c", true), newOp("1:/d", true)));
+
+        // the group is full, the leader writes immediately
+        List<NodeDocument> before1 = c1.call();
+        List<NodeDocument> before2 = c2.call();
+        assertEquals(Collections.singletonList(4), store.batchSizes);
+        assertEquals(2, before1.size());
+        assertNotNull(before1.get(0));
+        assertEquals("1:/a", before1.get(0).getId());
+        assertNull(before1.get(1));
+        assertEquals(asList(null, null), before2);
+        for (String id : asList("1:/a", "1:/b", "1:/c", "1:/d")) {
+            assertNotNull(store.find(NODES, id));
+        }
+    }
+
+    @Test
+    public void overlappingChanges() throws Exception {
+        BatchCommitQueue queue = new BatchCommitQueue(store);
+        queue.setGroupCommit(TimeUnit.MINUTES.toMillis(1), 2);
+
+        Callable<List<NodeDocument>> c1 = queue.createOrUpdate(Collections.singletonList(newOp("1:/a", true)));
+        // changes the same document and is written on its own
+        Callable<List<NodeDocument>> c2 = queue.createOrUpdate(Collections.singletonList(newOp("1:/a", true)));
+        assertEquals(Collections.singletonList(null), c2.call());
+        Callable<List<NodeDocument>> c3 = queue.createOrUpdate(Collections.singletonList(newOp("1:/b", true)));
+
+        List<NodeDocument> before1 = c1.call();
+        assertEquals("1:/a", before1.get(0).getId());
+        assertEquals(Collections.singletonList(null), c3.call());
+        assertEquals(asList(1, 2), store.batchSizes);
+    }
+
+    @Test
+    public void groupFull() throws Exception {
+        BatchCommitQueue queue = new BatchCommitQueue(store);
+        queue.setGroupCommit(200, 3);
+
+        Callable<List<NodeDocument>> c1 = queue.createOrUpdate(asList(newOp("1:/a", true), newOp("1:/b", true)));
+        // does not fit into the first group and opens a new one
+        Callable<List<NodeDocument>> c2 = queue.createOrUpdate(asList(newOp("1:/c", true), newOp("1:/d", true)));
+        Callable<List<NodeDocument>> c3 = queue.createOrUpdate(Collections.singletonList(newOp("1:/e", true)));
+
+        assertEquals(2, c2.call().size());
+        assertEquals(1, c3.call().size());
+        assertEquals(2, c1.call().size());
+        assertEquals(asList(3, 2), store.batchSizes);
+    }
+
+    @Test
+    public void windowExpires() throws Exception {
+        BatchCommitQueue queue = new BatchCommitQueue(store);
+        queue.setGroupCommit(10, 100);
+
+        Callable<List<NodeDocument>> c = queue.createOrUpdate(Collections.singletonList(newOp("1:/a", true)));
+        assertEquals(Collections.singletonList(null), c.call());
+        assertEquals(Collections.singletonList(1), store.batchSizes);
+
+        // a new group is opened after the previous one was written
+        c = queue.createOrUpdate(Collections.singletonList(newOp("1:/a", false)));
+        assertEquals(1, c.call().size());
+        assertEquals(asList(1, 1), store.batchSizes);
+    }
+
+    @Test
+    public void failedGroupCommit() throws Exception {
+        BatchCommitQueue queue = new BatchCommitQueue(store);
+        queue.setGroupCommit(TimeUnit.MINUTES.toMillis(1), 2);
+        DocumentStoreException failure = new DocumentStoreException("failure");
+        store.failure = failure;
+
+        Callable<List<NodeDocument>> c1 = queue.createOrUpdate(Collections.singletonList(newOp("1:/a", true)));
+        Callable<List<NodeDocument>> c2 = queue.createOrUpdate(Collections.singletonList(newOp("1:/b", true)));
+        for (Callable<List<NodeDocument>> c : asList(c1, c2)) {
+            try {
+                c.call();
+                fail("DocumentStoreException expected");
+            } catch (DocumentStoreException e) {
+                assertSame(failure, e);
+            }
+        }
+    }
+
+    @Test
+    public void failedGroupCommitRetriesIndividually() throws Exception {
+        BatchCommitQueue queue = new BatchCommitQueue(store);
+        queue.setGroupCommit(TimeUnit.MINUTES.toMillis(1), 2);
+        DocumentStoreException failure = new DocumentStoreException("failure");
+        store.failure = failure;
+        store.failingId = "1:/b";
+
+        Callable<List<NodeDocument>> c1 = queue.createOrUpdate(Collections.singletonList(newOp("1:/a", true)));
+        Callable<List<NodeDocument>> c2 = queue.createOrUpdate(Collections.singletonList(newOp("1:/b", true)));
+        // the group fails, but only the commit changing 1:/b fails
+        assertEquals(Collections.singletonList(null), c1.call());
+        try {
+            c2.call();
+            fail("DocumentStoreException expected");
+        } catch (DocumentStoreException e) {
+            assertSame(failure, e);
+        }
+        assertNotNull(store.find(NODES, "1:/a"));
+        assertNull(store.find(NODES, "1:/b"));
+        assertEquals(Collections.singletonList(1), store.batchSizes);
+    }
+
+    @Test
+    public void concurrentMerges() throws Exception {
+        final DocumentNodeStore ns = builderProvider.newBuilder()
+                .setDocumentStore(store).setAsyncDelay(0)
+                .setGroupCommitWindowMillis(20).getNodeStore();
+        NodeBuilder builder = ns.getRoot().builder();
+        for (int i = 0; i < 10; i++) {
+            builder.child("node-" + i);
+        }
+        ns.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+
+        ExecutorService executor = Executors.newFixedThreadPool(10);
+        try {
+            List<Future<Object>> results = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                final String name = "node-" + i;
+                results.add(executor.submit(new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        for (int j = 0; j < 10; j++) {
+                            NodeBuilder b = ns.getRoot().builder();
+                            b.child(name).child("child-" + j).setProperty("p", j);
+                            ns.merge(b, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Object> f : results) {
+                f.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        for (int i = 0; i < 10; i++) {
+            for (int j = 0; j < 10; j++) {
+                assertTrue(ns.getRoot().getChildNode("node-" + i)
+                        .getChildNode("child-" + j).hasProperty("p"));
+            }
+        }
+    }
+
+    private static UpdateOp newOp(String id, boolean isNew) {
+        UpdateOp op = new UpdateOp(id, isNew);
+        op.set("p", "v");
+        return op;
+    }
+
+    private static final class RecordingStore extends DocumentStoreWrapper {
+
+        final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<Integer>());
+
+        volatile DocumentStoreException failure;
+
+        /**
+         * Only fail calls updating this document, or all calls if
+         * {@code null}.
+         */
+        volatile String failingId;
+
+        RecordingStore(DocumentStore store) {
+            super(store);
+        }
+
+        @Override
+        public <T extends Document> List<T> createOrUpdate(Collection<T> collection,
+                                                           List<UpdateOp> updateOps) {
+            if (collection == NODES) {
+                if (failure != null && (failingId == null || containsId(updateOps, failingId))) {
+                    throw failure;
+                }
+                batchSizes.add(updateOps.size());
+            }
+            return super.createOrUpdate(collection, updateOps);
+        }
+
+        private static boolean containsId(List<UpdateOp> updateOps, String id) {
+            for (UpdateOp op : updateOps) {
+                if (op.getId().equals(id)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -17,11 +17,15 @@
 package org.apache.jackrabbit.oak.plugins.document;
 
 import static org.apache.jackrabbit.oak.plugins.document.DocumentNodeState.Children;
+import static org.apache.jackrabbit.oak.plugins.document.StableRevisionComparator.REVERSE;
 import static org.junit.Assert.fail;
 
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.UUID;
 import java.util.concurrent.Callable;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -308,6 +312,31 @@ public class MeasureMemory {
         });
     }
 
+    @Test
+    public void nodeDocument() throws Exception {
+        measureMemory(new Callable<Object[]>() {
+            private AtomicInteger counter = new AtomicInteger();
+            @Override
+            public Object[] call() {
+                NodeDocument doc = generateNodeDocument(counter.getAndIncrement(), 10);
+                return new Object[]{doc, doc.getMemory() + OVERHEAD};
+            }
+        });
+    }
+
+    @Test
+    public void sealedNodeDocument() throws Exception {
+        measureMemory(new Callable<Object[]>() {
+            private AtomicInteger counter = new AtomicInteger();
+            @Override
+            public Object[] call() {
+                NodeDocument doc = generateNodeDocument(counter.getAndIncrement(), 10);
+                doc.seal();
+                return new Object[]{doc, doc.getMemory() + OVERHEAD};
+            }
+        });
+    }
+
     private static void measureMemory(Callable<Object[]> c) throws Exception {
         LinkedList<Object> list = new LinkedList<Object>();
         long base = getMemoryUsed();
@@ -366,6 +395,53 @@ public class MeasureMemory {
         return n;
     }
 
+    /**
+     * Generates a document as written by a repository with a few properties
+     * changed over time: short JCR values, a longer multi-valued property
+     * with references and the usual commit, revision and _lastRev entries.
+     */
+    static NodeDocument generateNodeDocument(int n, int numRevisions) {
+        NodeDocument doc = new NodeDocument(STORE.getDocumentStore());
+        doc.put(Document.ID, Utils.getIdFromPath(
+                Path.fromString("/content/site/page-" + n + "/jcr:content")));
+        doc.put(Document.MOD_COUNT, 17L);
+        doc.put(NodeDocument.MODIFIED_IN_SECS, 1570000000L + n);
+        SortedMap<Revision, String> revisions = new TreeMap<Revision, String>(REVERSE);
+        SortedMap<Revision, String> deleted = new TreeMap<Revision, String>(REVERSE);
+        SortedMap<Revision, String> title = new TreeMap<Revision, String>(REVERSE);
+        SortedMap<Revision, String> modified = new TreeMap<Revision, String>(REVERSE);
+        SortedMap<Revision, String> refs = new TreeMap<Revision, String>(REVERSE);
+        for (int i = 0; i < numRevisions; i++) {
+            Revision r = new Revision(1570000000000L + n * 1000L + i, 0, 1 + i % 3);
+            revisions.put(r, "c");
+            title.put(r, "\"Page " + n + " version " + i + "\"");
+            modified.put(r, "\"dat:2019-10-02T07:" + String.format("%02d", i % 60) + ":00.000Z\"");
+            if (i == 0) {
+                deleted.put(r, "false");
+                StringBuilder sb = new StringBuilder("[");
+                for (int j = 0; j < 5; j++) {
+                    if (j > 0) {
+                        sb.append(',');
+                    }
+                    sb.append("\"ref:").append(UUID.randomUUID()).append('"');
+                }
+                refs.put(r, sb.append(']').toString());
+            }
+        }
+        doc.put("_revisions", revisions);
+        doc.put("_deleted", deleted);
+        doc.put("jcr:title", title);
+        doc.put("jcr:lastModified", modified);
+        doc.put("references", refs);
+        SortedMap<Revision, String> lastRev = new TreeMap<Revision, String>(REVERSE);
+        for (int i = 0; i < 3; i++) {
+            Revision r = new Revision(0, 0, i + 1);
+            lastRev.put(r, revisions.firstKey().toString());
+        }
+        doc.put("_lastRev", lastRev);
+        return doc;
+    }
+
     static Children generateNodeChild(int childCount) {
         Children n = new Children();
         for (int i = 0; i < childCount; i++) {
@@ -78,6 +78,7 @@ public class ReadOnlyDocumentStoreWrapperTest {
         for (Collection collection : collections) {
             readOnlyStore.find(collection, null);
             readOnlyStore.find(collection, null, 0);
+            readOnlyStore.findAll(collection, Lists.<String>newArrayList());
 
             readOnlyStore.query(collection, null, null, 0);
             readOnlyStore.query(collection, null, null, null, 0, 0);